@@ -471,7 +471,7 @@ public class BoundingBox
 		}
 	}
 
-	protected void initBbox() {
+	protected synchronized void initBbox() {
 		if (bbox != null) {
 			return;
 		}
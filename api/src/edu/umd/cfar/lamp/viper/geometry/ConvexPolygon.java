@@ -37,6 +37,18 @@ public class ConvexPolygon extends PolyList implements Cloneable, HasCentroid {
 
 	private List edgeList = null;
 
+	/**
+	 * The verteces as <code>x0, y0, x1, y1, ...</code>, for use by
+	 * {@link FastGeometry}. Acts as a dirty bit, like <code>bbox</code>.
+	 */
+	private double[] coordinates = null;
+
+	/**
+	 * Whether all the coordinates are whole numbers small enough for 
+	 * exact <code>long</code> arithmetic.
+	 */
+	private boolean integral = false;
+
 	/**
 	 * Creates an empty convex polygon, whatever that means.
 	 */
@@ -141,7 +153,7 @@ public class ConvexPolygon extends PolyList implements Cloneable, HasCentroid {
 		}
 	}
 
-	protected void initBbox() {
+	protected synchronized void initBbox() {
 		if (bbox != null) {
 			return;
 		}
@@ -149,7 +161,7 @@ public class ConvexPolygon extends PolyList implements Cloneable, HasCentroid {
 		super.addPoly(this);
 		Iterator corners = getVerteces();
 		if (corners.hasNext()) {
-			Pnt leastPoint = (Pnt) corners.next();
+			Pnt leastPoint = new Pnt((Pnt) corners.next());
 			Pnt greatestPoint = new Pnt(leastPoint);
 			Pnt currentPoint;
 
@@ -743,6 +755,7 @@ public class ConvexPolygon extends PolyList implements Cloneable, HasCentroid {
 		}
 		edgeList.add(new Pnt(point));
 		bbox = null;
+		coordinates = null;
 		return true;
 	}
 
@@ -761,6 +774,44 @@ public class ConvexPolygon extends PolyList implements Cloneable, HasCentroid {
 		return (edgeList == null) ? 0 : edgeList.size();
 	}
 
+	/**
+	 * Gets the verteces as an array of doubles, in the form
+	 * <code>x0, y0, x1, y1, ...</code>. The array is cached, and must 
+	 * not be modified.
+	 * @return the coordinates of the verteces
+	 */
+	synchronized double[] getCoordinates() {
+		if (coordinates == null) {
+			int n = getNumberOfVerteces();
+			double[] xy = new double[2 * n];
+			boolean allIntegral = n <= FastGeometry.MAX_EXACT_VERTECES;
+			Iterator edgeIter = (n == 0) ? null : edgeList.iterator();
+			for (int i = 0; i < n; i++) {
+				Pnt p = (Pnt) edgeIter.next();
+				xy[2 * i] = p.x.doubleValue();
+				xy[2 * i + 1] = p.y.doubleValue();
+				allIntegral = allIntegral && p.x.isInteger()
+						&& p.y.isInteger()
+						&& Math.abs(xy[2 * i]) < FastGeometry.MAX_EXACT_COORDINATE
+						&& Math.abs(xy[2 * i + 1]) < FastGeometry.MAX_EXACT_COORDINATE;
+			}
+			integral = allIntegral;
+			coordinates = xy;
+		}
+		return coordinates;
+	}
+
+	/**
+	 * Tests to see if the {@link #getCoordinates() coordinates} are
+	 * exact whole numbers, small enough that the area may be computed
+	 * exactly with <code>long</code> arithmetic.
+	 * @return <code>true</code> if the coordinates are small integers
+	 */
+	synchronized boolean hasIntegralCoordinates() {
+		getCoordinates();
+		return integral;
+	}
+
 	public Iterator getVerteces() {
 		if (edgeList == null) {
 			return new Iterator() {
@@ -792,6 +843,7 @@ public class ConvexPolygon extends PolyList implements Cloneable, HasCentroid {
 
 	protected void clearPolygon() {
 		edgeList = null;
+		coordinates = null;
 	}
  
 	/**
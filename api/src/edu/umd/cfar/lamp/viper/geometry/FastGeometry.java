@@ -0,0 +1,311 @@
+/***************************************
+ *            ViPER                    *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *                                     *
+ *  Distributed under the GPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package edu.umd.cfar.lamp.viper.geometry;
+
+import java.awt.*;
+
+/**
+ * A fast geometry kernel for single convex polygons, including bounding
+ * boxes and oriented boxes. It works on primitive coordinates instead of
+ * {@link Rational}s, so it does not allocate once a polygon's coordinates
+ * have been cached.
+ * <p>
+ * Bounding boxes, and polygons whose verteces are all small integers, get
+ * their areas computed exactly with <code>long</code> arithmetic. Other
+ * results are computed with <code>double</code>s, along with a
+ * conservative bound on the absolute error. That bound is
+ * <code>(n + m) (64 &epsilon; M<sup>2</sup> + 8 &delta; M)</code>, where
+ * <i>n</i> and <i>m</i> are the vertex counts, <i>M</i> is the largest
+ * distance along either axis from the first vertex of the first polygon,
+ * &epsilon; is the machine epsilon, and &delta; is the error in converting a
+ * non-integral <code>Rational</code> coordinate to a double. If the bound is
+ * more than {@link #MAX_RELATIVE_ERROR} of the result, the methods return
+ * <code>NaN</code> instead, and the caller should fall back to the exact
+ * <code>Rational</code> methods. This happens for polygons that share
+ * little or no area, where the result may be exactly zero.
+ * </p>
+ * <p>
+ * All methods also return <code>NaN</code> for regions that are not a
+ * single convex polygon, such as composed <code>PolyList</code>s.
+ * </p>
+ */
+public class FastGeometry {
+	/**
+	 * The largest relative error allowed in a result before the methods
+	 * give up and return <code>NaN</code>.
+	 */
+	public static final double MAX_RELATIVE_ERROR = 1e-6;
+
+	/**
+	 * Coordinates must have absolute value less than this for their
+	 * products to be exact in a <code>long</code> or a <code>double</code>.
+	 */
+	static final double MAX_EXACT_COORDINATE = 1 << 26;
+
+	/**
+	 * The most verteces a polygon may have and still have its area summed
+	 * exactly in a <code>long</code>.
+	 */
+	static final int MAX_EXACT_VERTECES = 1 << 9;
+
+	/** The relative error of a double operation. */
+	private static final double EPSILON = 1.0 / (1L << 52);
+
+	/**
+	 * The absolute error of {@link Rational#doubleValue()} for a
+	 * number that isn't an integer.
+	 */
+	private static final double CONVERSION_ERROR = 1.0 / (1L << 30);
+
+	/**
+	 * Working space for the clipping algorithm, so that it doesn't have to
+	 * allocate a new array each call.
+	 */
+	private static final ThreadLocal scratch = new ThreadLocal() {
+		protected Object initialValue() {
+			return new double[2][32];
+		}
+	};
+
+	private FastGeometry() {
+	}
+
+	/**
+	 * Tests to see if the kernel can handle the given region.
+	 * @param p the region to check
+	 * @return <code>true</code> if the region is a single convex polygon
+	 */
+	public static boolean isSimple(PolyList p) {
+		return p instanceof ConvexPolygon && !p.composed;
+	}
+
+	/**
+	 * Computes the area of the given convex polygon. This is the same as
+	 * <code>p.area().doubleValue()</code>, up to the error bound.
+	 * @param p the polygon to measure
+	 * @return the area, or <code>NaN</code> if the region is not simple or
+	 * the error bound is at risk
+	 */
+	public static double area(PolyList p) {
+		if (!isSimple(p)) {
+			return Double.NaN;
+		} else if (p instanceof BoundingBox) {
+			Rectangle r = ((BoundingBox) p).rect;
+			return (double) r.width * r.height;
+		}
+		ConvexPolygon c = (ConvexPolygon) p;
+		double[] xy = c.getCoordinates();
+		int n = xy.length / 2;
+		if (n < 3) {
+			return 0;
+		} else if (c.hasIntegralCoordinates()) {
+			return twiceAreaExact(xy, n) / 2.0;
+		}
+		double a = twiceArea(xy, n, xy[0], xy[1]) / 2;
+		double bound = errorBound(extent(xy, n, xy[0], xy[1]), n, false);
+		return checkBound(a, bound);
+	}
+
+	/**
+	 * Computes the area of the intersection of two convex polygons. This is
+	 * the same as <code>a.getIntersection(b).area().doubleValue()</code>,
+	 * up to the error bound, but without constructing the intersection.
+	 * @param a a polygon
+	 * @param b another polygon
+	 * @return the area they share, or <code>NaN</code> if either region is
+	 * not simple or the error bound is at risk
+	 */
+	public static double getIntersectionArea(PolyList a, PolyList b) {
+		if (!isSimple(a) || !isSimple(b)) {
+			return Double.NaN;
+		} else if (a instanceof BoundingBox && b instanceof BoundingBox) {
+			Rectangle r = ((BoundingBox) a).rect;
+			Rectangle s = ((BoundingBox) b).rect;
+			long w = Math.min((long) r.x + r.width, (long) s.x + s.width)
+					- Math.max(r.x, s.x);
+			long h = Math.min((long) r.y + r.height, (long) s.y + s.height)
+					- Math.max(r.y, s.y);
+			return (w > 0 && h > 0) ? (double) (w * h) : 0;
+		}
+		ConvexPolygon p = (ConvexPolygon) a;
+		ConvexPolygon q = (ConvexPolygon) b;
+		double[] pxy = p.getCoordinates();
+		double[] qxy = q.getCoordinates();
+		int n = pxy.length / 2;
+		int m = qxy.length / 2;
+		if (n < 3 || m < 3 || !boxesOverlap(pxy, n, qxy, m)) {
+			return 0;
+		}
+		double ox = pxy[0];
+		double oy = pxy[1];
+		double M = Math.max(extent(pxy, n, ox, oy), extent(qxy, m, ox, oy));
+		double bound = errorBound(M, n + m, p.hasIntegralCoordinates()
+				&& q.hasIntegralCoordinates());
+
+		double qArea = twiceArea(qxy, m, ox, oy);
+		if (Math.abs(qArea) <= 2 * bound) {
+			return Double.NaN;
+		}
+		double[][] buffers = getScratch(4 * (n + 2 * m));
+		double[] in = buffers[0];
+		double[] out = buffers[1];
+		for (int i = 0; i < 2 * n; i += 2) {
+			in[i] = pxy[i] - ox;
+			in[i + 1] = pxy[i + 1] - oy;
+		}
+		int count = n;
+		double orientation = qArea > 0 ? 1 : -1;
+		double ax = qxy[2 * m - 2] - ox;
+		double ay = qxy[2 * m - 1] - oy;
+		for (int j = 0; j < m && count > 0; j++) {
+			double bx = qxy[2 * j] - ox;
+			double by = qxy[2 * j + 1] - oy;
+			if (out.length < 4 * count) {
+				// only happens if rounding made the clipped polygon concave
+				out = new double[4 * count];
+			}
+			int k = 0;
+			double sx = in[2 * count - 2];
+			double sy = in[2 * count - 1];
+			double ds = orientation * ((bx - ax) * (sy - ay) - (by - ay) * (sx - ax));
+			double maxD = ds;
+			for (int i = 0; i < count; i++) {
+				double ex = in[2 * i];
+				double ey = in[2 * i + 1];
+				double de = orientation * ((bx - ax) * (ey - ay) - (by - ay) * (ex - ax));
+				maxD = Math.max(maxD, de);
+				if ((ds < 0) != (de < 0)) {
+					double t = ds / (ds - de);
+					out[k++] = sx + t * (ex - sx);
+					out[k++] = sy + t * (ey - sy);
+				}
+				if (de >= 0) {
+					out[k++] = ex;
+					out[k++] = ey;
+				}
+				sx = ex;
+				sy = ey;
+				ds = de;
+			}
+			double[] temp = in;
+			in = out;
+			out = temp;
+			count = k / 2;
+			ax = bx;
+			ay = by;
+			if (count == 0 && maxD < -bound) {
+				// everything is clearly outside this edge
+				return 0;
+			}
+		}
+		if (count < 3) {
+			return Double.NaN;
+		}
+		return checkBound(Math.abs(twiceArea(in, count, 0, 0)) / 2, bound);
+	}
+
+	private static double checkBound(double area, double bound) {
+		return (bound <= Math.abs(area) * MAX_RELATIVE_ERROR) ? area
+				: Double.NaN;
+	}
+
+	private static double errorBound(double extent, int verteces,
+			boolean integral) {
+		double bound = 64 * EPSILON * extent * extent;
+		if (!integral) {
+			bound += 8 * CONVERSION_ERROR * extent;
+		}
+		return verteces * bound;
+	}
+
+	/**
+	 * Gets the largest distance along an axis from the given origin
+	 * to any of the points.
+	 */
+	private static double extent(double[] xy, int n, double ox, double oy) {
+		double M = 1;
+		for (int i = 0; i < n; i++) {
+			M = Math.max(M, Math.abs(xy[2 * i] - ox));
+			M = Math.max(M, Math.abs(xy[2 * i + 1] - oy));
+		}
+		return M;
+	}
+
+	private static boolean boxesOverlap(double[] pxy, int n, double[] qxy,
+			int m) {
+		for (int axis = 0; axis < 2; axis++) {
+			double pMin = Double.POSITIVE_INFINITY;
+			double pMax = Double.NEGATIVE_INFINITY;
+			for (int i = axis; i < 2 * n; i += 2) {
+				pMin = Math.min(pMin, pxy[i]);
+				pMax = Math.max(pMax, pxy[i]);
+			}
+			double qMin = Double.POSITIVE_INFINITY;
+			double qMax = Double.NEGATIVE_INFINITY;
+			for (int i = axis; i < 2 * m; i += 2) {
+				qMin = Math.min(qMin, qxy[i]);
+				qMax = Math.max(qMax, qxy[i]);
+			}
+			if (pMax <= qMin || qMax <= pMin) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Computes twice the signed area of the polygon, after moving it by
+	 * <code>(-ox, -oy)</code> to reduce rounding error.
+	 */
+	private static double twiceArea(double[] xy, int n, double ox,
+			double oy) {
+		double total = 0;
+		double px = xy[2 * n - 2] - ox;
+		double py = xy[2 * n - 1] - oy;
+		for (int i = 0; i < n; i++) {
+			double cx = xy[2 * i] - ox;
+			double cy = xy[2 * i + 1] - oy;
+			total += px * cy - cx * py;
+			px = cx;
+			py = cy;
+		}
+		return total;
+	}
+
+	/**
+	 * Computes twice the signed area of a polygon with small integer
+	 * coordinates, exactly.
+	 */
+	private static long twiceAreaExact(double[] xy, int n) {
+		long total = 0;
+		long px = (long) xy[2 * n - 2];
+		long py = (long) xy[2 * n - 1];
+		for (int i = 0; i < n; i++) {
+			long cx = (long) xy[2 * i];
+			long cy = (long) xy[2 * i + 1];
+			total += px * cy - cx * py;
+			px = cx;
+			py = cy;
+		}
+		return total;
+	}
+
+	private static double[][] getScratch(int size) {
+		double[][] buffers = (double[][]) scratch.get();
+		if (buffers[0].length < size) {
+			buffers[0] = new double[size];
+			buffers[1] = new double[size];
+		}
+		return buffers;
+	}
+}
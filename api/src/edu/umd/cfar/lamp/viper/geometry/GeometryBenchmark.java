@@ -0,0 +1,138 @@
+/***************************************
+ *            ViPER                    *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *                                     *
+ *  Distributed under the GPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package edu.umd.cfar.lamp.viper.geometry;
+
+import java.lang.management.*;
+import java.util.*;
+
+/**
+ * Compares the throughput and allocation of the exact,
+ * <code>Rational</code>-based overlap computation with the
+ * {@link FastGeometry} kernel, for pairs of bounding boxes, oriented boxes
+ * and general convex polygons. The polygons are intersections of oriented
+ * boxes, so their verteces are not integers. Allocation is only reported
+ * on virtual machines that support per-thread allocation counts.
+ * <p>
+ * Usage: <code>java edu.umd.cfar.lamp.viper.geometry.GeometryBenchmark
+ * [<i>pairs</i> [<i>rounds</i>]]</code>
+ * </p>
+ */
+public class GeometryBenchmark {
+	private interface Kernel {
+		double overlap(PolyList a, PolyList b);
+	}
+
+	private static final Kernel EXACT = new Kernel() {
+		public double overlap(PolyList a, PolyList b) {
+			return a.getIntersection(b).area().doubleValue();
+		}
+	};
+
+	private static final Kernel FAST = new Kernel() {
+		public double overlap(PolyList a, PolyList b) {
+			double area = FastGeometry.getIntersectionArea(a, b);
+			return Double.isNaN(area) ? EXACT.overlap(a, b) : area;
+		}
+	};
+
+	/**
+	 * Runs the benchmark.
+	 * @param args the number of pairs of shapes of each kind, and the
+	 * number of times to go through them
+	 */
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		Random r = new Random(42);
+
+		PolyList[] bboxes = new PolyList[count * 2];
+		PolyList[] oboxes = new PolyList[count * 2];
+		PolyList[] polys = new PolyList[count * 2];
+		for (int i = 0; i < count * 2; i++) {
+			bboxes[i] = new BoundingBox(r.nextInt(200), r.nextInt(200),
+					1 + r.nextInt(100), 1 + r.nextInt(100));
+			oboxes[i] = randomObox(r);
+			PolyList p;
+			do {
+				p = ConvexPolygon.intersection((ConvexPolygon) randomObox(r),
+						(ConvexPolygon) randomObox(r));
+			} while (p.area().lessThan(100));
+			polys[i] = p;
+		}
+
+		run("bbox", bboxes, rounds);
+		run("obox", oboxes, rounds);
+		run("polygon", polys, rounds);
+	}
+
+	private static PolyList randomObox(Random r) {
+		return new OrientedBox(100 + r.nextInt(100), 100 + r.nextInt(100),
+				20 + r.nextInt(100), 20 + r.nextInt(100), r.nextInt(360));
+	}
+
+	private static void run(String name, PolyList[] shapes, int rounds) {
+		// warm up, and make sure both kernels agree
+		double maxError = 0;
+		int fallbacks = 0;
+		for (int i = 0; i < shapes.length; i += 2) {
+			double exact = EXACT.overlap(shapes[i], shapes[i + 1]);
+			double fast = FastGeometry.getIntersectionArea(shapes[i],
+					shapes[i + 1]);
+			if (Double.isNaN(fast)) {
+				fallbacks++;
+			} else if (exact > 0) {
+				maxError = Math.max(maxError, Math.abs(fast - exact) / exact);
+			}
+		}
+		System.out.println(name + ": " + fallbacks + " of "
+				+ (shapes.length / 2) + " pairs fell back to exact; "
+				+ "largest relative difference was " + maxError);
+		time(name + " exact", EXACT, shapes, rounds);
+		time(name + " fast", FAST, shapes, rounds);
+	}
+
+	private static void time(String name, Kernel k, PolyList[] shapes,
+			int rounds) {
+		for (int i = 0; i < shapes.length; i += 2) {
+			k.overlap(shapes[i], shapes[i + 1]);
+		}
+		long bytes = allocatedBytes();
+		long start = System.nanoTime();
+		double sum = 0;
+		for (int j = 0; j < rounds; j++) {
+			for (int i = 0; i < shapes.length; i += 2) {
+				sum += k.overlap(shapes[i], shapes[i + 1]);
+			}
+		}
+		long time = System.nanoTime() - start;
+		bytes = allocatedBytes() - bytes;
+		long calls = (long) rounds * (shapes.length / 2);
+		String allocation = bytes < 0 ? "unknown allocation" : (bytes / calls)
+				+ " bytes/call";
+		System.out.println("  " + name + ": " + (time / calls) + " ns/call, "
+				+ allocation + " (sum " + sum + ")");
+	}
+
+	/**
+	 * Gets the number of bytes allocated by this thread so far,
+	 * or a negative number if the virtual machine doesn't say.
+	 */
+	private static long allocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) bean)
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return Long.MIN_VALUE;
+	}
+}
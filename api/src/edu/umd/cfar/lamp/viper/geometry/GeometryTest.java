@@ -13,6 +13,8 @@
 package edu.umd.cfar.lamp.viper.geometry;
 
 //see http://members.pingnet.ch/gamma/junit.htm
+import java.util.*;
+
 import junit.framework.*;
 import edu.umd.cfar.lamp.viper.util.*;
 
@@ -112,6 +114,9 @@ public class GeometryTest extends TestCase {
 
 		suite.addTest(new GeometryTest("testCircles"));
 
+		suite.addTest(new GeometryTest("testFastGeometry"));
+		suite.addTest(new GeometryTest("testPixelRaster"));
+
 		return suite;
 	}
 
@@ -1057,4 +1062,117 @@ public class GeometryTest extends TestCase {
 		assertTrue(S, cpoly1.area().greaterThan(0));
 		assertTrue(S, cpoly1.area().lessThan(1421));
 	}
+	/**
+	 * Checks the fast geometry kernel against the exact, Rational
+	 * versions of the area and intersection methods.
+	 */
+	public void testFastGeometry() {
+		assertEquals(triangle1.area().doubleValue(), FastGeometry
+				.area(triangle1), 0);
+		int[] points = { 75, -100, 125, -200, 125, 150, 75, 200 };
+		ConvexPolygon cutter = new ConvexPolygon(points);
+		assertEquals(50 * 75 + 25 * 50 / 2, FastGeometry.getIntersectionArea(
+				triangle1, cutter), 1e-6);
+		assertEquals(0, FastGeometry.getIntersectionArea(unitSquare,
+				new BoundingBox(1, 0, 1, 1)), 0);
+
+		PolyList composed = PolyList.union(new BoundingBox(0, 0, 10, 10),
+				new BoundingBox(20, 20, 10, 10));
+		assertTrue(Double.isNaN(FastGeometry.area(composed)));
+
+		Random r = new Random(17);
+		for (int i = 0; i < 500; i++) {
+			ConvexPolygon a = randomBox(r);
+			ConvexPolygon b = randomBox(r);
+			double exactA = a.area().doubleValue();
+			double fastA = FastGeometry.area(a);
+			assertEquals(a.toString(), exactA, fastA, 1e-6);
+
+			double exact = a.getIntersection(b).area().doubleValue();
+			double fast = FastGeometry.getIntersectionArea(a, b);
+			if (a instanceof BoundingBox && b instanceof BoundingBox) {
+				assertEquals(a + " & " + b, exact, fast, 0);
+			} else if (!Double.isNaN(fast)) {
+				assertEquals(a + " & " + b, exact, fast, exact
+						* FastGeometry.MAX_RELATIVE_ERROR + 1e-6);
+			} else {
+				assertTrue(a + " & " + b + " = " + exact, exact < 1);
+			}
+		}
+	}
+
+	/**
+	 * Checks that rasterized shapes have their areas, exactly for
+	 * bounding boxes and to within a pixel along the edges for the rest.
+	 */
+	public void testPixelRaster() {
+		PixelRaster a = new PixelRaster(0, 0, 100, 100);
+		a.fill(new BoundingBox(10, 20, 30, 40));
+		assertEquals(1200, a.count());
+		assertTrue(a.get(10, 20));
+		assertTrue(a.get(39, 59));
+		assertFalse(a.get(40, 59));
+		assertFalse(a.get(39, 60));
+
+		PixelRaster b = new PixelRaster(0, 0, 100, 100);
+		b.fill(PolyList.union(new BoundingBox(0, 0, 20, 30),
+				new BoundingBox(90, 90, 20, 20)));
+		assertEquals(10 * 10, a.countAnd(b));
+		assertEquals(1200 - 100, a.countAndNot(b));
+		assertEquals(600 + 100 - 100, b.countAndNot(a));
+		PixelRaster ignored = new PixelRaster(0, 0, 100, 100);
+		ignored.fill(new BoundingBox(30, 0, 10, 100));
+		assertEquals(1200 - 100 - 400, a.countAndNot(b, ignored));
+
+		Random r = new Random(23);
+		for (int i = 0; i < 200; i++) {
+			ConvexPolygon p = randomBox(r);
+			ConvexPolygon q = randomBox(r);
+			PixelRaster pr = new PixelRaster(-100, -100, 500, 500);
+			PixelRaster qr = new PixelRaster(-100, -100, 500, 500);
+			pr.fill(p);
+			qr.fill(q);
+			double exact = p.getIntersection(q).area().doubleValue();
+			if (p instanceof BoundingBox && q instanceof BoundingBox) {
+				assertEquals(p + " & " + q, exact, pr.countAnd(qr), 0);
+			} else {
+				// every pixel that is off is cut by an edge
+				double edges = 2 * (PixelRaster.getBounds(p).width
+						+ PixelRaster.getBounds(p).height
+						+ PixelRaster.getBounds(q).width + PixelRaster
+						.getBounds(q).height);
+				assertEquals(p + " & " + q, exact, pr.countAnd(qr), edges);
+			}
+		}
+
+		PixelRaster c = new PixelRaster(PixelRaster.getBounds(new Circle(50,
+				50, 20)));
+		c.fill(new Circle(50, 50, 20));
+		assertEquals(Math.PI * 400, c.count(), 2 * Math.PI * 20);
+
+		Ellipse e = new Ellipse(10, 10, 60, 20, 30);
+		PixelRaster er = new PixelRaster(PixelRaster.getBounds(e));
+		er.fill(e);
+		assertEquals(Math.PI * 30 * 10, er.count(), 2 * Math.PI * 30);
+		PixelRaster unrotated = new PixelRaster(0, 0, 100, 100);
+		unrotated.fill(new Ellipse(10, 10, 60, 20, 0));
+		assertTrue(unrotated.get(40, 20));
+		assertFalse(unrotated.get(11, 11));
+
+		PixelRaster clipped = new PixelRaster(0, 0, 10, 10);
+		clipped.fill(new BoundingBox(-5, -5, 10, 100));
+		assertEquals(5 * 10, clipped.count());
+	}
+
+	private static ConvexPolygon randomBox(Random r) {
+		int x = r.nextInt(200);
+		int y = r.nextInt(200);
+		int w = 1 + r.nextInt(100);
+		int h = 1 + r.nextInt(100);
+		if (r.nextBoolean()) {
+			return new BoundingBox(x, y, w, h);
+		} else {
+			return new OrientedBox(x, y, w, h, r.nextInt(360));
+		}
+	}
 }
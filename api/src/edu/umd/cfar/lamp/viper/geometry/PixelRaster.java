@@ -0,0 +1,490 @@
+/***************************************
+ *            ViPER                    *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *                                     *
+ *  Distributed under the GPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package edu.umd.cfar.lamp.viper.geometry;
+
+import java.awt.*;
+import java.util.*;
+
+/**
+ * A bitmap of the pixels covered by some shapes, for counting pixels
+ * without computing the shapes' intersections and unions. The bitmap
+ * covers a rectangle of pixels, and keeps each row as a run of 64 pixel
+ * words, so that counting the pixels in the intersection or difference of
+ * two bitmaps is a few bit operations and a population count per word.
+ * <p>
+ * Shapes are scan converted: a pixel is set if its center is inside the
+ * shape, with points on the left and top edges inside and points on the
+ * right and bottom edges outside. So a bounding box with integer
+ * coordinates sets exactly the pixels it covers, and any other shape sets
+ * its area to within a pixel along its boundary. Anything outside the
+ * bitmap's rectangle is clipped away.
+ * </p>
+ */
+public class PixelRaster {
+	private final int x0;
+	private final int y0;
+	private final int width;
+	private final int height;
+	private final int wordsPerRow;
+	private final long[] bits;
+
+	/**
+	 * Creates a new, empty bitmap.
+	 * @param x the left edge of the bitmap
+	 * @param y the top edge of the bitmap
+	 * @param width the number of pixels in each row
+	 * @param height the number of rows
+	 */
+	public PixelRaster(int x, int y, int width, int height) {
+		if (width < 0 || height < 0) {
+			throw new IllegalArgumentException("Negative raster size: "
+					+ width + "x" + height);
+		}
+		this.x0 = x;
+		this.y0 = y;
+		this.width = width;
+		this.height = height;
+		this.wordsPerRow = (width + 63) >>> 6;
+		this.bits = new long[wordsPerRow * height];
+	}
+
+	/**
+	 * Creates a new, empty bitmap covering the given rectangle.
+	 * @param r the pixels to cover
+	 */
+	public PixelRaster(Rectangle r) {
+		this(r.x, r.y, r.width, r.height);
+	}
+
+	/**
+	 * Gets the left edge of the bitmap.
+	 * @return the x-coordinate of the first pixel in each row
+	 */
+	public int getX() {
+		return x0;
+	}
+
+	/**
+	 * Gets the top edge of the bitmap.
+	 * @return the y-coordinate of the first row
+	 */
+	public int getY() {
+		return y0;
+	}
+
+	/**
+	 * Gets the width of the bitmap.
+	 * @return the number of pixels in each row
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Gets the height of the bitmap.
+	 * @return the number of rows
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Gets the smallest rectangle of pixels that holds all the pixels
+	 * the shape would set.
+	 * @param shape a {@link PolyList}, {@link Ellipse} or {@link Circle}
+	 * @return the pixels the shape may cover; empty if it covers none
+	 * @throws IllegalArgumentException if the shape isn't one of the
+	 * supported types
+	 */
+	public static Rectangle getBounds(Object shape) {
+		double[] box = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+				Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+		if (shape instanceof PolyList) {
+			for (Iterator iter = new ConvexIterator((PolyList) shape); iter
+					.hasNext();) {
+				ConvexPolygon c = (ConvexPolygon) iter.next();
+				if (c instanceof BoundingBox) {
+					Rectangle r = ((BoundingBox) c).rect;
+					if (r.width > 0 && r.height > 0) {
+						include(box, r.x, r.y);
+						include(box, r.x + r.width, r.y + r.height);
+					}
+					continue;
+				}
+				double[] xy = c.getCoordinates();
+				for (int i = 0; i < xy.length; i += 2) {
+					include(box, xy[i], xy[i + 1]);
+				}
+			}
+		} else if (shape instanceof Ellipse) {
+			Ellipse e = (Ellipse) shape;
+			double[] p = getEllipseParameters(e);
+			double dx = Math.sqrt(p[2] * p[2] * p[4] * p[4] + p[3] * p[3]
+					* p[5] * p[5]);
+			double dy = Math.sqrt(p[2] * p[2] * p[5] * p[5] + p[3] * p[3]
+					* p[4] * p[4]);
+			include(box, p[0] - dx, p[1] - dy);
+			include(box, p[0] + dx, p[1] + dy);
+		} else if (shape instanceof Circle) {
+			Circle c = (Circle) shape;
+			double cx = c.center.x.doubleValue();
+			double cy = c.center.y.doubleValue();
+			include(box, cx - c.radius, cy - c.radius);
+			include(box, cx + c.radius, cy + c.radius);
+		} else {
+			throw new IllegalArgumentException("Cannot rasterize a "
+					+ (shape == null ? "null" : shape.getClass().getName()));
+		}
+		if (box[0] > box[2] || box[1] > box[3]) {
+			return new Rectangle();
+		}
+		int left = firstCenter(box[0]);
+		int top = firstCenter(box[1]);
+		return new Rectangle(left, top, Math.max(0, firstCenter(box[2])
+				- left), Math.max(0, firstCenter(box[3]) - top));
+	}
+
+	private static void include(double[] box, double x, double y) {
+		box[0] = Math.min(box[0], x);
+		box[1] = Math.min(box[1], y);
+		box[2] = Math.max(box[2], x);
+		box[3] = Math.max(box[3], y);
+	}
+
+	/**
+	 * Gets the first pixel whose center is at or after the given
+	 * coordinate.
+	 */
+	private static int firstCenter(double c) {
+		return (int) Math.ceil(c - 0.5);
+	}
+
+	/**
+	 * Sets the pixels covered by the given shape.
+	 * @param shape a {@link PolyList}, {@link Ellipse} or {@link Circle}
+	 * @throws IllegalArgumentException if the shape isn't one of the
+	 * supported types
+	 */
+	public void fill(Object shape) {
+		if (shape instanceof PolyList) {
+			fill((PolyList) shape);
+		} else if (shape instanceof Ellipse) {
+			fill((Ellipse) shape);
+		} else if (shape instanceof Circle) {
+			fill((Circle) shape);
+		} else {
+			throw new IllegalArgumentException("Cannot rasterize a "
+					+ (shape == null ? "null" : shape.getClass().getName()));
+		}
+	}
+
+	/**
+	 * Sets the pixels covered by the polygons in the given list.
+	 * Composed lists are filled one original polygon at a time, so
+	 * their union never has to be computed.
+	 * @param p the polygons to fill
+	 */
+	public void fill(PolyList p) {
+		for (Iterator iter = new ConvexIterator(p); iter.hasNext();) {
+			ConvexPolygon c = (ConvexPolygon) iter.next();
+			if (c instanceof BoundingBox) {
+				fill(((BoundingBox) c).rect);
+			} else {
+				fill(c.getCoordinates());
+			}
+		}
+	}
+
+	/**
+	 * Sets the pixels inside the given rectangle.
+	 */
+	private void fill(Rectangle r) {
+		int top = Math.max(y0, r.y);
+		int bottom = Math.min(y0 + height, r.y + r.height);
+		for (int row = top; row < bottom; row++) {
+			fillSpan(row, r.x, r.x + r.width);
+		}
+	}
+
+	/**
+	 * Sets the pixels inside the convex polygon with the given verteces.
+	 * Each row crosses the polygon's boundary at most twice, so the span
+	 * between the leftmost and rightmost crossing is filled.
+	 */
+	private void fill(double[] xy) {
+		int n = xy.length / 2;
+		if (n < 3) {
+			return;
+		}
+		double minY = Double.POSITIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (int i = 1; i < xy.length; i += 2) {
+			minY = Math.min(minY, xy[i]);
+			maxY = Math.max(maxY, xy[i]);
+		}
+		int top = Math.max(y0, firstCenter(minY));
+		int bottom = Math.min(y0 + height, firstCenter(maxY));
+		for (int row = top; row < bottom; row++) {
+			double py = row + 0.5;
+			double left = Double.POSITIVE_INFINITY;
+			double right = Double.NEGATIVE_INFINITY;
+			for (int i = 0, j = n - 1; i < n; j = i++) {
+				double ya = xy[2 * j + 1];
+				double yb = xy[2 * i + 1];
+				if ((ya <= py && py < yb) || (yb <= py && py < ya)) {
+					double xa = xy[2 * j];
+					double xb = xy[2 * i];
+					double x = xa + (py - ya) * (xb - xa) / (yb - ya);
+					left = Math.min(left, x);
+					right = Math.max(right, x);
+				}
+			}
+			if (left < right) {
+				fillSpan(row, left, right);
+			}
+		}
+	}
+
+	/**
+	 * Sets the pixels inside the given ellipse. The ellipse is the one
+	 * inscribed in its box before the box is rotated about its origin.
+	 * @param e the ellipse to fill
+	 */
+	public void fill(Ellipse e) {
+		double[] p = getEllipseParameters(e);
+		double cx = p[0];
+		double cy = p[1];
+		double a = p[2];
+		double b = p[3];
+		double cos = p[4];
+		double sin = p[5];
+		if (a <= 0 || b <= 0) {
+			return;
+		}
+		double ia = 1 / (a * a);
+		double ib = 1 / (b * b);
+
+		// Along a row, a point u to the right of the center is inside when
+		// A u^2 + B u + C < 0, where B and C depend on the row.
+		double quadA = cos * cos * ia + sin * sin * ib;
+		double dy = Math.sqrt(a * a * sin * sin + b * b * cos * cos);
+		int top = Math.max(y0, firstCenter(cy - dy));
+		int bottom = Math.min(y0 + height, firstCenter(cy + dy));
+		for (int row = top; row < bottom; row++) {
+			double v = row + 0.5 - cy;
+			double quadB = 2 * sin * cos * v * (ib - ia);
+			double quadC = v * v * (sin * sin * ia + cos * cos * ib) - 1;
+			double disc = quadB * quadB - 4 * quadA * quadC;
+			if (disc > 0) {
+				double root = Math.sqrt(disc);
+				fillSpan(row, cx + (-quadB - root) / (2 * quadA), cx
+						+ (-quadB + root) / (2 * quadA));
+			}
+		}
+	}
+
+	/**
+	 * Gets the center, semi-axes, and the cosine and sine of the rotation
+	 * of the given ellipse.
+	 */
+	private static double[] getEllipseParameters(Ellipse e) {
+		double x = e.getX().doubleValue();
+		double y = e.getY().doubleValue();
+		double a = e.getWidth().doubleValue() / 2;
+		double b = e.getHeight().doubleValue() / 2;
+		double theta = Math.toRadians(e.getRotation());
+		double cos = Math.cos(theta);
+		double sin = Math.sin(theta);
+		// the box is rotated counterclockwise, on screen, about its origin
+		return new double[]{x + a * cos + b * sin, y - a * sin + b * cos,
+				a, b, cos, sin};
+	}
+
+	/**
+	 * Sets the pixels inside the given circle.
+	 * @param c the circle to fill
+	 */
+	public void fill(Circle c) {
+		double cx = c.center.x.doubleValue();
+		double cy = c.center.y.doubleValue();
+		double r = c.radius;
+		int top = Math.max(y0, firstCenter(cy - r));
+		int bottom = Math.min(y0 + height, firstCenter(cy + r));
+		for (int row = top; row < bottom; row++) {
+			double v = row + 0.5 - cy;
+			double halfChord = r * r - v * v;
+			if (halfChord > 0) {
+				halfChord = Math.sqrt(halfChord);
+				fillSpan(row, cx - halfChord, cx + halfChord);
+			}
+		}
+	}
+
+	/**
+	 * Sets the pixels in the given row whose centers are between
+	 * <code>left</code>, inclusive, and <code>right</code>, exclusive.
+	 */
+	private void fillSpan(int row, double left, double right) {
+		int from = Math.max(0, firstCenter(left) - x0);
+		int to = Math.min(width, firstCenter(right) - x0);
+		if (from >= to) {
+			return;
+		}
+		int offset = (row - y0) * wordsPerRow;
+		int first = from >>> 6;
+		int last = (to - 1) >>> 6;
+		long firstMask = -1L << (from & 63);
+		long lastMask = -1L >>> (63 - ((to - 1) & 63));
+		if (first == last) {
+			bits[offset + first] |= firstMask & lastMask;
+		} else {
+			bits[offset + first] |= firstMask;
+			for (int w = first + 1; w < last; w++) {
+				bits[offset + w] = -1L;
+			}
+			bits[offset + last] |= lastMask;
+		}
+	}
+
+	/**
+	 * Tests to see if the given pixel is set.
+	 * @param x the x-coordinate of the pixel
+	 * @param y the y-coordinate of the pixel
+	 * @return <code>true</code> if the pixel is in the bitmap and set
+	 */
+	public boolean get(int x, int y) {
+		int col = x - x0;
+		int row = y - y0;
+		if (col < 0 || col >= width || row < 0 || row >= height) {
+			return false;
+		}
+		return (bits[row * wordsPerRow + (col >>> 6)] & (1L << (col & 63))) != 0;
+	}
+
+	/**
+	 * Counts the set pixels.
+	 * @return the number of pixels set
+	 */
+	public long count() {
+		long sum = 0;
+		for (int i = 0; i < bits.length; i++) {
+			sum += Long.bitCount(bits[i]);
+		}
+		return sum;
+	}
+
+	/**
+	 * Counts the pixels set in both this bitmap and the other.
+	 * @param other a bitmap covering the same rectangle
+	 * @return the number of pixels in the intersection
+	 */
+	public long countAnd(PixelRaster other) {
+		checkSameRectangle(other);
+		long sum = 0;
+		for (int i = 0; i < bits.length; i++) {
+			sum += Long.bitCount(bits[i] & other.bits[i]);
+		}
+		return sum;
+	}
+
+	/**
+	 * Counts the pixels set in this bitmap, but not in the other.
+	 * @param other a bitmap covering the same rectangle
+	 * @return the number of pixels in the difference
+	 */
+	public long countAndNot(PixelRaster other) {
+		checkSameRectangle(other);
+		long sum = 0;
+		for (int i = 0; i < bits.length; i++) {
+			sum += Long.bitCount(bits[i] & ~other.bits[i]);
+		}
+		return sum;
+	}
+
+	/**
+	 * Counts the pixels set in this bitmap, but in neither of the others.
+	 * @param a a bitmap covering the same rectangle
+	 * @param b another bitmap covering the same rectangle
+	 * @return the number of pixels in the difference
+	 */
+	public long countAndNot(PixelRaster a, PixelRaster b) {
+		checkSameRectangle(a);
+		checkSameRectangle(b);
+		long sum = 0;
+		for (int i = 0; i < bits.length; i++) {
+			sum += Long.bitCount(bits[i] & ~(a.bits[i] | b.bits[i]));
+		}
+		return sum;
+	}
+
+	private void checkSameRectangle(PixelRaster other) {
+		if (other.x0 != x0 || other.y0 != y0 || other.width != width
+				|| other.height != height) {
+			throw new IllegalArgumentException(
+					"Rasters must cover the same pixels");
+		}
+	}
+
+	/**
+	 * Iterates over the convex polygons that make up a polygon list,
+	 * using the original polygons of composed lists instead of their
+	 * non-overlapping pieces.
+	 */
+	private static final class ConvexIterator implements Iterator {
+		private final LinkedList stack = new LinkedList();
+		private ConvexPolygon next;
+
+		ConvexIterator(PolyList p) {
+			if (p instanceof ConvexPolygon && !p.composed) {
+				next = (ConvexPolygon) p;
+			} else {
+				stack.add(p.getOriginals());
+				advance();
+			}
+		}
+
+		private void advance() {
+			next = null;
+			while (next == null && !stack.isEmpty()) {
+				Iterator top = (Iterator) stack.getLast();
+				if (!top.hasNext()) {
+					stack.removeLast();
+					continue;
+				}
+				Object o = top.next();
+				if (o instanceof ConvexPolygon && !((ConvexPolygon) o).composed) {
+					next = (ConvexPolygon) o;
+				} else {
+					stack.add(((PolyList) o).getOriginals());
+				}
+			}
+		}
+
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		public Object next() {
+			if (next == null) {
+				throw new NoSuchElementException();
+			}
+			ConvexPolygon curr = next;
+			advance();
+			return curr;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -147,7 +147,7 @@ public class PolyList implements Cloneable {
 	 * Get the area of coverage by these polygons.
 	 * @return The nearest double value to the area.
 	 */
-	public Rational area() {
+	public synchronized Rational area() {
 		if (area != null)
 			return area;
 
@@ -253,7 +253,7 @@ public class PolyList implements Cloneable {
 	 * it is currently set to null; the bbox field therefore acts as a 
 	 * dirty bit. 
 	 */
-	protected void initBbox() {
+	protected synchronized void initBbox() {
 		if (bbox != null) {
 			return;
 		}
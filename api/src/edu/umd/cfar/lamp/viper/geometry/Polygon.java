@@ -159,7 +159,7 @@ public class Polygon extends PolyList implements Cloneable, HasCentroid, Moveabl
 	/**
 	 * Creates a BoundingBox around this, for use by getBoundingBox, etc.
 	 */
-	protected void initBbox() {
+	protected synchronized void initBbox() {
 		if (bbox != null) {
 			return;
 		}
@@ -213,6 +213,14 @@ public class Rational extends Number implements Comparable {
 			return bignum[0].equals(BigInteger.valueOf(other));
 	}
 
+	/**
+	 * Tests to see if the number is a whole number.
+	 * @return <code>true</code> if the denominator is one
+	 */
+	public boolean isInteger() {
+		return bignum[1].equals(BigInteger.ONE);
+	}
+
 	/**
 	 * Tests to see if the number is zero.
 	 * @return <code>true</code> if the number is zero
@@ -0,0 +1,87 @@
+/***************************************
+ *            ViPER                    *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *                                     *
+ *  Distributed under the GPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package edu.umd.cfar.lamp.viper.util;
+
+import java.util.*;
+
+/**
+ * Times the two implementations of the hungarian algorithm in
+ * {@link DataMatrices} on random square cost matrices from 10 to 5000
+ * objects on a side: the original, on a {@link SparseMatrix} of
+ * <code>Long</code>s through a {@link DataMatrices.GetCost}, and the
+ * one on a dense array of <code>long</code>s. The original is only run
+ * up to a limit, since it gets slow quickly; where both run, it checks
+ * that they find assignments of the same cost.
+ * <p>
+ * Usage: <code>java edu.umd.cfar.lamp.viper.util.AssignmentBenchmark
+ * [<i>largest size for the sparse matrix version</i>
+ * [<i>largest size</i>]]</code>
+ * </p>
+ */
+public class AssignmentBenchmark {
+	private static final int[] SIZES = {10, 20, 50, 100, 200, 500, 1000,
+			2000, 5000};
+
+	/**
+	 * Runs the benchmark.
+	 * @param args the largest size to run the original version on,
+	 * default 200, and the largest size to run at all, default 5000
+	 */
+	public static void main(String[] args) {
+		int sparseLimit = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		int limit = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+		Random r = new Random(42);
+		DataMatrices.GetCost c = new DataMatrices.PassThrough();
+
+		System.out.println("size\tsparse ms\tdense ms\tcost");
+		for (int k = 0; k < SIZES.length && SIZES[k] <= limit; k++) {
+			int n = SIZES[k];
+			long[] costs = new long[n * n];
+			for (int i = 0; i < costs.length; i++) {
+				// like SingleFilter's costs, distances scaled by 2^24
+				costs[i] = (long) (r.nextDouble() * 0xFFFFFFL);
+			}
+
+			String sparseTime = "-";
+			long sparseSum = -1;
+			if (n <= sparseLimit) {
+				SparseMatrix m = new SparseMatrix(n, n);
+				for (int i = 0; i < costs.length; i++) {
+					m.set(i % n, i / n, new Long(costs[i]));
+				}
+				long start = System.currentTimeMillis();
+				List matches = DataMatrices.assign(m, c);
+				sparseTime = String.valueOf(System.currentTimeMillis() - start);
+				sparseSum = 0;
+				for (Iterator iter = matches.iterator(); iter.hasNext();) {
+					sparseSum += c.cost(iter.next());
+				}
+			}
+
+			long start = System.currentTimeMillis();
+			int[] mates = DataMatrices.assign(costs, n, n);
+			long denseTime = System.currentTimeMillis() - start;
+			long denseSum = 0;
+			for (int i = 0; i < n; i++) {
+				denseSum += costs[i * n + mates[i]];
+			}
+
+			System.out.println(n + "\t" + sparseTime + "\t" + denseTime + "\t"
+					+ denseSum);
+			if (sparseSum >= 0 && sparseSum != denseSum) {
+				System.out.println("MISMATCH: sparse matrix version cost "
+						+ sparseSum);
+			}
+		}
+	}
+}
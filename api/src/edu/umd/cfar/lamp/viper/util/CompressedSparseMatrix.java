@@ -0,0 +1,658 @@
+/***************************************
+ *            ViPER                    *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *                                     *
+ *  Distributed under the GPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package edu.umd.cfar.lamp.viper.util;
+
+import java.util.*;
+
+/**
+ * A sparse matrix kept in arrays instead of linked nodes. The cells are
+ * stored in order by row, then column, as in the compressed sparse row
+ * format, and a second set of arrays lists them in order by column, so
+ * moving along either a row or a column steps through an array.
+ * Getting a cell takes O(log <i>k</i>) time, for <i>k</i> cells in its
+ * row.
+ * <p>
+ * New cells are kept in a buffer, and merged into the arrays the next
+ * time the matrix is read, which takes linear time; so cells should be
+ * added in batches, such as with a {@link Builder}. Removed cells leave
+ * holes that are skipped until the next merge.
+ * </p>
+ * <p>
+ * As with {@link SparseMatrix}, the iterators are not fail-fast. An
+ * iterator sees the cells that were in the matrix when it was created,
+ * along with any later changes to or removals of those cells.
+ * </p>
+ *
+ * @see SparseMatrix
+ */
+public class CompressedSparseMatrix implements DataMatrix2d {
+	private static final int[] NO_INTS = new int[0];
+	private static final Object[] NO_OBJECTS = new Object[0];
+
+	private final int maxWidth;
+	private final int maxHeight;
+
+	/** Where each row's cells start in the row order arrays. */
+	private int[] rowStart;
+	/** The column of each cell, in row order. */
+	private int[] rowCols = NO_INTS;
+	/** The data in each cell, in row order; <code>null</code> for holes. */
+	private Object[] rowData = NO_OBJECTS;
+	/** Where each column's cells start in the column order arrays. */
+	private int[] colStart;
+	/** The row of each cell, in column order. */
+	private int[] colRows = NO_INTS;
+	/** Where each cell is in the row order arrays, in column order. */
+	private int[] colCells = NO_INTS;
+	/** The number of cells in the arrays, including holes. */
+	private int cellCount = 0;
+	/** The number of holes left by removed cells. */
+	private int holes = 0;
+
+	/** Cells that aren't merged into the arrays yet. */
+	private int[] newCols = NO_INTS;
+	private int[] newRows = NO_INTS;
+	private Object[] newData = NO_OBJECTS;
+	private int newCount = 0;
+
+	/** One more than the last column and row with data. */
+	private int usedWidth = 0;
+	private int usedHeight = 0;
+	/** Set when a removal may have changed the used width or height. */
+	private boolean extentStale = false;
+
+	/**
+	 * Creates a new, empty matrix that cannot have data beyond the given
+	 * dimensions.
+	 *
+	 * @param maxWidth the number of columns
+	 * @param maxHeight the number of rows
+	 */
+	public CompressedSparseMatrix(int maxWidth, int maxHeight) {
+		if (maxWidth < 0 || maxHeight < 0) {
+			throw new IllegalArgumentException("Negative matrix size: "
+					+ maxWidth + "x" + maxHeight);
+		}
+		this.maxWidth = maxWidth;
+		this.maxHeight = maxHeight;
+		this.rowStart = new int[maxHeight + 1];
+		this.colStart = new int[maxWidth + 1];
+	}
+
+	/**
+	 * Creates a new matrix from some of the rows and columns of an old
+	 * one. It is the count of set bits in <code>cols</code> wide and
+	 * the count of set bits in <code>rows</code> high, and holds the
+	 * data from those rows and columns of the old matrix, in the same
+	 * order. When the old matrix is also a
+	 * <code>CompressedSparseMatrix</code>, this only looks at the
+	 * selected rows.
+	 *
+	 * @param old the matrix to copy from
+	 * @param cols the columns to copy
+	 * @param rows the rows to copy
+	 */
+	public CompressedSparseMatrix(DataMatrix2d old, BitSet cols, BitSet rows) {
+		this(cols.cardinality(), rows.cardinality());
+		int[] keptCols = toArray(cols);
+		if (old instanceof CompressedSparseMatrix) {
+			CompressedSparseMatrix o = (CompressedSparseMatrix) old;
+			o.merge();
+			int newRow = 0;
+			for (int r = rows.nextSetBit(0); r >= 0 && r < o.maxHeight; r = rows
+					.nextSetBit(r + 1)) {
+				for (int i = o.rowStart[r]; i < o.rowStart[r + 1]; i++) {
+					int newCol = Arrays.binarySearch(keptCols, o.rowCols[i]);
+					if (newCol >= 0 && o.rowData[i] != null) {
+						addNew(newCol, newRow, o.rowData[i]);
+					}
+				}
+				newRow++;
+			}
+		} else {
+			int[] keptRows = toArray(rows);
+			MatrixIterator mi = old.getMatrixIterator();
+			while (mi.hasNextColumn()) {
+				int newCol = Arrays.binarySearch(keptCols, mi.nextColumn());
+				if (newCol >= 0) {
+					while (mi.hasNextInColumn()) {
+						Object data = mi.nextInColumn();
+						int newRow = Arrays.binarySearch(keptRows, mi.currRow());
+						if (newRow >= 0) {
+							addNew(newCol, newRow, data);
+						}
+					}
+				}
+			}
+		}
+		merge();
+	}
+
+	private static int[] toArray(BitSet bits) {
+		int[] indices = new int[bits.cardinality()];
+		int k = 0;
+		for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+			indices[k++] = i;
+		}
+		return indices;
+	}
+
+	/**
+	 * Collects cells for a new matrix, which are all sorted into place
+	 * at once when it is built.
+	 */
+	public static class Builder {
+		private CompressedSparseMatrix matrix;
+
+		/**
+		 * Starts building a matrix of the given size.
+		 * @param maxWidth the number of columns
+		 * @param maxHeight the number of rows
+		 */
+		public Builder(int maxWidth, int maxHeight) {
+			matrix = new CompressedSparseMatrix(maxWidth, maxHeight);
+		}
+
+		/**
+		 * Puts data in a cell of the new matrix. If the same cell is
+		 * given more than once, the last data wins.
+		 * @param column the column of the cell
+		 * @param row the row of the cell
+		 * @param data the data; <code>null</code> is ignored
+		 * @return this builder
+		 * @throws MatrixIndexOutOfBoundsException if the cell is outside
+		 * the matrix
+		 * @throws IllegalStateException if the matrix is already built
+		 */
+		public Builder add(int column, int row, Object data) {
+			if (matrix == null) {
+				throw new IllegalStateException("Matrix already built");
+			}
+			matrix.checkBounds(column, row);
+			if (data != null) {
+				matrix.addNew(column, row, data);
+			}
+			return this;
+		}
+
+		/**
+		 * Gets the new matrix. The builder can't be used after this.
+		 * @return the matrix, holding all the added cells
+		 */
+		public CompressedSparseMatrix build() {
+			CompressedSparseMatrix m = matrix;
+			matrix = null;
+			m.merge();
+			return m;
+		}
+	}
+
+	private void checkBounds(int column, int row) {
+		if ((column < 0) || (column >= maxWidth) || (row < 0)
+				|| (row >= maxHeight)) {
+			throw new MatrixIndexOutOfBoundsException(column, row);
+		}
+	}
+
+	private void addNew(int column, int row, Object data) {
+		if (newCount == newCols.length) {
+			int size = Math.max(16, newCount * 2);
+			int[] cols = new int[size];
+			int[] rows = new int[size];
+			Object[] data2 = new Object[size];
+			System.arraycopy(newCols, 0, cols, 0, newCount);
+			System.arraycopy(newRows, 0, rows, 0, newCount);
+			System.arraycopy(newData, 0, data2, 0, newCount);
+			newCols = cols;
+			newRows = rows;
+			newData = data2;
+		}
+		newCols[newCount] = column;
+		newRows[newCount] = row;
+		newData[newCount] = data;
+		newCount++;
+	}
+
+	/**
+	 * Finds a cell in the arrays, ignoring any unmerged cells.
+	 * @return the index of the cell in row order, or -1
+	 */
+	private int find(int column, int row) {
+		int i = Arrays.binarySearch(rowCols, rowStart[row], rowStart[row + 1],
+				column);
+		return i < 0 ? -1 : i;
+	}
+
+	/**
+	 * Merges the new cells into the arrays and drops the holes. This
+	 * makes new arrays, rather than changing the old ones, so existing
+	 * iterators keep working.
+	 */
+	private void merge() {
+		if (newCount == 0 && holes == 0) {
+			if (extentStale) {
+				findExtent();
+			}
+			return;
+		}
+
+		// list the cells: the old ones in row order, then the new ones
+		int n = cellCount - holes + newCount;
+		int[] cols = new int[n];
+		int[] rows = new int[n];
+		Object[] data = new Object[n];
+		int k = 0;
+		for (int r = 0; r < maxHeight; r++) {
+			for (int i = rowStart[r]; i < rowStart[r + 1]; i++) {
+				if (rowData[i] != null) {
+					cols[k] = rowCols[i];
+					rows[k] = r;
+					data[k++] = rowData[i];
+				}
+			}
+		}
+		System.arraycopy(newCols, 0, cols, k, newCount);
+		System.arraycopy(newRows, 0, rows, k, newCount);
+		System.arraycopy(newData, 0, data, k, newCount);
+		newCols = NO_INTS;
+		newRows = NO_INTS;
+		newData = NO_OBJECTS;
+		newCount = 0;
+
+		// a stable radix sort, by column then by row, keeps a later
+		// copy of a cell after an earlier one
+		int[] byColumn = sortByKey(cols, null, n, new int[maxWidth + 1]);
+		int[] order = sortByKey(rows, byColumn, n, new int[maxHeight + 1]);
+
+		int[] newRowStart = new int[maxHeight + 1];
+		int[] newRowCols = new int[n];
+		Object[] newRowData = new Object[n];
+		int m = 0;
+		for (int j = 0; j < n; j++) {
+			int i = order[j];
+			if (j + 1 < n && rows[order[j + 1]] == rows[i]
+					&& cols[order[j + 1]] == cols[i]) {
+				continue; // replaced by a later copy
+			}
+			newRowStart[rows[i] + 1]++;
+			newRowCols[m] = cols[i];
+			newRowData[m++] = data[i];
+		}
+		for (int r = 0; r < maxHeight; r++) {
+			newRowStart[r + 1] += newRowStart[r];
+		}
+
+		int[] newColStart = new int[maxWidth + 1];
+		for (int i = 0; i < m; i++) {
+			newColStart[newRowCols[i] + 1]++;
+		}
+		for (int c = 0; c < maxWidth; c++) {
+			newColStart[c + 1] += newColStart[c];
+		}
+		int[] fill = (int[]) newColStart.clone();
+		int[] newColRows = new int[m];
+		int[] newColCells = new int[m];
+		for (int r = 0; r < maxHeight; r++) {
+			for (int i = newRowStart[r]; i < newRowStart[r + 1]; i++) {
+				int at = fill[newRowCols[i]]++;
+				newColRows[at] = r;
+				newColCells[at] = i;
+			}
+		}
+
+		rowStart = newRowStart;
+		rowCols = newRowCols;
+		rowData = newRowData;
+		colStart = newColStart;
+		colRows = newColRows;
+		colCells = newColCells;
+		cellCount = m;
+		holes = 0;
+		findExtent();
+	}
+
+	/**
+	 * Stably sorts indices by their keys, using a counting sort.
+	 * @param keys the key of each index
+	 * @param order the indices to sort, or <code>null</code> for
+	 * <code>0</code> to <code>n - 1</code>
+	 * @param n the number of indices
+	 * @param start scratch space of one more than the largest key
+	 * @return the sorted indices
+	 */
+	private static int[] sortByKey(int[] keys, int[] order, int n, int[] start) {
+		for (int i = 0; i < n; i++) {
+			start[keys[i] + 1]++;
+		}
+		for (int k = 1; k < start.length; k++) {
+			start[k] += start[k - 1];
+		}
+		int[] sorted = new int[n];
+		for (int j = 0; j < n; j++) {
+			int i = order == null ? j : order[j];
+			sorted[start[keys[i]]++] = i;
+		}
+		return sorted;
+	}
+
+	private void findExtent() {
+		usedWidth = maxWidth;
+		while (usedWidth > 0 && !hasLiveCell(colStart[usedWidth - 1],
+				colStart[usedWidth], colCells)) {
+			usedWidth--;
+		}
+		usedHeight = maxHeight;
+		while (usedHeight > 0 && !hasLiveCell(rowStart[usedHeight - 1],
+				rowStart[usedHeight], null)) {
+			usedHeight--;
+		}
+		extentStale = false;
+	}
+
+	private boolean hasLiveCell(int from, int to, int[] cells) {
+		for (int k = from; k < to; k++) {
+			if (rowData[cells == null ? k : cells[k]] != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Determines if this is the same as another {@link DataMatrix2d}.
+	 * Requires that all of the data implement equals() as well.
+	 * @param other Another {@link DataMatrix2d}.
+	 * @return <code>true</code> if the other has all the same data as this.
+	 */
+	public boolean equals(Object other) {
+		if (other == this) {
+			return true;
+		} else if (other instanceof DataMatrix2d) {
+			MatrixIterator miOther = ((DataMatrix2d) other).getMatrixIterator();
+			MatrixIterator miThis = getMatrixIterator();
+			while (miThis.hasNextRow() || miOther.hasNextRow()) {
+				if (!miThis.hasNextRow() || !miOther.hasNextRow()) {
+					return false;
+				}
+				if (miThis.nextRow() != miOther.nextRow()) {
+					return false;
+				}
+				while (miThis.hasNextInRow() || miOther.hasNextInRow()) {
+					if (!miThis.hasNextInRow() || !miOther.hasNextInRow()) {
+						return false;
+					}
+					if (!miThis.nextInRow().equals(miOther.nextInRow())) {
+						return false;
+					}
+					if (miThis.currColumn() != miOther.currColumn()) {
+						return false;
+					}
+				}
+			}
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * Gets one more than the index of the last column with data.
+	 * @return the used width of the matrix
+	 */
+	public int width() {
+		merge();
+		return usedWidth;
+	}
+
+	/**
+	 * Gets one more than the index of the last row with data.
+	 * @return the used height of the matrix
+	 */
+	public int height() {
+		merge();
+		return usedHeight;
+	}
+
+	/**
+	 * Gets the logical width of the matrix.
+	 * @return the number of columns
+	 */
+	public int sizeWide() {
+		return maxWidth;
+	}
+
+	/**
+	 * Gets the logical height of the matrix.
+	 * @return the number of rows
+	 */
+	public int sizeHigh() {
+		return maxHeight;
+	}
+
+	/**
+	 * Puts data in a cell. Changing a cell that is already in the matrix
+	 * takes O(log <i>k</i>) time; a new cell is buffered until the next
+	 * read.
+	 *
+	 * @param column the column of the cell
+	 * @param row the row of the cell
+	 * @param data the data, or <code>null</code> to remove the cell
+	 */
+	public void set(int column, int row, Object data) {
+		checkBounds(column, row);
+		if (data == null) {
+			remove(column, row);
+			return;
+		}
+		int i = find(column, row);
+		if (i < 0) {
+			addNew(column, row, data);
+		} else {
+			if (rowData[i] == null) {
+				holes--;
+			}
+			rowData[i] = data;
+		}
+	}
+
+	/**
+	 * Gets the data in a cell, in O(log <i>k</i>) time.
+	 *
+	 * @param column the column of the cell
+	 * @param row the row of the cell
+	 * @return the data, or <code>null</code> if the cell is empty
+	 */
+	public Object get(int column, int row) {
+		checkBounds(column, row);
+		if (newCount > 0) {
+			merge();
+		}
+		int i = find(column, row);
+		return i < 0 ? null : rowData[i];
+	}
+
+	/**
+	 * Removes the data from a cell, leaving a hole.
+	 *
+	 * @param column the column of the cell
+	 * @param row the row of the cell
+	 * @return the data that was in the cell, or <code>null</code>
+	 */
+	public Object remove(int column, int row) {
+		checkBounds(column, row);
+		if (newCount > 0) {
+			merge();
+		}
+		int i = find(column, row);
+		if (i < 0 || rowData[i] == null) {
+			return null;
+		}
+		Object old = rowData[i];
+		rowData[i] = null;
+		holes++;
+		if (column == usedWidth - 1 || row == usedHeight - 1) {
+			extentStale = true;
+		}
+		return old;
+	}
+
+	/**
+	 * Gets the current count of occupied cells.
+	 *
+	 * @return the number of cells with data
+	 */
+	public int getUsedNodeCount() {
+		merge();
+		return cellCount;
+	}
+
+	/**
+	 * Gets an iterator over the cells, which takes constant amortized
+	 * time per step along a row or column.
+	 *
+	 * @return an iterator over the cells with data
+	 */
+	public MatrixIterator getMatrixIterator() {
+		merge();
+		return new CompressedMatrixIterator();
+	}
+
+	/**
+	 * Steps through the arrays of the matrix as they were when it was
+	 * created.
+	 */
+	private class CompressedMatrixIterator implements MatrixIterator {
+		private final int[] rowStart = CompressedSparseMatrix.this.rowStart;
+		private final int[] rowCols = CompressedSparseMatrix.this.rowCols;
+		private final Object[] rowData = CompressedSparseMatrix.this.rowData;
+		private final int[] colStart = CompressedSparseMatrix.this.colStart;
+		private final int[] colRows = CompressedSparseMatrix.this.colRows;
+		private final int[] colCells = CompressedSparseMatrix.this.colCells;
+
+		/** The current column and row, or -1 before the first. */
+		private int column = -1;
+		private int row = -1;
+		/** The next column and row with data, once found, or -2. */
+		private int nextCol = -2;
+		private int nextRow = -2;
+		/** If going along a column, rather than a row. */
+		private boolean inColumn = false;
+		/** The next cell in the current column or row, and its end. */
+		private int cell = 0;
+		private int end = 0;
+		/** Where the last cell returned is. */
+		private int currCol = -1;
+		private int currRow = -1;
+
+		private boolean isLive(int k, boolean alongColumn) {
+			return rowData[alongColumn ? colCells[k] : k] != null;
+		}
+
+		private int findNext(int from, int[] start, boolean alongColumn) {
+			for (int i = from; i < start.length - 1; i++) {
+				for (int k = start[i]; k < start[i + 1]; k++) {
+					if (isLive(k, alongColumn)) {
+						return i;
+					}
+				}
+			}
+			return -1;
+		}
+
+		public boolean hasNextColumn() {
+			if (nextCol == -2) {
+				nextCol = findNext(column + 1, colStart, true);
+			}
+			return nextCol >= 0;
+		}
+
+		public int nextColumn() throws NoSuchElementException {
+			if (!hasNextColumn()) {
+				throw new NoSuchElementException();
+			}
+			column = nextCol;
+			nextCol = -2;
+			inColumn = true;
+			cell = colStart[column];
+			end = colStart[column + 1];
+			currCol = column;
+			currRow = -1;
+			return column;
+		}
+
+		public boolean hasNextInColumn() {
+			if (!inColumn) {
+				return false;
+			}
+			while (cell < end && !isLive(cell, true)) {
+				cell++;
+			}
+			return cell < end;
+		}
+
+		public Object nextInColumn() throws NoSuchElementException {
+			if (!hasNextInColumn()) {
+				throw new NoSuchElementException();
+			}
+			currRow = colRows[cell];
+			return rowData[colCells[cell++]];
+		}
+
+		public boolean hasNextRow() {
+			if (nextRow == -2) {
+				nextRow = findNext(row + 1, rowStart, false);
+			}
+			return nextRow >= 0;
+		}
+
+		public int nextRow() throws NoSuchElementException {
+			if (!hasNextRow()) {
+				throw new NoSuchElementException();
+			}
+			row = nextRow;
+			nextRow = -2;
+			inColumn = false;
+			cell = rowStart[row];
+			end = rowStart[row + 1];
+			currRow = row;
+			currCol = -1;
+			return row;
+		}
+
+		public boolean hasNextInRow() {
+			if (inColumn || row < 0) {
+				return false;
+			}
+			while (cell < end && !isLive(cell, false)) {
+				cell++;
+			}
+			return cell < end;
+		}
+
+		public Object nextInRow() throws NoSuchElementException {
+			if (!hasNextInRow()) {
+				throw new NoSuchElementException();
+			}
+			currCol = rowCols[cell];
+			return rowData[cell++];
+		}
+
+		public int currColumn() {
+			return currCol;
+		}
+
+		public int currRow() {
+			return currRow;
+		}
+	}
+}
@@ -25,6 +25,8 @@ import java.util.*;
  * href="http://www-cs-faculty.stanford.edu/~knuth/sgb.html" 
  * title="Knuth: The Stanford GraphBase">book of graph algorithms</a> 
  * in <acronym title="Literate Programming in C">CWEB</acronym>.
+ * There is also a faster version that works on a dense array
+ * of primitive costs.
  * 
  * @author  davidm
  */
@@ -254,6 +256,148 @@ public class DataMatrices {
         return matches;
     }
 
+    /**
+     * Marks an entry in a dense cost array, passed to
+     * {@link #assign(long[], int, int)}, as having no edge.
+     */
+    public static final long NO_EDGE = Long.MAX_VALUE;
+
+    /**
+     * Finds the assignment of rows to columns of a dense cost
+     * matrix that matches as many rows as it can along existing
+     * edges, and, of those, has the smallest total cost.
+     * Unlike {@link #assign(DataMatrix2d, DataMatrices.GetCost)},
+     * this works directly on an array of primitive costs, so each
+     * cost is looked up in constant time and computed only once,
+     * by the caller.
+     *
+     * The implementation finds shortest augmenting paths one row
+     * at a time, keeping potentials on the rows and columns, as
+     * described by Jonker and Volgenant. It takes
+     * O(n<sup>2</sup>m) time, where n is the smaller dimension and
+     * m the larger. Missing edges are treated as edges that cost
+     * more than any matching of the existing ones.
+     *
+     * @param costs the non-negative costs, row by row, so the cost
+     *   of assigning row <code>r</code> to column <code>c</code> is
+     *   <code>costs[r * columns + c]</code>; entries that are
+     *   not edges hold {@link #NO_EDGE}
+     * @param rows the number of rows
+     * @param columns the number of columns
+     * @return for each row, the column it is assigned to, or
+     *   <code>-1</code> if it isn't assigned
+     * @throws IllegalArgumentException if the array is too short or
+     *   a cost is negative
+     * @throws ArithmeticException if the costs are large enough that
+     *   the computation might overflow
+     */
+    public static int[] assign(long[] costs, int rows, int columns) {
+        if (costs.length < rows * columns) {
+            throw new IllegalArgumentException ("Cost array too short for " + rows + "x" + columns + " matrix");
+        }
+        if (rows > columns) {
+            long[] flipped = new long[rows * columns];
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < columns; c++) {
+                    flipped[c * rows + r] = costs[r * columns + c];
+                }
+            }
+            int[] colMate = assign (flipped, columns, rows);
+            int[] rowMate = new int[rows];
+            Arrays.fill (rowMate, -1);
+            for (int c = 0; c < columns; c++) {
+                if (colMate[c] >= 0) {
+                    rowMate[colMate[c]] = c;
+                }
+            }
+            return rowMate;
+        }
+
+        long max = 0;
+        for (int i = rows * columns - 1; i >= 0; i--) {
+            if (costs[i] != NO_EDGE) {
+                if (costs[i] < 0) {
+                    throw new IllegalArgumentException ("Negative cost at [" + (i / columns) + "," + (i % columns) + "]: " + costs[i]);
+                }
+                max = Math.max (max, costs[i]);
+            }
+        }
+        // The potentials never get much beyond n times the largest
+        // cost, including the penalty for missing edges.
+        long n1 = rows + 1;
+        if (max > Long.MAX_VALUE / 4 / n1 / n1) {
+            throw new ArithmeticException ("Costs too large for assignment: " + max);
+        }
+        final long penalty = max * rows + 1; /// cost of using a missing edge
+
+        /// The arrays are indexed from 1; row and column 0 are the
+        /// free row being added and its virtual column
+        long[] rowPotential = new long[rows + 1];
+        long[] colPotential = new long[columns + 1];
+        int[] rowMate = new int[columns + 1]; /// The row matching a given column, or 0
+        int[] parentCol = new int[columns + 1]; /// The previous column on the path to a given column
+        long[] slack = new long[columns + 1]; /// reduced cost of the path to a given column
+        boolean[] done = new boolean[columns + 1]; /// if the column is in the tree
+
+        for (int row = 1; row <= rows; row++) {
+            rowMate[0] = row;
+            int col = 0;
+            Arrays.fill (slack, Long.MAX_VALUE);
+            Arrays.fill (done, false);
+            do {
+                // grow the tree by the column with the least slack
+                done[col] = true;
+                int r = rowMate[col];
+                int base = (r - 1) * columns - 1;
+                long delta = Long.MAX_VALUE;
+                int next = 0;
+                for (int j = 1; j <= columns; j++) {
+                    if (!done[j]) {
+                        long cost = costs[base + j];
+                        if (cost == NO_EDGE) {
+                            cost = penalty;
+                        }
+                        long reduced = cost - rowPotential[r] - colPotential[j];
+                        if (reduced < slack[j]) {
+                            slack[j] = reduced;
+                            parentCol[j] = col;
+                        }
+                        if (slack[j] < delta) {
+                            delta = slack[j];
+                            next = j;
+                        }
+                    }
+                }
+                for (int j = 0; j <= columns; j++) {
+                    if (done[j]) {
+                        rowPotential[rowMate[j]] += delta;
+                        colPotential[j] -= delta;
+                    } else {
+                        slack[j] -= delta;
+                    }
+                }
+                col = next;
+            } while (rowMate[col] != 0);
+
+            // flip the matching along the path back to the new row
+            do {
+                int prev = parentCol[col];
+                rowMate[col] = rowMate[prev];
+                col = prev;
+            } while (col != 0);
+        }
+
+        int[] colMate = new int[rows];
+        Arrays.fill (colMate, -1);
+        for (int col = 1; col <= columns; col++) {
+            int row = rowMate[col];
+            if (row != 0 && costs[(row - 1) * columns + col - 1] != NO_EDGE) {
+                colMate[row - 1] = col - 1;
+            }
+        }
+        return colMate;
+    }
+
     /**
      * This interface is for functor objects that uses the nodes of
      * a {@link DataMatrix2d} as weighted edges of a
@@ -0,0 +1,206 @@
+/***************************************
+ *            ViPER                    *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *                                     *
+ *  Distributed under the GPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package edu.umd.cfar.lamp.viper.util;
+
+import java.util.*;
+
+/**
+ * A static, centered interval tree over half-open intervals of
+ * <code>long</code>s. Each interval is identified by its index in the
+ * arrays passed to the constructor, and queries report the indices of
+ * matching intervals in a <code>BitSet</code>, so iterating over the
+ * result visits them in their original order. Building the tree takes
+ * O(n log n) time; finding the <i>k</i> intervals that intersect a
+ * point or an interval takes O(log n + k).
+ * <p>
+ * The tree does not track changes to the underlying data. Users with
+ * mutable data should throw it away and build a new one when the
+ * data changes.
+ *
+ * @author <a href="mailto:davidm@cfar.umd.edu">David Mihalcik</a>
+ */
+public class IntervalTree {
+	/**
+	 * A node in the tree. Holds all the intervals that contain its center
+	 * point, sorted twice: once by start, once by end.
+	 */
+	private static class Node {
+		/** The point that all the intervals at this node contain. */
+		long center;
+		/** Indices of the intervals at this node, by increasing start. */
+		int[] byStart;
+		/** Indices of the intervals at this node, by decreasing end. */
+		int[] byEnd;
+		/** Intervals that end at or before the center. */
+		Node left;
+		/** Intervals that start after the center. */
+		Node right;
+	}
+
+	private final long[] starts;
+	private final long[] ends;
+	private final Node root;
+	private final int count;
+
+	/**
+	 * Builds a new interval tree. The kth interval is
+	 * <code>[starts[k], ends[k])</code>. Empty intervals are never
+	 * returned by any query.
+	 * @param starts the first element of each interval
+	 * @param ends the first element after each interval
+	 * @throws IllegalArgumentException if the arrays are of different
+	 * lengths
+	 */
+	public IntervalTree(long[] starts, long[] ends) {
+		if (starts.length != ends.length) {
+			throw new IllegalArgumentException("Must have as many starts as ends: "
+					+ starts.length + " != " + ends.length);
+		}
+		this.starts = (long[]) starts.clone();
+		this.ends = (long[]) ends.clone();
+		int[] nonEmpty = new int[starts.length];
+		int n = 0;
+		for (int i = 0; i < starts.length; i++) {
+			if (starts[i] < ends[i]) {
+				nonEmpty[n++] = i;
+			}
+		}
+		this.count = n;
+		this.root = build(nonEmpty, n);
+	}
+
+	/**
+	 * Gets the number of intervals that the tree was built with.
+	 * @return the number of intervals, including empty ones
+	 */
+	public int size() {
+		return starts.length;
+	}
+
+	/**
+	 * Gets the number of non-empty intervals in the tree.
+	 * @return the number of intervals that may be returned by a query
+	 */
+	public int getNonEmptyCount() {
+		return count;
+	}
+
+	private Node build(int[] indices, int n) {
+		if (n == 0) {
+			return null;
+		}
+		long[] points = new long[n * 2];
+		for (int i = 0; i < n; i++) {
+			points[2 * i] = starts[indices[i]];
+			points[2 * i + 1] = ends[indices[i]] - 1;
+		}
+		Arrays.sort(points);
+		Node node = new Node();
+		node.center = points[n];
+
+		int[] left = new int[n];
+		int[] right = new int[n];
+		int[] here = new int[n];
+		int l = 0, r = 0, h = 0;
+		for (int i = 0; i < n; i++) {
+			int k = indices[i];
+			if (ends[k] <= node.center) {
+				left[l++] = k;
+			} else if (starts[k] > node.center) {
+				right[r++] = k;
+			} else {
+				here[h++] = k;
+			}
+		}
+		node.byStart = sortBy(here, h, starts, true);
+		node.byEnd = sortBy(here, h, ends, false);
+		node.left = build(left, l);
+		node.right = build(right, r);
+		return node;
+	}
+
+	private static int[] sortBy(int[] indices, int n, final long[] keys,
+			final boolean ascending) {
+		Integer[] boxed = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			boxed[i] = new Integer(indices[i]);
+		}
+		Arrays.sort(boxed, new Comparator() {
+			public int compare(Object o1, Object o2) {
+				long a = keys[((Integer) o1).intValue()];
+				long b = keys[((Integer) o2).intValue()];
+				int c = a < b ? -1 : (a == b ? 0 : 1);
+				return ascending ? c : -c;
+			}
+		});
+		int[] sorted = new int[n];
+		for (int i = 0; i < n; i++) {
+			sorted[i] = boxed[i].intValue();
+		}
+		return sorted;
+	}
+
+	/**
+	 * Sets the bits of all the intervals that share at least one
+	 * element with <code>[start, end)</code>.
+	 * @param start the first element of the query interval
+	 * @param end the first element after the query interval
+	 * @param into the set to receive the indices of the matching intervals
+	 * @return <code>into</code>
+	 */
+	public BitSet getIntersecting(long start, long end, BitSet into) {
+		if (start < end) {
+			helpGetIntersecting(root, start, end, into);
+		}
+		return into;
+	}
+
+	/**
+	 * Sets the bits of all the intervals that contain the given point.
+	 * @param point the element to look for
+	 * @param into the set to receive the indices of the matching intervals
+	 * @return <code>into</code>
+	 */
+	public BitSet getContaining(long point, BitSet into) {
+		helpGetIntersecting(root, point, point + 1, into);
+		return into;
+	}
+
+	private void helpGetIntersecting(Node node, long start, long end,
+			BitSet into) {
+		while (node != null) {
+			if (end <= node.center) {
+				// query is entirely left of center; every interval here
+				// ends after it, so only the starts matter
+				for (int i = 0; i < node.byStart.length
+						&& starts[node.byStart[i]] < end; i++) {
+					into.set(node.byStart[i]);
+				}
+				node = node.left;
+			} else if (start > node.center) {
+				// query is entirely right of center
+				for (int i = 0; i < node.byEnd.length
+						&& ends[node.byEnd[i]] > start; i++) {
+					into.set(node.byEnd[i]);
+				}
+				node = node.right;
+			} else {
+				for (int i = 0; i < node.byStart.length; i++) {
+					into.set(node.byStart[i]);
+				}
+				helpGetIntersecting(node.left, start, end, into);
+				node = node.right;
+			}
+		}
+	}
+}
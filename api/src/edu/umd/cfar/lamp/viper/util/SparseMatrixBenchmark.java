@@ -0,0 +1,160 @@
+/***************************************
+ *            ViPER                    *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *                                     *
+ *  Distributed under the GPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package edu.umd.cfar.lamp.viper.util;
+
+import java.util.*;
+
+/**
+ * Times the linked {@link SparseMatrix} against the
+ * {@link CompressedSparseMatrix} on square matrices from 100 to 10000 on
+ * a side, with a fixed number of random cells per column, like the
+ * comparisons in an evaluation's matrix. For each size, it times filling
+ * the matrix, walking it by column and by row, looking up random cells,
+ * and copying out a submatrix of every other row and column. Each step
+ * is run a few times, and the fastest time is printed, to leave out
+ * warm up.
+ * <p>
+ * Usage: <code>java edu.umd.cfar.lamp.viper.util.SparseMatrixBenchmark
+ * [<i>cells per column</i> [<i>largest size</i>]]</code>
+ * </p>
+ */
+public class SparseMatrixBenchmark {
+	private static final int[] SIZES = {100, 1000, 10000, 100000};
+	private static final int RUNS = 5;
+
+	/**
+	 * Runs the benchmark.
+	 * @param args the number of cells in each column, default 10, and
+	 * the largest size to run, default 10000; the linked matrix takes
+	 * hours to fill at 100000
+	 */
+	public static void main(String[] args) {
+		int perColumn = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		int limit = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+
+		System.out.println("size\tmatrix\tfill ms\tcolumns ms\trows ms"
+				+ "\tget ms\tmask ms");
+		for (int k = 0; k < SIZES.length && SIZES[k] <= limit; k++) {
+			int n = SIZES[k];
+			Random r = new Random(42);
+			int[] cols = new int[n * perColumn];
+			int[] rows = new int[cols.length];
+			Object[] data = new Object[cols.length];
+			for (int i = 0; i < cols.length; i++) {
+				cols[i] = i / perColumn;
+				rows[i] = r.nextInt(n);
+				data[i] = new Integer(i);
+			}
+			BitSet half = new BitSet();
+			for (int i = 0; i < n; i += 2) {
+				half.set(i);
+			}
+
+			long[] linked = new long[5];
+			long[] compressed = new long[5];
+			Arrays.fill(linked, Long.MAX_VALUE);
+			Arrays.fill(compressed, Long.MAX_VALUE);
+			long linkedSum = 0;
+			long compressedSum = 0;
+			for (int run = 0; run < RUNS; run++) {
+				long start = System.currentTimeMillis();
+				SparseMatrix l = new SparseMatrix(n, n);
+				for (int i = 0; i < cols.length; i++) {
+					l.set(cols[i], rows[i], data[i]);
+				}
+				linked[0] = Math.min(linked[0], System.currentTimeMillis()
+						- start);
+				linkedSum = time(l, cols, rows, half, linked);
+
+				start = System.currentTimeMillis();
+				CompressedSparseMatrix.Builder b = new CompressedSparseMatrix.Builder(
+						n, n);
+				for (int i = 0; i < cols.length; i++) {
+					b.add(cols[i], rows[i], data[i]);
+				}
+				CompressedSparseMatrix c = b.build();
+				compressed[0] = Math.min(compressed[0], System
+						.currentTimeMillis()
+						- start);
+				compressedSum = time(c, cols, rows, half, compressed);
+			}
+
+			print(n, "linked", linked);
+			print(n, "compressed", compressed);
+			if (linkedSum != compressedSum) {
+				System.out.println("MISMATCH: linked sum " + linkedSum
+						+ ", compressed sum " + compressedSum);
+			}
+		}
+	}
+
+	/**
+	 * Times everything but filling the matrix, keeping the fastest
+	 * time for each step.
+	 * @return a checksum of the data seen, so the work isn't skipped
+	 */
+	private static long time(DataMatrix2d m, int[] cols, int[] rows,
+			BitSet half, long[] best) {
+		long sum = 0;
+
+		long start = System.currentTimeMillis();
+		MatrixIterator mi = m.getMatrixIterator();
+		while (mi.hasNextColumn()) {
+			mi.nextColumn();
+			while (mi.hasNextInColumn()) {
+				sum += ((Integer) mi.nextInColumn()).intValue();
+			}
+		}
+		best[1] = Math.min(best[1], System.currentTimeMillis() - start);
+
+		start = System.currentTimeMillis();
+		mi = m.getMatrixIterator();
+		while (mi.hasNextRow()) {
+			mi.nextRow();
+			while (mi.hasNextInRow()) {
+				sum += ((Integer) mi.nextInRow()).intValue();
+			}
+		}
+		best[2] = Math.min(best[2], System.currentTimeMillis() - start);
+
+		start = System.currentTimeMillis();
+		for (int i = 0; i < cols.length; i++) {
+			// a row from some other cell, so mostly misses
+			Object o = m.get(cols[i], rows[(i * 7 + 3) % rows.length]);
+			if (o != null) {
+				sum += ((Integer) o).intValue();
+			}
+		}
+		best[3] = Math.min(best[3], System.currentTimeMillis() - start);
+
+		start = System.currentTimeMillis();
+		DataMatrix2d part;
+		if (m instanceof CompressedSparseMatrix) {
+			part = new CompressedSparseMatrix(m, half, half);
+		} else {
+			part = new SparseMatrix(m, half, half);
+		}
+		best[4] = Math.min(best[4], System.currentTimeMillis() - start);
+		sum += part.width();
+		return sum;
+	}
+
+	private static void print(int n, String name, long[] best) {
+		StringBuffer sb = new StringBuffer();
+		sb.append(n).append('\t').append(name);
+		for (int i = 0; i < best.length; i++) {
+			sb.append('\t').append(best[i]);
+		}
+		System.out.println(sb);
+	}
+}
@@ -53,9 +53,12 @@ public class UtilTest extends TestCase {
 
 		suite.addTest(new UtilTest("testSparseMatrix"));
 		suite.addTest(new UtilTest("testMatrixIterators"));
+		suite.addTest(new UtilTest("testCompressedSparseMatrix"));
 
 		suite.addTest(new UtilTest("testAssignment"));
+		suite.addTest(new UtilTest("testDenseAssignment"));
 		suite.addTest(new UtilTest("testRLE"));
+		suite.addTest(new UtilTest("testIntervalTree"));
 
 		return suite;
 	}
@@ -257,6 +260,99 @@ public class UtilTest extends TestCase {
 		return temp;
 	}
 
+	/**
+	 * Tests the {@link CompressedSparseMatrix} against a
+	 * {@link SparseMatrix} through a random series of changes.
+	 */
+	public void testCompressedSparseMatrix() {
+		CompressedSparseMatrix one = new CompressedSparseMatrix(10, 10);
+		one.set(5, 4, "Hello");
+		one.set(6, 4, ", World");
+		one.set(7, 4, "!");
+		checkHelloWorld(one.getMatrixIterator());
+		one.remove(6, 4);
+		checkHello(one.getMatrixIterator());
+		one.remove(5, 4);
+		one.remove(7, 4);
+		checkClean(one.getMatrixIterator());
+		assertEquals(0, one.width());
+
+		Random r = new Random(7);
+		CompressedSparseMatrix.Builder b = new CompressedSparseMatrix.Builder(
+				30, 20);
+		SparseMatrix linked = new SparseMatrix(30, 20);
+		for (int i = 0; i < 200; i++) {
+			int col = r.nextInt(30);
+			int row = r.nextInt(20);
+			Integer data = new Integer(i);
+			b.add(col, row, data);
+			linked.set(col, row, data);
+		}
+		CompressedSparseMatrix compressed = b.build();
+		assertEquals(linked, compressed);
+		assertEquals(compressed, linked);
+		for (int i = 0; i < 2000; i++) {
+			int col = r.nextInt(30);
+			int row = r.nextInt(20);
+			switch (r.nextInt(3)) {
+				case 0 :
+					Integer data = new Integer(i);
+					compressed.set(col, row, data);
+					linked.set(col, row, data);
+					break;
+				case 1 :
+					assertEquals(linked.remove(col, row), compressed.remove(
+							col, row));
+					break;
+				default :
+					assertEquals(linked.get(col, row), compressed.get(col, row));
+			}
+			if (i % 100 == 0) {
+				assertEquals(linked, compressed);
+				assertEquals(linked.width(), compressed.width());
+				assertEquals(linked.height(), compressed.height());
+				assertEquals(linked.getUsedNodeCount(), compressed
+						.getUsedNodeCount());
+				assertEquals(listColumnwise(linked.getMatrixIterator()),
+						listColumnwise(compressed.getMatrixIterator()));
+			}
+		}
+
+		BitSet cols = new BitSet();
+		BitSet rows = new BitSet();
+		for (int i = 0; i < 30; i += 1 + r.nextInt(3)) {
+			cols.set(i);
+		}
+		for (int j = 0; j < 20; j += 1 + r.nextInt(3)) {
+			rows.set(j);
+		}
+		SparseMatrix linkedPart = new SparseMatrix(linked, cols, rows);
+		assertEquals(linkedPart, new CompressedSparseMatrix(compressed, cols,
+				rows));
+		assertEquals(linkedPart, new CompressedSparseMatrix(linked, cols, rows));
+		assertEquals(linkedPart.sizeWide(), new CompressedSparseMatrix(
+				compressed, cols, rows).sizeWide());
+	}
+
+	/**
+	 * Lists the cells of a matrix, column by column.
+	 * 
+	 * @param mi
+	 *            A MatrixIterator being tested.
+	 * @return each cell's data and row, column by column
+	 */
+	private String listColumnwise(MatrixIterator mi) {
+		StringBuffer sb = new StringBuffer();
+		while (mi.hasNextColumn()) {
+			sb.append(mi.nextColumn()).append(':');
+			while (mi.hasNextInColumn()) {
+				sb.append(' ').append(mi.nextInColumn());
+				sb.append('@').append(mi.currRow());
+			}
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
 
 	/**
 	 * Tests the hungarian assignment algorithm.
@@ -274,6 +370,65 @@ public class UtilTest extends TestCase {
 		assertTrue("Testing Assignment... ", testAssignment(data, 15));
 	}
 
+	/**
+	 * Tests the assignment of dense arrays of costs against the
+	 * hungarian algorithm on data matrices.
+	 */
+	public void testDenseAssignment() {
+		long[] data = { 7, 2, 1, 9, 4, 9, 6, 9, 5, 5, 3, 8, 3, 1, 8, 7, 9, 4,
+				2, 2, 8, 4, 7, 4, 8 };
+		assertEquals(15, denseSum(data, DataMatrices.assign(data, 5, 5), 5));
+
+		// missing edges are used only when nothing else can be
+		long X = DataMatrices.NO_EDGE;
+		long[] sparse = { 1, 9, 2, X, X, X };
+		int[] mates = DataMatrices.assign(sparse, 3, 2);
+		assertEquals(1, mates[0]);
+		assertEquals(0, mates[1]);
+		assertEquals(-1, mates[2]);
+		mates = DataMatrices.assign(new long[] { X, X, 5 }, 1, 3);
+		assertEquals(2, mates[0]);
+		mates = DataMatrices.assign(new long[] { X, X }, 2, 1);
+		assertEquals(-1, mates[0]);
+		assertEquals(-1, mates[1]);
+
+		Random r = new Random(7);
+		for (int n = 0; n < 40; n++) {
+			int rows = 1 + r.nextInt(12);
+			int columns = 1 + r.nextInt(12);
+			long[][] costs = new long[rows][columns];
+			long[] flat = new long[rows * columns];
+			for (int i = 0; i < rows; i++) {
+				for (int j = 0; j < columns; j++) {
+					costs[i][j] = r.nextInt(1000);
+					flat[i * columns + j] = costs[i][j];
+				}
+			}
+			mates = DataMatrices.assign(flat, rows, columns);
+			int matched = 0;
+			for (int i = 0; i < rows; i++) {
+				if (mates[i] >= 0) {
+					matched++;
+				}
+			}
+			assertEquals(Math.min(rows, columns), matched);
+			assertTrue(testAssignment(costs, denseSum(flat, mates, columns)));
+		}
+	}
+
+	private static long denseSum(long[] costs, int[] mates, int columns) {
+		long sum = 0;
+		BitSet used = new BitSet();
+		for (int i = 0; i < mates.length; i++) {
+			if (mates[i] >= 0) {
+				assertFalse(used.get(mates[i]));
+				used.set(mates[i]);
+				sum += costs[i * columns + mates[i]];
+			}
+		}
+		return sum;
+	}
+
 	/**
 	 * Helps test hungarian assigment.
 	 * @param data the bipartite graph weights
@@ -417,4 +572,40 @@ public class UtilTest extends TestCase {
 				&& curr.getValue().equals(values[2]));
 		assertTrue(!iter.hasNext());
 	}
+
+	/**
+	 * Test the {@link IntervalTree} against a linear scan.
+	 */
+	public void testIntervalTree() {
+		Random r = new Random(7);
+		int n = 500;
+		long[] starts = new long[n];
+		long[] ends = new long[n];
+		for (int i = 0; i < n; i++) {
+			starts[i] = r.nextInt(1000);
+			ends[i] = starts[i] + r.nextInt(50) - 5;
+		}
+		IntervalTree tree = new IntervalTree(starts, ends);
+		assertEquals(n, tree.size());
+		for (int q = 0; q < 200; q++) {
+			long qs = r.nextInt(1100) - 50;
+			long qe = qs + 1 + r.nextInt(100);
+			BitSet expected = new BitSet(n);
+			BitSet expectedAt = new BitSet(n);
+			for (int i = 0; i < n; i++) {
+				if (starts[i] < ends[i] && starts[i] < qe && qs < ends[i]) {
+					expected.set(i);
+				}
+				if (starts[i] <= qs && qs < ends[i]) {
+					expectedAt.set(i);
+				}
+			}
+			assertEquals("Intervals intersecting [" + qs + ", " + qe + ")",
+					expected, tree.getIntersecting(qs, qe, new BitSet(n)));
+			assertEquals("Intervals containing " + qs, expectedAt, tree
+					.getContaining(qs, new BitSet(n)));
+		}
+		assertTrue(new IntervalTree(new long[0], new long[0]).getContaining(
+				0, new BitSet()).isEmpty());
+	}
 }
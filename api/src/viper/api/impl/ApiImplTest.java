@@ -28,6 +28,7 @@ import viper.api.datatypes.*;
 import viper.api.extensions.*;
 import viper.api.time.*;
 import edu.umd.cfar.lamp.viper.geometry.*;
+import edu.umd.cfar.lamp.viper.util.*;
 
 /**
  * Tests the functionality of an implementation of the ViPER API. 
@@ -390,6 +391,221 @@ public class ApiImplTest extends TestCase {
 		assertTrue(v.equals(copy));
 	}
 
+	/**
+	 * Checks that the streaming parser gets the same data as the 
+	 * DOM parser, with both the current and the old namespaces.
+	 */
+	public void testStreamingParser() throws Exception {
+		ViperData v = populateViperData(createAllConfigs(create()));
+		StringWriter sw = new StringWriter();
+		XmlSerializer.toWriter(v, new PrintWriter(sw));
+		String xml = sw.toString();
+		String oldXml = xml.replaceAll(
+			ViperData.ViPER_SCHEMA_URI + "\"",
+			ViperData.ViPER_SCHEMA_URI.substring(0,
+				ViperData.ViPER_SCHEMA_URI.length() - 1) + "\"").replaceAll(
+			ViperData.ViPER_DATA_URI + "\"",
+			ViperData.ViPER_DATA_URI.substring(0,
+				ViperData.ViPER_DATA_URI.length() - 1) + "\"");
+		assertFalse(xml.equals(oldXml));
+
+		DocumentBuilderFactory fact = DocumentBuilderFactory.newInstance();
+		fact.setNamespaceAware(true);
+		Element documentEl = fact.newDocumentBuilder().parse(
+			new InputSource(new StringReader(xml))).getDocumentElement();
+		ViperData fromDom = new ViperParser().parseDoc(documentEl);
+
+		ViperData streamed = new ViperParser().parseStream(
+			new InputSource(new StringReader(xml)));
+		assertEquals(fromDom, streamed);
+		assertEquals(streamed, fromDom);
+
+		ViperData streamedOld = new ViperParser().parseStream(
+			new InputSource(new StringReader(oldXml)));
+		assertEquals(fromDom, streamedOld);
+	}
+
+	public void testStreamingSerializer() throws Exception {
+		ViperData v = populateViperData(createAllConfigs(create()));
+		Element domEl = XmlSerializer.toXml(v,
+			org.apache.xerces.dom.DOMImplementationImpl.getDOMImplementation());
+		ViperData fromDom = new ViperParser().parseDoc(domEl);
+
+		StringWriter sw = new StringWriter();
+		XmlSerializer.toWriter(v, sw);
+		ViperData streamed = new ViperParser().parseStream(
+			new InputSource(new StringReader(sw.toString())));
+		assertEquals(fromDom, streamed);
+
+		File f = File.createTempFile("viper-test", ".xgtf.gz");
+		try {
+			XmlSerializer.toFile(v, f, true);
+			InputStream in = new FileInputStream(f);
+			try {
+				assertEquals(0x1f, in.read());
+				assertEquals(0x8b, in.read());
+			} finally {
+				in.close();
+			}
+			assertEquals(fromDom, new ViperParser().parseFromTextFile(f.toURI()));
+		} finally {
+			f.delete();
+		}
+	}
+
+	public void testSnapshot() throws Exception {
+		ViperData v = populateViperData(createAllConfigs(create()));
+		File f = File.createTempFile("viper-test", ".xgtf");
+		File snapshot = ViperSnapshot.getSnapshotFile(f);
+		try {
+			XmlSerializer.toFile(v, f, false);
+			ViperData fromXml = new ViperParser().parseFromTextFile(f.toURI());
+			assertFalse(snapshot.exists());
+
+			ViperParser parser = new ViperParser();
+			parser.setUsingSnapshots(true);
+			assertEquals(fromXml, parser.parseFromTextFile(f.toURI()));
+			assertTrue(ViperSnapshot.isFresh(snapshot, f));
+
+			ViperSnapshot snap = ViperSnapshot.open(snapshot);
+			assertEquals(fromXml, snap.load(parser));
+			assertEquals(fromXml, parser.parseFromTextFile(f.toURI()));
+
+			ViperData lazy = snap.loadConfig(parser);
+			assertEquals(0, lazy.getAllSourcefiles().size());
+			for (Iterator iter = snap.getSourcefileNames().iterator(); iter.hasNext(); ) {
+				assertNotNull(snap.loadSourcefile((String) iter.next(), lazy));
+			}
+			assertEquals(fromXml, lazy);
+
+			f.setLastModified(f.lastModified() - 10000);
+			assertFalse(ViperSnapshot.isFresh(snapshot, f));
+		} finally {
+			f.delete();
+			snapshot.delete();
+		}
+	}
+
+	public void testLazyAttributes() throws Exception {
+		ViperData v = populateViperData(createAllConfigs(create()));
+		Attribute loc = ((Descriptor) v.getSourcefile("a.mpg").getDescriptorsBy(
+				v.getConfig(Config.OBJECT, "Face")).next()).getAttribute("LOCATION");
+		for (int i = 3; i < 8; i++) {
+			loc.setAttrValueAtSpan(new BoundingBox(i, 10, 40, 40),
+					new Span(new Frame(i), new Frame(i + 1)));
+		}
+		File f = File.createTempFile("viper-test", ".xgtf");
+		File snapshot = ViperSnapshot.getSnapshotFile(f);
+		try {
+			XmlSerializer.toFile(v, f, false);
+			ViperData eager = new ViperParser().parseFromTextFile(f.toURI());
+			ViperParser parser = new ViperParser();
+			parser.setLazy(true);
+			ViperData lazy = parser.parseFromTextFile(f.toURI());
+			assertEquals(eager, lazy);
+
+			ViperSnapshot.write(eager, snapshot, f);
+			assertEquals(eager, ViperSnapshot.open(snapshot).load(parser));
+
+			Attribute a = ((Descriptor) lazy.getSourcefile("a.mpg").getDescriptorsBy(
+					lazy.getConfig(Config.OBJECT, "Face")).next()).getAttribute("LOCATION");
+			assertEquals(new BoundingBox(5, 10, 40, 40), a.getAttrValueAtInstant(new Frame(5)));
+			assertEquals(new BoundingBox(10, 10, 40, 40), a.getAttrValueAtInstant(new Frame(9)));
+
+			a.setAttrValueAtSpan(null, new Span(new Frame(4), new Frame(6)));
+			assertNull(a.getAttrValueAtInstant(new Frame(5)));
+			assertEquals(new BoundingBox(6, 10, 40, 40), a.getAttrValueAtInstant(new Frame(6)));
+			assertFalse(eager.equals(lazy));
+		} finally {
+			f.delete();
+			snapshot.delete();
+		}
+	}
+
+	public void testTimeIndex() {
+		ViperData v = populateViperData(createAllConfigs(create()));
+		Sourcefile sf = v.getSourcefile("a.mpg");
+		Config face = v.getConfig(Config.OBJECT, "Face");
+		Random r = new Random(7);
+		for (int i = 0; i < 40; i++) {
+			int start = r.nextInt(100);
+			setRange(sf.createDescriptor(face), start, start + 1 + r.nextInt(20));
+		}
+		assertTimeIndexMatchesScan(sf);
+
+		// moving a descriptor to frames nothing covered
+		Descriptor moved = (Descriptor) sf.getDescriptorsBy(face).next();
+		assertFalse(sf.getDescriptorsBy(new Frame(150)).hasNext());
+		setRange(moved, 150, 160);
+		assertTrue(contains(sf.getDescriptorsBy(new Frame(155)), moved));
+		assertFalse(contains(sf.getDescriptorsBy(new Frame(5)), moved));
+		assertTimeIndexMatchesScan(sf);
+
+		// changing a range while aggregating, which sends no event
+		((DescriptorImpl) moved).startAggregating();
+		setRange(moved, 170, 175);
+		((DescriptorImpl) moved).finishAggregating(false);
+		assertTrue(contains(sf.getDescriptorsBy(new Frame(172)), moved));
+		assertTimeIndexMatchesScan(sf);
+
+		// adding and removing
+		Descriptor added = sf.createDescriptor(face);
+		setRange(added, 180, 181);
+		assertTrue(contains(sf.getDescriptorsBy(new Frame(180)), added));
+		sf.removeChild(added);
+		assertFalse(sf.getDescriptorsBy(new Frame(180)).hasNext());
+		sf.addChild(added);
+		assertTrue(contains(sf.getDescriptorsBy(new Frame(180)), added));
+		assertTimeIndexMatchesScan(sf);
+
+		// attribute edits don't change what is found
+		moved.getAttribute("LOCATION").setAttrValueAtSpan(
+				new BoundingBox(1, 2, 3, 4),
+				new Span(new Frame(171), new Frame(173)));
+		assertTimeIndexMatchesScan(sf);
+	}
+
+	private static void setRange(Descriptor d, int start, int end) {
+		InstantRange range = new InstantRange();
+		range.add(new Frame(start), new Frame(end));
+		d.setValidRange(range);
+	}
+
+	private static boolean contains(Iterator iter, Object o) {
+		while (iter.hasNext()) {
+			if (iter.next() == o) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static List toList(Iterator iter) {
+		List L = new ArrayList();
+		while (iter.hasNext()) {
+			L.add(iter.next());
+		}
+		return L;
+	}
+
+	/**
+	 * Checks the descriptors found with the time index against the
+	 * ones found by checking each descriptor, at each frame and over
+	 * a few intervals.
+	 */
+	private static void assertTimeIndexMatchesScan(Sourcefile sf) {
+		for (int f = 0; f < 200; f++) {
+			Frame frame = new Frame(f);
+			assertEquals("At frame " + f, toList(new ExceptIterator(
+					new CheckTimeFunctor(frame), sf.getDescriptors())),
+					toList(sf.getDescriptorsBy(frame)));
+			Span span = new Span(frame, new Frame(f + 7));
+			assertEquals("Over " + span, toList(new ExceptIterator(
+					new CheckTimeFunctor(span), sf.getDescriptors())),
+					toList(sf.getDescriptorsBy(span)));
+		}
+	}
+
 	void testDataUndo() {
 		ViperUndoableEvent last;
 		ViperData v = populateViperData(createAllConfigs(create()));
@@ -34,6 +34,12 @@ public class AttributeImpl
 	Object attrValue;
 	private DescriptorImpl parent;
 
+	/**
+	 * Set when the value list may still hold {@link LazyAttributeValue}s
+	 * instead of values.
+	 */
+	private boolean lazy = false;
+
 	protected Logger getLogger() {
 		return ((EventfulNodeHelper) parent).getLogger();
 	}
@@ -165,6 +171,54 @@ public class AttributeImpl
 		}
 	}
 
+	/**
+	 * Gives the attribute a list of values that haven't been parsed
+	 * yet. The list holds a {@link LazyAttributeValue} for each run,
+	 * and they are decoded as they are read. Any change to the 
+	 * attribute decodes all of them first. This doesn't fire any events,
+	 * so it should only be called while loading a file.
+	 * @param values the lazy value list
+	 * @throws IllegalStateException if the attribute isn't dynamic or
+	 * already has a value
+	 */
+	void setLazyValues(TimeEncodedList values) {
+		if (!attribConf.isDynamic() || attrValue != null) {
+			throw new IllegalStateException();
+		}
+		attrValue = values;
+		lazy = true;
+	}
+
+	/**
+	 * Decodes any values that haven't been parsed yet, so that the value 
+	 * list only holds real values.
+	 */
+	void materialize() {
+		if (!lazy) {
+			return;
+		}
+		lazy = false;
+		TimeEncodedList tel = new TimeEncodedList();
+		for (Iterator iter = ((TimeEncodedList) attrValue).iterator(); iter.hasNext();) {
+			DynamicAttributeValue curr = (DynamicAttributeValue) iter.next();
+			Object v = curr.getValue();
+			if (v instanceof LazyAttributeValue) {
+				v = ((LazyAttributeValue) v).decode();
+			}
+			if (v != null) {
+				tel.set(curr, v);
+			}
+		}
+		attrValue = tel;
+	}
+
+	private static Object resolve(Object encoded) {
+		if (encoded instanceof LazyAttributeValue) {
+			return ((LazyAttributeValue) encoded).get();
+		}
+		return encoded;
+	}
+
 	/**
 	 * @see viper.api.Attribute#getAttrName()
 	 */
@@ -198,7 +252,7 @@ public class AttributeImpl
 			} else {
 				return null;
 			}
-			return attribConf.getParams().getObjectValue(L.get(i), this, i);
+			return attribConf.getParams().getObjectValue(resolve(L.get(i)), this, i);
 		} else {
 			return attribConf.getParams().getObjectValue(attrValue, this, i);
 		}
@@ -253,9 +307,9 @@ public class AttributeImpl
 	private MappingIterator.MappingFunctor DECODE = new MappingIterator.MappingFunctor() {
 		public Object map(Object o) {
 			DynamicAttributeValue v = (DynamicAttributeValue) o;
-			Object encoded = v.getValue();
+			Object encoded = resolve(v.getValue());
 			Object decoded = attribConf.getParams().getObjectValue(encoded, AttributeImpl.this, null);
-			if (decoded != encoded) {
+			if (decoded != v.getValue()) {
 				v = new TemporalObject(v.getStartInstant(), v.getEndInstant(), decoded);
 			}
 			return v;
@@ -286,6 +340,7 @@ public class AttributeImpl
 	 * @param newParams the new parameter object
 	 */
 	public void changeParams (AttrValueWrapper oldParams, AttrValueWrapper newParams) {
+		materialize();
 		Object newVal = null;
 		if (attrValue != null) {
 			if (getAttrConfig().isDynamic()) {
@@ -306,6 +361,7 @@ public class AttributeImpl
 	 * @param newState the new state
 	 */
 	public void changeDynamic (boolean newState) {
+		materialize();
 		Object newVal = null;
 		if (attrValue != null) {
 			if (newState) {
@@ -446,6 +502,7 @@ public class AttributeImpl
 		Object v,
 		InstantInterval span) {
 		TimeEncodedList old = null;
+		materialize();
 		if (attrValue == null && v != null) {
 			attrValue = new TimeEncodedList();
 		} else if (attrValue == null && v == null) {
@@ -495,6 +552,7 @@ public class AttributeImpl
 	 * @see viper.api.extensions.XmlVisibleNode#getXMLFormat(org.w3c.dom.Document)
 	 */
 	public Element getXMLFormat(Document root) {
+		materialize();
 		Element el = root.createElement("attribute");
 		el.setAttribute("name", getAttrConfig().getAttrName());
 		if (attrValue == null) {
@@ -854,6 +912,7 @@ public class AttributeImpl
 		if(aggregating)
 			throw new IllegalStateException();
 		aggregating = true;
+		materialize();
 		aggregateOldValue = (TimeEncodedList) ((TimeEncodedList) attrValue).clone();
 		aggregateInterval = Span.EMPTY_FRAME_SPAN;
 	}
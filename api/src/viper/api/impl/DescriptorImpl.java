@@ -211,6 +211,9 @@ public class DescriptorImpl
 		setValidRange((TemporalRange) fs);
 	}
 	private void helpSetValidRange(TemporalRange fs) {
+		if (parent instanceof SourcefileImpl) {
+			((SourcefileImpl) parent).resetTimeIndex();
+		}
 		if (fs.isFrameBased() == !validRange.isTimeBased()) {
 			validRange.clear();
 			validRange.addAll(fs);
@@ -0,0 +1,223 @@
+/***************************************
+ *            ViPER                    *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *                                     *
+ *  Distributed under the GPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package viper.api.impl;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+
+import javax.xml.parsers.*;
+
+import org.w3c.dom.*;
+import org.w3c.dom.Node;
+
+/**
+ * Stores small xml elements, like attribute values, as compact byte
+ * strings. Each string in an element is replaced by its index in a
+ * string table, and all integers are written in a variable length
+ * format, seven bits to a byte. Index zero means <code>null</code>.
+ * This is the encoding {@link ViperSnapshot}s use, and the encoding that
+ * lazily parsed attributes keep their values in until they are needed.
+ */
+final class EncodedElements {
+	private static final byte ELEMENT_CHILD = 1;
+	private static final byte TEXT_CHILD = 2;
+
+	/**
+	 * A document to create decoded elements with, so that each decode
+	 * doesn't have to get a new one.
+	 */
+	private static final ThreadLocal scratch = new ThreadLocal() {
+		protected Object initialValue() {
+			try {
+				return DocumentBuilderFactory.newInstance()
+						.newDocumentBuilder().newDocument();
+			} catch (ParserConfigurationException pcx) {
+				throw new IllegalStateException(pcx.getLocalizedMessage());
+			}
+		}
+	};
+
+	/**
+	 * Looks up strings by their index.
+	 */
+	interface Strings {
+		/**
+		 * Gets the string with the given index.
+		 * @param id the index, starting from one
+		 * @return the string, or <code>null</code> if the index is zero
+		 */
+		String getString(int id);
+	}
+
+	/**
+	 * A string table that is built up as elements are written.
+	 */
+	static final class StringTable implements Strings {
+		private Map ids = new HashMap();
+		private final List strings = new ArrayList();
+
+		/**
+		 * Gets the index of the string, adding it to the table if it
+		 * isn't there already.
+		 */
+		int idOf(String s) {
+			if (s == null) {
+				return 0;
+			} else if (ids == null) {
+				throw new IllegalStateException("String table is frozen");
+			}
+			Integer id = (Integer) ids.get(s);
+			if (id == null) {
+				strings.add(s);
+				id = new Integer(strings.size());
+				ids.put(s, id);
+			}
+			return id.intValue();
+		}
+
+		public String getString(int id) {
+			return id == 0 ? null : (String) strings.get(id - 1);
+		}
+
+		List getStrings() {
+			return strings;
+		}
+
+		/**
+		 * Drops the index from strings to their ids, once no more strings
+		 * will be added, to save space.
+		 */
+		void freeze() {
+			ids = null;
+		}
+	}
+
+	private EncodedElements() {
+	}
+
+	/**
+	 * Gets a document to create decoded elements with. It belongs to the
+	 * current thread.
+	 */
+	static Document getScratch() {
+		return (Document) scratch.get();
+	}
+
+	static void write(DataOutput o, Element e, StringTable table)
+			throws IOException {
+		writeLong(o, table.idOf(e.getNamespaceURI()));
+		writeLong(o, table.idOf(e.getTagName()));
+		NamedNodeMap attrs = e.getAttributes();
+		writeLong(o, attrs.getLength());
+		for (int i = 0; i < attrs.getLength(); i++) {
+			Node n = attrs.item(i);
+			writeLong(o, table.idOf(n.getNodeName()));
+			writeLong(o, table.idOf(n.getNodeValue()));
+		}
+		List children = new ArrayList();
+		for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling()) {
+			if (n.getNodeType() == Node.ELEMENT_NODE) {
+				children.add(n);
+			} else if ((n.getNodeType() == Node.TEXT_NODE
+					|| n.getNodeType() == Node.CDATA_SECTION_NODE)
+					&& n.getNodeValue().trim().length() > 0) {
+				children.add(n);
+			}
+		}
+		writeLong(o, children.size());
+		for (Iterator iter = children.iterator(); iter.hasNext();) {
+			Node n = (Node) iter.next();
+			if (n.getNodeType() == Node.ELEMENT_NODE) {
+				o.writeByte(ELEMENT_CHILD);
+				write(o, (Element) n, table);
+			} else {
+				o.writeByte(TEXT_CHILD);
+				writeLong(o, table.idOf(n.getNodeValue()));
+			}
+		}
+	}
+
+	static Element read(ByteBuffer b, Strings strings) {
+		Document doc = getScratch();
+		String ns = strings.getString(readInt(b));
+		Element e = doc.createElementNS(ns, strings.getString(readInt(b)));
+		int count = readInt(b);
+		for (int i = 0; i < count; i++) {
+			String name = strings.getString(readInt(b));
+			e.setAttribute(name, strings.getString(readInt(b)));
+		}
+		count = readInt(b);
+		for (int i = 0; i < count; i++) {
+			if (b.get() == ELEMENT_CHILD) {
+				e.appendChild(read(b, strings));
+			} else {
+				e.appendChild(doc.createTextNode(strings.getString(readInt(b))));
+			}
+		}
+		return e;
+	}
+
+	/**
+	 * Moves the buffer past an encoded element, without decoding it.
+	 */
+	static void skip(ByteBuffer b) {
+		readLong(b);
+		readLong(b);
+		int count = readInt(b);
+		for (int i = 0; i < 2 * count; i++) {
+			readLong(b);
+		}
+		count = readInt(b);
+		for (int i = 0; i < count; i++) {
+			if (b.get() == ELEMENT_CHILD) {
+				skip(b);
+			} else {
+				readLong(b);
+			}
+		}
+	}
+
+	static int readInt(ByteBuffer b) {
+		return (int) readLong(b);
+	}
+
+	static long readLong(ByteBuffer b) {
+		long v = 0;
+		int shift = 0;
+		byte x;
+		do {
+			x = b.get();
+			v |= (long) (x & 0x7F) << shift;
+			shift += 7;
+		} while ((x & 0x80) != 0);
+		return v;
+	}
+
+	static long readSigned(ByteBuffer b) {
+		long v = readLong(b);
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	static void writeSigned(DataOutput o, long v) throws IOException {
+		writeLong(o, (v << 1) ^ (v >> 63));
+	}
+
+	static void writeLong(DataOutput o, long v) throws IOException {
+		while ((v & ~0x7FL) != 0) {
+			o.writeByte((int) ((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		o.writeByte((int) v);
+	}
+}
@@ -0,0 +1,131 @@
+/***************************************
+ *            ViPER                    *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *                                     *
+ *  Distributed under the GPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package viper.api.impl;
+
+import java.nio.*;
+import java.util.*;
+import java.util.logging.*;
+
+import viper.api.extensions.*;
+
+/**
+ * A placeholder for a dynamic attribute value that hasn't been parsed
+ * yet. It points to the value's element in the attribute's encoded
+ * data segment, in the form written by {@link EncodedElements}. The
+ * {@link AttributeImpl} keeps these in its <code>TimeEncodedList</code>
+ * in place of the values, and decodes them as they are read. Decoded
+ * values are kept in a cache of bounded size, shared by all attributes,
+ * so reading the same frames again doesn't parse them again.
+ */
+final class LazyAttributeValue {
+	private static Logger logger = Logger.getLogger("viper.api.impl");
+
+	private static int cacheSize = 1 << 16;
+
+	/** The most recently used decoded values. */
+	private static final LinkedHashMap cache = new LinkedHashMap(256, 0.75f, true) {
+		protected boolean removeEldestEntry(Map.Entry eldest) {
+			return size() > cacheSize;
+		}
+	};
+
+	/**
+	 * The encoded values of one attribute.
+	 */
+	static final class Segment {
+		/** The encoded values. This is set once all of them are written. */
+		ByteBuffer data;
+		final EncodedElements.Strings strings;
+		final AttributeImpl owner;
+
+		Segment(ByteBuffer data, EncodedElements.Strings strings,
+				AttributeImpl owner) {
+			this.data = data;
+			this.strings = strings;
+			this.owner = owner;
+		}
+	}
+
+	private final Segment segment;
+	private final int offset;
+
+	LazyAttributeValue(Segment segment, int offset) {
+		this.segment = segment;
+		this.offset = offset;
+	}
+
+	/**
+	 * Gets the number of decoded values kept in the cache.
+	 * @return the most values the cache will hold
+	 */
+	static int getCacheSize() {
+		synchronized (cache) {
+			return cacheSize;
+		}
+	}
+
+	/**
+	 * Sets the number of decoded values to keep in the cache.
+	 * @param size the most values the cache will hold
+	 */
+	static void setCacheSize(int size) {
+		synchronized (cache) {
+			cacheSize = size;
+			Iterator iter = cache.keySet().iterator();
+			for (int i = cache.size(); i > size; i--) {
+				iter.next();
+				iter.remove();
+			}
+		}
+	}
+
+	/**
+	 * Gets the value, in the attribute's internal form, from the cache
+	 * or by decoding it.
+	 * @return the value
+	 */
+	Object get() {
+		synchronized (cache) {
+			Object v = cache.get(this);
+			if (v != null) {
+				return v;
+			}
+		}
+		Object v = decode();
+		if (v != null) {
+			synchronized (cache) {
+				cache.put(this, v);
+			}
+		}
+		return v;
+	}
+
+	/**
+	 * Decodes the value, without looking in or adding to the cache.
+	 * @return the value, in the attribute's internal form, or
+	 * <code>null</code> if it can't be parsed
+	 */
+	Object decode() {
+		ByteBuffer b = segment.data.duplicate();
+		b.position(offset);
+		AttributeImpl a = segment.owner;
+		AttrValueParser avp = (AttrValueParser) a.getAttrConfig().getParams();
+		try {
+			Object v = avp.setValue(EncodedElements.read(b, segment.strings), a);
+			return avp.setAttributeValue(v, a);
+		} catch (IllegalArgumentException iax) {
+			logger.log(Level.SEVERE, "Cannot parse attribute value", iax);
+			return null;
+		}
+	}
+}
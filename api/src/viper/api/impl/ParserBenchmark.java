@@ -0,0 +1,215 @@
+/***************************************
+ *            ViPER                    *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *                                     *
+ *  Distributed under the GPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package viper.api.impl;
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+
+import viper.api.*;
+import viper.api.datatypes.*;
+import viper.api.time.*;
+import edu.umd.cfar.lamp.viper.geometry.*;
+
+/**
+ * Compares the time and memory taken to load a large viper file with
+ * the DOM parser, with the streaming parser, and from a 
+ * {@link ViperSnapshot}, the last two both with and without
+ * {@link ViperParser#setLazy(boolean) lazy} attribute values. It generates a file of objects with a bounding 
+ * box that moves every frame, writes it out to a temporary file along
+ * with its snapshot, and then loads it several times each way.
+ * The memory is the peak heap use during the parse, less the heap in use
+ * before it started, so it includes garbage that had not been collected
+ * yet. Run it with a fixed heap size, e.g. <code>-Xmx1g</code>, to
+ * see which parser runs out of memory first.
+ * <p>
+ * Usage: <code>java viper.api.impl.ParserBenchmark
+ * [<i>descriptors</i> [<i>frames</i> [<i>rounds</i>]]]</code>
+ * </p>
+ */
+public class ParserBenchmark {
+	private interface Loader {
+		ViperData load(ViperParser parser, File f) throws IOException;
+	}
+
+	private static final Loader DOM = new Loader() {
+		public ViperData load(ViperParser parser, File f) throws IOException {
+			parser.setStreaming(false);
+			return parser.parseFromTextFile(f.toURI());
+		}
+	};
+
+	private static final Loader STREAM = new Loader() {
+		public ViperData load(ViperParser parser, File f) throws IOException {
+			parser.setStreaming(true);
+			return parser.parseFromTextFile(f.toURI());
+		}
+	};
+
+	private static final Loader SNAPSHOT = new Loader() {
+		public ViperData load(ViperParser parser, File f) throws IOException {
+			return ViperSnapshot.open(ViperSnapshot.getSnapshotFile(f)).load(
+					parser);
+		}
+	};
+
+	private static final Loader LAZY_STREAM = new Loader() {
+		public ViperData load(ViperParser parser, File f) throws IOException {
+			parser.setLazy(true);
+			return STREAM.load(parser, f);
+		}
+	};
+
+	private static final Loader LAZY_SNAPSHOT = new Loader() {
+		public ViperData load(ViperParser parser, File f) throws IOException {
+			parser.setLazy(true);
+			return SNAPSHOT.load(parser, f);
+		}
+	};
+
+	/**
+	 * Runs the benchmark.
+	 * @param args the number of descriptors, the number of frames each
+	 * one lasts, and the number of times to load the file with each parser
+	 * @throws IOException if there is an error writing or reading the
+	 * temporary file
+	 */
+	public static void main(String[] args) throws IOException {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int frames = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+		int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+		File f = File.createTempFile("viper-benchmark", ".xgtf");
+		f.deleteOnExit();
+		PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(f)));
+		try {
+			XmlSerializer.toWriter(generate(count, frames), out);
+		} finally {
+			out.close();
+		}
+		System.out.println(count + " descriptors of " + frames + " frames: "
+				+ (f.length() >> 10) + " KB");
+
+		ViperData a = STREAM.load(new ViperParser(), f);
+		ViperData b = DOM.load(new ViperParser(), f);
+		if (!a.equals(b)) {
+			System.out.println("The parsers do not agree!");
+		}
+		File snapshot = ViperSnapshot.getSnapshotFile(f);
+		snapshot.deleteOnExit();
+		ViperSnapshot.write(a, snapshot, f);
+		System.out.println("snapshot: " + (snapshot.length() >> 10) + " KB");
+		b = SNAPSHOT.load(new ViperParser(), f);
+		if (!a.equals(b)) {
+			System.out.println("The snapshot does not agree!");
+		}
+		b = LAZY_STREAM.load(new ViperParser(), f);
+		if (!a.equals(b)) {
+			System.out.println("The lazy parser does not agree!");
+		}
+		b = LAZY_SNAPSHOT.load(new ViperParser(), f);
+		if (!a.equals(b)) {
+			System.out.println("The lazy snapshot does not agree!");
+		}
+		a = b = null;
+
+		time("dom", DOM, f, rounds);
+		time("stream", STREAM, f, rounds);
+		time("snapshot", SNAPSHOT, f, rounds);
+		time("lazy stream", LAZY_STREAM, f, rounds);
+		time("lazy snapshot", LAZY_SNAPSHOT, f, rounds);
+	}
+
+	private static ViperData generate(int count, int frames) {
+		ViperData v = new ViperDataImpl();
+		FileInformation.initConfig(v.createConfig(Config.FILE, "Information"));
+		Config person = v.createConfig(Config.OBJECT, "Person");
+		person.createAttrConfig("LOCATION", ViperData.ViPER_DATA_URI + "bbox",
+				true, null, new AttributeBbox());
+		person.createAttrConfig("NAME", ViperData.ViPER_DATA_URI + "svalue",
+				false, null, Svalue.SV);
+		Sourcefile sf = v.createSourcefile("generated.mpg");
+		Random r = new Random(42);
+		for (int i = 0; i < count; i++) {
+			Descriptor d = sf.createDescriptor(person);
+			int start = r.nextInt(frames);
+			InstantRange range = new InstantRange();
+			range.add(new Frame(start), new Frame(start + frames));
+			d.setValidRange(range);
+			d.getAttribute("NAME").setAttrValue("person " + i);
+			Attribute location = d.getAttribute("LOCATION");
+			int x = r.nextInt(640);
+			int y = r.nextInt(480);
+			for (int j = start; j < start + frames; j++) {
+				x += r.nextInt(5) - 2;
+				y += r.nextInt(5) - 2;
+				location.setAttrValueAtSpan(new BoundingBox(x, y, 40, 80),
+						new Span(new Frame(j), new Frame(j + 1)));
+			}
+		}
+		return v;
+	}
+
+	private static void time(String name, Loader loader, File f, int rounds)
+			throws IOException {
+		long totalTime = 0;
+		long peak = 0;
+		for (int i = 0; i < rounds; i++) {
+			System.gc();
+			long before = heapUsed();
+			resetPeaks();
+			long start = System.nanoTime();
+			ViperData v = loader.load(new ViperParser(), f);
+			totalTime += System.nanoTime() - start;
+			peak = Math.max(peak, peakHeapUsed() - before);
+			v.getAllSourcefiles();
+		}
+		System.gc();
+		long before = heapUsed();
+		ViperData v = loader.load(new ViperParser(), f);
+		System.gc();
+		long retained = heapUsed() - before;
+		System.out.println("  " + name + ": " + (totalTime / rounds / 1000000)
+				+ " ms/load, peak heap " + (peak >> 20) + " MB, result "
+				+ (retained >> 20) + " MB (" + v.getAllSourcefiles().size()
+				+ " file)");
+	}
+
+	private static long heapUsed() {
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage()
+				.getUsed();
+	}
+
+	private static void resetPeaks() {
+		for (Iterator iter = ManagementFactory.getMemoryPoolMXBeans()
+				.iterator(); iter.hasNext();) {
+			((MemoryPoolMXBean) iter.next()).resetPeakUsage();
+		}
+	}
+
+	/**
+	 * Adds up the peak use of each heap pool. The pools may not have
+	 * peaked at the same time, so this is an upper bound.
+	 */
+	private static long peakHeapUsed() {
+		long total = 0;
+		for (Iterator iter = ManagementFactory.getMemoryPoolMXBeans()
+				.iterator(); iter.hasNext();) {
+			MemoryPoolMXBean pool = (MemoryPoolMXBean) iter.next();
+			if (pool.getType() == MemoryType.HEAP) {
+				total += pool.getPeakUsage().getUsed();
+			}
+		}
+		return total;
+	}
+}
@@ -34,6 +34,37 @@ public class SourcefileImpl
 	private Sourcefiles parent;
 	private MediaElement media;
 
+	/**
+	 * Index of the descriptors' frame ranges, for finding the descriptors
+	 * valid at a given frame. Descriptors with time-based ranges are given
+	 * infinite intervals, so they are always checked. Discarded whenever
+	 * a descriptor is added or removed, or its range changes. Queries may run while another
+	 * thread edits the file, so the tree and the descriptors it indexes
+	 * are published together.
+	 */
+	private volatile TimeIndex timeIndex;
+
+	/**
+	 * Counts the resets of the time index, so that an index built from
+	 * descriptors that changed while it was being built is not kept.
+	 */
+	private int timeIndexVersion = 0;
+	private final Object timeIndexLock = new Object();
+
+	/**
+	 * The descriptors of the file, in order, and an index of their
+	 * frame ranges.
+	 */
+	private static final class TimeIndex {
+		final IntervalTree tree;
+		final Object[] nodes;
+
+		TimeIndex(IntervalTree tree, Object[] nodes) {
+			this.tree = tree;
+			this.nodes = nodes;
+		}
+	}
+
 	/**
 	 * @see viper.api.Node#getChildren()
 	 */
@@ -247,6 +278,7 @@ public class SourcefileImpl
 		// it if it exists, or throw exception?
 		Descriptor newDesc = new DescriptorImpl(this, (ConfigImpl) c, id);
 		descObjs.add(newDesc);
+		resetTimeIndex();
 		NodeChangeEvent nce =
 			new UndoableNodeChangeEventImpl(
 				this,
@@ -285,6 +317,7 @@ public class SourcefileImpl
 	}
 
 	protected void helpSetChild(int i, Node n, TransactionalNode.Transaction t, boolean insert) {
+		resetTimeIndex();
 		if (n == null) {
 			DescriptorImpl d = (DescriptorImpl) descObjs.remove(i);
 			d.setParent(null);
@@ -316,15 +349,89 @@ public class SourcefileImpl
 	 * @see viper.api.Sourcefile#getDescriptorsBy(viper.api.time.InstantInterval)
 	 */
 	public Iterator getDescriptorsBy(InstantInterval i) {
-		return new ExceptIterator(new CheckTimeFunctor(i), getDescriptors());
+		Iterator possibles;
+		if (i.getStartInstant() instanceof Frame) {
+			possibles = getPossiblyValid(i.getStartInstant().longValue(), i
+					.getEndInstant().longValue() + 1);
+		} else {
+			possibles = getDescriptors();
+		}
+		return new ExceptIterator(new CheckTimeFunctor(i), possibles);
 	}
 	/**
 	 * @see viper.api.Sourcefile#getDescriptorsBy(viper.api.time.Instant)
 	 */
 	public Iterator getDescriptorsBy(Instant i) {
 		i = media.getFrameRate().asFrame(i);
-		return new ExceptIterator(new CheckTimeFunctor(i), getDescriptors());
+		return new ExceptIterator(new CheckTimeFunctor(i), getPossiblyValid(i
+				.longValue(), i.longValue() + 1));
+	}
+
+	/**
+	 * Gets the descriptors whose valid ranges may intersect the given
+	 * frames, using the time index.
+	 * @param start the first frame to look for
+	 * @param end the frame after the last one to look for
+	 * @return the descriptors that may be valid somewhere in the interval,
+	 * in order
+	 */
+	private Iterator getPossiblyValid(long start, long end) {
+		TimeIndex index = timeIndex;
+		if (index == null) {
+			int version;
+			synchronized (timeIndexLock) {
+				version = timeIndexVersion;
+			}
+			Object[] nodes = descObjs.toArray();
+			long[] starts = new long[nodes.length];
+			long[] ends = new long[nodes.length];
+			for (int i = 0; i < nodes.length; i++) {
+				TemporalRange r = null;
+				if (nodes[i] instanceof TemporalNode) {
+					r = ((TemporalNode) nodes[i]).getRange();
+				}
+				if (r != null && r.isFrameBased()) {
+					Interval extrema = r.getExtrema();
+					starts[i] = ((Frame) extrema.getStart()).longValue();
+					ends[i] = ((Frame) extrema.getEnd()).longValue() + 1;
+				} else {
+					starts[i] = Long.MIN_VALUE;
+					ends[i] = Long.MAX_VALUE;
+				}
+			}
+			index = new TimeIndex(new IntervalTree(starts, ends), nodes);
+			synchronized (timeIndexLock) {
+				// if a reset came in while building, use the index for this
+				// query, but don't keep it
+				if (version == timeIndexVersion) {
+					timeIndex = index;
+				}
+			}
+		}
+		BitSet possibles = index.tree.getIntersecting(start, end, new BitSet(
+				index.nodes.length));
+		List L = new ArrayList(possibles.cardinality());
+		for (int i = possibles.nextSetBit(0); i >= 0; i = possibles
+				.nextSetBit(i + 1)) {
+			L.add(index.nodes[i]);
+		}
+		return L.iterator();
+	}
+
+	/**
+	 * Discards the index used to find descriptors by time. This is called 
+	 * whenever a descriptor is added, removed or replaced, and whenever a
+	 * descriptor's valid range is set, since that may happen without an
+	 * event while aggregating or inside a transaction. Other edits, such
+	 * as changes to attribute values, leave the index alone.
+	 */
+	void resetTimeIndex() {
+		synchronized (timeIndexLock) {
+			timeIndexVersion++;
+			timeIndex = null;
+		}
 	}
+
 	/**
 	 * @see viper.api.Sourcefile#getDescriptorsBy(int)
 	 */
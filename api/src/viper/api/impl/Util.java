@@ -541,6 +541,7 @@ public class Util {
 			AttrConfig ac = (AttrConfig) attrs.next();
 			if (ac.isDynamic()) {
 				AttributeImpl a = (AttributeImpl) d.getAttribute(ac);
+				a.materialize();
 				TimeEncodedList av = (TimeEncodedList) a.attrValue;
 				if (av != null) {
 					av = (TimeEncodedList) av.clone();
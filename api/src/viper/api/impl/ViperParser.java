@@ -14,14 +14,17 @@ package viper.api.impl;
 
 import java.io.*;
 import java.net.*;
+import java.nio.*;
 import java.util.*;
 import java.util.logging.*;
+import java.util.zip.*;
 
 import javax.xml.parsers.*;
 
 import org.w3c.dom.*;
 import org.w3c.dom.Node;
 import org.xml.sax.*;
+import org.xml.sax.helpers.*;
 
 import viper.api.*;
 import viper.api.datatypes.*;
@@ -45,6 +48,9 @@ public class ViperParser {
 	
 	private static Logger logger = Logger.getLogger("viper.api.impl");
 	private ViperDataFactory typeFactory;
+	private boolean streaming = true;
+	private boolean usingSnapshots = false;
+	private boolean lazy = false;
 	/**
 	 * Creates a new parser.
 	 */
@@ -166,16 +172,178 @@ public class ViperParser {
 	}
 	
 	/**
-	 * Parses the viper xml file at the given location.
+	 * Parses the viper xml file at the given location. If the parser
+	 * is {@link #setUsingSnapshots(boolean) using snapshots}, a local file
+	 * is loaded from its snapshot instead, when the snapshot is fresh.
 	 * @param fname the file to parse
 	 * @return the data contained in the file
 	 * @throws IOException if there is an error while opening the file
 	 */
 	public ViperData parseFromTextFile(URI fname)
 		throws IOException {
+		File local = null;
+		if (usingSnapshots && "file".equals(fname.getScheme())
+				&& fname.getAuthority() == null) {
+			local = new File(fname);
+			File snapshot = ViperSnapshot.getSnapshotFile(local);
+			if (ViperSnapshot.isFresh(snapshot, local)) {
+				try {
+					return ViperSnapshot.open(snapshot).load(this);
+				} catch (IOException iox) {
+					logger.log(Level.WARNING, "Cannot load snapshot; parsing "
+						+ fname + " instead", iox);
+				}
+			}
+		}
+		ViperData v = parseXmlFile(fname);
+		if (local != null && local.isFile()) {
+			try {
+				ViperSnapshot.write(v, ViperSnapshot.getSnapshotFile(local), local);
+			} catch (IOException iox) {
+				logger.log(Level.WARNING, "Cannot write snapshot of " + fname, iox);
+			}
+		}
+		return v;
+	}
+	
+	private ViperData parseXmlFile(URI fname) throws IOException {
+		if (streaming) {
+			InputStream inFile = openStream(fname);
+			try {
+				InputSource source = new InputSource(inFile);
+				source.setSystemId(fname.toString());
+				return parseStream(source);
+			} finally {
+				inFile.close();
+			}
+		}
 		Element corrected = file2correctDOM(fname);
 		return (ViperDataImpl) parseDoc(corrected);
 	}
+	
+	/**
+	 * Tests to see if {@link #parseFromTextFile(URI)} uses the 
+	 * streaming parser.
+	 * @return <code>true</code> if files are parsed with 
+	 * {@link #parseStream(InputSource)}, <code>false</code> if they are
+	 * parsed into a DOM tree first
+	 */
+	public boolean isStreaming() {
+		return streaming;
+	}
+	
+	/**
+	 * Sets whether {@link #parseFromTextFile(URI)} should use the 
+	 * streaming parser, which is the default, or parse the file into a
+	 * DOM tree first.
+	 * @param streaming <code>false</code> to use the DOM parser
+	 */
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+	
+	/**
+	 * Tests to see if {@link #parseFromTextFile(URI)} uses and writes
+	 * {@link ViperSnapshot}s.
+	 * @return <code>true</code> if local files are loaded from their
+	 * snapshots, when the snapshots are fresh
+	 */
+	public boolean isUsingSnapshots() {
+		return usingSnapshots;
+	}
+	
+	/**
+	 * Sets whether {@link #parseFromTextFile(URI)} should use snapshots.
+	 * When it does, it loads a local file from its snapshot if the 
+	 * snapshot is fresh. Otherwise, it parses the xml and then writes a
+	 * new snapshot next to the file, for next time. This is off by 
+	 * default, so that the parser doesn't leave files behind.
+	 * @param usingSnapshots <code>true</code> to use snapshots
+	 */
+	public void setUsingSnapshots(boolean usingSnapshots) {
+		this.usingSnapshots = usingSnapshots;
+	}
+	
+	/**
+	 * Tests to see if dynamic attribute values are parsed lazily.
+	 * @return <code>true</code> if the streaming parser and snapshots 
+	 * leave dynamic attribute values encoded until they are read
+	 */
+	public boolean isLazy() {
+		return lazy;
+	}
+	
+	/**
+	 * Sets whether dynamic attribute values should be parsed lazily. When
+	 * they are, the streaming parser and {@link ViperSnapshot}s keep each
+	 * dynamic attribute's values in a compact encoded form, and a value
+	 * is only parsed when something reads it. Parsed values are kept in
+	 * a bounded cache; see {@link #setLazyCacheSize(int)}. Changing an
+	 * attribute parses all of its values. The DOM parser ignores this.
+	 * @param lazy <code>true</code> to parse values when they are read,
+	 * <code>false</code> to parse them while loading
+	 */
+	public void setLazy(boolean lazy) {
+		this.lazy = lazy;
+	}
+	
+	/**
+	 * Gets the number of lazily parsed attribute values that are kept
+	 * after they are parsed.
+	 * @return the size of the cache of parsed values
+	 */
+	public static int getLazyCacheSize() {
+		return LazyAttributeValue.getCacheSize();
+	}
+	
+	/**
+	 * Sets the number of lazily parsed attribute values to keep after
+	 * they are parsed. The cache is shared by all lazily loaded data.
+	 * @param size the most values to keep
+	 */
+	public static void setLazyCacheSize(int size) {
+		LazyAttributeValue.setCacheSize(size);
+	}
+	
+	/**
+	 * Opens the given file or URL.
+	 */
+	private static InputStream openStream(URI fname) throws IOException {
+		File f = new File(fname);
+		if (f.exists()) {
+			return ungzip(new FileInputStream(f));
+		}
+		try {
+			return ungzip(fname.toURL().openStream());
+		}  catch (MalformedURLException e) {
+			throw new IllegalArgumentException(
+				"File: " + fname + " not found");
+		} catch (IOException e) {
+			throw new IllegalArgumentException(
+				"Error loading URL: " + fname 
+				+ "\n\t" + e.getLocalizedMessage());
+		}
+	}
+	/**
+	 * Checks for the gzip magic number at the start of the stream, so
+	 * files saved with {@link XmlSerializer#toFile(ViperData, File, boolean)}
+	 * in gzip mode load the same as plain xml files.
+	 * @param in the raw stream
+	 * @return a stream of the uncompressed bytes
+	 * @throws IOException if there is an error reading the header
+	 */
+	private static InputStream ungzip(InputStream in) throws IOException {
+		BufferedInputStream buf = new BufferedInputStream(in);
+		buf.mark(2);
+		int b1 = buf.read();
+		int b2 = buf.read();
+		buf.reset();
+		if (b1 == (GZIPInputStream.GZIP_MAGIC & 0xff)
+				&& b2 == (GZIPInputStream.GZIP_MAGIC >> 8)) {
+			return new GZIPInputStream(buf);
+		}
+		return buf;
+	}
 	/**
 	 * Parses an XGTF file in to a DOM object, with corrected namespaces.
 	 * @param fname the file to parse
@@ -186,23 +354,9 @@ public class ViperParser {
 	 */
 	public static Element file2correctDOM(URI fname) throws FileNotFoundException, IOException {
 		InputStream inFile = null;
-		File f = new File(fname);
 		Document document;
 		try {
-			if (f.exists()) {
-				inFile = new FileInputStream(f);
-			} else {
-				try {
-					inFile = fname.toURL().openStream();
-				}  catch (MalformedURLException e) {
-					throw new IllegalArgumentException(
-						"File: " + fname + " not found");
-				} catch (IOException e) {
-					throw new IllegalArgumentException(
-						"Error loading URL: " + fname 
-						+ "\n\t" + e.getLocalizedMessage());
-				}
-			}
+			inFile = openStream(fname);
 			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
 			factory.setNamespaceAware(true);
 			DocumentBuilder builder;
@@ -225,6 +379,11 @@ public class ViperParser {
 		return corrected;
 	}
 	
+	/** The old viper schema namespace, without the '#' at the end. */
+	private static final String BAD_VIPER = ViperData.ViPER_SCHEMA_URI.substring(0, ViperData.ViPER_SCHEMA_URI.length()-1);
+	/** The old viper data namespace, without the '#' at the end. */
+	private static final String BAD_DATA = ViperData.ViPER_DATA_URI.substring(0, ViperData.ViPER_DATA_URI.length()-1);
+	
 	/**
 	 * Convert from the old namespace to the new namespace (with a '#'
 	 * at the end).
@@ -232,7 +391,6 @@ public class ViperParser {
 	 * @return the converted document
 	 */
 	public static Element correctDocumentForOldNamespace(Document root) {
-		final String BAD_VIPER = ViperData.ViPER_SCHEMA_URI.substring(0, ViperData.ViPER_SCHEMA_URI.length()-1);
 		Element rootEl = root.getDocumentElement();
 		if (BAD_VIPER.equals(rootEl.getNamespaceURI())) {
 			rootEl = correctElement(rootEl, root);
@@ -241,9 +399,6 @@ public class ViperParser {
 	}
 	
 	private static Element correctElement(Element e, Document root) {
-		final String BAD_VIPER = ViperData.ViPER_SCHEMA_URI.substring(0, ViperData.ViPER_SCHEMA_URI.length()-1);
-		final String BAD_DATA = ViperData.ViPER_DATA_URI.substring(0, ViperData.ViPER_DATA_URI.length()-1);
-		
 		Element replace = null;
 		if (BAD_DATA.equals(e.getNamespaceURI())) {
 			replace = root.createElementNS(ViperData.ViPER_DATA_URI, e.getTagName());
@@ -313,7 +468,7 @@ public class ViperParser {
 		return (curr);
 	}
 
-	private void parseConfig(Element e, ViperData into) {
+	void parseConfig(Element e, ViperData into) {
 		NodeList allDesc = e.getChildNodes();
 		boolean foundInformation = false;
 
@@ -474,60 +629,91 @@ public class ViperParser {
 		Sourcefile col = conf.createSourcefile(fileName);
 
 		for (int k = 0; k < files.getLength(); k++) {
-
-			Descriptor newDesc = null;
 			Node n = files.item(k);
 			if (n.getNodeType() == Node.ELEMENT_NODE) {
-
 				Element file = (Element) files.item(k);
-				String readinType = file.getTagName().trim();
-				int dtype;
-				try {
-					dtype = Util.getDescType(readinType);
-				} catch (IllegalArgumentException iax) {
-					logger.severe(
-						"Not a valid descriptor type: " + readinType);
-					continue;
-				}
-
-				String readinName = "";
-				if (file.hasAttribute("name")) {
-					readinName = file.getAttribute("name");
-				} else {
-					logger.severe("Missing name attribute");
-					continue;
+				Descriptor newDesc =
+					parseDescriptor(
+						file.getTagName().trim(),
+						getAttributeOrNull(file, "name"),
+						getAttributeOrNull(file, "id"),
+						getAttributeOrNull(file, "framespan"),
+						getAttributeOrNull(file, "timespan"),
+						col,
+						conf);
+				if (newDesc != null) {
+					parseAttrs(file, newDesc, false);
 				}
+			}
+		}
+	}
+	
+	private static String getAttributeOrNull(Element e, String name) {
+		return e.hasAttribute(name) ? e.getAttribute(name) : null;
+	}
+	
+	/**
+	 * Gets or creates the descriptor described by the attributes of a 
+	 * descriptor element, and sets its range.
+	 * @param readinType the tag name, which is the descriptor type
+	 * @param readinName the descriptor name, or <code>null</code> if missing
+	 * @param num the descriptor id, or <code>null</code> if missing
+	 * @param framespan the framespan attribute, or <code>null</code>
+	 * @param timespan the timespan attribute, or <code>null</code>
+	 * @param col the sourcefile to add the descriptor to
+	 * @param conf the configurations
+	 * @return the descriptor, or <code>null</code> if the element is 
+	 * invalid and should be skipped
+	 */
+	private Descriptor parseDescriptor(
+		String readinType,
+		String readinName,
+		String num,
+		String framespan,
+		String timespan,
+		Sourcefile col,
+		ViperData conf) {
+		int dtype;
+		try {
+			dtype = Util.getDescType(readinType);
+		} catch (IllegalArgumentException iax) {
+			logger.severe(
+				"Not a valid descriptor type: " + readinType);
+			return null;
+		}
 
-				int tempNum = 0;
-				if (file.hasAttribute("id")) {
-					String num = file.getAttribute("id");
-					try {
-						tempNum = Integer.parseInt(num.trim());
-					} catch (NumberFormatException nfe) {
-						logger.severe(
-							"Error in Descriptor id, this should be a number, not "
-								+ num
-								+ ".");
-						continue;
-					}
-				}
+		if (readinName == null) {
+			logger.severe("Missing name attribute");
+			return null;
+		}
 
-				Config cfg = conf.getConfig(dtype, readinName);
-				if (cfg == null) {
-					logger.severe(
-						"No definition found for descriptor " + readinName);
-					continue;
-				}
-				newDesc = col.getDescriptor(dtype, readinName, tempNum);
-				if (newDesc == null) {
-					newDesc = col.createDescriptor(cfg, tempNum);
-				}
-				if (dtype != Config.FILE) {
-					parseSpan(newDesc, file);
-				}
-				parseAttrs(file, newDesc, false);
+		int tempNum = 0;
+		if (num != null) {
+			try {
+				tempNum = Integer.parseInt(num.trim());
+			} catch (NumberFormatException nfe) {
+				logger.severe(
+					"Error in Descriptor id, this should be a number, not "
+						+ num
+						+ ".");
+				return null;
 			}
 		}
+
+		Config cfg = conf.getConfig(dtype, readinName);
+		if (cfg == null) {
+			logger.severe(
+				"No definition found for descriptor " + readinName);
+			return null;
+		}
+		Descriptor newDesc = col.getDescriptor(dtype, readinName, tempNum);
+		if (newDesc == null) {
+			newDesc = col.createDescriptor(cfg, tempNum);
+		}
+		if (dtype != Config.FILE) {
+			parseSpan(newDesc, framespan, timespan);
+		}
+		return newDesc;
 	}
 	
 	/**
@@ -594,7 +780,10 @@ public class ViperParser {
 				}
 				newDesc = col.createDescriptor(cfg, tempNum);
 				if (cfg.getDescType() != Config.FILE) {
-					parseSpan(newDesc, descN);
+					parseSpan(
+						newDesc,
+						getAttributeOrNull(descN, "framespan"),
+						getAttributeOrNull(descN, "timespan"));
 				}
 
 				parseAttrs(descN, newDesc, false);
@@ -602,15 +791,13 @@ public class ViperParser {
 		}
 	}
 
-	private void parseSpan(Descriptor desc, Element elem) {
+	private void parseSpan(Descriptor desc, String fRange, String tRange) {
 		try {
 			InstantRange frameRange = null;
 			InstantRange timeRange = null;
 			InstantRange oldRange = desc.getValidRange();
-			if (elem.hasAttribute("framespan") && elem.hasAttribute("timespan")) {
-				String fRange = elem.getAttribute("framespan");
+			if (fRange != null && tRange != null) {
 				frameRange = InstantRange.parseFrameRange(fRange);
-				String tRange = elem.getAttribute("timespan");
 				timeRange = InstantRange.parseTimeRange(tRange);
 				MediaElement rm = desc.getSourcefile().getReferenceMedia();
 				FrameRate oldRate = rm.getFrameRate();
@@ -638,11 +825,9 @@ public class ViperParser {
 							+ ", but computed rate is "
 							+ rate);
 				}
-			} else if (elem.hasAttribute("framespan")) {
-				String fRange = elem.getAttribute("framespan");
+			} else if (fRange != null) {
 				frameRange = InstantRange.parseFrameRange(fRange);
-			} else if (elem.hasAttribute("timespan")) {
-				String tRange = elem.getAttribute("timespan");
+			} else if (tRange != null) {
 				timeRange = InstantRange.parseTimeRange(tRange);
 			} else {
 				logger.severe ("could not find range for " + desc);
@@ -741,85 +926,507 @@ public class ViperParser {
 	private void parseAttr(Element el, Descriptor d, boolean isDef) {
 		try {
 			String name = el.getAttribute("name");
-			Config cfg = d.getConfig();
-			AttrConfig currAC = cfg.getAttrConfig(name);
+			AttrConfig currAC = getAttrConfig(d, name);
 			if (currAC == null) {
-				logger.severe(
-					"Cannot find attribute config of name: '" + name + "'");
 				return;
 			}
 
 			NodeList dataChildren = el.getChildNodes();
-
-			Object attrObj = null;
-			Instant start;
-			if (d.getDescType() == Config.FILE) {
-				start = new Frame(0);
-			} else if (d.getValidRange().isEmpty()){
-				// no dynamic attributes may be parsed
-				start = null;
-			} else {
-				start = (Instant) d.getValidRange().getExtrema().getStart();
-			}
+			Instant start = getFirstInstant(d);
 			for (int j = 0; j < dataChildren.getLength(); j++) {
 				// for each data element
-				attrObj = null;
 				Node n = dataChildren.item(j);
 
 				if (n.getNodeType() == Node.ELEMENT_NODE) {
-					Element dataChild = (Element) n;
-
-					String attType = dataChild.getLocalName();
-
-					if (!attType.equals("null")) {
-						if (currAC.getParams() instanceof AttrValueParser) {
-							AttrValueParser pav =
-								(AttrValueParser) currAC.getParams();
-							try {
-								attrObj = pav.setValue(dataChild, d.getAttribute(currAC));
-							} catch (IllegalArgumentException badx) {
-								logger.log(Level.SEVERE, "Cannot parse attribute value", badx);
-							}
-						} else {
-							logger.severe(
-								"Cannot parse attributes of type: "
-									+ currAC.getAttrType());
+					start = parseAttrValue((Element) n, d, currAC, start);
+				}
+			}
+		} catch (NullPointerException npe) {
+			logger.log(Level.SEVERE, "Missing important XML attribute.", npe);
+		}
+	}
+	
+	private AttrConfig getAttrConfig(Descriptor d, String name) {
+		Config cfg = d.getConfig();
+		AttrConfig currAC = cfg.getAttrConfig(name);
+		if (currAC == null) {
+			logger.severe(
+				"Cannot find attribute config of name: '" + name + "'");
+		}
+		return currAC;
+	}
+	
+	/**
+	 * Gets the instant where the first value of a dynamic attribute of 
+	 * the descriptor starts, if the value doesn't give its own span.
+	 */
+	private static Instant getFirstInstant(Descriptor d) {
+		if (d.getDescType() == Config.FILE) {
+			return new Frame(0);
+		} else if (d.getValidRange().isEmpty()){
+			// no dynamic attributes may be parsed
+			return null;
+		} else {
+			return (Instant) d.getValidRange().getExtrema().getStart();
+		}
+	}
+	
+	/**
+	 * Sets the attribute to the value in a data element. 
+	 * @param dataChild the data element, e.g. <code>data:bbox</code>
+	 * @param d the descriptor
+	 * @param currAC the attribute's configuration
+	 * @param start where the value starts, if the element doesn't say
+	 * @return where the next value starts, if its element doesn't say
+	 */
+	private Instant parseAttrValue(
+		Element dataChild,
+		Descriptor d,
+		AttrConfig currAC,
+		Instant start) {
+		Object attrObj = null;
+		String attType = dataChild.getLocalName();
+
+		if (!attType.equals("null")) {
+			if (currAC.getParams() instanceof AttrValueParser) {
+				AttrValueParser pav =
+					(AttrValueParser) currAC.getParams();
+				try {
+					attrObj = pav.setValue(dataChild, d.getAttribute(currAC));
+				} catch (IllegalArgumentException badx) {
+					logger.log(Level.SEVERE, "Cannot parse attribute value", badx);
+				}
+			} else {
+				logger.severe(
+					"Cannot parse attributes of type: "
+						+ currAC.getAttrType());
+			}
+		}
+		Span currSpan = null;
+		try {
+			currSpan = parseValueSpan(dataChild, start);
+			if (currSpan != null) {
+				start = (Instant) currSpan.getEnd();
+			}
+			if (!currAC.isDynamic()) {
+				d.getAttribute(currAC).setAttrValue(attrObj);
+			} else {
+				d.getAttribute(currAC).setAttrValueAtSpan(
+					attrObj,
+					currSpan);
+			}
+		} catch (IllegalArgumentException iax) {
+			logger.log(Level.SEVERE, "Format error while parsing attribute", iax);
+		}
+		return start;
+	}
+	
+	/**
+	 * Gets the span of a data element.
+	 * @param dataChild the data element
+	 * @param start where the value starts, if the element doesn't say
+	 * @return the span, or <code>null</code> if there is no span
+	 * @throws IllegalArgumentException if the span is malformed
+	 */
+	private static Span parseValueSpan(Element dataChild, Instant start) {
+		if (dataChild.hasAttribute("framespan")) {
+			return Span.parseFrameSpan(dataChild.getAttribute("framespan"));
+		} else if (dataChild.hasAttribute("timespan")) {
+			return Span.parseTimeSpan(dataChild.getAttribute("timespan"));
+		} else if (dataChild.hasAttribute("span")) {
+			String str = dataChild.getAttribute("span");
+			long change = Long.parseLong(str);
+			return new Span(start, start.go(change));
+		} else if (start != null) {
+			return new Span(start, (Instant) start.next());
+		}
+		return null;
+	}
+	
+	/**
+	 * Parses viper data from the given input without building a DOM tree
+	 * for the whole document, so the memory it uses is mostly what is
+	 * taken by the resulting <code>ViperData</code>. The configuration
+	 * section and each attribute value element are still converted into
+	 * small, detached DOM elements, since that is what the 
+	 * {@link AttrValueParser}s read, but everything else is built as
+	 * the parser reaches it. Like {@link #parseFromTextFile(URI)}, it 
+	 * corrects documents that use the old viper namespaces. If the parser
+	 * {@link #isLazy() is lazy}, dynamic attribute values are left 
+	 * encoded until they are read.
+	 * @param source the xml to parse
+	 * @return the data contained in the xml
+	 * @throws IOException if there is an error while reading the input,
+	 * or the input isn't well-formed xml
+	 */
+	public ViperData parseStream(InputSource source) throws IOException {
+		SAXParserFactory factory = SAXParserFactory.newInstance();
+		factory.setNamespaceAware(true);
+		try {
+			Document scratch =
+				DocumentBuilderFactory
+					.newInstance()
+					.newDocumentBuilder()
+					.newDocument();
+			StreamingHandler handler = new StreamingHandler(scratch);
+			factory.newSAXParser().parse(source, handler);
+			handler.strings.freeze();
+			return handler.getData();
+		} catch (ParserConfigurationException e) {
+			throw new IOException(e.getLocalizedMessage());
+		} catch (SAXException e) {
+			throw new IOException(e.getLocalizedMessage());
+		}
+	}
+	
+	/**
+	 * Builds viper data from sax events. It keeps track of where it is
+	 * in the document by depth: the root is at depth 1, the config and
+	 * data elements at 2, sourcefiles at 3, descriptors at 4, their 
+	 * attributes at 5, and attribute values at 6. The config element and
+	 * the value elements are collected into fragments and handed to the
+	 * same methods that {@link ViperParser#parseDoc(Element)} uses.
+	 * <p>
+	 * Setting the values of a dynamic attribute one at a time copies the
+	 * attribute's value list for each undo event, so the handler builds
+	 * the list itself and sets it when the attribute ends. It falls back
+	 * to setting values one at a time when the attribute already has
+	 * values, or the values mix frames and times.
+	 * </p>
+	 */
+	private class StreamingHandler extends DefaultHandler {
+		private ViperDataImpl data = new ViperDataImpl();
+		private Document scratch;
+		private int depth = 0;
+		private boolean correcting = false;
+		private boolean inData = false;
+		private Sourcefile currFile = null;
+		private Descriptor currDesc = null;
+		private AttrConfig currAC = null;
+		private Instant start = null;
+
+		/**
+		 * The values of the current attribute, or <code>null</code> if 
+		 * they are being set one at a time.
+		 */
+		private TimeEncodedList pending = null;
+		private AttributeImpl currAttr = null;
+
+		/** Strings in the encoded values of lazy attributes. */
+		final EncodedElements.StringTable strings = new EncodedElements.StringTable();
+		private final SegmentBytes bytes = new SegmentBytes();
+		private final DataOutputStream bytesOut = new DataOutputStream(bytes);
+		private LazyAttributeValue.Segment segment = null;
+		private LazyAttributeValue lastLazy = null;
+		private int lastOffset = 0;
+
+		/** The fragment being collected, or <code>null</code>. */
+		private Element fragment = null;
+		/** Where the next child of the fragment will be added. */
+		private Element cursor = null;
+		
+		StreamingHandler(Document scratch) {
+			this.scratch = scratch;
+		}
+		
+		ViperDataImpl getData() {
+			return data;
+		}
+		
+		private String correct(String uri) {
+			if (uri == null || uri.length() == 0) {
+				return null;
+			} else if (!correcting) {
+				return uri;
+			} else if (BAD_DATA.equals(uri)) {
+				return ViperData.ViPER_DATA_URI;
+			} else if (BAD_VIPER.equals(uri)) {
+				return ViperData.ViPER_SCHEMA_URI;
+			}
+			return uri;
+		}
+		
+		private Element createElement(
+			String uri,
+			String qName,
+			org.xml.sax.Attributes atts) {
+			Element e = scratch.createElementNS(correct(uri), qName);
+			for (int i = 0; i < atts.getLength(); i++) {
+				String name = atts.getQName(i);
+				if (name == null || name.length() == 0) {
+					name = atts.getLocalName(i);
+				}
+				e.setAttributeNS(correct(atts.getURI(i)), name, atts.getValue(i));
+			}
+			return e;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public void startElement(
+			String uri,
+			String localName,
+			String qName,
+			org.xml.sax.Attributes atts) {
+			depth++;
+			if (qName == null || qName.length() == 0) {
+				qName = localName;
+			}
+			if (fragment != null) {
+				Element e = createElement(uri, qName, atts);
+				cursor.appendChild(e);
+				cursor = e;
+				return;
+			}
+			String tag = qName.trim();
+			switch (depth) {
+				case 1 :
+					correcting = BAD_VIPER.equals(uri);
+					if (uri == null || uri.length() == 0) {
+						logger.warning("No namespace on root element. Is your parser namespace aware?");
+					}
+					break;
+				case 2 :
+					inData = tag.equals("data");
+					if (tag.equals("config")) {
+						fragment = cursor = createElement(uri, qName, atts);
+					}
+					break;
+				case 3 :
+					if (inData) {
+						String fileName = atts.getValue("filename");
+						currFile =
+							data.createSourcefile(
+								fileName == null ? "" : fileName);
+					}
+					break;
+				case 4 :
+					if (currFile != null) {
+						currDesc =
+							parseDescriptor(
+								tag,
+								atts.getValue("name"),
+								atts.getValue("id"),
+								atts.getValue("framespan"),
+								atts.getValue("timespan"),
+								currFile,
+								data);
+					}
+					break;
+				case 5 :
+					if (currDesc != null && tag.equals("attribute")) {
+						try {
+							String name = atts.getValue("name");
+							currAC =
+								getAttrConfig(
+									currDesc,
+									name == null ? "" : name);
+							start = getFirstInstant(currDesc);
+							startPending();
+						} catch (NullPointerException npe) {
+							currAC = null;
+							logger.log(Level.SEVERE, "Missing important XML attribute.", npe);
 						}
 					}
-					Span currSpan = null;
+					break;
+				case 6 :
+					if (currAC != null) {
+						fragment = cursor = createElement(uri, qName, atts);
+					}
+					break;
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public void endElement(String uri, String localName, String qName) {
+			if (fragment != null && cursor != fragment) {
+				cursor = (Element) cursor.getParentNode();
+			} else if (fragment != null) {
+				Element e = fragment;
+				fragment = cursor = null;
+				if (depth == 2) {
+					parseConfig(e, data);
+				} else {
 					try {
-						if (dataChild.hasAttribute("framespan")) {
-							currSpan =
-								Span.parseFrameSpan(
-									dataChild.getAttribute("framespan"));
-						} else if (dataChild.hasAttribute("timespan")) {
-							currSpan =
-								Span.parseTimeSpan(
-									dataChild.getAttribute("timespan"));
-						} else if (dataChild.hasAttribute("span")) {
-							String str = dataChild.getAttribute("span");
-							long change = Long.parseLong(str);
-							currSpan = new Span(start, start.go(change));
-						} else if (start != null) {
-							currSpan = new Span(start, (Instant) start.next());
-						}
-						if (currSpan != null) {
-							start = (Instant) currSpan.getEnd();
-						}
-						if (!currAC.isDynamic()) {
-							d.getAttribute(currAC).setAttrValue(attrObj);
-						} else {
-							d.getAttribute(currAC).setAttrValueAtSpan(
-								attrObj,
-								currSpan);
-						}
-					} catch (IllegalArgumentException iax) {
-						logger.log(Level.SEVERE, "Format error while parsing attribute", iax);
+						addValue(e);
+					} catch (NullPointerException npe) {
+						// skip the rest of the attribute, as parseAttr does
+						currAC = null;
+						logger.log(Level.SEVERE, "Missing important XML attribute.", npe);
 					}
 				}
+			} else {
+				switch (depth) {
+					case 2 :
+						inData = false;
+						break;
+					case 3 :
+						currFile = null;
+						break;
+					case 4 :
+						currDesc = null;
+						break;
+					case 5 :
+						flushPending();
+						currAC = null;
+						start = null;
+						break;
+				}
 			}
-		} catch (NullPointerException npe) {
-			logger.log(Level.SEVERE, "Missing important XML attribute.", npe);
+			depth--;
+		}
+
+		/**
+		 * Starts collecting the values of the current attribute, if it
+		 * is dynamic and doesn't have any values yet.
+		 */
+		private void startPending() {
+			pending = null;
+			currAttr = null;
+			if (currAC == null || !currAC.isDynamic()
+					|| !(currAC.getParams() instanceof AttrValueParser)) {
+				return;
+			}
+			Attribute a = currDesc.getAttribute(currAC);
+			if (a instanceof AttributeImpl && ((AttributeImpl) a).attrValue == null) {
+				currAttr = (AttributeImpl) a;
+				pending = new TimeEncodedList();
+				if (lazy) {
+					bytes.reset();
+					segment = new LazyAttributeValue.Segment(null, strings, currAttr);
+					lastLazy = null;
+				}
+			}
+		}
+
+		/**
+		 * Adds the value in the data element to the pending values, or 
+		 * sets it on the attribute if values are being set one at a time.
+		 */
+		private void addValue(Element e) {
+			if (pending == null) {
+				start = parseAttrValue(e, currDesc, currAC, start);
+				return;
+			}
+			Span span;
+			try {
+				span = parseValueSpan(e, start);
+			} catch (IllegalArgumentException iax) {
+				logger.log(Level.SEVERE, "Format error while parsing attribute", iax);
+				return;
+			}
+			if (span == null || (!pending.isEmpty()
+					&& span.isTimeBased() != pending.isTimeBased())) {
+				flushPending();
+				start = parseAttrValue(e, currDesc, currAC, start);
+				return;
+			}
+			start = (Instant) span.getEnd();
+			Object v = null;
+			if (!e.getLocalName().equals("null")) {
+				v = lazy ? encode(e) : decode(e);
+			}
+			if (v == null) {
+				pending.remove(span.getStart(), span.getEnd());
+			} else {
+				pending.set(span, v);
+			}
+		}
+
+		private Object decode(Element e) {
+			AttrValueParser pav = (AttrValueParser) currAC.getParams();
+			try {
+				return pav.setAttributeValue(pav.setValue(e, currAttr), currAttr);
+			} catch (IllegalArgumentException badx) {
+				logger.log(Level.SEVERE, "Cannot parse attribute value", badx);
+				return null;
+			}
+		}
+
+		/**
+		 * Adds the element to the attribute's segment. If it is the same
+		 * as the last value, it reuses that value's placeholder, so the
+		 * two runs are merged as they would be if they were parsed.
+		 */
+		private Object encode(Element e) {
+			e.removeAttribute("framespan");
+			e.removeAttribute("timespan");
+			e.removeAttribute("span");
+			int offset = bytes.size();
+			try {
+				EncodedElements.write(bytesOut, e, strings);
+			} catch (IOException iox) {
+				throw new IllegalStateException(iox.getLocalizedMessage());
+			}
+			if (lastLazy != null && bytes.sameAsLast(lastOffset, offset)) {
+				bytes.truncate(offset);
+				return lastLazy;
+			}
+			lastOffset = offset;
+			lastLazy = new LazyAttributeValue(segment, offset);
+			return lastLazy;
+		}
+
+		/**
+		 * Sets the collected values on the attribute.
+		 */
+		private void flushPending() {
+			if (pending == null) {
+				return;
+			}
+			if (!pending.isEmpty()) {
+				if (lazy) {
+					segment.data = ByteBuffer.wrap(bytes.toByteArray());
+					currAttr.setLazyValues(pending);
+				} else {
+					currAttr.setAttrValueAtSpan(pending,
+						(InstantInterval) pending.getExtrema());
+				}
+			}
+			pending = null;
+			currAttr = null;
+			segment = null;
+			lastLazy = null;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		public void characters(char[] ch, int offset, int length) {
+			// the namespace correction drops text, so this does too
+			if (cursor != null && !correcting) {
+				cursor.appendChild(
+					scratch.createTextNode(new String(ch, offset, length)));
+			}
+		}
+	}
+
+	/**
+	 * The encoded values of an attribute, as they are written.
+	 */
+	private static final class SegmentBytes extends ByteArrayOutputStream {
+		/**
+		 * Tests to see if the bytes from <code>a</code> to 
+		 * <code>b</code> are the same as the bytes from <code>b</code> to
+		 * the end.
+		 */
+		boolean sameAsLast(int a, int b) {
+			if (b - a != count - b) {
+				return false;
+			}
+			for (int i = 0; i < b - a; i++) {
+				if (buf[a + i] != buf[b + i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		void truncate(int size) {
+			count = size;
 		}
 	}
 }
@@ -0,0 +1,615 @@
+/***************************************
+ *            ViPER                    *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *                                     *
+ *  Distributed under the GPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package viper.api.impl;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+import org.apache.xerces.dom.*;
+import org.w3c.dom.*;
+
+import viper.api.*;
+import viper.api.extensions.*;
+import viper.api.time.*;
+
+/**
+ * A compact binary copy of a viper file, kept next to it so that it can
+ * be reloaded without parsing the xml again. The snapshot records the
+ * length and modification time of the file it was made from, and
+ * {@link #isFresh(File, File)} checks them before it is used.
+ * <p>
+ * The file starts with a fixed header: the magic number, the
+ * {@link #VERSION}, the length and modification time of the source
+ * file, and the offsets of the config, index and string table sections.
+ * Integers after the header are variable length, seven bits to a byte,
+ * and every string is stored once, in the string table, and referred to
+ * by its index. The config section is the <code>config</code> element
+ * of the xml, stored as a tree of string indices, so that the
+ * {@link ViperParser} can read it exactly as it reads the xml. Each
+ * sourcefile is a list of descriptor records, each prefixed with its
+ * length in bytes. Dynamic attributes are stored as the runs of their
+ * <code>TimeEncodedList</code>s, each run as the gap since the end of the
+ * last one, its length, and the value's xml element, again as string
+ * indices.
+ * </p>
+ * <p>
+ * Snapshots are opened with a <code>MappedByteBuffer</code>. Opening one
+ * only reads the header and the sourcefile index; the config, each
+ * sourcefile and each string are decoded when they are first needed.
+ * If the parser passed to {@link #loadConfig(ViperParser)} is 
+ * {@link ViperParser#isLazy() lazy}, the values of dynamic attributes
+ * are left in the mapped file, and are only parsed when they are read.
+ * </p>
+ */
+public class ViperSnapshot implements EncodedElements.Strings {
+	/** The suffix added to the name of a viper file to get its snapshot. */
+	public static final String SUFFIX = ".snapshot";
+
+	/**
+	 * The version of the format. Snapshots with a different version are
+	 * never fresh.
+	 */
+	public static final int VERSION = 1;
+
+	/** The bytes "VPRS". */
+	private static final int MAGIC = 0x56505253;
+	private static final int HEADER_SIZE = 48;
+
+	private static final byte NO_RANGE = 0;
+	private static final byte FRAME_RANGE = 1;
+	private static final byte TIME_RANGE = 2;
+
+	private static final byte DEFAULT_VALUE = 0;
+	private static final byte NULL_VALUE = 1;
+	private static final byte ELEMENT_VALUE = 2;
+
+	private final ByteBuffer buf;
+	private final long configOffset;
+	private final int[] stringOffsets;
+	private final int[] stringLengths;
+	private final String[] strings;
+	private final List names = new ArrayList();
+	private final List offsets = new ArrayList();
+	private boolean lazy = false;
+
+	/**
+	 * Gets the snapshot file that goes with the given viper file.
+	 * @param source the viper file
+	 * @return the file with {@link #SUFFIX} appended to its name,
+	 * in the same directory
+	 */
+	public static File getSnapshotFile(File source) {
+		return new File(source.getPath() + SUFFIX);
+	}
+
+	/**
+	 * Tests to see if the snapshot was made from the current version of
+	 * the given file.
+	 * @param snapshot the snapshot file
+	 * @param source the viper file
+	 * @return <code>true</code> if the snapshot exists, has the current
+	 * version, and records the same length and modification time as the
+	 * viper file has now
+	 */
+	public static boolean isFresh(File snapshot, File source) {
+		if (!snapshot.isFile() || !source.isFile()) {
+			return false;
+		}
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(snapshot), HEADER_SIZE));
+			try {
+				return in.readInt() == MAGIC && in.readInt() == VERSION
+						&& in.readLong() == source.length()
+						&& in.readLong() == source.lastModified();
+			} finally {
+				in.close();
+			}
+		} catch (IOException iox) {
+			return false;
+		}
+	}
+
+	/**
+	 * Writes a snapshot of the data. It is written to a temporary file
+	 * first, and only replaces the old snapshot when it is complete.
+	 * @param v the data, which should be what was loaded from or saved
+	 * to the source file
+	 * @param snapshot the snapshot file to write
+	 * @param source the viper file the snapshot is a copy of
+	 * @throws IOException if there is an error while writing, or the
+	 * snapshot would be too large to map into memory
+	 */
+	public static void write(ViperData v, File snapshot, File source)
+			throws IOException {
+		File tmp = new File(snapshot.getPath() + ".tmp");
+		long[] sections;
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(tmp), 1 << 16));
+		try {
+			sections = new SnapshotWriter(out).write(v);
+		} finally {
+			out.close();
+		}
+		RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+		try {
+			raf.writeInt(MAGIC);
+			raf.writeInt(VERSION);
+			raf.writeLong(source.length());
+			raf.writeLong(source.lastModified());
+			for (int i = 0; i < sections.length; i++) {
+				raf.writeLong(sections[i]);
+			}
+		} finally {
+			raf.close();
+		}
+		if (snapshot.exists() && !snapshot.delete()) {
+			tmp.delete();
+			throw new IOException("Cannot replace snapshot " + snapshot);
+		}
+		if (!tmp.renameTo(snapshot)) {
+			tmp.delete();
+			throw new IOException("Cannot rename snapshot " + tmp);
+		}
+	}
+
+	/**
+	 * Opens a snapshot file. This maps the file into memory and reads its
+	 * header and sourcefile index.
+	 * @param snapshot the snapshot file
+	 * @return the opened snapshot
+	 * @throws IOException if the file cannot be read, or isn't a snapshot
+	 * of the current version
+	 */
+	public static ViperSnapshot open(File snapshot) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(snapshot, "r");
+		try {
+			FileChannel ch = raf.getChannel();
+			if (ch.size() > Integer.MAX_VALUE) {
+				throw new IOException("Snapshot too large to map: " + snapshot);
+			}
+			return new ViperSnapshot(ch.map(FileChannel.MapMode.READ_ONLY, 0,
+					ch.size()));
+		} finally {
+			raf.close();
+		}
+	}
+
+	private ViperSnapshot(ByteBuffer buf) throws IOException {
+		this.buf = buf;
+		try {
+			if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+				throw new IOException("Not a version " + VERSION + " viper snapshot");
+			}
+			buf.getLong();
+			buf.getLong();
+			configOffset = buf.getLong();
+			long indexOffset = buf.getLong();
+			long stringsOffset = buf.getLong();
+
+			ByteBuffer b = at(stringsOffset);
+			int count = readInt(b);
+			stringOffsets = new int[count];
+			stringLengths = new int[count];
+			strings = new String[count];
+			for (int i = 0; i < count; i++) {
+				stringLengths[i] = readInt(b);
+				stringOffsets[i] = b.position();
+				b.position(b.position() + stringLengths[i]);
+			}
+
+			b = at(indexOffset);
+			count = readInt(b);
+			for (int i = 0; i < count; i++) {
+				names.add(readString(b));
+				offsets.add(new Long(readLong(b)));
+			}
+		} catch (RuntimeException rx) {
+			throw corrupt(rx);
+		}
+	}
+
+	/**
+	 * Gets the names of the sourcefiles in the snapshot, in the order
+	 * they appear in the file.
+	 * @return the sourcefile names
+	 */
+	public List getSourcefileNames() {
+		return Collections.unmodifiableList(names);
+	}
+
+	/**
+	 * Loads all the data in the snapshot.
+	 * @param parser the parser to use to read the configuration
+	 * @return the data
+	 * @throws IOException if the snapshot is corrupt
+	 */
+	public ViperData load(ViperParser parser) throws IOException {
+		ViperData v = loadConfig(parser);
+		for (int i = 0; i < names.size(); i++) {
+			loadSourcefile(i, v);
+		}
+		return v;
+	}
+
+	/**
+	 * Loads only the configuration. Sourcefiles may then be loaded into
+	 * the result as they are needed, with
+	 * {@link #loadSourcefile(String, ViperData)}.
+	 * @param parser the parser to use to read the configuration
+	 * @return data with the configuration and no sourcefiles
+	 * @throws IOException if the snapshot is corrupt
+	 */
+	public ViperData loadConfig(ViperParser parser) throws IOException {
+		try {
+			ViperDataImpl v = new ViperDataImpl();
+			lazy = parser.isLazy();
+			parser.parseConfig(EncodedElements.read(at(configOffset), this), v);
+			return v;
+		} catch (RuntimeException rx) {
+			throw corrupt(rx);
+		}
+	}
+
+	/**
+	 * Loads the descriptors of the named sourcefile.
+	 * @param name the name of the sourcefile
+	 * @param into the data to add the sourcefile to, which must have
+	 * the snapshot's configuration
+	 * @return the new sourcefile, or <code>null</code> if the snapshot
+	 * doesn't have one with the given name
+	 * @throws IOException if the snapshot is corrupt
+	 */
+	public Sourcefile loadSourcefile(String name, ViperData into)
+			throws IOException {
+		int i = names.indexOf(name);
+		return i < 0 ? null : loadSourcefile(i, into);
+	}
+
+	private Sourcefile loadSourcefile(int i, ViperData into) throws IOException {
+		try {
+			Sourcefile sf = into.createSourcefile((String) names.get(i));
+			ByteBuffer b = at(((Long) offsets.get(i)).longValue());
+			int count = readInt(b);
+			for (int j = 0; j < count; j++) {
+				int len = b.getInt();
+				int end = b.position() + len;
+				readDescriptor(b, sf, into);
+				b.position(end);
+			}
+			return sf;
+		} catch (RuntimeException rx) {
+			throw corrupt(rx);
+		}
+	}
+
+	private void readDescriptor(ByteBuffer b, Sourcefile sf, ViperData v) {
+		int type = b.get();
+		String name = readString(b);
+		int id = (int) readSigned(b);
+		Config cfg = v.getConfig(type, name);
+		if (cfg == null) {
+			// skip the rest of the record
+			return;
+		}
+		Descriptor d = sf.getDescriptor(type, name, id);
+		if (d == null) {
+			d = sf.createDescriptor(cfg, id);
+		}
+		byte kind = b.get();
+		if (kind != NO_RANGE) {
+			InstantRange range = new InstantRange();
+			int count = readInt(b);
+			long end = 0;
+			for (int i = 0; i < count; i++) {
+				long start = end + readSigned(b);
+				end = start + readLong(b);
+				range.add(instant(kind == TIME_RANGE, start),
+						instant(kind == TIME_RANGE, end));
+			}
+			if (type != Config.FILE) {
+				d.setValidRange(range);
+			}
+		}
+		int attrCount = readInt(b);
+		for (int i = 0; i < attrCount; i++) {
+			AttrConfig ac = cfg.getAttrConfig(readString(b));
+			Attribute a = d.getAttribute(ac);
+			AttrValueParser avp = (AttrValueParser) ac.getParams();
+			if (!ac.isDynamic()) {
+				byte state = b.get();
+				if (state == NULL_VALUE) {
+					a.setAttrValue(null);
+				} else if (state == ELEMENT_VALUE) {
+					a.setAttrValue(avp.setValue(EncodedElements.read(b, this), a));
+				}
+			} else {
+				// Setting each run on its own would copy the attribute's
+				// list for every undo event, so build the list and set it
+				// all at once. The runs don't overlap, so null runs can be
+				// left out.
+				TimeEncodedList tel = new TimeEncodedList();
+				LazyAttributeValue.Segment segment = null;
+				if (lazy && a instanceof AttributeImpl
+						&& ((AttributeImpl) a).attrValue == null) {
+					segment = new LazyAttributeValue.Segment(buf, this,
+							(AttributeImpl) a);
+				}
+				int runs = readInt(b);
+				long end = 0;
+				for (int j = 0; j < runs; j++) {
+					long start = end + readSigned(b);
+					long widthAndKind = readLong(b);
+					boolean time = (widthAndKind & 1) != 0;
+					end = start + (widthAndKind >>> 1);
+					if (b.get() != ELEMENT_VALUE) {
+						continue;
+					}
+					Span span = new Span(instant(time, start), instant(time, end));
+					if (segment != null) {
+						tel.set(span, new LazyAttributeValue(segment, b.position()));
+						EncodedElements.skip(b);
+					} else {
+						Object value = avp.setValue(EncodedElements.read(b, this), a);
+						tel.set(span, avp.setAttributeValue(value, a));
+					}
+				}
+				if (!tel.isEmpty() && segment != null) {
+					((AttributeImpl) a).setLazyValues(tel);
+				} else if (!tel.isEmpty()) {
+					a.setAttrValueAtSpan(tel, (InstantInterval) tel.getExtrema());
+				}
+			}
+		}
+	}
+
+	private static Instant instant(boolean time, long i) {
+		return time ? (Instant) new Time(i) : new Frame((int) i);
+	}
+
+	private String readString(ByteBuffer b) {
+		return getString(readInt(b));
+	}
+
+	/**
+	 * Gets a string from the snapshot's string table, decoding it if
+	 * this is the first time it has been asked for.
+	 * @param id the index of the string, starting from one
+	 * @return the string, or <code>null</code> if the index is zero
+	 */
+	public String getString(int id) {
+		int i = id - 1;
+		if (i < 0) {
+			return null;
+		} else if (strings[i] == null) {
+			byte[] bytes = new byte[stringLengths[i]];
+			at(stringOffsets[i]).get(bytes);
+			try {
+				strings[i] = new String(bytes, "UTF-8");
+			} catch (UnsupportedEncodingException uex) {
+				throw new IllegalStateException(uex.getLocalizedMessage());
+			}
+		}
+		return strings[i];
+	}
+
+	private ByteBuffer at(long offset) {
+		ByteBuffer b = buf.duplicate();
+		b.position((int) offset);
+		return b;
+	}
+
+	private static IOException corrupt(RuntimeException rx) {
+		IOException iox = new IOException("Corrupt viper snapshot: " + rx);
+		iox.initCause(rx);
+		return iox;
+	}
+
+	private static int readInt(ByteBuffer b) {
+		return EncodedElements.readInt(b);
+	}
+
+	private static long readLong(ByteBuffer b) {
+		return EncodedElements.readLong(b);
+	}
+
+	private static long readSigned(ByteBuffer b) {
+		return EncodedElements.readSigned(b);
+	}
+
+	/**
+	 * Writes the body of a snapshot: everything but the header, which
+	 * depends on where the sections end up.
+	 */
+	private static final class SnapshotWriter {
+		private final DataOutputStream out;
+		private final EncodedElements.StringTable table = new EncodedElements.StringTable();
+		private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+		private final DataOutputStream recordOut = new DataOutputStream(record);
+
+		SnapshotWriter(DataOutputStream out) {
+			this.out = out;
+		}
+
+		/**
+		 * Writes the data, returning the offsets of the config, index
+		 * and string sections.
+		 */
+		long[] write(ViperData v) throws IOException {
+			out.write(new byte[HEADER_SIZE]);
+
+			long configOffset = out.size();
+			Element root = XmlSerializer.toXmlConfigOnly(v,
+					DOMImplementationImpl.getDOMImplementation());
+			writeElement(out, (Element) root.getElementsByTagNameNS(
+					ViperData.ViPER_SCHEMA_URI, "config").item(0));
+
+			List sfNames = new ArrayList();
+			List sfOffsets = new ArrayList();
+			for (Iterator iter = v.getAllSourcefiles().iterator(); iter.hasNext();) {
+				Sourcefile sf = (Sourcefile) iter.next();
+				String name = sf.getReferenceMedia().getSourcefileName();
+				sfNames.add(name == null ? "" : name);
+				sfOffsets.add(new Long(out.size()));
+				writeSourcefile(sf);
+			}
+
+			long indexOffset = checkSize();
+			writeLong(out, sfNames.size());
+			for (int i = 0; i < sfNames.size(); i++) {
+				writeString(out, (String) sfNames.get(i));
+				writeLong(out, ((Long) sfOffsets.get(i)).longValue());
+			}
+
+			long stringsOffset = checkSize();
+			List strings = table.getStrings();
+			writeLong(out, strings.size());
+			for (Iterator iter = strings.iterator(); iter.hasNext();) {
+				byte[] bytes = ((String) iter.next()).getBytes("UTF-8");
+				writeLong(out, bytes.length);
+				out.write(bytes);
+			}
+			checkSize();
+			return new long[] {configOffset, indexOffset, stringsOffset};
+		}
+
+		private long checkSize() throws IOException {
+			if (out.size() == Integer.MAX_VALUE) {
+				throw new IOException("Snapshot too large to map");
+			}
+			return out.size();
+		}
+
+		private void writeSourcefile(Sourcefile sf) throws IOException {
+			List descs = new ArrayList();
+			for (Iterator iter = sf.getDescriptors(); iter.hasNext();) {
+				descs.add(iter.next());
+			}
+			writeLong(out, descs.size());
+			for (Iterator iter = descs.iterator(); iter.hasNext();) {
+				record.reset();
+				writeDescriptor(recordOut, (Descriptor) iter.next());
+				out.writeInt(record.size());
+				record.writeTo(out);
+			}
+			checkSize();
+		}
+
+		private void writeDescriptor(DataOutputStream o, Descriptor d)
+				throws IOException {
+			o.writeByte(d.getDescType());
+			writeString(o, d.getDescName());
+			writeSigned(o, d.getDescId());
+			InstantRange validity = d.getValidRange();
+			if (validity == null || validity.isEmpty()
+					|| !(validity.isFrameBased() || validity.isTimeBased())) {
+				o.writeByte(NO_RANGE);
+			} else {
+				o.writeByte(validity.isFrameBased() ? FRAME_RANGE : TIME_RANGE);
+				List intervals = new ArrayList();
+				for (Iterator iter = validity.iterator(); iter.hasNext();) {
+					intervals.add(iter.next());
+				}
+				writeLong(o, intervals.size());
+				long end = 0;
+				for (Iterator iter = intervals.iterator(); iter.hasNext();) {
+					InstantInterval curr = (InstantInterval) iter.next();
+					long start = curr.getStartInstant().longValue();
+					writeSigned(o, start - end);
+					end = curr.getEndInstant().longValue();
+					writeLong(o, end - start);
+				}
+			}
+
+			List attrs = new ArrayList();
+			for (Iterator iter = d.getAttributes(); iter.hasNext();) {
+				Attribute a = (Attribute) iter.next();
+				if (a.getAttrConfig().getParams() instanceof AttrValueParser) {
+					attrs.add(a);
+				}
+			}
+			writeLong(o, attrs.size());
+			for (Iterator iter = attrs.iterator(); iter.hasNext();) {
+				writeAttribute(o, (Attribute) iter.next());
+			}
+		}
+
+		/**
+		 * Writes the attribute value the same way the xml serializer
+		 * does, so that loading the snapshot gives the same result as
+		 * loading the xml.
+		 */
+		private void writeAttribute(DataOutputStream o, Attribute a)
+				throws IOException {
+			AttrConfig ac = a.getAttrConfig();
+			AttrValueParser avp = (AttrValueParser) ac.getParams();
+			writeString(o, a.getAttrName());
+			if (!ac.isDynamic()) {
+				Object def = ac.getDefaultVal();
+				Object val = a.getAttrValue();
+				if (val == null) {
+					o.writeByte(def != null ? NULL_VALUE : DEFAULT_VALUE);
+				} else if (def == null || !def.equals(val)) {
+					o.writeByte(ELEMENT_VALUE);
+					writeElement(o, avp.getXMLFormat(EncodedElements.getScratch(), avp
+							.setAttributeValue(val, a), null));
+				} else {
+					o.writeByte(DEFAULT_VALUE);
+				}
+				return;
+			}
+			List runs = new ArrayList();
+			for (Iterator iter = a.iterator(); iter.hasNext();) {
+				runs.add(iter.next());
+			}
+			writeLong(o, runs.size());
+			long end = 0;
+			for (Iterator iter = runs.iterator(); iter.hasNext();) {
+				DynamicAttributeValue curr = (DynamicAttributeValue) iter.next();
+				long start = curr.getStartInstant().longValue();
+				writeSigned(o, start - end);
+				end = curr.getEndInstant().longValue();
+				writeLong(o, ((end - start) << 1) | (curr.isTimeBased() ? 1 : 0));
+				if (curr.getValue() == null) {
+					o.writeByte(NULL_VALUE);
+				} else {
+					o.writeByte(ELEMENT_VALUE);
+					writeElement(o, avp.getXMLFormat(EncodedElements.getScratch(), avp
+							.setAttributeValue(curr.getValue(), null), null));
+				}
+			}
+		}
+
+		private void writeElement(DataOutputStream o, Element e)
+				throws IOException {
+			EncodedElements.write(o, e, table);
+		}
+
+		private void writeString(DataOutputStream o, String s)
+				throws IOException {
+			writeLong(o, table.idOf(s));
+		}
+
+		private static void writeSigned(DataOutputStream o, long v)
+				throws IOException {
+			EncodedElements.writeSigned(o, v);
+		}
+
+		private static void writeLong(DataOutputStream o, long v)
+				throws IOException {
+			EncodedElements.writeLong(o, v);
+		}
+	}
+}
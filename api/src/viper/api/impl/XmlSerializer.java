@@ -14,10 +14,12 @@ package viper.api.impl;
 
 import java.io.*;
 import java.util.*;
+import java.util.zip.*;
 
 import org.apache.xerces.dom.*;
 import org.apache.xml.serialize.*;
 import org.w3c.dom.*;
+import org.w3c.dom.Node;
 
 import viper.api.*;
 import viper.api.extensions.*;
@@ -112,20 +114,316 @@ public class XmlSerializer {
 		return el;
 	}
 	/**
-	 * Writes the data as xml.
+	 * Writes the data as xml. This streams the data directly to the
+	 * writer, without building a DOM tree first.
 	 * @param v the data
 	 * @param pw the target writer
 	 * @throws IOException if there is an error while writing
 	 */
 	public static void toWriter(ViperData v, PrintWriter pw)
 		throws IOException {
-		DOMImplementation domI = DOMImplementationImpl.getDOMImplementation();
-		Element root = toXml(v, domI);
-		OutputFormat format = new OutputFormat();
-		format.setIndenting(true);
-		format.setOmitXMLDeclaration(false);
-		new XMLSerializer(pw, format).serialize(root);
+		toWriter(v, (Writer) pw);
+		if (pw.checkError()) {
+			throw new IOException("Error while writing viper data");
+		}
+	}
+
+	/**
+	 * Writes the data as xml. This streams the data directly to the
+	 * writer, without building a DOM tree first, so it only uses a
+	 * constant amount of memory beyond the data itself. The writer is
+	 * flushed, but not closed.
+	 * @param v the data
+	 * @param w the target writer
+	 * @throws IOException if there is an error while writing
+	 */
+	public static void toWriter(ViperData v, Writer w) throws IOException {
+		Writer out = new BufferedWriter(w, BUFFER_SIZE);
+		new StreamingWriter(out).writeData(v);
+		out.flush();
+	}
+
+	/**
+	 * Writes the data as UTF-8 encoded xml to the given stream, optionally
+	 * compressing it with gzip. The {@link ViperParser} recognizes 
+	 * compressed files when it loads them. The stream is flushed, but
+	 * not closed.
+	 * @param v the data
+	 * @param out the target stream
+	 * @param gzip whether to compress the xml
+	 * @throws IOException if there is an error while writing
+	 */
+	public static void toStream(ViperData v, OutputStream out, boolean gzip)
+		throws IOException {
+		OutputStream os = gzip ? new GZIPOutputStream(out, BUFFER_SIZE)
+				: out;
+		toWriter(v, new OutputStreamWriter(os, "UTF-8"));
+		if (gzip) {
+			((GZIPOutputStream) os).finish();
+		}
+		os.flush();
+	}
+
+	/**
+	 * Saves the data as xml to the given file, optionally compressing it
+	 * with gzip.
+	 * @param v the data
+	 * @param f the file to write
+	 * @param gzip whether to compress the xml
+	 * @throws IOException if there is an error while writing
+	 */
+	public static void toFile(ViperData v, File f, boolean gzip)
+		throws IOException {
+		OutputStream out = new FileOutputStream(f);
+		try {
+			toStream(v, out, gzip);
+		} finally {
+			out.close();
+		}
+	}
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Writes viper data as indented xml, in the same form as the DOM
+	 * serializer, but one element at a time. Structural elements are 
+	 * written directly; attribute values are still converted to small
+	 * DOM elements by their {@link AttrValueParser}s, on a scratch
+	 * document, and then written out and discarded. Xml attributes are
+	 * written in alphabetical order, as the DOM serializer does.
+	 */
+	private static final class StreamingWriter {
+		private static final String INDENT = "    ";
+		private final Writer out;
+		private final Document scratch = new DocumentImpl();
+		private final LinkedList open = new LinkedList();
+		private boolean tagOpen = false;
+		private boolean hasText = false;
+
+		StreamingWriter(Writer out) {
+			this.out = out;
+		}
+
+		void writeData(ViperData v) throws IOException {
+			out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+			start(ViperData.ViPER_SCHEMA_QUALIFIER + "viper");
+			attr(qualifier2xmlnsAttr(ViperData.ViPER_SCHEMA_QUALIFIER),
+					ViperData.ViPER_SCHEMA_URI);
+			attr(qualifier2xmlnsAttr(ViperData.ViPER_DATA_QUALIFIER),
+					ViperData.ViPER_DATA_URI);
+			start(ViperData.ViPER_SCHEMA_QUALIFIER + "config");
+			for (Iterator iter = v.getAllConfigs().iterator(); iter.hasNext();) {
+				writeConfig((Config) iter.next());
+			}
+			end();
+			start(ViperData.ViPER_SCHEMA_QUALIFIER + "data");
+			for (Iterator iter = v.getAllSourcefiles().iterator(); iter.hasNext();) {
+				writeSourcefile((Sourcefile) iter.next());
+			}
+			end();
+			end();
+			out.write('\n');
+		}
+
+		private void writeConfig(Config cfg) throws IOException {
+			start(ViperData.ViPER_SCHEMA_QUALIFIER + "descriptor");
+			attr("name", cfg.getDescName());
+			attr("type", Util.getDescType(cfg.getDescType()));
+			for (Iterator i = cfg.getAttributeConfigs(); i.hasNext();) {
+				writeAttrConfig((AttrConfig) i.next());
+			}
+			end();
+		}
+
+		private void writeAttrConfig(AttrConfig a) throws IOException {
+			start(ViperData.ViPER_SCHEMA_QUALIFIER + "attribute");
+			attr("dynamic", String.valueOf(a.isDynamic()));
+			attr("name", a.getAttrName());
+			attr("type", a.getAttrType());
+			AttrValueWrapper wr = a.getParams();
+			if (wr instanceof ExtendedAttrValueParser) {
+				Element exEl = ((ExtendedAttrValueParser) wr).getXMLFormatConfig(scratch, a);
+				if (exEl != null) {
+					writeElement(exEl);
+				}
+			}
+			if ((a.getDefaultVal() != null) && (wr instanceof AttrValueParser)) {
+				AttrValueParser pav = (AttrValueParser) wr;
+				start(ViperData.ViPER_SCHEMA_QUALIFIER + "default");
+				writeElement(pav.getXMLFormat(scratch, pav.setAttributeValue(a.getDefaultVal(), a), null));
+				end();
+			}
+			end();
+		}
+
+		private void writeSourcefile(Sourcefile sf) throws IOException {
+			start(ViperData.ViPER_SCHEMA_QUALIFIER + "sourcefile");
+			MediaElement rm = sf.getReferenceMedia();
+			if (rm.getSourcefileName() != null
+				&& rm.getSourcefileName().length() > 0) {
+				attr("filename", rm.getSourcefileName());
+			}
+			for (Iterator i = sf.getDescriptors(); i.hasNext();) {
+				writeDescriptor((Descriptor) i.next());
+			}
+			end();
+		}
+
+		private void writeDescriptor(Descriptor d) throws IOException {
+			start(ViperData.ViPER_SCHEMA_QUALIFIER + Util.getDescType(d.getDescType()).toLowerCase());
+			InstantRange validity = d.getValidRange();
+			if (validity != null && validity.isFrameBased()) {
+				attr("framespan", rangeToString(validity));
+			}
+			attr("id", String.valueOf(d.getDescId()));
+			attr("name", d.getDescName());
+			if (validity != null && !validity.isFrameBased() && validity.isTimeBased()) {
+				attr("timespan", rangeToString(validity));
+			}
+			for (Iterator i = d.getAttributes(); i.hasNext();) {
+				writeAttribute((Attribute) i.next());
+			}
+			end();
+		}
+
+		private void writeAttribute(Attribute a) throws IOException {
+			start(ViperData.ViPER_SCHEMA_QUALIFIER + "attribute");
+			attr("name", a.getAttrName());
+			AttrConfig cfg = a.getAttrConfig();
+			Object def = cfg.getDefaultVal();
+			if (!cfg.isDynamic()) {
+				if (a.getAttrValue() == null) {
+					if (def != null) {
+						writeElement(nullXML(scratch));
+					}
+				} else if (def == null || !def.equals(a.getAttrValue())) {
+					if (cfg.getParams() instanceof AttrValueParser) {
+						AttrValueParser avp = (AttrValueParser) cfg.getParams();
+						Object encoded = avp.setAttributeValue(a.getAttrValue(), a);
+						writeElement(avp.getXMLFormat(scratch, encoded, null));
+					}
+				}
+			} else if (cfg.getParams() instanceof AttrValueParser) {
+				AttrValueParser avp = (AttrValueParser) cfg.getParams();
+				for (Iterator iter = a.iterator(); iter.hasNext();) {
+					DynamicAttributeValue curr = (DynamicAttributeValue) iter.next();
+					Object encoded = avp.setAttributeValue(curr.getValue(), null);
+					Element child = avp.getXMLFormat(scratch, encoded, null);
+					if (curr.isFrameBased()) {
+						child.setAttribute("framespan", Util.valueOf(curr));
+					} else if (curr.isTimeBased()) {
+						child.setAttribute("timespan", Util.valueOf(curr));
+					}
+					writeElement(child);
+				}
+			}
+			end();
+		}
+
+		/**
+		 * Writes out a detached DOM element and its children.
+		 */
+		private void writeElement(Element el) throws IOException {
+			start(el.getTagName());
+			NamedNodeMap attrs = el.getAttributes();
+			for (int i = 0; i < attrs.getLength(); i++) {
+				Node n = attrs.item(i);
+				attr(n.getNodeName(), n.getNodeValue());
+			}
+			for (Node n = el.getFirstChild(); n != null; n = n.getNextSibling()) {
+				switch (n.getNodeType()) {
+					case Node.ELEMENT_NODE :
+						writeElement((Element) n);
+						break;
+					case Node.TEXT_NODE :
+					case Node.CDATA_SECTION_NODE :
+						text(n.getNodeValue());
+						break;
+				}
+			}
+			end();
+		}
+
+		private void start(String name) throws IOException {
+			if (tagOpen) {
+				out.write('>');
+			}
+			out.write('\n');
+			indent(open.size());
+			out.write('<');
+			out.write(name);
+			open.addLast(name);
+			tagOpen = true;
+			hasText = false;
+		}
+
+		private void attr(String name, String value) throws IOException {
+			out.write(' ');
+			out.write(name);
+			out.write("=\"");
+			escape(value, true);
+			out.write('"');
+		}
+
+		private void text(String value) throws IOException {
+			if (value.trim().length() == 0) {
+				return;
+			}
+			if (tagOpen) {
+				out.write('>');
+				tagOpen = false;
+			}
+			escape(value, false);
+			hasText = true;
+		}
+
+		private void end() throws IOException {
+			String name = (String) open.removeLast();
+			if (tagOpen) {
+				out.write("/>");
+			} else {
+				if (!hasText) {
+					out.write('\n');
+					indent(open.size());
+				}
+				out.write("</");
+				out.write(name);
+				out.write('>');
+			}
+			tagOpen = false;
+			hasText = false;
+		}
+
+		private void indent(int depth) throws IOException {
+			for (int i = 0; i < depth; i++) {
+				out.write(INDENT);
+			}
+		}
+
+		private void escape(String s, boolean inAttribute) throws IOException {
+			int last = 0;
+			for (int i = 0; i < s.length(); i++) {
+				String replacement;
+				switch (s.charAt(i)) {
+					case '&' : replacement = "&amp;"; break;
+					case '<' : replacement = "&lt;"; break;
+					case '>' : replacement = "&gt;"; break;
+					case '"' : replacement = inAttribute ? "&quot;" : null; break;
+					case '\n' : replacement = inAttribute ? "&#10;" : null; break;
+					case '\r' : replacement = "&#13;"; break;
+					case '\t' : replacement = inAttribute ? "&#9;" : null; break;
+					default : replacement = null;
+				}
+				if (replacement != null) {
+					out.write(s, last, i - last);
+					out.write(replacement);
+					last = i + 1;
+				}
+			}
+			out.write(s, last, s.length() - last);
+		}
 	}
+
 	private static Element helpWithConfig(Config cfg, Document root) {
 		Element el = root.createElementNS(ViperData.ViPER_SCHEMA_URI, ViperData.ViPER_SCHEMA_QUALIFIER+"descriptor");
 		el.setAttribute("name", cfg.getDescName());
@@ -71,7 +71,7 @@ public class DescriptorTimeDragHandler extends BasicTimeLineInputEventAdapter {
 	public void mouseMoved(TimeLineInputEvent event) {
 	}
 	public void mouseClicked(TimeLineInputEvent event) {
-		if (line == null && event.getTimeLine() != null && (event.getInstant() == null || !viewer.getModel().getFocus().contains(event.getInstant()))) {
+		if (line == null && event.getTimeLine() instanceof ViperNodeTimeLine && (event.getInstant() == null || !viewer.getModel().getFocus().contains(event.getInstant()))) {
 			viewer.getMediator().getSelection().setTo(((ViperNodeTimeLine) event.getTimeLine()).getNode());
 		}
 	}
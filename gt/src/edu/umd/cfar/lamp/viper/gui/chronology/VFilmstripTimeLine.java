@@ -0,0 +1,108 @@
+/***************************************
+ *            ViPER                    *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *                                     *
+ *  Distributed under the GPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package edu.umd.cfar.lamp.viper.gui.chronology;
+
+import java.util.*;
+
+import javax.swing.*;
+import javax.swing.event.*;
+
+import viper.api.time.*;
+import edu.umd.cfar.lamp.chronicle.*;
+import edu.umd.cfar.lamp.viper.gui.players.*;
+import edu.umd.cs.piccolo.*;
+
+/**
+ * A timeline of thumbnails of the media, so the user can see where
+ * they are in the video. The thumbnails come from the data player,
+ * which makes them in the background; the line repaints itself as
+ * they come in.
+ */
+class VFilmstripTimeLine implements TimeLine {
+	private DataPlayer player;
+	/// the node the line was last drawn in, to repaint
+	private PNode view;
+	private ChangeListener repainter = new ChangeListener() {
+		public void stateChanged(ChangeEvent e) {
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					if (view != null) {
+						view.repaint();
+					}
+				}
+			});
+		}
+	};
+
+	public VFilmstripTimeLine(DataPlayer player) {
+		this.player = player;
+		player.addThumbnailListener(repainter);
+	}
+
+	/**
+	 * Stops listening for new thumbnails, for when the line is no
+	 * longer shown.
+	 */
+	public void dispose() {
+		player.removeThumbnailListener(repainter);
+		view = null;
+	}
+
+	public DataPlayer getPlayer() {
+		return player;
+	}
+	void setView(PNode view) {
+		this.view = view;
+	}
+
+	public TemporalRange getMyRange() {
+		InstantRange r = new InstantRange();
+		r.add(player.getSpan());
+		return r;
+	}
+	public Iterator getChildren() {
+		return Collections.EMPTY_LIST.iterator();
+	}
+	public int getNumberOfChildren() {
+		return 0;
+	}
+	public String getTitle() {
+		return "Video";
+	}
+	public String getSingularName() {
+		return "filmstrip";
+	}
+	public String getPluralName() {
+		return "filmstrips";
+	}
+	public boolean hasInterpolatedInformation() {
+		return false;
+	}
+	public InstantRange getInterpolatedOverRange() {
+		throw new UnsupportedOperationException();
+	}
+
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		} else if (o instanceof VFilmstripTimeLine) {
+			return ((VFilmstripTimeLine) o).player == this.player;
+		} else {
+			return false;
+		}
+	}
+
+	public int hashCode() {
+		return player.hashCode();
+	}
+}
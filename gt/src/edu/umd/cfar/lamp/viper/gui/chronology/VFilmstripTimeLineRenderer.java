@@ -0,0 +1,99 @@
+/***************************************
+ *            ViPER                    *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *                                     *
+ *  Distributed under the GPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package edu.umd.cfar.lamp.viper.gui.chronology;
+
+import java.awt.*;
+
+import javax.swing.*;
+
+import viper.api.time.*;
+import edu.umd.cfar.lamp.chronicle.*;
+import edu.umd.cfar.lamp.viper.gui.players.*;
+import edu.umd.cs.piccolo.*;
+import edu.umd.cs.piccolo.util.*;
+
+/**
+ * Draws a {@link VFilmstripTimeLine} as a row of thumbnails, each
+ * showing the video at the time under its leading edge. Only the
+ * thumbnails in the clip are asked for, so zooming in on a long video
+ * doesn't look at the rest.
+ */
+public class VFilmstripTimeLineRenderer extends AdapterForTimeLineRenderer {
+	/**
+	 * Creates a new renderer with room for 40 pixel high thumbnails.
+	 */
+	public VFilmstripTimeLineRenderer() {
+		super();
+		setPreferredTimeLineInfoLength(40);
+	}
+
+	public PNode getTimeLineRendererNode(ChronicleViewer chronicle, TimeLine t,
+			boolean isSelected, boolean hasFocus, double timeLength,
+			double infoLength, int orientation) {
+		VFilmstripTimeLine line = (VFilmstripTimeLine) t;
+		FilmstripNode n = new FilmstripNode(line.getPlayer(), chronicle.getModel().getFocus(), orientation);
+		boolean vertical = orientation == SwingConstants.VERTICAL;
+		n.setBounds(0, 0, vertical ? infoLength : timeLength, vertical ? timeLength : infoLength);
+		line.setView(n);
+		return n;
+	}
+
+	private static class FilmstripNode extends PNode {
+		private DataPlayer player;
+		private InstantInterval era;
+		private boolean vertical;
+
+		FilmstripNode(DataPlayer player, InstantInterval era, int orientation) {
+			this.player = player;
+			this.era = era;
+			this.vertical = orientation == SwingConstants.VERTICAL;
+		}
+
+		protected void paint(PPaintContext paintContext) {
+			PBounds b = getBoundsReference();
+			double along = vertical ? b.getHeight() : b.getWidth();
+			double across = vertical ? b.getWidth() : b.getHeight();
+			if (era == null || along <= 0 || across <= 0) {
+				return;
+			}
+			Graphics2D g2 = paintContext.getGraphics();
+			Rectangle clip = g2.getClipBounds();
+			double from = 0;
+			double to = along;
+			if (clip != null) {
+				from = Math.max(0, vertical ? clip.getMinY() - b.getY() : clip.getMinX() - b.getX());
+				to = Math.min(along, vertical ? clip.getMaxY() - b.getY() : clip.getMaxX() - b.getX());
+			}
+
+			// each slot is as long as a thumbnail scaled to fit across the line
+			Image first = player.getThumbnail(era.getStartInstant());
+			double slot = across * 4 / 3;
+			if (first != null && first.getWidth(null) > 0 && first.getHeight(null) > 0) {
+				slot = across * first.getWidth(null) / first.getHeight(null);
+			}
+			long width = era.width();
+			Instant start = era.getStartInstant();
+			for (double at = Math.floor(from / slot) * slot; at < to; at += slot) {
+				Image thumb = player.getThumbnail(start.go((long) (at * width / along)));
+				if (thumb == null) {
+					continue;
+				}
+				int x = (int) (b.getX() + (vertical ? 0 : at));
+				int y = (int) (b.getY() + (vertical ? at : 0));
+				int w = (int) Math.ceil(vertical ? across : slot);
+				int h = (int) Math.ceil(vertical ? slot : across);
+				g2.drawImage(thumb, x, y, w, h, null);
+			}
+		}
+	}
+}
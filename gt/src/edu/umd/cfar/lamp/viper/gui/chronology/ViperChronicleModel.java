@@ -19,6 +19,7 @@ import viper.api.time.*;
 import edu.umd.cfar.lamp.chronicle.*;
 import edu.umd.cfar.lamp.chronicle.extras.*;
 import edu.umd.cfar.lamp.viper.gui.core.*;
+import edu.umd.cfar.lamp.viper.gui.players.*;
 
 class ViperChronicleModel extends TreeChronicleViewModel {
 	private ViperViewMediator mediator = null;
@@ -92,8 +93,18 @@ class ViperChronicleModel extends TreeChronicleViewModel {
 
 	private void massChange(Object src) {
 		Sourcefile sf = mediator.getCurrFile();
+		for (Iterator iter = roots.iterator(); iter.hasNext(); ) {
+			Object old = iter.next();
+			if (old instanceof VFilmstripTimeLine) {
+				((VFilmstripTimeLine) old).dispose();
+			}
+		}
 		this.roots.clear();
 		if (sf != null) {
+			DataPlayer dp = mediator.getDataPlayer();
+			if (dp != null && dp.hasThumbnails()) {
+				this.roots.add(new VFilmstripTimeLine(dp));
+			}
 			Iterator cfgs = mediator.getViperData().getConfigs();
 			while (cfgs.hasNext()) {
 				Config c = (Config) cfgs.next();
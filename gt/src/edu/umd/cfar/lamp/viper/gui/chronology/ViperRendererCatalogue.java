@@ -29,6 +29,9 @@ public class ViperRendererCatalogue implements RendererCatalogue {
 		if (tqe instanceof VDescriptorTimeLine) {
 			return wrapRenderer(new VDescriptorTimeLineRenderer());
 		}
+		if (tqe instanceof VFilmstripTimeLine) {
+			return wrapRenderer(new VFilmstripTimeLineRenderer());
+		}
 		return this.defaultTimeLineRenderer;
 	}
 
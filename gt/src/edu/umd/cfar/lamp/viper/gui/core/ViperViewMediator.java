@@ -166,6 +166,7 @@ public class ViperViewMediator {
 		resetEnabledActions();
 		clearTimeFocus();
 		this.vp = new ViperParser();
+		this.vp.setUsingSnapshots(true);
 		this.markerModel = new DefaultChronicleMarkerModel();
 	}
 
@@ -1602,23 +1603,26 @@ public class ViperViewMediator {
 	}
 
 	/**
-	 * Tries to save to the given file name.
+	 * Tries to save to the given file name. Files whose names end in 
+	 * <code>.gz</code> are compressed.
 	 * @param f the file to save to
 	 * @return <code>true</code> if the file saved successfully
 	 * @throws IOException
 	 */
 	private boolean saveToFile(File f) throws IOException {
   		File tmpSave = File.createTempFile("_gtf-", f.getName(), f.getParentFile());
- 		PrintWriter pw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(tmpSave), "UTF-8"));
-  		try {
-  			XmlSerializer.toWriter(getViperData(), pw);
-  		} finally {
-			pw.close();
-		}
+  		XmlSerializer.toFile(getViperData(), tmpSave, f.getName().endsWith(".gz"));
 		if (f.exists() && !f.delete()) {
 			return false;
 		}
 		if (tmpSave.renameTo(f)) {
+			if (vp.isUsingSnapshots()) {
+				try {
+					ViperSnapshot.write(getViperData(), ViperSnapshot.getSnapshotFile(f), f);
+				} catch (IOException iox) {
+					logger.log(Level.WARNING, "Unable to write snapshot of " + f, iox);
+				}
+			}
 			setBackingFileNameWithoutReload(f.toURI());
 			modifyMostRecentlyUsed(getFileName());
 			undoHistoryManager.markSavedNow();
@@ -1655,6 +1659,7 @@ public class ViperViewMediator {
 				try {
 					f = new File(new URI(fileR.getURI()));
 					f.delete();
+					ViperSnapshot.getSnapshotFile(f).delete();
 				} catch (URISyntaxException e) {
 					logger.log(Level.WARNING,
 							"Unable to delete specified local history entry: "
@@ -1870,8 +1875,8 @@ public class ViperViewMediator {
 				userDir = new File(System.getProperty("user.dir"));
 			}
 			histFile = File.createTempFile("_gtf-", ".xgtf", userDir);
-			XmlSerializer.toWriter(getViperData(), new PrintWriter(
-					new OutputStreamWriter(new FileOutputStream(histFile), "UTF-8")));
+			// autosaves are only read back by the parser, so compress them
+			XmlSerializer.toFile(getViperData(), histFile, true);
 			Resource savedAs = toAdd.createResource(histFile.toURI()
 					.toASCIIString());
 
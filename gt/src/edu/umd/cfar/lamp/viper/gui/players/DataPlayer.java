@@ -21,8 +21,10 @@ import java.util.logging.*;
 
 import javax.imageio.*;
 import javax.swing.*;
+import javax.swing.event.*;
 
 import viper.api.*;
+import viper.api.impl.*;
 import viper.api.time.*;
 import viper.api.time.Frame;
 import edu.umd.cfar.lamp.apploader.prefs.*;
@@ -249,6 +251,38 @@ public abstract class DataPlayer implements ListIterator {
 	 */
 	abstract public String getImageType(Instant i);
 
+	/**
+	 * Tests if the player can make thumbnails of the video, for showing
+	 * along a timeline.
+	 * 
+	 * @return <code>true</code> if {@link #getThumbnail(Instant)} can
+	 *         return anything
+	 */
+	public boolean hasThumbnails() {
+		return false;
+	}
+
+	/**
+	 * Gets a small picture of the video at or just before the given
+	 * instant. The thumbnails are made in the background once they are
+	 * first asked for, so they may not all be ready yet; listeners added
+	 * with {@link #addThumbnailListener(ChangeListener)} hear when
+	 * there are more.
+	 * 
+	 * @param i
+	 *            the instant to get a thumbnail for
+	 * @return the thumbnail, or <code>null</code> if there isn't one yet
+	 */
+	public Image getThumbnail(Instant i) {
+		return null;
+	}
+
+	public void addThumbnailListener(ChangeListener l) {
+	}
+
+	public void removeThumbnailListener(ChangeListener l) {
+	}
+
 	/**
 	 * Does any cleanup required.
 	 */
@@ -270,12 +304,17 @@ public abstract class DataPlayer implements ListIterator {
 	public static class ExtractFrames {
 		private static void printUsage() {
 			System.err
-					.println("DataPlayer.ExtractFrames (options) <inputFile> <outputDir>");
-			System.err.println(" --span=ss:xx");
-			// System.out.println(" --prefix=<output prefix>");
-			// System.out.println(" --decoder=<java class name of concrete class
-			// that extends DataPlayer>");
-			// System.out.println(" ");
+					.println("DataPlayer.ExtractFrames (options) <inputFile>... <outputDir>");
+			System.err.println(" --span=ss:xx      extract only the frames from ss to xx");
+			System.err.println(" --stride=n        extract every nth frame");
+			System.err.println(" --threads=n       encode with n threads");
+			System.err.println(" --queue=n         let at most n frames wait to be encoded");
+			System.err.println(" --reopen=n        open the video again every n frames; 0 never does");
+			System.err.println(" --format=png      the image format to write");
+			System.err.println(" --prefix=camera2- the start of each image's name");
+			System.err.println(" --metadata=<viper.xml> --crop=<descriptor>,...");
+			System.err.println("                   write only the regions of the given descriptors");
+			System.err.println(" --attribute=<name> the attribute with the region to crop to");
 		}
 
 		public static void main(String[] args) {
@@ -288,24 +327,60 @@ public abstract class DataPlayer implements ListIterator {
 			}
 			boolean argErr = false;
 			Span cropSpan = new Span(Frame.ALPHA, Frame.OMEGA);
-			int fileStartIndex = args.length - 2;
+			int stride = 1;
+			int threads = 0;
+			int queueSize = 0;
+			int reopenInterval = FrameExtractor.DEFAULT_REOPEN_INTERVAL;
+			String format = "png";
+			String prefix = "camera2-";
+			String metadata = null;
+			String attribute = null;
+			java.util.List crop = null;
+			int fileStartIndex = args.length - 1;
 			int dirIndex = args.length - 1;
-			for (int i = 0; i < args.length - 2; i++) {
-				if (args[i].startsWith("--span=")) {
-					cropSpan = Span.parseFrameSpan(args[i].substring("--span="
-							.length()));
-				} else if ("--".equals(args[i])) {
-					fileStartIndex = i + 1;
-					break;
-				} else if (!args[i].startsWith("--")) {
-					fileStartIndex = i;
-					break;
-				} else {
-					System.err.println("Unrecognized option: " + args[i]);
-					argErr = true;
+			try {
+				for (int i = 0; i < args.length - 1; i++) {
+					if (args[i].startsWith("--span=")) {
+						cropSpan = Span.parseFrameSpan(args[i].substring("--span="
+								.length()));
+					} else if (args[i].startsWith("--stride=")) {
+						stride = Integer.parseInt(args[i].substring("--stride=".length()));
+					} else if (args[i].startsWith("--threads=")) {
+						threads = Integer.parseInt(args[i].substring("--threads=".length()));
+					} else if (args[i].startsWith("--queue=")) {
+						queueSize = Integer.parseInt(args[i].substring("--queue=".length()));
+					} else if (args[i].startsWith("--reopen=")) {
+						reopenInterval = Integer.parseInt(args[i].substring("--reopen=".length()));
+					} else if (args[i].startsWith("--format=")) {
+						format = args[i].substring("--format=".length());
+					} else if (args[i].startsWith("--prefix=")) {
+						prefix = args[i].substring("--prefix=".length());
+					} else if (args[i].startsWith("--metadata=")) {
+						metadata = args[i].substring("--metadata=".length());
+					} else if (args[i].startsWith("--crop=")) {
+						crop = Arrays.asList(args[i].substring("--crop=".length()).split(","));
+					} else if (args[i].startsWith("--attribute=")) {
+						attribute = args[i].substring("--attribute=".length());
+					} else if ("--".equals(args[i])) {
+						fileStartIndex = i + 1;
+						break;
+					} else if (!args[i].startsWith("--")) {
+						fileStartIndex = i;
+						break;
+					} else {
+						System.err.println("Unrecognized option: " + args[i]);
+						argErr = true;
+					}
 				}
+			} catch (NumberFormatException nfx) {
+				System.err.println("Not a number: " + nfx.getMessage());
+				argErr = true;
 			}
-			if (argErr) {
+			if ((metadata == null) != (crop == null)) {
+				System.err.println("--metadata and --crop go together");
+				argErr = true;
+			}
+			if (argErr || fileStartIndex >= dirIndex) {
 				printUsage();
 				return;
 			}
@@ -315,82 +390,74 @@ public abstract class DataPlayer implements ListIterator {
 			}
 			File[] Fi = new File[dirIndex - fileStartIndex];
 			for (int i = fileStartIndex; i < dirIndex; i++) {
-				Fi[i] = new File(args[i]);
+				Fi[i - fileStartIndex] = new File(args[i]);
 			}
 
-			boolean framesFound;
 			try {
+				ViperData annotations = null;
+				if (metadata != null) {
+					annotations = new ViperParser().parseFromTextFile(new File(metadata).toURI());
+				}
 				for (int k = 0; k < Fi.length; k++) {
 					File outputDir = new File(mainOutputDirectory, Fi[k].getName());
-					if (!outputDir.exists()) {
-						outputDir.mkdirs();
+					// Some players leak memory, and can only decode so many
+					// frames before they have to be opened again.
+					FrameExtractor extractor = new FrameExtractor(Fi[k].toURI(), Fi[k], pref, outputDir);
+					DataPlayer d = extractor.getPlayer();
+					if (d.getRate().asFrame(d.getSpan()).isEmpty()) {
+						System.err.println("No frames found in " + Fi[k]);
+						d.destroy();
+						continue;
 					}
-					do {
-						// Some dataPlayers have memory leaks that prevent them
-						// from
-						// decoding more than some number of frames. Here we set
-						// the number of frames to use with one decoder before
-						// loading a new one. (Pretty much only necessary for
-						// quicktime for java on a mac, I hope2.)
-						int HACK_LIMIT = 40;
-						framesFound = false;
-						DataPlayer d = DataPlayer.createDataPlayer(Fi[k].toURI(), Fi[k], pref);
-						InstantInterval i = d.getRate().asFrame(d.getSpan());
-						if (i.isEmpty()) {
-							System.err.println("No frames found in file");
-							return;
-						}
-						Instant si = i.getStart()
-								.compareTo(cropSpan.getStart()) > 0 ? i
-								.getStartInstant() : cropSpan.getStartInstant();
-						Instant ei = i.getEnd().compareTo(cropSpan.getEnd()) < 0 ? i
-								.getEndInstant()
-								: cropSpan.getEndInstant();
-						if (ei.compareTo(si) <= 0) {
-							System.err
-									.println("No frames found in file corresponding to the given crop span");
-							return;
-						}
-						i = new Span(si, ei);
-						NumberFormat format = new DecimalFormat("00000");
-						long ERROR_SIZE = 20000;
-						// Iterator iter =
-						// ImageIO.getImageWritersBySuffix("jpeg");
-						// ImageWriter imWriter= (ImageWriter) iter.next();
-						int hack = 0;
-						for (Instant index = i.getStartInstant(); hack < HACK_LIMIT
-								&& i.contains(index)
-								&& index.longValue() < ERROR_SIZE; index = (Instant) index
-								.next()) {
-							File outFile = new File(outputDir, "camera2-"
-									+ format.format(index.longValue()) + ".png");
-							if (outFile.exists()) {
-								continue;
-							}
-							Image temp = d.getImage(index);
-							BufferedImage im;
-							if (temp instanceof BufferedImage) {
-								im = (BufferedImage) temp;
-							} else {
-								im = toBufferedImage(temp);
-							}
-							try {
-								ImageIO.write(im, "png", outFile);
-							} catch (IOException e) {
-								// TODO Auto-generated catch block
-								e.printStackTrace();
-							}
-							framesFound = true;
-							hack++;
-							Thread.yield();
+					extractor.setReopenInterval(reopenInterval);
+					extractor.setSpan(cropSpan);
+					extractor.setStride(stride);
+					if (threads > 0) {
+						extractor.setEncoderThreads(threads);
+					}
+					extractor.setQueueSize(queueSize);
+					extractor.setFormat(format);
+					extractor.setPrefix(prefix);
+					if (annotations != null) {
+						Sourcefile sf = findSourcefile(annotations, Fi[k]);
+						if (sf == null) {
+							System.err.println("No metadata found for " + Fi[k]);
+							d.destroy();
+							continue;
 						}
-					} while (framesFound);
+						extractor.setCropToDescriptors(sf, crop, attribute);
+					}
+					extractor.run();
+					extractor.getPlayer().destroy();
+					System.err.println(Fi[k] + ":");
+					System.err.println(extractor.getReport());
 				}
+			} catch (IOException iox) {
+				iox.printStackTrace();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			} catch (IllegalArgumentException iax) {
+				System.err.println(iax.getMessage());
 			} finally {
 				System.exit(0);
 			}
 		}
 
+		/**
+		 * Finds the sourcefile in the metadata whose media file has the
+		 * same name as the given file.
+		 */
+		private static Sourcefile findSourcefile(ViperData annotations, File media) {
+			for (Iterator iter = annotations.getSourcefiles(); iter.hasNext(); ) {
+				Sourcefile sf = (Sourcefile) iter.next();
+				String name = sf.getReferenceMedia().getSourcefileName();
+				if (name != null && new File(name).getName().equals(media.getName())) {
+					return sf;
+				}
+			}
+			return null;
+		}
+
 		// This method returns true if the specified image has transparent
 		// pixels
 		public static boolean hasAlpha(Image image) {
@@ -49,6 +49,14 @@ abstract class DataPlayerHelper extends DataPlayer {
 	/** keeps to keep references to used images */
 	private final Map strongCache = Collections.synchronizedMap(new HashMap());
 
+	/**
+	 * Images decoded ahead of time, least recently used first. This
+	 * has its own lock, so background decoders can add to it while
+	 * the player is decoding.
+	 */
+	private final LinkedHashMap prefetchCache = new LinkedHashMap(16, 0.75f, true);
+	private int prefetchCacheSize = 0;
+
 	/** 
 	 * Notified when the image is asynchronously decoded.
 	 */
@@ -171,6 +179,47 @@ abstract class DataPlayerHelper extends DataPlayer {
 		weakCache.put(when, new SoftReference(img));
 	}
 
+	/**
+	 * Adds an image that was decoded before it was asked for.
+	 * Subclasses that decode ahead call this, possibly from
+	 * another thread.
+	 * @param when the frame of the image
+	 * @param img the image
+	 */
+	protected void cachePrefetchedImage(Frame when, Image img) {
+		synchronized (prefetchCache) {
+			if (prefetchCacheSize <= 0) {
+				return;
+			}
+			prefetchCache.put(when, img);
+			while (prefetchCache.size() > prefetchCacheSize) {
+				Iterator iter = prefetchCache.keySet().iterator();
+				iter.next();
+				iter.remove();
+			}
+		}
+	}
+
+	/**
+	 * Sets how many images decoded ahead of time to keep.
+	 * @param frames the number of images to keep; 0 turns off
+	 * the prefetch cache
+	 */
+	protected void setPrefetchCacheSize(int frames) {
+		synchronized (prefetchCache) {
+			prefetchCacheSize = frames;
+			while (prefetchCache.size() > Math.max(0, frames)) {
+				Iterator iter = prefetchCache.keySet().iterator();
+				iter.next();
+				iter.remove();
+			}
+		}
+	}
+
+	protected int getPrefetchCacheSize() {
+		return prefetchCacheSize;
+	}
+
 	protected DataPlayerHelper(String name) {
 		super();
 		frameLoader = new FrameWorkerQueue(name);
@@ -237,6 +286,13 @@ abstract class DataPlayerHelper extends DataPlayer {
 				}
 			}
 		}
+		synchronized (prefetchCache) {
+			Image r = (Image) prefetchCache.get(f);
+			if (r != null) {
+				logger.finer("Found something in the prefetch cache!");
+				return r;
+			}
+		}
 		return null;
 	}
 
@@ -291,6 +347,9 @@ abstract class DataPlayerHelper extends DataPlayer {
 		lastFrameCache.clear();
 		strongCache.clear();
 		weakCache.clear();
+		synchronized (prefetchCache) {
+			prefetchCache.clear();
+		}
 	}
 
 	/**
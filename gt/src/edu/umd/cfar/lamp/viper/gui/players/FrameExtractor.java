@@ -0,0 +1,535 @@
+/***************************************
+ *            ViPER                    *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *                                     *
+ *  Distributed under the GPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package edu.umd.cfar.lamp.viper.gui.players;
+
+import java.awt.*;
+import java.awt.image.*;
+import java.io.*;
+import java.net.*;
+import java.text.*;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.logging.*;
+
+import javax.imageio.*;
+
+import viper.api.*;
+import viper.api.time.*;
+import viper.api.time.Frame;
+import edu.umd.cfar.lamp.apploader.prefs.*;
+import edu.umd.cfar.lamp.viper.geometry.*;
+
+/**
+ * Writes the frames of a video out as image files, for making training
+ * sets and the like. The work is split into a pipeline: the calling
+ * thread decodes the frames in order, since players aren't thread safe,
+ * and hands them through a bounded queue to a pool of threads that
+ * encode and write them with <code>ImageIO</code>. Encoding a frame
+ * usually takes longer than decoding it, so with a few encoder threads
+ * the decoder never has to wait on the disk.
+ * <p>
+ * Instead of whole frames, the extractor can write just the regions
+ * of some descriptors, cropping each frame to the bounding box of each
+ * chosen descriptor's shape at that frame.
+ * </p>
+ * <p>
+ * Frames whose images are already there are skipped, so an extraction
+ * that was stopped can be picked up where it left off.
+ * </p>
+ * <p>
+ * Some players leak memory, and can't decode more than some number of
+ * frames; QuickTime for Java on the Mac is the known case. An extractor
+ * that opened the video itself opens it again every
+ * {@link #getReopenInterval() few frames}.
+ * </p>
+ */
+public class FrameExtractor {
+	private static final Logger logger = DataPlayer.logger;
+
+	/// Put on the queue to tell an encoder thread to stop
+	private static final Job END = new Job(null, null);
+
+	/**
+	 * The number of frames to decode with one player before opening
+	 * a new one, by default.
+	 */
+	public static final int DEFAULT_REOPEN_INTERVAL = 40;
+
+	private DataPlayer player;
+	/// Where to open the video again, or null if it can't be reopened
+	private URI mediaUri;
+	private File mediaFile;
+	private PrefsManager prefs;
+	private int reopenInterval = DEFAULT_REOPEN_INTERVAL;
+	private File outputDir;
+	private String prefix = "camera2-";
+	private String format = "png";
+	private Span span = new Span(Frame.ALPHA, Frame.OMEGA);
+	private int stride = 1;
+	private int encoderThreads = Math.max(1, Runtime.getRuntime().availableProcessors());
+	private int queueSize = 0;
+	private NumberFormat numberFormat = new DecimalFormat("00000");
+
+	/// The descriptors to crop to, or null to write whole frames
+	private Sourcefile annotations;
+	private Set cropDescriptors;
+	private String cropAttribute;
+
+	// statistics, set by run
+	private int framesDecoded;
+	private int framesSkipped;
+	private int playersReopened;
+	private AtomicInteger imagesWritten = new AtomicInteger();
+	private AtomicInteger imagesFailed = new AtomicInteger();
+	private AtomicLong bytesWritten = new AtomicLong();
+	private AtomicLong encodeNanos = new AtomicLong();
+	private AtomicLong encoderIdleNanos = new AtomicLong();
+	private long decodeNanos;
+	private long decoderWaitNanos;
+	private long elapsedNanos;
+
+	/**
+	 * Creates a new extractor.
+	 * @param player the video to extract the frames of
+	 * @param outputDir the directory to write the images to; it is made
+	 * if it doesn't exist
+	 */
+	public FrameExtractor(DataPlayer player, File outputDir) {
+		this.player = player;
+		this.outputDir = outputDir;
+	}
+
+	/**
+	 * Creates a new extractor that opens the video itself, so it can
+	 * open it again every {@link #getReopenInterval()} frames.
+	 * The caller should {@link DataPlayer#destroy() destroy} the
+	 * {@link #getPlayer() last player} when done.
+	 * @param mediaUri the canonical name of the video
+	 * @param mediaFile the video file
+	 * @param prefs the preferences to open the players with
+	 * @param outputDir the directory to write the images to; it is made
+	 * if it doesn't exist
+	 */
+	public FrameExtractor(URI mediaUri, File mediaFile, PrefsManager prefs, File outputDir) {
+		this(DataPlayer.createDataPlayer(mediaUri, mediaFile, prefs), outputDir);
+		this.mediaUri = mediaUri;
+		this.mediaFile = mediaFile;
+		this.prefs = prefs;
+	}
+
+	/**
+	 * Gets the player the frames are decoded with. After a run, this may
+	 * be a different player than the one the extractor started with.
+	 * @return the current player
+	 */
+	public DataPlayer getPlayer() {
+		return player;
+	}
+
+	/**
+	 * Gets the number of frames to decode with one player before
+	 * opening the video again. Only an extractor that opened the video
+	 * itself can open it again.
+	 * @return the number of frames; 0 means the player is kept open
+	 */
+	public int getReopenInterval() {
+		return reopenInterval;
+	}
+	public void setReopenInterval(int reopenInterval) {
+		if (reopenInterval < 0) {
+			throw new IllegalArgumentException("Negative reopen interval: " + reopenInterval);
+		}
+		this.reopenInterval = reopenInterval;
+	}
+
+	/**
+	 * Gets the start of the names of the image files. Each file name
+	 * is the prefix, followed by the frame number and, when cropping,
+	 * the descriptor.
+	 * @return the file name prefix
+	 */
+	public String getPrefix() {
+		return prefix;
+	}
+	public void setPrefix(String prefix) {
+		this.prefix = prefix;
+	}
+
+	/**
+	 * Gets the informal name of the image format to write,
+	 * which is also used as the file suffix.
+	 * @return the format, e.g. <code>png</code> or <code>jpg</code>
+	 */
+	public String getFormat() {
+		return format;
+	}
+	public void setFormat(String format) {
+		if (!ImageIO.getImageWritersByFormatName(format).hasNext()) {
+			throw new IllegalArgumentException("No image writer for " + format);
+		}
+		this.format = format;
+	}
+
+	/**
+	 * Gets the frames to extract. Only the part of it that is
+	 * in the video is extracted.
+	 * @return the frames to extract
+	 */
+	public Span getSpan() {
+		return span;
+	}
+	public void setSpan(Span span) {
+		this.span = span;
+	}
+
+	/**
+	 * Gets how many frames to step between extracted frames.
+	 * @return 1 to extract every frame, 2 for every other frame, and so on
+	 */
+	public int getStride() {
+		return stride;
+	}
+	public void setStride(int stride) {
+		if (stride < 1) {
+			throw new IllegalArgumentException("Stride must be positive: " + stride);
+		}
+		this.stride = stride;
+	}
+
+	/**
+	 * Gets the number of threads that encode and write the images.
+	 * It starts out as the number of processors.
+	 * @return the number of encoder threads
+	 */
+	public int getEncoderThreads() {
+		return encoderThreads;
+	}
+	public void setEncoderThreads(int encoderThreads) {
+		if (encoderThreads < 1) {
+			throw new IllegalArgumentException("Need at least one encoder thread: " + encoderThreads);
+		}
+		this.encoderThreads = encoderThreads;
+	}
+
+	/**
+	 * Gets the most decoded images that may wait to be encoded, which
+	 * bounds the memory the extractor uses.
+	 * @return the queue size; 0 means twice the number of encoder threads
+	 */
+	public int getQueueSize() {
+		return queueSize;
+	}
+	public void setQueueSize(int queueSize) {
+		this.queueSize = queueSize;
+	}
+
+	/**
+	 * Writes only the regions of some descriptors, instead of whole
+	 * frames. For each extracted frame, each descriptor of one of the
+	 * given types that is valid at the frame gets its own image, of
+	 * the bounding box of its shape.
+	 * @param annotations the metadata of the video
+	 * @param descriptorNames the names of the descriptor types to crop to
+	 * @param attributeName the name of the attribute holding the shape,
+	 * or <code>null</code> to use the first attribute that has a shape
+	 */
+	public void setCropToDescriptors(Sourcefile annotations, Collection descriptorNames, String attributeName) {
+		this.annotations = annotations;
+		this.cropDescriptors = new HashSet(descriptorNames);
+		this.cropAttribute = attributeName;
+	}
+
+	/**
+	 * Extracts the frames. When it returns, all the images have been
+	 * written, and the statistics are set.
+	 * @throws InterruptedException if interrupted while waiting for
+	 * the encoder threads
+	 */
+	public void run() throws InterruptedException {
+		if (!outputDir.exists()) {
+			outputDir.mkdirs();
+		}
+		InstantInterval all = player.getRate().asFrame(player.getSpan());
+		Instant start = all.getStartInstant().compareTo(span.getStartInstant()) > 0
+				? all.getStartInstant() : span.getStartInstant();
+		Instant end = all.getEndInstant().compareTo(span.getEndInstant()) < 0
+				? all.getEndInstant() : span.getEndInstant();
+
+		BlockingQueue queue = new ArrayBlockingQueue(queueSize > 0 ? queueSize : 2 * encoderThreads);
+		Thread[] encoders = new Thread[encoderThreads];
+		for (int i = 0; i < encoders.length; i++) {
+			encoders[i] = new Thread(new Encoder(queue), "FrameExtractor-" + (i + 1));
+			encoders[i].start();
+		}
+
+		long began = System.nanoTime();
+		boolean reopening = mediaFile != null && reopenInterval > 0;
+		int sinceOpened = 0;
+		try {
+			for (Instant now = start; now.compareTo(end) < 0; now = now.go(stride)) {
+				List jobs = getJobs(now);
+				if (jobs.isEmpty()) {
+					framesSkipped++;
+					continue;
+				}
+				long t = System.nanoTime();
+				if (reopening && sinceOpened == reopenInterval) {
+					reopen();
+					sinceOpened = 0;
+				}
+				BufferedImage frame = copy(player.getImage(now));
+				decodeNanos += System.nanoTime() - t;
+				framesDecoded++;
+				sinceOpened++;
+
+				t = System.nanoTime();
+				for (Iterator iter = jobs.iterator(); iter.hasNext(); ) {
+					Job job = (Job) iter.next();
+					queue.put(job.crop(frame));
+				}
+				decoderWaitNanos += System.nanoTime() - t;
+			}
+		} finally {
+			for (int i = 0; i < encoders.length; i++) {
+				queue.put(END);
+			}
+			for (int i = 0; i < encoders.length; i++) {
+				encoders[i].join();
+			}
+			elapsedNanos = System.nanoTime() - began;
+		}
+	}
+
+	/**
+	 * Replaces the player with a newly opened one, freeing whatever
+	 * the old one leaked.
+	 */
+	private void reopen() {
+		player.destroy();
+		player = DataPlayer.createDataPlayer(mediaUri, mediaFile, prefs);
+		playersReopened++;
+	}
+
+	/**
+	 * Gets the images to write for a frame, with their regions,
+	 * leaving out the ones that are already there.
+	 * @return a list of jobs, whose images aren't set yet
+	 */
+	private List getJobs(Instant now) {
+		List jobs = new ArrayList();
+		String name = prefix + numberFormat.format(now.longValue());
+		if (annotations == null) {
+			File f = new File(outputDir, name + "." + format);
+			if (!f.exists()) {
+				jobs.add(new Job(null, f));
+			}
+			return jobs;
+		}
+		for (Iterator iter = annotations.getDescriptorsBy(now); iter.hasNext(); ) {
+			Descriptor d = (Descriptor) iter.next();
+			if (!cropDescriptors.contains(d.getDescName())) {
+				continue;
+			}
+			Rectangle box = getBox(d, now);
+			if (box == null || box.isEmpty()) {
+				continue;
+			}
+			File f = new File(outputDir, name + "-" + d.getDescName() + d.getDescId() + "." + format);
+			if (!f.exists()) {
+				jobs.add(new Job(box, f));
+			}
+		}
+		return jobs;
+	}
+
+	/**
+	 * Gets the bounding box of a descriptor's shape at the given time.
+	 * @return the box, or <code>null</code> if it has no shape then
+	 */
+	private Rectangle getBox(Descriptor d, Instant when) {
+		for (Iterator iter = d.getAttributes(); iter.hasNext(); ) {
+			Attribute a = (Attribute) iter.next();
+			if (cropAttribute != null && !cropAttribute.equals(a.getAttrName())) {
+				continue;
+			}
+			Object v = a.getAttrValueAtInstant(when);
+			BoundingBox bbox = null;
+			if (v instanceof PolyList) {
+				bbox = ((PolyList) v).getBoundingBox();
+			} else if (v instanceof Circle) {
+				bbox = ((Circle) v).getBoundingBox();
+			} else if (v instanceof Ellipse) {
+				bbox = ((Ellipse) v).getBoundingBox();
+			}
+			if (bbox != null) {
+				return new Rectangle(bbox.getX(), bbox.getY(), bbox.getWidth(), bbox.getHeight());
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Copies a frame, since a player may draw the next frame into
+	 * the same image.
+	 */
+	private static BufferedImage copy(Image image) {
+		if (!(image instanceof BufferedImage)) {
+			return DataPlayer.toBufferedImage(image); // already a new image
+		}
+		BufferedImage b = (BufferedImage) image;
+		return new BufferedImage(b.getColorModel(), b.copyData(null), b.isAlphaPremultiplied(), null);
+	}
+
+	/**
+	 * An image to write.
+	 */
+	private static class Job {
+		final Rectangle region;
+		final File file;
+		BufferedImage image;
+
+		Job(Rectangle region, File file) {
+			this.region = region;
+			this.file = file;
+		}
+
+		/**
+		 * Sets the image to the job's region of the frame.
+		 * @return this job
+		 */
+		Job crop(BufferedImage frame) {
+			if (region == null) {
+				image = frame;
+			} else {
+				Rectangle r = region.intersection(new Rectangle(0, 0, frame.getWidth(), frame.getHeight()));
+				image = r.isEmpty() ? null : frame.getSubimage(r.x, r.y, r.width, r.height);
+			}
+			return this;
+		}
+	}
+
+	/**
+	 * Takes images off the queue and writes them, until it gets
+	 * the end marker.
+	 */
+	private class Encoder implements Runnable {
+		private BlockingQueue queue;
+
+		Encoder(BlockingQueue queue) {
+			this.queue = queue;
+		}
+
+		public void run() {
+			while (true) {
+				Job job;
+				long t = System.nanoTime();
+				try {
+					job = (Job) queue.take();
+				} catch (InterruptedException e) {
+					return;
+				}
+				encoderIdleNanos.addAndGet(System.nanoTime() - t);
+				if (job == END) {
+					return;
+				}
+				if (job.image == null) {
+					continue; // region is outside the frame
+				}
+				t = System.nanoTime();
+				try {
+					if (!ImageIO.write(job.image, format, job.file)) {
+						throw new IOException("No " + format + " writer for the image");
+					}
+					imagesWritten.incrementAndGet();
+					bytesWritten.addAndGet(job.file.length());
+				} catch (IOException e) {
+					imagesFailed.incrementAndGet();
+					logger.log(Level.WARNING, "Could not write " + job.file, e);
+				}
+				encodeNanos.addAndGet(System.nanoTime() - t);
+			}
+		}
+	}
+
+	public int getFramesDecoded() {
+		return framesDecoded;
+	}
+	/**
+	 * Gets the number of frames that weren't decoded because all their
+	 * images were already there, or, when cropping, there was nothing
+	 * to crop to.
+	 * @return the number of skipped frames
+	 */
+	public int getFramesSkipped() {
+		return framesSkipped;
+	}
+	/**
+	 * Gets the number of times the video was opened again.
+	 * @return the number of new players
+	 * @see #getReopenInterval()
+	 */
+	public int getPlayersReopened() {
+		return playersReopened;
+	}
+	public int getImagesWritten() {
+		return imagesWritten.get();
+	}
+	public int getImagesFailed() {
+		return imagesFailed.get();
+	}
+	public long getBytesWritten() {
+		return bytesWritten.get();
+	}
+
+	/**
+	 * Describes how fast the extraction went, and which stage held it up.
+	 * @return a few lines of statistics
+	 */
+	public String getReport() {
+		double seconds = elapsedNanos / 1e9;
+		int written = getImagesWritten();
+		StringBuffer sb = new StringBuffer();
+		sb.append("Decoded ").append(framesDecoded).append(" frames (skipped ")
+			.append(framesSkipped).append(") and wrote ").append(written)
+			.append(" images, ").append(getBytesWritten() / 1024).append(" KB, in ")
+			.append(format(seconds)).append(" s: ")
+			.append(format(framesDecoded / Math.max(seconds, 1e-9))).append(" frames/s, ")
+			.append(format(written / Math.max(seconds, 1e-9))).append(" images/s, ")
+			.append(format(getBytesWritten() / 1048576.0 / Math.max(seconds, 1e-9))).append(" MB/s\n");
+		sb.append("Decoding: ").append(format(decodeNanos / 1e9)).append(" s, ")
+			.append(format(perItem(decodeNanos, framesDecoded))).append(" ms/frame; waited ")
+			.append(format(decoderWaitNanos / 1e9)).append(" s for the encoders");
+		if (playersReopened > 0) {
+			sb.append("; reopened the video ").append(playersReopened).append(" times");
+		}
+		sb.append("\n");
+		sb.append("Encoding: ").append(encoderThreads).append(" threads, ")
+			.append(format(encodeNanos.get() / 1e9)).append(" s, ")
+			.append(format(perItem(encodeNanos.get(), written + getImagesFailed()))).append(" ms/image; idle ")
+			.append(format(encoderIdleNanos.get() / 1e9 / encoderThreads)).append(" s each waiting for frames");
+		if (getImagesFailed() > 0) {
+			sb.append("\n").append(getImagesFailed()).append(" images could not be written");
+		}
+		return sb.toString();
+	}
+
+	private static double perItem(long nanos, int count) {
+		return count == 0 ? 0 : nanos / 1e6 / count;
+	}
+
+	private static String format(double d) {
+		return new DecimalFormat("0.0").format(d);
+	}
+}
@@ -17,32 +17,38 @@ import java.io.*;
 import java.util.*;
 import java.util.logging.*;
 
-import org.apache.xerces.utils.Base64;
+import javax.swing.event.*;
 
 import viper.api.time.*;
 import viper.api.time.Frame;
 
-import com.hp.hpl.jena.mem.*;
-import com.hp.hpl.jena.rdf.model.*;
-import com.hp.hpl.jena.vocabulary.*;
-
 import edu.umd.cfar.lamp.apploader.prefs.*;
 import edu.umd.cfar.lamp.mpeg1.*;
+import edu.umd.cfar.lamp.mpeg1.video.*;
 import edu.umd.cfar.lamp.viper.geometry.*;
 
 class MpegPlayer extends DataPlayerHelper {
 	private Mpeg1VideoStream player;
 	private Frame now;
+	/** the frames indexed so far; null until first asked for */
 	private Span span;
+	/** whether the video was still being indexed when the span was found */
+	private boolean indexing;
 	private FrameRate rate;
 	private Rational pixRatio;
 	private File dataFile;
-	
-	private static String uri = "http://viper-toolkit.sourceforge.net/products/jmpeg#";
-	private static Property hasSystemIndex =
-		ResourceFactory.createProperty(uri + "hasSystemIndex");
-	private static Property hasVideoIndex =
-		ResourceFactory.createProperty(uri + "hasSystemIndex");
+
+	/** decodes the groups of pictures ahead of playback; null if not prefetching */
+	private GopPrefetcher prefetcher;
+	/** set once the player is destroyed, so the prefetcher isn't restarted */
+	private boolean destroyed;
+	/** the last frame asked for, to tell which way playback is going */
+	private Frame lastFrame;
+	/** where the index, and the thumbnails, are saved; null if not caching */
+	private IndexCache indexCache;
+	/** the keyframe thumbnails; null until they are first asked for */
+	private ThumbnailStrip thumbnails;
+	private EventListenerList thumbnailListeners = new EventListenerList();
 	
 	public MpegPlayer(File dataFile) throws IOException {
 		super(dataFile.getName());
@@ -51,67 +57,23 @@ class MpegPlayer extends DataPlayerHelper {
 			throw new FileNotFoundException("Cannot find MPEG: " + dataFile);
 		}
 	}
-	
-	private static byte[] b642bytes(Literal l) {
-		return Base64.decode(l.getLexicalForm().getBytes());
-	}
-	private static Literal bytes2b64(byte[] data, Model m) {
-		data = Base64.encode(data);
-		try {
-			return m.createTypedLiteral(new String(data, "UTF-8"), XSD.base64Binary.getURI());
-		} catch (UnsupportedEncodingException e) {
-			throw new RuntimeException(e);
-		}
-	}
 
 	/**
+	 * Opens the file. The indexes come from the {@link IndexCache};
+	 * a video stream that isn't in the cache is indexed in the
+	 * background, so this doesn't wait to scan the whole file.
 	 * @throws IOException
 	 */
 	private void initialize() throws IOException {
 		if (player == null) {
-			Model toAdd = new ModelMem();
-			Model toRemove = new ModelMem();
-			prefs.model.enterCriticalSection(ModelLock.READ);
 			try {
 				Mpeg1File mpeg = new Mpeg1File(dataFile);
-				Resource fileR  = null;
-				if (prefs != null) {
-					fileR = prefs.model.getResource(dataFile.toURI().toString());
-				}
-				if (mpeg.isSystemFile() && prefs != null) {
-					if (prefs.model.contains(fileR, hasSystemIndex)) {
-						Literal l = prefs.model.getProperty(fileR, hasSystemIndex).getLiteral();
-						byte[] data = b642bytes(l);
-						InputStream is = new ByteArrayInputStream(data);
-						mpeg.readSystemIndex(is);
-					} else {
-						ByteArrayOutputStream os = new ByteArrayOutputStream();
-						mpeg.writeSystemIndex(os);
-						byte[] data = os.toByteArray();
-						Literal l = bytes2b64(data, toAdd);
-						toAdd.add(fileR, hasSystemIndex, l);
-					}
-				}
+				indexCache = mpeg.getIndexCache();
 				player = mpeg.getVideoStream();
-				if (prefs != null) {
-					if (prefs.model.contains(fileR, hasVideoIndex)) {
-						Literal l = prefs.model.getProperty(fileR, hasVideoIndex).getLiteral();
-						byte[] data = b642bytes(l);
-						InputStream is = new ByteArrayInputStream(data);
-						player.readIndex(is);
-					} else {
-						ByteArrayOutputStream os = new ByteArrayOutputStream();
-						player.writeIndex(os);
-						byte[] data = os.toByteArray();
-						Literal l = bytes2b64(data, toAdd);
-						toAdd.add(fileR, hasVideoIndex, l);
-					}
+				if (indexCache == null) {
+					player.getVideoDecoder().startIndexing(null);
 				}
-				span =
-					new Span(
-						new Frame(1),
-						new Frame((int) player.getNumFrames() + 1));
-				now = (Frame) span.getStart();
+				now = new Frame(1);
 				rate = new RationalFrameRate(player.getFrameRate());
 				pixRatio = player.getPixelAspectRatio().getRationalValue();
 				logger.fine ("Created new mpeg player with rate " + getRate());
@@ -119,15 +81,50 @@ class MpegPlayer extends DataPlayerHelper {
 				throw new IOException(ustx.getMessage());
 			} catch (MpegException mx) {
 				throw new IOException(mx.getMessage());
-			} finally {
-				prefs.model.leaveCriticalSection();
 			}
-			if (prefs != null && (!toAdd.isEmpty() || !toRemove.isEmpty())) {
-				prefs.changeUser(toRemove, toAdd);
+		}
+	}
+
+	/**
+	 * Gets the span of the frames indexed so far. While the video is
+	 * being indexed it grows each time it is asked for; once the index
+	 * is finished it is kept.
+	 * @return the frames that can be shown now
+	 */
+	private synchronized Span indexedSpan() {
+		if (span == null || indexing) {
+			VideoDecoder decoder = player.getVideoDecoder();
+			indexing = decoder.isIndexing();
+			int frames = Math.max(1, decoder.getNumFramesIndexed());
+			if (span == null || frames + 1 != ((Frame) span.getEnd()).getFrame()) {
+				span = new Span(new Frame(1), new Frame(frames + 1));
 			}
 		}
+		return span;
 	}
-	
+
+	/**
+	 * Starts decoding ahead of playback, once the index is finished;
+	 * the prefetcher needs the whole index, and sizes its cache from
+	 * the number of groups of pictures.
+	 */
+	private void startPrefetcher() throws IOException, MpegException {
+		if (prefetcher != null || destroyed || GopPrefetcher.getDefaultThreads() < 1
+				|| player.getVideoDecoder().isIndexing()) {
+			return;
+		}
+		prefetcher = new GopPrefetcher(player, new GopPrefetcher.Listener() {
+			public void frameDecoded(int frame, Image image) {
+				cachePrefetchedImage(new Frame(frame + 1), image);
+			}
+		});
+		// keep the groups ahead, the current one, and the ones
+		// behind in case playback turns around
+		int gops = player.getVideoDecoder().getNumGroupsOfPictures();
+		int framesPerGop = (player.getNumFrames() + gops - 1) / Math.max(1, gops);
+		setPrefetchCacheSize((2 * prefetcher.getLookahead() + 1) * framesPerGop);
+	}
+
 	private void makeSureIsInitialized() {
 		try { 
 			initialize();
@@ -151,9 +148,75 @@ class MpegPlayer extends DataPlayerHelper {
 			throw new IOException(mx.getLocalizedMessage());
 		}
 	}
+	public Image getImage(Instant i) {
+		Image img = super.getImage(i);
+		synchronized (this) {
+			try {
+				startPrefetcher();
+			} catch (IOException iox) {
+				logger.log(Level.WARNING, "Error while starting the prefetcher", iox);
+			} catch (MpegException mx) {
+				logger.log(Level.WARNING, "Error while starting the prefetcher", mx);
+			}
+		}
+		if (prefetcher != null) {
+			Frame f = getRate().asFrame(i);
+			boolean forward = lastFrame == null || f.compareTo(lastFrame) >= 0;
+			lastFrame = f;
+			try {
+				prefetcher.prefetch(f.getFrame() - 1, forward);
+			} catch (IOException iox) {
+				logger.log(Level.WARNING, "Error while prefetching " + f, iox);
+			} catch (MpegException mx) {
+				logger.log(Level.WARNING, "Error while prefetching " + f, mx);
+			}
+		}
+		return img;
+	}
+	public boolean hasThumbnails() {
+		return true;
+	}
+
+	public Image getThumbnail(Instant i) {
+		makeSureIsInitialized();
+		ThumbnailStrip strip;
+		synchronized (this) {
+			if (thumbnails == null) {
+				thumbnails = new ThumbnailStrip(player, indexCache, new ThumbnailStrip.Listener() {
+					public void thumbnailsChanged(ThumbnailStrip strip) {
+						fireThumbnailsChanged();
+					}
+				});
+				thumbnails.start();
+			}
+			strip = thumbnails;
+		}
+		return strip.getThumbnail(rate.asFrame(i).getFrame() - 1);
+	}
+
+	public void addThumbnailListener(ChangeListener l) {
+		thumbnailListeners.add(ChangeListener.class, l);
+	}
+
+	public void removeThumbnailListener(ChangeListener l) {
+		thumbnailListeners.remove(ChangeListener.class, l);
+	}
+
+	private void fireThumbnailsChanged() {
+		Object[] L = thumbnailListeners.getListenerList();
+		ChangeEvent e = null;
+		for (int i = L.length - 2; i >= 0; i -= 2) {
+			if (L[i] == ChangeListener.class) {
+				if (e == null)
+					e = new ChangeEvent(this);
+				((ChangeListener) L[i + 1]).stateChanged(e);
+			}
+		}
+	}
+
 	public Span getSpan() {
 		makeSureIsInitialized();
-		return span;
+		return indexedSpan();
 	}
 	public Instant getNow() {
 		makeSureIsInitialized();
@@ -162,11 +225,11 @@ class MpegPlayer extends DataPlayerHelper {
 	public void setNow(Instant i) {
 		makeSureIsInitialized();
 		Frame newNow = rate.asFrame(i);
-		if (span.contains(newNow)) {
+		if (indexedSpan().contains(newNow)) {
 			now = newNow;
 		} else {
 			throw new NoSuchElementException(
-				"Frame " + newNow + " not in range " + span);
+				"Frame " + newNow + " not in range " + indexedSpan());
 		}
 	}
 	public FrameRate getRate() {
@@ -175,6 +238,17 @@ class MpegPlayer extends DataPlayerHelper {
 	}
 	
 	public void destroy() {
+		synchronized (this) {
+			destroyed = true;
+			if (prefetcher != null) {
+				prefetcher.shutdown();
+				prefetcher = null;
+			}
+			if (thumbnails != null) {
+				thumbnails.cancel();
+				thumbnails = null;
+			}
+		}
 		super.destroy();
 		// XXX close mpeg stream
 	}
@@ -80,6 +80,17 @@ public class Bitstream implements IBitstream {
     protected int type;					// Input or Output
 
 
+	/**
+	 * Constructs an input bitstream with no buffer or stream, for
+	 * subclasses that read their data some other way. They must
+	 * override all of the input methods.
+	 */
+	protected Bitstream()
+	{
+		type = BS_INPUT;
+		buf_len = 0;
+	}
+
 	/**
 	 * Constructs input bitstream.
 	 * @param input 
@@ -0,0 +1,304 @@
+/***************************************
+ *            ViPER-MPEG               *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *             MPEG-1 Decoder          *
+ * Distributed under the LGPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package edu.umd.cfar.lamp.mpeg1;
+
+import java.io.*;
+import java.nio.*;
+
+import edu.columbia.ee.flavor.*;
+
+/**
+ * An input {@link Bitstream} that reads directly from a
+ * <code>ByteBuffer</code>, usually a view of a memory mapped file. The
+ * next bits are kept in a 64 bit register, which is refilled four bytes
+ * at a time with absolute gets, so there is no intermediate buffer to
+ * copy into or flush, and starting a bitstream at any offset of the
+ * buffer costs nothing.
+ * <p>
+ * Data that is split over several buffers, like the packets of an
+ * elementary stream in a system stream, is read by overriding
+ * {@link #nextBuffer()}.
+ * </p>
+ * <p>
+ * Only the input methods are supported, and peeking at a 64 bit double
+ * is not, since it doesn't fit in the register.
+ * </p>
+ */
+public class ByteBufferBitstream extends Bitstream
+{
+	private ByteBuffer buffer;
+	private int        position;
+	private int        limit;
+
+	/** The next bits, starting at the high bit. */
+	private long register  = 0;
+	/** The number of bits in the register. */
+	private int  available = 0;
+	/** The number of bytes moved into the register so far. */
+	private long bytesRead = 0;
+
+
+	/**
+	 * Creates a bitstream that reads the bytes of the buffer from its
+	 * current position to its limit. The buffer's position is not
+	 * changed.
+	 * @param buffer the data to read; must be big endian
+	 */
+	public ByteBufferBitstream(ByteBuffer buffer)
+	{
+		super();
+		setBuffer(buffer);
+	}
+
+	private void setBuffer(ByteBuffer buffer)
+	{
+		this.buffer   = buffer;
+		this.position = buffer.position();
+		this.limit    = buffer.limit();
+	}
+
+	/**
+	 * Gets the buffer to read once the current one is used up. The
+	 * default has no more data.
+	 * @return the next buffer, read from its position to its limit, or
+	 * <code>null</code> if there is no more data
+	 * @throws IOException if there is an error finding the next buffer
+	 */
+	protected ByteBuffer nextBuffer() throws IOException
+	{
+		return null;
+	}
+
+	/**
+	 * Fills the register with at least <code>n</code> bits.
+	 * @return <code>false</code> if there isn't enough data left
+	 */
+	private boolean fill(int n) throws FlIOException
+	{
+		while (available < n)
+		{
+			if (limit - position >= 4)
+			{
+				register |= (buffer.getInt(position) & 0xFFFFFFFFL) << (32 - available);
+				position  += 4;
+				available += 32;
+				bytesRead += 4;
+			}
+			else if (position < limit)
+			{
+				register |= (buffer.get(position) & 0xFFL) << (56 - available);
+				position  += 1;
+				available += 8;
+				bytesRead += 1;
+			}
+			else if (!advance())
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Moves on to the next buffer.
+	 * @return <code>false</code> if there isn't one
+	 */
+	private boolean advance() throws FlIOException
+	{
+		ByteBuffer next;
+		try
+		{
+			next = nextBuffer();
+		}
+		catch (FlIOException e)
+		{
+			throw e;
+		}
+		catch (IOException e)
+		{
+			throw new FlIOException(FlIOException.SYSTEMIOFAILED, e.toString());
+		}
+		if (next == null)
+		{
+			eof = true;
+			return false;
+		}
+		setBuffer(next);
+		return true;
+	}
+
+	public int nextbits(int n) throws FlIOException
+	{
+		if (n > MAX_SIZE_OF_BITS || n < 1)
+			throw new FlIOException(FlIOException.INVALIDBITSIZE);
+		if (available < n && !fill(n))
+			throw new FlIOException(FlIOException.ENDOFDATA);
+		return (int) (register >>> (64 - n));
+	}
+
+	public int getbits(int n) throws FlIOException
+	{
+		int x = nextbits(n);
+		register <<= n;
+		available -= n;
+		return x;
+	}
+
+	public int sgetbits(int n) throws FlIOException
+	{
+		int x = snextbits(n);
+		register <<= n;
+		available -= n;
+		return x;
+	}
+
+	public void skipbits(int n) throws FlIOException
+	{
+		if (n <= available)
+		{
+			register <<= n;
+			available -= n;
+			return;
+		}
+
+		// drop the register, then skip whole bytes without reading them
+		n -= available;
+		register  = 0;
+		available = 0;
+		int bytes = n >>> 3;
+		while (bytes > limit - position)
+		{
+			bytes     -= limit - position;
+			bytesRead += limit - position;
+			position   = limit;
+			if (!advance())
+				throw new FlIOException(FlIOException.ENDOFDATA);
+		}
+		position  += bytes;
+		bytesRead += bytes;
+
+		n &= 7;
+		if (n > 0)
+			getbits(n);
+	}
+
+	public int align(int n) throws FlIOException
+	{
+		if ((n % 8) != 0)
+			throw new FlIOException(FlIOException.INVALIDALIGNMENT);
+		// same as Bitstream.align, which returns the bits that were
+		// already used in the first byte rather than the bits skipped
+		int s = 0;
+		if ((getpos() % 8) != 0)
+		{
+			s = getpos() % 8;
+			skipbits(8 - s);
+		}
+		while ((getpos() % n) != 0)
+		{
+			s += 8;
+			skipbits(8);
+		}
+		return s;
+	}
+
+	/**
+	 * Gets the number of bits read since the bitstream was created.
+	 * @return the bit position, relative to where the bitstream started
+	 */
+	public int getpos()
+	{
+		return (int) ((bytesRead << 3) - available);
+	}
+
+	public int getCurrentBit()
+	{
+		return getpos();
+	}
+
+	public double getdouble() throws FlIOException
+	{
+		long high = getbits(32) & 0xFFFFFFFFL;
+		long low  = getbits(32) & 0xFFFFFFFFL;
+		return Double.longBitsToDouble((high << 32) | low);
+	}
+
+	public double nextdouble() throws FlIOException
+	{
+		throw new FlIOException(FlIOException.READFAILED);
+	}
+
+	public int little_nextbits(int n) throws FlIOException
+	{
+		int x = nextbits(n);
+		int result = 0;
+		int shift = 0;
+		for (; n >= 8; n -= 8, shift += 8)
+		{
+			result |= ((x >>> (n - 8)) & 0xFF) << shift;
+		}
+		if (n > 0)
+			result |= (x & mask[n]) << shift;
+		return result;
+	}
+
+	public int little_getbits(int n) throws FlIOException
+	{
+		int x = little_nextbits(n);
+		skipbits(n);
+		return x;
+	}
+
+	public int little_sgetbits(int n) throws FlIOException
+	{
+		int x = little_snextbits(n);
+		skipbits(n);
+		return x;
+	}
+
+	public double little_getdouble() throws FlIOException
+	{
+		long low  = little_getbits(32) & 0xFFFFFFFFL;
+		long high = little_getbits(32) & 0xFFFFFFFFL;
+		return Double.longBitsToDouble((high << 32) | low);
+	}
+
+	public double little_nextdouble() throws FlIOException
+	{
+		throw new FlIOException(FlIOException.READFAILED);
+	}
+
+	public int putbits(int y, int n) throws FlIOException
+	{
+		throw new FlIOException(FlIOException.INVALIDIOTYPE);
+	}
+
+	public int little_putbits(int y, int n) throws FlIOException
+	{
+		throw new FlIOException(FlIOException.INVALIDIOTYPE);
+	}
+
+	public void flushbits() throws FlIOException
+	{
+		throw new FlIOException(FlIOException.INVALIDIOTYPE);
+	}
+
+	public void close()
+	{
+		buffer    = null;
+		position  = 0;
+		limit     = 0;
+		register  = 0;
+		available = 0;
+	}
+}
@@ -0,0 +1,334 @@
+/***************************************
+ *            ViPER-MPEG               *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *             MPEG-1 Decoder          *
+ * Distributed under the LGPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package edu.umd.cfar.lamp.mpeg1;
+
+import java.awt.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.*;
+
+import edu.umd.cfar.lamp.mpeg1.video.*;
+
+/**
+ * Decodes the groups of pictures ahead of the current frame of a video
+ * stream on a pool of background threads, so a player can show them
+ * without waiting. Groups of pictures can be decoded independently of
+ * each other, so each thread has its own decoder, reading from its own
+ * copy of the stream's {@link VideoSource} and sharing the stream's
+ * index.
+ * <p>
+ * Call {@link #prefetch(int, boolean)} with each frame that is shown;
+ * the next few groups of pictures in the direction of playback are
+ * queued, and any queued groups that are no longer near the frame are
+ * dropped. Each decoded frame is handed to the {@link Listener} on the
+ * thread that decoded it.
+ * </p>
+ */
+public class GopPrefetcher
+{
+	/**
+	 * Gets the frames decoded in the background.
+	 */
+	public interface Listener
+	{
+		/**
+		 * Called from a background thread with each decoded frame.
+		 * @param frame the 0-based frame number
+		 * @param image the decoded frame
+		 */
+		public void frameDecoded(int frame, Image image);
+	}
+
+	private static Logger logger = Logger.getLogger("edu.umd.cfar.lamp.mpeg1");
+
+	private static int defaultThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+	private static int defaultLookahead = 2;
+
+	private final VideoSource     videoSource;
+	private final byte            index[];
+	private final int             numGroupsOfPictures;
+	private final int             lookahead;
+	private final long            anchorCacheSize;
+	private final Listener        listener;
+	private final ExecutorService pool;
+
+	/** A decoder that is only used to look up frames in the index. */
+	private final VideoDecoder    indexDecoder;
+
+	/** Each worker thread's own <code>Mpeg1VideoStream</code>. */
+	private final ThreadLocal workerStream = new ThreadLocal();
+
+	/** Maps group of pictures numbers (<code>Integer</code>s) to queued or running <code>GopTask</code>s. */
+	private final Map pending = new HashMap();
+
+	/** The most recently decoded groups of pictures, so they aren't queued again right away. */
+	private final LinkedHashMap decoded = new LinkedHashMap(16, 0.75f, true);
+
+
+	/**
+	 * Creates a prefetcher with the default number of threads and groups
+	 * of pictures to look ahead.
+	 * @param stream the stream to decode; it is only used here, to get
+	 * its source and index
+	 * @param listener gets the decoded frames
+	 * @throws IOException if there is an error indexing the stream
+	 * @throws MpegException if there is an error indexing the stream
+	 */
+	public GopPrefetcher(Mpeg1VideoStream stream, Listener listener) throws IOException, MpegException
+	{
+		this(stream, listener, defaultThreads, defaultLookahead);
+	}
+
+	/**
+	 * Creates a prefetcher.
+	 * @param stream the stream to decode; it is only used here, to get
+	 * its source and index
+	 * @param listener gets the decoded frames
+	 * @param threads the number of decoding threads
+	 * @param lookahead the number of groups of pictures to decode ahead
+	 * of the current one
+	 * @throws IOException if there is an error indexing the stream
+	 * @throws MpegException if there is an error indexing the stream
+	 */
+	public GopPrefetcher(Mpeg1VideoStream stream, Listener listener, int threads, int lookahead) throws IOException, MpegException
+	{
+		if (threads < 1)
+			throw new IllegalArgumentException("Need at least one thread: " + threads);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		stream.writeIndex(out);
+
+		VideoDecoder decoder = stream.getVideoDecoder();
+		this.videoSource         = decoder.getVideoSource();
+		this.index               = out.toByteArray();
+		this.numGroupsOfPictures = decoder.getNumGroupsOfPictures();
+		this.lookahead           = lookahead;
+		this.anchorCacheSize     = decoder.getAnchorCacheSize() / threads;
+		this.listener            = listener;
+		this.indexDecoder        = openStream().getVideoDecoder();
+		this.pool                = Executors.newFixedThreadPool(threads, new ThreadFactory()
+		{
+			private int count = 0;
+
+			public synchronized Thread newThread(Runnable r)
+			{
+				Thread t = new Thread(r, "GopPrefetcher-" + (++count));
+				t.setDaemon(true);
+				t.setPriority(Thread.MIN_PRIORITY);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * Gets the number of threads new prefetchers use by default, which
+	 * starts out as one less than the number of processors.
+	 * @return the default number of decoding threads
+	 */
+	public static int getDefaultThreads()
+	{
+		return defaultThreads;
+	}
+
+	/**
+	 * Sets the number of threads new prefetchers use by default. Set
+	 * it to 0 to tell players not to prefetch at all.
+	 * @param threads the default number of decoding threads
+	 */
+	public static void setDefaultThreads(int threads)
+	{
+		defaultThreads = threads;
+	}
+
+	/**
+	 * Gets the number of groups of pictures new prefetchers decode ahead
+	 * of the current one by default.
+	 * @return the default lookahead
+	 */
+	public static int getDefaultLookahead()
+	{
+		return defaultLookahead;
+	}
+
+	public static void setDefaultLookahead(int lookahead)
+	{
+		defaultLookahead = lookahead;
+	}
+
+	/**
+	 * Gets the number of groups of pictures decoded ahead of the
+	 * current one.
+	 * @return the lookahead
+	 */
+	public int getLookahead()
+	{
+		return lookahead;
+	}
+
+	/**
+	 * Queues the groups of pictures after (or before, when playing
+	 * backward) the one holding the given frame, and drops any queued
+	 * ones that are no longer needed.
+	 * @param frame the 0-based frame being shown
+	 * @param forward <code>true</code> if playing forward
+	 * @throws IOException if the frame isn't in the index
+	 * @throws MpegException if the frame isn't in the index
+	 */
+	public synchronized void prefetch(int frame, boolean forward) throws IOException, MpegException
+	{
+		if (pool.isShutdown())
+			return;
+
+		int current = indexDecoder.getGroupOfPicturesNumberForFrame(frame);
+		int step = forward ? 1 : -1;
+		Set wanted = new HashSet();
+		for (int i = 1; i <= lookahead; i++)
+		{
+			int gop = current + i * step;
+			if (gop >= 0 && gop < numGroupsOfPictures)
+				wanted.add(new Integer(gop));
+		}
+
+		for (Iterator iter = pending.values().iterator(); iter.hasNext(); )
+		{
+			GopTask task = (GopTask) iter.next();
+			if (!wanted.contains(new Integer(task.gop)))
+			{
+				task.cancel();
+				iter.remove();
+			}
+		}
+
+		// queue the nearest first
+		for (int i = 1; i <= lookahead; i++)
+		{
+			Integer gop = new Integer(current + i * step);
+			if (wanted.contains(gop) && !pending.containsKey(gop) && !decoded.containsKey(gop))
+			{
+				GopTask task = new GopTask(gop.intValue());
+				pending.put(gop, task);
+				task.future = pool.submit(task);
+			}
+		}
+	}
+
+	/**
+	 * Forgets which groups of pictures were already decoded, for when the
+	 * listener has dropped the frames it was given.
+	 */
+	public synchronized void clear()
+	{
+		decoded.clear();
+	}
+
+	/**
+	 * Stops decoding and lets the threads end.
+	 */
+	public synchronized void shutdown()
+	{
+		for (Iterator iter = pending.values().iterator(); iter.hasNext(); )
+		{
+			((GopTask) iter.next()).cancel();
+		}
+		pending.clear();
+		pool.shutdown();
+	}
+
+	private synchronized void finished(GopTask task)
+	{
+		Integer gop = new Integer(task.gop);
+		if (pending.get(gop) == task)
+			pending.remove(gop);
+		if (!task.cancelled)
+		{
+			decoded.put(gop, gop);
+			// remember about as many as could be wanted again when turning around
+			while (decoded.size() > 2 * lookahead + 1)
+			{
+				Iterator iter = decoded.keySet().iterator();
+				iter.next();
+				iter.remove();
+			}
+		}
+	}
+
+	private Mpeg1VideoStream getWorkerStream() throws IOException, MpegException
+	{
+		Mpeg1VideoStream stream = (Mpeg1VideoStream) workerStream.get();
+		if (stream == null)
+		{
+			stream = openStream();
+			stream.getVideoDecoder().setAnchorCacheSize(anchorCacheSize);
+			workerStream.set(stream);
+		}
+		return stream;
+	}
+
+	private Mpeg1VideoStream openStream() throws IOException, MpegException
+	{
+		Mpeg1VideoStream stream = new Mpeg1VideoStream(videoSource);
+		stream.readIndex(new ByteArrayInputStream(index));
+		return stream;
+	}
+
+	/**
+	 * Decodes the frames of one group of pictures, in order.
+	 */
+	private class GopTask implements Runnable
+	{
+		final int gop;
+		volatile boolean cancelled = false;
+		Future future;
+
+		GopTask(int gop)
+		{
+			this.gop = gop;
+		}
+
+		void cancel()
+		{
+			cancelled = true;
+			if (future != null)
+				future.cancel(false);
+		}
+
+		public void run()
+		{
+			try
+			{
+				Mpeg1VideoStream stream = getWorkerStream();
+				VideoDecoder decoder = stream.getVideoDecoder();
+				int start = decoder.getGroupOfPicturesStartFrame(gop);
+				int end = gop + 1 < numGroupsOfPictures ? decoder.getGroupOfPicturesStartFrame(gop + 1) : decoder.getNumFrames();
+				for (int frame = start; frame < end && !cancelled; frame++)
+				{
+					stream.seek(frame);
+					listener.frameDecoded(frame, stream.getImage());
+				}
+			}
+			catch (IOException e)
+			{
+				logger.log(Level.WARNING, "Error while prefetching group of pictures " + gop, e);
+			}
+			catch (MpegException e)
+			{
+				logger.log(Level.WARNING, "Error while prefetching group of pictures " + gop, e);
+			}
+			finally
+			{
+				finished(this);
+			}
+		}
+	}
+}
@@ -0,0 +1,352 @@
+/***************************************
+ *            ViPER-MPEG               *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *             MPEG-1 Decoder          *
+ * Distributed under the LGPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package edu.umd.cfar.lamp.mpeg1;
+
+import java.io.*;
+import java.util.logging.*;
+import java.util.zip.*;
+
+/**
+ * Keeps the system and video indexes of MPEG files on disk, so a file
+ * only has to be scanned the first time it is opened. Each index is
+ * saved in its own file, with a header that records the media file's
+ * path, length, modification time and a checksum of its first and last
+ * blocks; an index whose header doesn't match the media file any more
+ * is ignored and rebuilt.
+ * <p>
+ * The index files go in a cache directory, by default
+ * <code>.jmpeg/index</code> in the user's home directory, or beside
+ * the media files if the directory is set to <code>null</code>.
+ * {@link Mpeg1File} uses the cache automatically while it is enabled.
+ * </p>
+ */
+public class IndexCache
+{
+	public static final int MAGIC_NUMBER = 0x11172C01; // version 1
+
+	/** The number of bytes at each end of the media file that are checksummed. */
+	private static final int FINGERPRINT_BLOCK = 64 * 1024;
+
+	private static Logger logger = Logger.getLogger("edu.umd.cfar.lamp.mpeg1");
+
+	private static boolean enabled   = true;
+	private static File    directory = new File(new File(System.getProperty("user.home"), ".jmpeg"), "index");
+
+	private final File   media;
+	private final File   cacheDirectory;
+	private final String path;
+	private final long   length;
+	private final long   lastModified;
+	private final long   fingerprint;
+
+
+	/**
+	 * Creates the cache entry for a media file. It keeps using the
+	 * cache directory set when it was created, so an index saved by a
+	 * background scan goes where the file was opened from.
+	 * @param media the MPEG file
+	 * @throws IOException if the file can't be read
+	 */
+	public IndexCache(File media) throws IOException
+	{
+		this.media          = media;
+		this.cacheDirectory = directory;
+		this.path           = media.getCanonicalPath();
+		this.length         = media.length();
+		this.lastModified   = media.lastModified();
+		this.fingerprint    = fingerprint(media);
+	}
+
+	public static boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Turns the index cache on or off for files opened from now on.
+	 * @param enabled <code>false</code> to index every file every time
+	 */
+	public static void setEnabled(boolean enabled)
+	{
+		IndexCache.enabled = enabled;
+	}
+
+	/**
+	 * Gets the directory the index files are kept in.
+	 * @return the cache directory, or <code>null</code> if the index
+	 * files are kept beside the media files
+	 */
+	public static File getDirectory()
+	{
+		return directory;
+	}
+
+	/**
+	 * Sets the directory to keep the index files in, for files opened
+	 * from now on. It is made when the first index is saved.
+	 * @param directory the cache directory, or <code>null</code> to keep
+	 * the index files beside the media files
+	 */
+	public static void setDirectory(File directory)
+	{
+		IndexCache.directory = directory;
+	}
+
+	/**
+	 * Checksums the length of the file and its first and last blocks,
+	 * which catches most files that were replaced by another of the
+	 * same size.
+	 */
+	private static long fingerprint(File media) throws IOException
+	{
+		CRC32 crc = new CRC32();
+		RandomAccessFile file = new RandomAccessFile(media, "r");
+		try
+		{
+			long size = file.length();
+			byte block[] = new byte[(int) Math.min(FINGERPRINT_BLOCK, size)];
+			file.readFully(block);
+			crc.update(block);
+			if (size > block.length)
+			{
+				file.seek(Math.max(block.length, size - FINGERPRINT_BLOCK));
+				int n = (int) Math.min(FINGERPRINT_BLOCK, size - file.getFilePointer());
+				file.readFully(block, 0, n);
+				crc.update(block, 0, n);
+			}
+			return (size << 32) ^ crc.getValue();
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+
+	/**
+	 * Gets the file an index is kept in.
+	 * @param kind what index it is, like <code>system</code> or
+	 * <code>video-e0</code>
+	 * @return the index file
+	 */
+	public File getIndexFile(String kind)
+	{
+		if (cacheDirectory == null)
+			return new File(media.getParentFile(), media.getName() + "." + kind + ".idx");
+		// the path's hash keeps files of the same name apart
+		String hash = Integer.toHexString(path.hashCode());
+		return new File(cacheDirectory, media.getName() + "-" + hash + "." + kind + ".idx");
+	}
+
+	private static String getVideoKind(int streamId)
+	{
+		return "video-" + Integer.toHexString(streamId);
+	}
+
+	/**
+	 * Opens an index file, if it exists and was made from the media
+	 * file as it is now. The caller closes it.
+	 * @return the index data, or <code>null</code> if there is no
+	 * usable index
+	 */
+	DataInputStream open(String kind)
+	{
+		File file = getIndexFile(kind);
+		if (!file.isFile())
+			return null;
+		DataInputStream in = null;
+		try
+		{
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if (in.readInt() == MAGIC_NUMBER
+				&& in.readUTF().equals(path)
+				&& in.readLong() == length
+				&& in.readLong() == lastModified
+				&& in.readLong() == fingerprint)
+			{
+				return in;
+			}
+			logger.fine("Ignoring out of date index " + file);
+		}
+		catch (IOException iox)
+		{
+			logger.log(Level.FINE, "Ignoring unreadable index " + file, iox);
+		}
+		close(in);
+		return null;
+	}
+
+	static void close(InputStream in)
+	{
+		if (in != null)
+		{
+			try
+			{
+				in.close();
+			}
+			catch (IOException iox)
+			{
+				// only read from
+			}
+		}
+	}
+
+	/**
+	 * Saves an index. It is written to a temporary file first, so a
+	 * half-written index is never read.
+	 */
+	void save(String kind, byte data[])
+	{
+		File file = getIndexFile(kind);
+		File temp = new File(file.getPath() + ".tmp");
+		try
+		{
+			file.getParentFile().mkdirs();
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			try
+			{
+				out.writeInt(MAGIC_NUMBER);
+				out.writeUTF(path);
+				out.writeLong(length);
+				out.writeLong(lastModified);
+				out.writeLong(fingerprint);
+				out.write(data);
+			}
+			finally
+			{
+				out.close();
+			}
+			file.delete();
+			if (!temp.renameTo(file))
+				throw new IOException("Cannot rename " + temp + " to " + file);
+		}
+		catch (IOException iox)
+		{
+			// the index can always be built again
+			logger.log(Level.WARNING, "Could not save the index of " + media + " to " + file, iox);
+			temp.delete();
+		}
+	}
+
+	/**
+	 * Loads the system index from the cache.
+	 * @param stream the system stream of the media file
+	 * @return <code>true</code> if the index was in the cache
+	 */
+	public boolean readSystemIndex(Mpeg1SystemStream stream)
+	{
+		DataInputStream in = open("system");
+		if (in == null)
+			return false;
+		try
+		{
+			stream.readIndex(in);
+			return true;
+		}
+		catch (Exception e)
+		{
+			logger.log(Level.FINE, "Ignoring bad system index for " + media, e);
+			stream.setSystemIndex(null);
+			return false;
+		}
+		finally
+		{
+			close(in);
+		}
+	}
+
+	/**
+	 * Indexes the system stream, if it isn't already, and saves the
+	 * index in the cache.
+	 * @param stream the system stream of the media file
+	 * @throws IOException if there is an error indexing the stream
+	 * @throws MpegException if there is an error indexing the stream
+	 */
+	public void writeSystemIndex(Mpeg1SystemStream stream) throws IOException, MpegException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		stream.writeIndex(out);
+		save("system", out.toByteArray());
+	}
+
+	/**
+	 * Loads a video index from the cache.
+	 * @param stream a video stream of the media file
+	 * @param streamId the stream's id, or 0 for a video file
+	 * @return <code>true</code> if the index was in the cache
+	 */
+	public boolean readVideoIndex(Mpeg1VideoStream stream, int streamId)
+	{
+		DataInputStream in = open(getVideoKind(streamId));
+		if (in == null)
+			return false;
+		try
+		{
+			stream.readIndex(in);
+			return true;
+		}
+		catch (Exception e)
+		{
+			logger.log(Level.FINE, "Ignoring bad video index for " + media, e);
+			return false;
+		}
+		finally
+		{
+			close(in);
+		}
+	}
+
+	/**
+	 * Saves the index of a video stream in the cache, indexing the
+	 * stream first if it isn't already.
+	 * @param stream a video stream of the media file
+	 * @param streamId the stream's id, or 0 for a video file
+	 * @throws IOException if there is an error indexing the stream
+	 * @throws MpegException if there is an error indexing the stream
+	 */
+	public void writeVideoIndex(Mpeg1VideoStream stream, int streamId) throws IOException, MpegException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		stream.writeIndex(out);
+		save(getVideoKind(streamId), out.toByteArray());
+	}
+
+	/**
+	 * Loads the index of a video stream from the cache or, if it isn't
+	 * there, starts indexing the stream in the background and saves
+	 * the index once it is done. Either way, the stream can be used
+	 * right away.
+	 * @param stream a video stream of the media file
+	 * @param streamId the stream's id, or 0 for a video file
+	 * @throws IOException if the stream can't be indexed
+	 * @throws MpegException if the stream can't be indexed
+	 */
+	public void loadOrIndex(final Mpeg1VideoStream stream, final int streamId) throws IOException, MpegException
+	{
+		if (readVideoIndex(stream, streamId))
+			return;
+		stream.getVideoDecoder().startIndexing(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					writeVideoIndex(stream, streamId);
+				}
+				catch (Exception e)
+				{
+					logger.log(Level.WARNING, "Could not save the index of " + media, e);
+				}
+			}
+		});
+	}
+}
@@ -29,6 +29,7 @@ public class Mpeg1File
 
 	private File              file         = null;
 	private Mpeg1SystemStream systemStream = null;
+	private IndexCache        indexCache   = null;
 	
 
 	public Mpeg1File(File file) throws IOException, UnsupportedStreamTypeException
@@ -42,6 +43,44 @@ public class Mpeg1File
 
 		if (!isSystemOrVideoFile())
 			throw new UnsupportedStreamTypeException("Only ISO/IEC 11172-1 (MPEG-1 System) and ISO/IEC 11172-2 (MPEG-1 Video) streams are supported.");
+
+		if (IndexCache.isEnabled())
+		{
+			indexCache = new IndexCache(file);
+			if (isSystemFile())
+				indexCache.readSystemIndex(systemStream);
+		}
+	}
+
+	/**
+	 * Gets the on-disk cache of this file's indexes.
+	 * @return the index cache, or <code>null</code> if the cache was
+	 * disabled when the file was opened
+	 */
+	public IndexCache getIndexCache()
+	{
+		return indexCache;
+	}
+
+	/**
+	 * Indexes the system stream and saves the index in the cache, if
+	 * that is on and the index wasn't already loaded from it.
+	 */
+	private void indexSystemStream() throws IOException, MpegException
+	{
+		if (indexCache != null && !systemStream.indexed())
+			indexCache.writeSystemIndex(systemStream);
+	}
+
+	/**
+	 * Loads the index of a video stream from the cache, or starts
+	 * indexing it in the background to save to the cache.
+	 */
+	private Mpeg1VideoStream cacheVideoIndex(Mpeg1VideoStream stream, int stream_id) throws IOException, MpegException
+	{
+		if (indexCache != null)
+			indexCache.loadOrIndex(stream, stream_id);
+		return stream;
 	}
 
 	public File getFile()
@@ -152,6 +191,7 @@ public class Mpeg1File
 	{
 		if (isSystemFile())
 		{
+			indexSystemStream();
 			return systemStream.getStreamList();
 		}
 		else
@@ -166,6 +206,7 @@ public class Mpeg1File
 	{
 		if (isSystemFile())
 		{
+			indexSystemStream();
 			return systemStream.getVideoStreamList();
 		}
 		else
@@ -182,7 +223,8 @@ public class Mpeg1File
 		{
 			if (StreamIDs.isVideoStream(stream_id))
 			{
-				return new Mpeg1VideoStream(new VideoSource(new Mpeg1SystemStream(file, systemStream.getSystemIndex()), stream_id));
+				indexSystemStream();
+				return cacheVideoIndex(new Mpeg1VideoStream(new VideoSource(new Mpeg1SystemStream(file, systemStream.getSystemIndex()), stream_id)), stream_id);
 			}
 			else
 			{
@@ -191,7 +233,7 @@ public class Mpeg1File
 		}
 		else if (isVideoFile())
 		{
-			return new Mpeg1VideoStream(new VideoSource(file));
+			return cacheVideoIndex(new Mpeg1VideoStream(new VideoSource(file)), 0);
 		}
 		else
 		{
@@ -203,14 +245,14 @@ public class Mpeg1File
 	{
 		if (isVideoFile())
 		{
-			return new Mpeg1VideoStream(new VideoSource(file));
+			return cacheVideoIndex(new Mpeg1VideoStream(new VideoSource(file)), 0);
 		}
 		else
 		{
-			return new Mpeg1VideoStream(
-				new VideoSource( systemStream.copyStream(),
-				((Integer)getVideoStreamList().get(0)).intValue() )
-				);
+			int stream_id = ((Integer)getVideoStreamList().get(0)).intValue();
+			return cacheVideoIndex(new Mpeg1VideoStream(
+				new VideoSource( systemStream.copyStream(), stream_id )
+				), stream_id);
 		}
 	}
 }
@@ -119,6 +119,75 @@ public class Mpeg1SystemStream extends InputStream {
 		return file;
 	}
 
+	/**
+	 * Gets a read only view of the memory mapped file. The view has its
+	 * own position and limit, so reading it doesn't change where this
+	 * stream reads from.
+	 * @return the whole system stream
+	 */
+	public ByteBuffer getBuffer() {
+		return buffer.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Gets the data of one packet of an elementary stream, as a view
+	 * of the mapped file.
+	 * @param stream_id the elementary stream
+	 * @param bytePosition a byte position in the elementary stream
+	 * @return the rest of the packet's data that contains the given
+	 * byte, from that byte on, or <code>null</code> if the stream is
+	 * shorter than that
+	 * @throws IOException if the stream isn't in the file
+	 */
+	public ByteBuffer getPacketData(int stream_id, long bytePosition)
+		throws IOException {
+		index();
+		long position;
+		long lastByte;
+		try {
+			position = systemIndex.getPosition(stream_id, bytePosition);
+			lastByte = systemIndex.getLastByteInPacket(stream_id, bytePosition);
+		} catch (StreamNotFoundException snfe) {
+			throw new IOException(snfe.toString());
+		}
+		if (position == -1) {
+			return null;
+		}
+		ByteBuffer view = buffer.asReadOnlyBuffer();
+		view.limit((int) lastByte + 1);
+		view.position((int) position);
+		return view;
+	}
+
+	/**
+	 * Creates a bitstream that reads an elementary stream straight from
+	 * the mapped file, packet by packet, without copying it.
+	 * @param stream_id the elementary stream
+	 * @param bytePosition where to start in the elementary stream
+	 * @return a bitstream reading from the given position; its
+	 * {@link Bitstream#getpos()} is relative to that position
+	 * @throws IOException if the stream isn't in the file
+	 */
+	public Bitstream getBitstream(final int stream_id, long bytePosition)
+		throws IOException {
+		ByteBuffer first = getPacketData(stream_id, bytePosition);
+		if (first == null) {
+			first = ByteBuffer.allocate(0);
+		}
+		final long start = bytePosition + first.remaining();
+		return new ByteBufferBitstream(first) {
+			private long next = start;
+
+			protected ByteBuffer nextBuffer() throws IOException {
+				ByteBuffer packet = getPacketData(stream_id, next);
+				if (packet != null) {
+					next += packet.remaining();
+				}
+				return packet;
+			}
+		};
+	}
+
 	public SystemIndex getSystemIndex() {
 		return systemIndex;
 	}
@@ -215,7 +284,7 @@ public class Mpeg1SystemStream extends InputStream {
 		this.buffer.position((int) pos);
 	}
 	private int readRafile() throws IOException {
-		return this.buffer.get();
+		return this.buffer.get() & 0xFF;
 	}
 	private int readRafile(byte[] dst, int off, int len) throws IOException {
 		try {
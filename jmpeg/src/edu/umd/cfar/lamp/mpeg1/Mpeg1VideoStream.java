@@ -13,6 +13,7 @@
 package edu.umd.cfar.lamp.mpeg1;
 
 import java.awt.*;
+import java.awt.image.*;
 import java.io.*;
 
 import edu.umd.cfar.lamp.mpeg1.video.*;
@@ -117,6 +118,31 @@ public class Mpeg1VideoStream
 	{
 		return videoDecoder.getImage();
 	}
+
+	/**
+	 * Gets the current frame, reusing the given image if it is a
+	 * <code>TYPE_INT_RGB</code> image of the frame's size.
+	 * @param image the image to write into, or <code>null</code>
+	 * @return the image holding the current frame
+	 * @see VideoDecoder#getImage(BufferedImage)
+	 */
+	public BufferedImage getImage(BufferedImage image) throws IOException, MpegException
+	{
+		return videoDecoder.getImage(image);
+	}
+
+	/**
+	 * Gets the luminance of the current frame as a gray image, reusing
+	 * the given image if it is a <code>TYPE_BYTE_GRAY</code> image of
+	 * the frame's size.
+	 * @param image the image to write into, or <code>null</code>
+	 * @return the image holding the current frame
+	 * @see VideoDecoder#getGrayImage(BufferedImage)
+	 */
+	public BufferedImage getGrayImage(BufferedImage image) throws IOException, MpegException
+	{
+		return videoDecoder.getGrayImage(image);
+	}
 	/**
 	 * Gets the video decoder for this stream.
 	 * @return Returns the videoDecoder.
@@ -0,0 +1,387 @@
+/***************************************
+ *            ViPER-MPEG               *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *             MPEG-1 Decoder          *
+ * Distributed under the LGPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package edu.umd.cfar.lamp.mpeg1;
+
+import java.awt.*;
+import java.awt.image.*;
+import java.io.*;
+import java.util.Arrays;
+import java.util.logging.*;
+
+import javax.imageio.*;
+
+import edu.umd.cfar.lamp.mpeg1.video.*;
+
+/**
+ * Makes a strip of thumbnails of a video stream, one for each of the
+ * I frames the groups of pictures start from, for showing on a
+ * timeline. Each thumbnail is decoded from just the DC coefficients
+ * of its frame (see {@link VideoDecoder#getDcImage(int, BufferedImage)}),
+ * so it is an eighth the size of the frame and takes no inverse DCTs;
+ * the rest of the frames aren't decoded at all.
+ * <p>
+ * The thumbnails are decoded on a background thread, spread out over
+ * the whole video first and then filled in, so a rough strip is ready
+ * soon after starting. They are kept in one sprite sheet image, which
+ * is saved with the stream's {@link IndexCache} once it is done and
+ * loaded from there the next time.
+ * </p>
+ */
+public class ThumbnailStrip
+{
+	/**
+	 * Hears about new thumbnails.
+	 */
+	public interface Listener
+	{
+		/**
+		 * Called from the background thread when there are new
+		 * thumbnails, at most every {@link #NOTIFY_INTERVAL}
+		 * milliseconds, and when the strip is done.
+		 * @param strip the strip
+		 */
+		public void thumbnailsChanged(ThumbnailStrip strip);
+	}
+
+	public static final long NOTIFY_INTERVAL = 500;
+
+	/** How many thumbnails wide the sprite sheet is. */
+	private static final int SHEET_COLUMNS = 32;
+
+	private static Logger logger = Logger.getLogger("edu.umd.cfar.lamp.mpeg1");
+
+	private static int defaultMaxThumbnails = 1024;
+
+	private final Mpeg1VideoStream stream;
+	private final IndexCache       cache;
+	private final String           kind;
+	private final int              maxThumbnails;
+	private final Listener         listener;
+
+	private Thread        worker = null;
+	private volatile boolean cancelled = false;
+
+	// set once the index is ready
+	private int           frames[]  = null;
+	private boolean       decoded[] = null;
+	private int           thumbnailWidth;
+	private int           thumbnailHeight;
+	private BufferedImage sheet;
+	private boolean       done = false;
+
+
+	/**
+	 * Creates a thumbnail strip with at most the default number of
+	 * thumbnails.
+	 * @param stream the stream; it is only used here, to get its
+	 * source and index
+	 * @param cache the cache of the stream's file, or <code>null</code>
+	 * to not save the thumbnails
+	 * @param listener hears about new thumbnails; may be <code>null</code>
+	 */
+	public ThumbnailStrip(Mpeg1VideoStream stream, IndexCache cache, Listener listener)
+	{
+		this(stream, cache, listener, defaultMaxThumbnails);
+	}
+
+	/**
+	 * Creates a thumbnail strip.
+	 * @param stream the stream; it is only used here, to get its
+	 * source and index
+	 * @param cache the cache of the stream's file, or <code>null</code>
+	 * to not save the thumbnails
+	 * @param listener hears about new thumbnails; may be <code>null</code>
+	 * @param maxThumbnails the most thumbnails to make; if the stream
+	 * has more groups of pictures than this, evenly spaced ones are used
+	 */
+	public ThumbnailStrip(Mpeg1VideoStream stream, IndexCache cache, Listener listener, int maxThumbnails)
+	{
+		if (maxThumbnails < 1)
+			throw new IllegalArgumentException("Need room for at least one thumbnail: " + maxThumbnails);
+		this.stream        = stream;
+		this.cache         = cache;
+		this.kind          = "thumbnails-" + Integer.toHexString(stream.getStreamID());
+		this.listener      = listener;
+		this.maxThumbnails = maxThumbnails;
+	}
+
+	public static int getDefaultMaxThumbnails()
+	{
+		return defaultMaxThumbnails;
+	}
+
+	/**
+	 * Sets the most thumbnails new strips make. Each one takes about
+	 * 5 KB for standard definition video.
+	 * @param maxThumbnails the default maximum
+	 */
+	public static void setDefaultMaxThumbnails(int maxThumbnails)
+	{
+		defaultMaxThumbnails = maxThumbnails;
+	}
+
+	/**
+	 * Starts loading or decoding the thumbnails in the background. It
+	 * does nothing if they are already started.
+	 */
+	public synchronized void start()
+	{
+		if (worker == null)
+		{
+			worker = new Thread(new Runnable()
+			{
+				public void run()
+				{
+					makeThumbnails();
+				}
+			}, "ThumbnailStrip");
+			worker.setDaemon(true);
+			worker.setPriority(Thread.MIN_PRIORITY);
+			worker.start();
+		}
+	}
+
+	/**
+	 * Stops decoding thumbnails. The ones already decoded are kept.
+	 */
+	public void cancel()
+	{
+		cancelled = true;
+	}
+
+	/**
+	 * Waits for the background thread to finish.
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void join() throws InterruptedException
+	{
+		Thread t;
+		synchronized (this)
+		{
+			t = worker;
+		}
+		if (t != null)
+			t.join();
+	}
+
+	/**
+	 * Tests if all the thumbnails are ready.
+	 * @return <code>true</code> once every thumbnail has been loaded or decoded
+	 */
+	public synchronized boolean isDone()
+	{
+		return done;
+	}
+
+	/**
+	 * Gets the number of thumbnails in the strip.
+	 * @return the number of thumbnails, or 0 if the stream isn't indexed yet
+	 */
+	public synchronized int getThumbnailCount()
+	{
+		return frames == null ? 0 : frames.length;
+	}
+
+	/**
+	 * Gets the frame a thumbnail is of.
+	 * @param thumbnail the thumbnail number
+	 * @return the 0-based frame number
+	 */
+	public synchronized int getFrame(int thumbnail)
+	{
+		return frames[thumbnail];
+	}
+
+	/**
+	 * Gets the thumbnail to show for a frame, which is the last one
+	 * made of a frame at or before it.
+	 * @param frame the 0-based frame number
+	 * @return the thumbnail, or <code>null</code> if there is none
+	 * yet at or before the frame
+	 */
+	public synchronized Image getThumbnail(int frame)
+	{
+		if (frames == null)
+			return null;
+		int i = Arrays.binarySearch(frames, frame);
+		if (i < 0)
+			i = -i - 2; // the one before where it would go
+		for (; i >= 0; i--)
+		{
+			if (decoded[i])
+				return sheet.getSubimage((i % SHEET_COLUMNS) * thumbnailWidth, (i / SHEET_COLUMNS) * thumbnailHeight, thumbnailWidth, thumbnailHeight);
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the sprite sheet the thumbnails are kept in, in rows of
+	 * 32 in order.
+	 * @return the sprite sheet, or <code>null</code> if the stream
+	 * isn't indexed yet
+	 */
+	public synchronized BufferedImage getSpriteSheet()
+	{
+		return sheet;
+	}
+
+	private void makeThumbnails()
+	{
+		try
+		{
+			if (!load())
+				decode();
+		}
+		catch (Exception e)
+		{
+			logger.log(Level.WARNING, "Could not make the thumbnails of stream " + Integer.toHexString(stream.getStreamID()), e);
+		}
+	}
+
+	private synchronized void setUp(int frames[], int width, int height)
+	{
+		this.frames          = frames;
+		this.decoded         = new boolean[frames.length];
+		this.thumbnailWidth  = width;
+		this.thumbnailHeight = height;
+		int rows = (frames.length + SHEET_COLUMNS - 1) / SHEET_COLUMNS;
+		this.sheet = new BufferedImage(width * Math.min(frames.length, SHEET_COLUMNS), height * rows, BufferedImage.TYPE_INT_RGB);
+	}
+
+	/**
+	 * Loads the thumbnails from the cache.
+	 * @return <code>false</code> if they aren't there
+	 */
+	private boolean load()
+	{
+		if (cache == null)
+			return false;
+		DataInputStream in = cache.open(kind);
+		if (in == null)
+			return false;
+		try
+		{
+			int count  = in.readInt();
+			int width  = in.readInt();
+			int height = in.readInt();
+			int loaded[] = new int[count];
+			for (int i = 0; i < count; i++)
+			{
+				loaded[i] = in.readInt();
+			}
+			BufferedImage image = ImageIO.read(in);
+			if (image == null)
+				return false;
+			synchronized (this)
+			{
+				setUp(loaded, width, height);
+				sheet.getGraphics().drawImage(image, 0, 0, null);
+				Arrays.fill(decoded, true);
+				done = true;
+			}
+		}
+		catch (IOException iox)
+		{
+			logger.log(Level.FINE, "Ignoring bad thumbnails for stream " + Integer.toHexString(stream.getStreamID()), iox);
+			return false;
+		}
+		finally
+		{
+			IndexCache.close(in);
+		}
+		notifyListener();
+		return true;
+	}
+
+	/**
+	 * Decodes the thumbnails, with a decoder of its own, and saves them
+	 * once they are all done.
+	 */
+	private void decode() throws IOException, MpegException
+	{
+		ByteArrayOutputStream index = new ByteArrayOutputStream();
+		stream.writeIndex(index); // waits for the stream to be indexed
+		Mpeg1VideoStream own = new Mpeg1VideoStream(stream.getVideoDecoder().getVideoSource());
+		own.readIndex(new ByteArrayInputStream(index.toByteArray()));
+		VideoDecoder decoder = own.getVideoDecoder();
+
+		// spread the thumbnails evenly over the groups of pictures
+		int gops = decoder.getNumGroupsOfPictures();
+		int count = Math.min(gops, maxThumbnails);
+		int wanted[] = new int[count];
+		for (int i = 0; i < count; i++)
+		{
+			wanted[i] = decoder.getGroupOfPicturesKeyframe((int) ((long) i * gops / count));
+		}
+		BufferedImage thumbnail = decoder.getDcImage(wanted[0], null);
+		setUp(wanted, thumbnail.getWidth(), thumbnail.getHeight());
+
+		// coarse to fine: every 32nd, then every 16th, and so on
+		long lastNotified = System.currentTimeMillis();
+		int step = Integer.highestOneBit(count);
+		for (; step > 0 && !cancelled; step >>= 1)
+		{
+			for (int i = 0; i < count && !cancelled; i += step)
+			{
+				if (decoded[i])
+					continue;
+				thumbnail = decoder.getDcImage(wanted[i], thumbnail);
+				synchronized (this)
+				{
+					sheet.getRaster().setDataElements((i % SHEET_COLUMNS) * thumbnailWidth, (i / SHEET_COLUMNS) * thumbnailHeight, thumbnail.getRaster());
+					decoded[i] = true;
+				}
+				if (System.currentTimeMillis() - lastNotified >= NOTIFY_INTERVAL)
+				{
+					notifyListener();
+					lastNotified = System.currentTimeMillis();
+				}
+			}
+		}
+		if (cancelled)
+			return;
+		synchronized (this)
+		{
+			done = true;
+		}
+		notifyListener();
+		save();
+	}
+
+	private void save() throws IOException
+	{
+		if (cache == null)
+			return;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		synchronized (this)
+		{
+			out.writeInt(frames.length);
+			out.writeInt(thumbnailWidth);
+			out.writeInt(thumbnailHeight);
+			for (int i = 0; i < frames.length; i++)
+			{
+				out.writeInt(frames[i]);
+			}
+			ImageIO.write(sheet, "png", out);
+		}
+		out.close();
+		cache.save(kind, bytes.toByteArray());
+	}
+
+	private void notifyListener()
+	{
+		if (listener != null)
+			listener.thumbnailsChanged(this);
+	}
+}
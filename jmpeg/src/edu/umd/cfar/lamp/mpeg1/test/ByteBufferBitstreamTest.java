@@ -0,0 +1,132 @@
+/***************************************
+ *            ViPER-MPEG               *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *             MPEG-1 Decoder          *
+ * Distributed under the LGPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package edu.umd.cfar.lamp.mpeg1.test;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+
+import junit.framework.*;
+import edu.columbia.ee.flavor.*;
+import edu.umd.cfar.lamp.mpeg1.*;
+
+/**
+ * Checks that a {@link ByteBufferBitstream} reads the same bits as a
+ * stream based {@link Bitstream}, whether the data is in one buffer or
+ * split over many.
+ */
+public class ByteBufferBitstreamTest extends TestCase {
+	private static final int LENGTH = 64 * 1024;
+
+	private byte[] data;
+
+	public ByteBufferBitstreamTest(String name) {
+		super(name);
+	}
+
+	protected void setUp() {
+		data = new byte[LENGTH];
+		new Random(11172).nextBytes(data);
+	}
+
+	/**
+	 * Makes a bitstream that gets the data in pieces of random sizes,
+	 * some of them empty.
+	 */
+	private Bitstream getSplitBitstream() {
+		final Random random = new Random(2);
+		return new ByteBufferBitstream(ByteBuffer.wrap(data, 0, 3)) {
+			private int next = 3;
+
+			protected ByteBuffer nextBuffer() {
+				if (next == LENGTH) {
+					return null;
+				}
+				int size = Math.min(random.nextInt(40), LENGTH - next);
+				ByteBuffer b = ByteBuffer.wrap(data, next, size);
+				next += size;
+				return b;
+			}
+		};
+	}
+
+	private void checkSameBits(Bitstream expected, Bitstream actual)
+		throws IOException {
+		Random random = new Random(1);
+		while (expected.getpos() < (LENGTH - 16) * 8) {
+			int n = 1 + random.nextInt(32);
+			switch (random.nextInt(6)) {
+				case 0 :
+					assertEquals(expected.nextbits(n), actual.nextbits(n));
+					break;
+				case 1 :
+					assertEquals(expected.snextbits(n), actual.snextbits(n));
+					break;
+				case 2 :
+					assertEquals(expected.getbits(n), actual.getbits(n));
+					break;
+				case 3 :
+					n = random.nextInt(8 * 300);
+					if (expected.getpos() + n < (LENGTH - 16) * 8) {
+						expected.skipbits(n);
+						actual.skipbits(n);
+					}
+					break;
+				case 4 :
+					assertEquals(expected.align(8), actual.align(8));
+					break;
+				default :
+					assertEquals(
+						expected.little_getbits(n),
+						actual.little_getbits(n));
+					break;
+			}
+			assertEquals(expected.getpos(), actual.getpos());
+		}
+	}
+
+	public void testOneBuffer() throws IOException {
+		checkSameBits(
+			new Bitstream(new ByteArrayInputStream(data)),
+			new ByteBufferBitstream(ByteBuffer.wrap(data)));
+	}
+
+	public void testSplitBuffers() throws IOException {
+		checkSameBits(
+			new Bitstream(new ByteArrayInputStream(data)),
+			getSplitBitstream());
+	}
+
+	public void testOffset() throws IOException {
+		ByteBuffer b = ByteBuffer.wrap(data);
+		b.position(1000);
+		Bitstream bitstream = new ByteBufferBitstream(b);
+		assertEquals(0, bitstream.getpos());
+		assertEquals(data[1000] & 0xFF, bitstream.getbits(8));
+		assertEquals(8, bitstream.getpos());
+		assertEquals(1000, b.position());
+	}
+
+	public void testEndOfData() throws IOException {
+		Bitstream bitstream = getSplitBitstream();
+		bitstream.skipbits(LENGTH * 8 - 4);
+		assertEquals(data[LENGTH - 1] & 0x0F, bitstream.nextbits(4));
+		try {
+			bitstream.nextbits(5);
+			fail("Read past the end of the data");
+		} catch (FlIOException e) {
+			assertEquals("End of Data", e.getMessage());
+		}
+		assertTrue(bitstream.atend());
+	}
+}
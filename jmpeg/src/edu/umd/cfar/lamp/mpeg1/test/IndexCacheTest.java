@@ -0,0 +1,135 @@
+/***************************************
+ *            ViPER-MPEG               *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *             MPEG-1 Decoder          *
+ * Distributed under the LGPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package edu.umd.cfar.lamp.mpeg1.test;
+
+import java.awt.image.*;
+import java.io.*;
+import java.util.*;
+
+import junit.framework.*;
+import edu.umd.cfar.lamp.mpeg1.*;
+import edu.umd.cfar.lamp.mpeg1.video.*;
+
+/**
+ * Checks that indexes are saved to and loaded from the
+ * {@link IndexCache}, and that a stream can be decoded while it is
+ * indexed in the background.
+ */
+public class IndexCacheTest extends TestCase {
+	private static final File SAMPLE =
+		new File("samples/media/LAMP-Moving.mpeg");
+
+	private TemporaryIndexCache cache;
+	private File directory;
+
+	public IndexCacheTest(String name) {
+		super(name);
+	}
+
+	protected void setUp() throws IOException {
+		cache = new TemporaryIndexCache();
+		directory = cache.getDirectory();
+	}
+
+	protected void tearDown() {
+		cache.restore();
+	}
+
+	private static void waitFor(File file) throws InterruptedException {
+		for (int i = 0; i < 200 && !file.exists(); i++) {
+			Thread.sleep(50);
+		}
+		assertTrue("Index wasn't saved to " + file, file.exists());
+	}
+
+	private static int[] grab(Mpeg1VideoStream stream, int frame)
+		throws IOException, MpegException {
+		stream.seek(frame);
+		BufferedImage image = stream.getImage(null);
+		return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null,
+			0, image.getWidth());
+	}
+
+	public void testSaveAndLoad()
+		throws IOException, MpegException, InterruptedException {
+		Mpeg1File mpeg = new Mpeg1File(SAMPLE);
+		Mpeg1VideoStream stream = mpeg.getVideoStream();
+		assertEquals(122, stream.getNumFrames());
+		File indexFile = mpeg.getIndexCache().getIndexFile("video-0");
+		assertEquals(directory, indexFile.getParentFile());
+		waitFor(indexFile);
+
+		stream = new Mpeg1File(SAMPLE).getVideoStream();
+		assertFalse("The index should have been loaded",
+			stream.getVideoDecoder().isIndexing());
+		assertEquals(122, stream.getNumFrames());
+	}
+
+	public void testOutOfDate()
+		throws IOException, MpegException, InterruptedException {
+		File copy = new File(directory, "copy.mpeg");
+		InputStream in = new FileInputStream(SAMPLE);
+		OutputStream out = new FileOutputStream(copy);
+		byte[] buffer = new byte[8192];
+		for (int n; (n = in.read(buffer)) > 0;) {
+			out.write(buffer, 0, n);
+		}
+		in.close();
+		out.close();
+
+		Mpeg1File mpeg = new Mpeg1File(copy);
+		mpeg.getVideoStream().getNumFrames();
+		waitFor(mpeg.getIndexCache().getIndexFile("video-0"));
+
+		copy.setLastModified(copy.lastModified() - 60000);
+		Mpeg1VideoStream stream = new Mpeg1File(copy).getVideoStream();
+		assertTrue("A stale index should be ignored",
+			stream.getVideoDecoder().isIndexing());
+		assertEquals(122, stream.getNumFrames());
+	}
+
+	public void testDecodeWhileIndexing() throws IOException, MpegException {
+		Mpeg1VideoStream indexed =
+			new Mpeg1VideoStream(new VideoSource(SAMPLE));
+		indexed.index();
+
+		Mpeg1VideoStream stream =
+			new Mpeg1VideoStream(new VideoSource(SAMPLE));
+		assertTrue(stream.getVideoDecoder().startIndexing(null));
+		assertFalse(stream.getVideoDecoder().startIndexing(null));
+		int[] frames = {0, 3, 20, 7, 121, 60};
+		for (int i = 0; i < frames.length; i++) {
+			assertTrue("Frame " + frames[i] + " differs",
+				Arrays.equals(grab(indexed, frames[i]),
+					grab(stream, frames[i])));
+		}
+		assertEquals(indexed.getNumFrames(), stream.getNumFrames());
+		assertFalse(stream.getVideoDecoder().isIndexing());
+	}
+
+	public void testReadIndexWhileIndexing()
+		throws IOException, MpegException {
+		Mpeg1VideoStream indexed =
+			new Mpeg1VideoStream(new VideoSource(SAMPLE));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		indexed.writeIndex(out);
+
+		Mpeg1VideoStream stream =
+			new Mpeg1VideoStream(new VideoSource(SAMPLE));
+		stream.getVideoDecoder().startIndexing(null);
+		stream.readIndex(new ByteArrayInputStream(out.toByteArray()));
+		assertFalse(stream.getVideoDecoder().isIndexing());
+		assertEquals(122, stream.getNumFrames());
+		assertTrue(Arrays.equals(grab(indexed, 50), grab(stream, 50)));
+	}
+}
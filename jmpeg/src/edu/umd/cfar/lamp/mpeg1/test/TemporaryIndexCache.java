@@ -0,0 +1,79 @@
+/***************************************
+ *            ViPER-MPEG               *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *             MPEG-1 Decoder          *
+ * Distributed under the LGPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package edu.umd.cfar.lamp.mpeg1.test;
+
+import java.io.*;
+
+import edu.umd.cfar.lamp.mpeg1.*;
+
+/**
+ * Points the {@link IndexCache} at a new temporary directory, so tests
+ * that open media neither read nor fill the user's cache. Create one in
+ * <code>setUp</code> and {@link #restore()} it in <code>tearDown</code>.
+ */
+public class TemporaryIndexCache {
+	private static final long INDEXER_TIMEOUT = 30 * 1000;
+
+	private final File oldDirectory;
+	private final File directory;
+
+	/**
+	 * Creates a temporary directory and makes it the cache directory.
+	 * @throws IOException if the directory can't be created
+	 */
+	public TemporaryIndexCache() throws IOException {
+		oldDirectory = IndexCache.getDirectory();
+		directory = File.createTempFile("jmpeg", "");
+		directory.delete();
+		directory.mkdir();
+		IndexCache.setDirectory(directory);
+	}
+
+	/**
+	 * Gets the temporary cache directory.
+	 * @return the directory the indexes are saved in
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Puts back the old cache directory, and deletes the temporary one.
+	 * It first waits for any streams still being indexed in the
+	 * background, so their indexes aren't saved after it is gone.
+	 */
+	public void restore() {
+		IndexCache.setDirectory(oldDirectory);
+		waitForIndexers();
+		File[] files = directory.listFiles();
+		for (int i = 0; i < files.length; i++) {
+			files[i].delete();
+		}
+		directory.delete();
+	}
+
+	private static void waitForIndexers() {
+		Thread[] threads = new Thread[Thread.activeCount() + 16];
+		int count = Thread.enumerate(threads);
+		for (int i = 0; i < count; i++) {
+			if ("VideoIndexer".equals(threads[i].getName())) {
+				try {
+					threads[i].join(INDEXER_TIMEOUT);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+}
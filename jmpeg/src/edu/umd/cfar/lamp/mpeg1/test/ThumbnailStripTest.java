@@ -0,0 +1,133 @@
+/***************************************
+ *            ViPER-MPEG               *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *             MPEG-1 Decoder          *
+ * Distributed under the LGPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package edu.umd.cfar.lamp.mpeg1.test;
+
+import java.awt.image.*;
+import java.io.*;
+
+import junit.framework.*;
+import edu.umd.cfar.lamp.mpeg1.*;
+import edu.umd.cfar.lamp.mpeg1.video.*;
+
+/**
+ * Checks the thumbnails decoded from the DC coefficients of the
+ * I frames against the fully decoded frames, and that a
+ * {@link ThumbnailStrip} is saved to and loaded from the cache.
+ */
+public class ThumbnailStripTest extends TestCase {
+	private static final File SAMPLE =
+		new File("samples/media/LAMP-Moving.mpeg");
+
+	private TemporaryIndexCache cache;
+	private File directory;
+
+	public ThumbnailStripTest(String name) {
+		super(name);
+	}
+
+	protected void setUp() throws IOException {
+		cache = new TemporaryIndexCache();
+		directory = cache.getDirectory();
+	}
+
+	protected void tearDown() {
+		cache.restore();
+	}
+
+	public void testDcImage() throws IOException, MpegException {
+		Mpeg1VideoStream stream = new Mpeg1File(SAMPLE).getVideoStream();
+		VideoDecoder decoder = stream.getVideoDecoder();
+		int keyframe = decoder.getGroupOfPicturesKeyframe(3);
+		assertEquals(PictureCodingTypes.TYPE_I,
+			decoder.getPictureCodingType(keyframe));
+
+		stream.seek(5);
+		BufferedImage thumbnail = decoder.getDcImage(keyframe, null);
+		assertEquals(44, thumbnail.getWidth());
+		assertEquals(30, thumbnail.getHeight());
+		assertEquals("the current frame is left alone",
+			5, decoder.getCurrentFrame());
+		assertSame(thumbnail, decoder.getDcImage(keyframe, thumbnail));
+
+		// each thumbnail pel is about the average of its 8x8 block
+		stream.seek(keyframe);
+		BufferedImage full = stream.getImage(null);
+		long error = 0;
+		for (int y = 0; y < thumbnail.getHeight(); y++) {
+			for (int x = 0; x < thumbnail.getWidth(); x++) {
+				int sum = 0;
+				for (int i = 0; i < 8; i++) {
+					for (int j = 0; j < 8; j++) {
+						sum += (full.getRGB(x * 8 + j, y * 8 + i) >> 8) & 0xFF;
+					}
+				}
+				error += Math.abs(sum / 64 - ((thumbnail.getRGB(x, y) >> 8) & 0xFF));
+			}
+		}
+		assertTrue("mean error " + error / (44.0 * 30),
+			error < 4 * 44 * 30);
+
+		try {
+			decoder.getDcImage(keyframe + 1, null);
+			fail("Only I frames can be decoded from their DC coefficients");
+		} catch (MpegException mx) {
+			// expected
+		}
+	}
+
+	public void testStrip() throws IOException, MpegException,
+			InterruptedException {
+		Mpeg1File mpeg = new Mpeg1File(SAMPLE);
+		Mpeg1VideoStream stream = mpeg.getVideoStream();
+		ThumbnailStrip strip =
+			new ThumbnailStrip(stream, mpeg.getIndexCache(), null);
+		strip.start();
+		strip.join();
+		assertTrue(strip.isDone());
+		assertEquals(21, strip.getThumbnailCount());
+		assertNull("no thumbnail before the first keyframe",
+			strip.getThumbnail(strip.getFrame(0) - 1));
+		BufferedImage last = (BufferedImage) strip.getThumbnail(121);
+		assertEquals(44, last.getWidth());
+		BufferedImage expected = stream.getVideoDecoder().getDcImage(
+			strip.getFrame(20), null);
+		assertEquals(expected.getRGB(10, 10), last.getRGB(10, 10));
+
+		// the second time, it comes from the cache
+		assertTrue(mpeg.getIndexCache().getIndexFile("thumbnails-0").exists());
+		File[] files = directory.listFiles();
+		ThumbnailStrip cached = new ThumbnailStrip(
+			new Mpeg1File(SAMPLE).getVideoStream(),
+			new IndexCache(SAMPLE), null);
+		cached.start();
+		cached.join();
+		assertTrue(cached.isDone());
+		assertEquals(21, cached.getThumbnailCount());
+		assertEquals(files.length, directory.listFiles().length);
+		BufferedImage again = (BufferedImage) cached.getThumbnail(121);
+		assertEquals(last.getRGB(10, 10), again.getRGB(10, 10));
+	}
+
+	public void testMaxThumbnails() throws IOException, MpegException,
+			InterruptedException {
+		ThumbnailStrip strip = new ThumbnailStrip(
+			new Mpeg1File(SAMPLE).getVideoStream(), null, null, 5);
+		strip.start();
+		strip.join();
+		assertEquals(5, strip.getThumbnailCount());
+		assertEquals(5 * 44, strip.getSpriteSheet().getWidth());
+		for (int i = 1; i < 5; i++) {
+			assertTrue(strip.getFrame(i) > strip.getFrame(i - 1));
+		}
+	}
+}
@@ -25,6 +25,7 @@ import edu.umd.cfar.lamp.mpeg1.*;
 public class VideoFileTest extends TestCase {
 	private String dir;
 	private String[] fnames;
+	private TemporaryIndexCache cache;
 
 	public VideoFileTest(String testName) {
 		super(testName);
@@ -86,5 +87,10 @@ public class VideoFileTest extends TestCase {
 
 	protected void setUp() throws Exception {
 		dir = "samples/media/";
+		cache = new TemporaryIndexCache();
+	}
+
+	protected void tearDown() {
+		cache.restore();
 	}
 }
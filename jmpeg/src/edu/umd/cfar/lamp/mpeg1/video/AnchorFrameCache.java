@@ -0,0 +1,129 @@
+/***************************************
+ *            ViPER-MPEG               *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *             MPEG-1 Decoder          *
+ * Distributed under the LGPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package edu.umd.cfar.lamp.mpeg1.video;
+
+import java.util.*;
+
+/**
+ * Keeps copies of recently decoded I and P pictures, so the decoder
+ * can get the reference pictures for a P or B picture without decoding
+ * the chain of pictures back to the last I picture. Pictures are kept in
+ * the packed YCbCr form the decoder uses, keyed by frame number, and
+ * the least recently used are dropped once the copies would take more
+ * than the given number of bytes.
+ */
+final class AnchorFrameCache
+{
+	/** Maps frame numbers (<code>Integer</code>s) to <code>int[]</code>s, least recently used first. */
+	private final LinkedHashMap frames = new LinkedHashMap(16, 0.75f, true);
+
+	private long maxBytes;
+	private long usedBytes = 0;
+
+
+	/**
+	 * Creates an empty cache.
+	 * @param maxBytes the most memory to use for the copies
+	 */
+	AnchorFrameCache(long maxBytes)
+	{
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Copies a decoded picture into the cache.
+	 * @param frame the frame number
+	 * @param ycbcr the picture
+	 */
+	void put(int frame, int ycbcr[])
+	{
+		long size = 4L * ycbcr.length;
+		if (size > maxBytes)
+			return;
+
+		Integer key = new Integer(frame);
+		int copy[] = (int[]) frames.remove(key);
+		if (copy != null)
+			usedBytes -= 4L * copy.length;
+
+		// reuse the array of a picture that has to go anyway
+		while (usedBytes + size > maxBytes)
+		{
+			int evicted[] = removeEldest();
+			if (copy == null || copy.length != ycbcr.length)
+				copy = evicted;
+		}
+		if (copy == null || copy.length != ycbcr.length)
+			copy = new int[ycbcr.length];
+
+		System.arraycopy(ycbcr, 0, copy, 0, ycbcr.length);
+		frames.put(key, copy);
+		usedBytes += size;
+	}
+
+	/**
+	 * Copies a picture out of the cache, if it is there.
+	 * @param frame the frame number
+	 * @param ycbcr where to copy the picture
+	 * @return <code>true</code> if the picture was found
+	 */
+	boolean get(int frame, int ycbcr[])
+	{
+		int cached[] = (int[]) frames.get(new Integer(frame));
+		if (cached == null || cached.length != ycbcr.length)
+			return false;
+		System.arraycopy(cached, 0, ycbcr, 0, ycbcr.length);
+		return true;
+	}
+
+	boolean contains(int frame)
+	{
+		return frames.containsKey(new Integer(frame));
+	}
+
+	private int[] removeEldest()
+	{
+		Iterator iter = frames.values().iterator();
+		int eldest[] = (int[]) iter.next();
+		iter.remove();
+		usedBytes -= 4L * eldest.length;
+		return eldest;
+	}
+
+	/**
+	 * Gets the number of pictures in the cache.
+	 * @return the number of pictures
+	 */
+	int size()
+	{
+		return frames.size();
+	}
+
+	long getMaxBytes()
+	{
+		return maxBytes;
+	}
+
+	/**
+	 * Changes the memory budget, dropping pictures if it is now over.
+	 * @param maxBytes the most memory to use for the copies
+	 */
+	void setMaxBytes(long maxBytes)
+	{
+		this.maxBytes = maxBytes;
+		while (usedBytes > maxBytes)
+		{
+			removeEldest();
+		}
+	}
+}
@@ -0,0 +1,128 @@
+/***************************************
+ *            ViPER-MPEG               *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *             MPEG-1 Decoder          *
+ * Distributed under the LGPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package edu.umd.cfar.lamp.mpeg1.video;
+
+import java.awt.*;
+import java.awt.image.*;
+import java.io.*;
+import java.util.*;
+
+import junit.framework.*;
+import edu.umd.cfar.lamp.mpeg1.*;
+import edu.umd.cfar.lamp.mpeg1.test.*;
+
+/**
+ * Tests the {@link AnchorFrameCache}, and checks that seeking around
+ * with it gives the same pictures as decoding in order without it.
+ */
+public class AnchorFrameCacheTest extends TestCase
+{
+	private static final String SAMPLE = "samples/media/LAMP-Moving.mpeg";
+
+	private TemporaryIndexCache cache;
+
+	public AnchorFrameCacheTest(String name)
+	{
+		super(name);
+	}
+
+	protected void setUp() throws IOException
+	{
+		cache = new TemporaryIndexCache();
+	}
+
+	protected void tearDown()
+	{
+		cache.restore();
+	}
+
+	public void testLeastRecentlyUsed()
+	{
+		// room for three 10 pel pictures
+		AnchorFrameCache cache = new AnchorFrameCache(3 * 40);
+		int picture[] = new int[10];
+		for (int i = 0; i < 3; i++)
+		{
+			Arrays.fill(picture, i);
+			cache.put(i, picture);
+		}
+		assertEquals(3, cache.size());
+
+		int out[] = new int[10];
+		assertTrue(cache.get(0, out));
+		assertEquals(0, out[9]);
+
+		Arrays.fill(picture, 3);
+		cache.put(3, picture);
+		assertEquals(3, cache.size());
+		assertTrue(cache.contains(0));
+		assertFalse("frame 1 was least recently used", cache.contains(1));
+		assertTrue(cache.get(3, out));
+		assertEquals(3, out[5]);
+
+		// the copy is not changed by changes to the original
+		picture[0] = 42;
+		assertTrue(cache.get(3, out));
+		assertEquals(3, out[0]);
+
+		cache.setMaxBytes(40);
+		assertEquals(1, cache.size());
+		assertTrue(cache.contains(3));
+
+		cache.setMaxBytes(39);
+		assertEquals(0, cache.size());
+		cache.put(5, picture);
+		assertFalse(cache.get(5, out));
+	}
+
+	private Mpeg1VideoStream openSample(long cacheSize) throws IOException, MpegException
+	{
+		Mpeg1VideoStream stream = new Mpeg1File(new File(SAMPLE)).getVideoStream();
+		stream.getVideoDecoder().setAnchorCacheSize(cacheSize);
+		return stream;
+	}
+
+	private int[] grab(Mpeg1VideoStream stream) throws IOException, MpegException, InterruptedException
+	{
+		int width = stream.getFrameWidth();
+		int height = stream.getFrameHeight();
+		int pels[] = new int[width * height];
+		PixelGrabber grabber = new PixelGrabber(stream.getImage(), 0, 0, width, height, pels, 0, width);
+		assertTrue(grabber.grabPixels());
+		return pels;
+	}
+
+	public void testRandomSeeks() throws IOException, MpegException, InterruptedException
+	{
+		Mpeg1VideoStream stream = openSample(0);
+		int frames[][] = new int[stream.getNumFrames()][];
+		for (int i = 0; i < frames.length; i++)
+		{
+			stream.seek(i);
+			frames[i] = grab(stream);
+		}
+
+		stream = openSample(VideoDecoder.DEFAULT_ANCHOR_CACHE_SIZE);
+		Random random = new Random(4);
+		for (int n = 0; n < 200; n++)
+		{
+			// mostly short steps backward and forward, with some jumps
+			int frame = random.nextInt(frames.length);
+			for (int step = 0; step < 5 && frame >= 0; step++, frame -= 1 + random.nextInt(3))
+			{
+				stream.seek(frame);
+				assertTrue("Frame " + frame + " differs", Arrays.equals(frames[frame], grab(stream)));
+			}
+		}
+	}
+}
@@ -30,23 +30,9 @@ class Block implements Decodable
 		  {21, 34, 37, 47, 50, 56, 59, 61},
 		  {35, 36, 48, 49, 57, 58, 62, 63} };
 
-	// precalculated cosine matrix for inverse DCT
-	private static final double c[][] =
-		{ {0.35355339059327373,  0.35355339059327373,  0.35355339059327373,  0.35355339059327373,  0.35355339059327373,  0.35355339059327373,  0.35355339059327373,  0.35355339059327373},
-		  {0.49039264020161520,  0.41573480615127260,  0.27778511650980114,  0.09754516100806417, -0.09754516100806410, -0.27778511650980100, -0.41573480615127270, -0.49039264020161520},
-		  {0.46193976625564337,  0.19134171618254492, -0.19134171618254486, -0.46193976625564337, -0.46193976625564340, -0.19134171618254517,  0.19134171618254500,  0.46193976625564326},
-		  {0.41573480615127260, -0.09754516100806410, -0.49039264020161520, -0.27778511650980110,  0.27778511650980090,  0.49039264020161520,  0.09754516100806439, -0.41573480615127256},
-		  {0.35355339059327380, -0.35355339059327373, -0.35355339059327384,  0.35355339059327370,  0.35355339059327384, -0.35355339059327334, -0.35355339059327356,  0.35355339059327330},
-		  {0.27778511650980114, -0.49039264020161520,  0.09754516100806415,  0.41573480615127280, -0.41573480615127256, -0.09754516100806401,  0.49039264020161530, -0.27778511650980076},
-		  {0.19134171618254492, -0.46193976625564340,  0.46193976625564326, -0.19134171618254495, -0.19134171618254528,  0.46193976625564337, -0.46193976625564320,  0.19134171618254478},
-		  {0.09754516100806417, -0.27778511650980110,  0.41573480615127280, -0.49039264020161530,  0.49039264020161520, -0.41573480615127250,  0.27778511650980076, -0.09754516100806429} };
-
-	// temporary matrix for inverse DCT
-	private double temp[][] = new double[8][8];
-
 	// matrices for decoding DCT coefficients
 	private int dct_zz[]      = new int[8*8];
-	private int dct_recon[][] = new int[8][8];
+	private int dct_recon[]   = new int[8*8]; // row by row, as Idct expects
 
 	// matrix for holding predicted pel values
 	private int pel[][]       = new int[8][8];
@@ -64,6 +50,9 @@ class Block implements Decodable
 	// optimization: skip inverseDCT if all reconstructed DCT coefficients are 0
 	private boolean skipIDCT = true;
 
+	// optimization: if only the DC coefficient is set, every pel gets the same value
+	private boolean dcOnly = true;
+
 
 	public void parse(Bitstream bitstream, ParserState parserState) throws IOException
 	{
@@ -169,6 +158,7 @@ class Block implements Decodable
 
 		// set to true here, and if any non-zero values are discovered, set to false
 		skipIDCT = true;
+		dcOnly   = true;
 
 		if (decoderState.getPatternCode(blockNum))
 		{
@@ -255,13 +245,21 @@ class Block implements Decodable
 					throw new ParsingException("Expected end_of_block not found.");
 			}
 
-			// inverse quantize (fills in dct_recon[][] with DCT coefficients)
+			if (macroblock_intra && decoderState.isDcOnly())
+			{
+				// all that is wanted is the average of the block, which
+				// is its DC coefficient, so skip the rest
+				int dc = reconstructDC(decoderState, blockNum, macroblock_address);
+				decoderState.setCurrentDc(blockNum, mb_row, mb_col, VideoDecoder.clamp(Idct.transformDC(dc)));
+				return;
+			}
+
+			// inverse quantize (fills in dct_recon[] with DCT coefficients)
 			int quantizer_scale = decoderState.getQuantizerScale();
 			
 			if (macroblock_intra)
 			{
 				int intra_quant[][] = decoderState.getIntraQuantizerMatrix();
-				int past_intra_address = decoderState.getPastIntraAddress();
 
 				for (int m = 0; m < 8; m++)
 				{
@@ -275,46 +273,18 @@ class Block implements Decodable
 							scratch = 2047;
 						if (scratch < -2048)
 							scratch = -2048;
-						dct_recon[m][n] = scratch;
+						dct_recon[m*8 + n] = scratch;
 
 						if (scratch != 0)
+						{
 							skipIDCT = false;
+							if (idx != 0)
+								dcOnly = false;
+						}
 					}
 				}
 
-				switch (blockNum)
-				{
-					case 0: // luminance (Y) block 0
-						dct_recon[0][0] = dct_zz[0] * 8;
-						if ((macroblock_address - past_intra_address) > 1)
-							dct_recon[0][0] += 1024;
-						else
-							dct_recon[0][0] += decoderState.getDctDcYPast();
-						decoderState.setDctDcYPast(dct_recon[0][0]);
-						break;
-					case 1: // luminance (Y) blocks 1,2,3 use the same algorithm
-					case 2: // luminance (Y) blocks 1,2,3 use the same algorithm
-					case 3: // luminance (Y) blocks 1,2,3 use the same algorithm
-						dct_recon[0][0] = decoderState.getDctDcYPast() + (dct_zz[0] * 8);
-						decoderState.setDctDcYPast(dct_recon[0][0]);
-						break;
-					case 4: // Cb block
-						dct_recon[0][0] = dct_zz[0] * 8;
-						if ((macroblock_address - past_intra_address) > 1)
-							dct_recon[0][0] += 1024;
-						else
-							dct_recon[0][0] += decoderState.getDctDcCbPast();
-						decoderState.setDctDcCbPast(dct_recon[0][0]);
-						break;
-					case 5: // Cr block
-						dct_recon[0][0] = dct_zz[0] * 8;
-						if ((macroblock_address - past_intra_address) > 1)
-							dct_recon[0][0] += 1024;
-						else
-							dct_recon[0][0] += decoderState.getDctDcCrPast();
-						decoderState.setDctDcCrPast(dct_recon[0][0]);
-						break;
-				}
+				dct_recon[0] = reconstructDC(decoderState, blockNum, macroblock_address);
 			}
 			else // non-intracoded macroblock
 			{
@@ -334,23 +304,24 @@ class Block implements Decodable
 							scratch = -2048;
 						if (dct_zz[idx] == 0)
 							scratch = 0;
-						dct_recon[m][n] = scratch;
+						dct_recon[m*8 + n] = scratch;
 
 						if (scratch != 0)
+						{
 							skipIDCT = false;
+							if (idx != 0)
+								dcOnly = false;
+						}
 					}
 				}
 			}
 		} // end if getPatternCode(blockNum)
 		else
 		{
-			for (int i = 0; i < 8; i++)
-			{
-				Arrays.fill(dct_recon[i], 0);
-			}
+			Arrays.fill(dct_recon, 0);
 		}
 
-		if (dct_recon[0][0] != 0)
+		if (dct_recon[0] != 0)
 			skipIDCT = false;
 
 		if (!macroblock_intra)
@@ -372,6 +343,50 @@ class Block implements Decodable
 		draw(decoderState, blockNum, pel_row, pel_col);
 	}
 
+	/**
+	 * Adds the DC predictor to the DC coefficient of an intra coded
+	 * block, and updates the predictor.
+	 * @return the DC coefficient
+	 */
+	private int reconstructDC(DecoderState decoderState, int blockNum, int macroblock_address)
+	{
+		int dc = 0;
+		switch (blockNum)
+		{
+			case 0: // luminance (Y) block 0
+				dc = dct_zz[0] * 8;
+				if ((macroblock_address - decoderState.getPastIntraAddress()) > 1)
+					dc += 1024;
+				else
+					dc += decoderState.getDctDcYPast();
+				decoderState.setDctDcYPast(dc);
+				break;
+			case 1: // luminance (Y) blocks 1,2,3 use the same algorithm
+			case 2: // luminance (Y) blocks 1,2,3 use the same algorithm
+			case 3: // luminance (Y) blocks 1,2,3 use the same algorithm
+				dc = decoderState.getDctDcYPast() + (dct_zz[0] * 8);
+				decoderState.setDctDcYPast(dc);
+				break;
+			case 4: // Cb block
+				dc = dct_zz[0] * 8;
+				if ((macroblock_address - decoderState.getPastIntraAddress()) > 1)
+					dc += 1024;
+				else
+					dc += decoderState.getDctDcCbPast();
+				decoderState.setDctDcCbPast(dc);
+				break;
+			case 5: // Cr block
+				dc = dct_zz[0] * 8;
+				if ((macroblock_address - decoderState.getPastIntraAddress()) > 1)
+					dc += 1024;
+				else
+					dc += decoderState.getDctDcCrPast();
+				decoderState.setDctDcCrPast(dc);
+				break;
+		}
+		return dc;
+	}
+
 	// According to spec page 11
 	private int sign(int value)
 	{
@@ -698,76 +713,47 @@ class Block implements Decodable
 
 	public void draw(DecoderState decoderState, int blockNum, int pel_row, int pel_col) throws IOException, MpegException
 	{
-		for (int i = 0; i < 8; i++)
+		switch (blockNum)
 		{
-			for (int j = 0; j < 8; j++)
-			{
-				int a,b,c,d;
-				int result = pel[i][j];
-				switch (blockNum)
-				{
-					case 0:
-					case 1: 
-					case 2:
-					case 3:
-						decoderState.setCurrentY(i + pel_row, j + pel_col, result);
-						break;
-					case 4: // blocks 4 (Cb) and 5 (Cr) need to be upsampled to 4x4 block size
-						a = 2*i + pel_row;
-						b = a + 1;
-						c = 2*j + pel_col;
-						d = c + 1;
-						decoderState.setCurrentCb(a, c, result);
-						decoderState.setCurrentCb(a, d, result);
-						decoderState.setCurrentCb(b, c, result);
-						decoderState.setCurrentCb(b, d, result);
-						break;
-					case 5:
-						a = 2*i + pel_row;
-						b = a + 1;
-						c = 2*j + pel_col;
-						d = c + 1;
-						decoderState.setCurrentCr(a, c, result);
-						decoderState.setCurrentCr(a, d, result);
-						decoderState.setCurrentCr(b, c, result);
-						decoderState.setCurrentCr(b, d, result);
-						break;
-				}
-			}
+			case 0:
+			case 1:
+			case 2:
+			case 3:
+				decoderState.setCurrentYBlock(pel, pel_row, pel_col);
+				break;
+			case 4:
+				decoderState.setCurrentCbBlock(pel, pel_row, pel_col);
+				break;
+			case 5:
+				decoderState.setCurrentCrBlock(pel, pel_row, pel_col);
+				break;
 		}
 	}
 
-	// inverse DCT (converts DCT coefficients to actual pel values)
+	// inverse DCT (converts DCT coefficients to actual pel values, and adds them to the prediction)
 	private void inverseDCT()
 	{
-		// inverse DCT implementation modified from one cribbed from Stephen Manley (http://www.nyx.net/~smanley/)
-		double temp1;
-
-		for (int i = 0; i < 8; i++)
+		if (dcOnly)
 		{
-			for (int j = 0; j < 8; j++)
+			int dc = Idct.transformDC(dct_recon[0]);
+			for (int i = 0; i < 8; i++)
 			{
-				temp[i][j] = 0.0;
-
-				for (int k = 0; k < 8; k++)
+				int row[] = pel[i];
+				for (int j = 0; j < 8; j++)
 				{
-					temp[i][j] += dct_recon[i][k] * c[k][j];
+					row[j] = VideoDecoder.clamp(row[j] + dc);
 				}
 			}
+			return;
 		}
 
+		Idct.transform(dct_recon);
 		for (int i = 0; i < 8; i++)
 		{
+			int row[] = pel[i];
 			for (int j = 0; j < 8; j++)
 			{
-				temp1 = 0.0;
-
-				for (int k = 0; k < 8; k++)
-				{
-					temp1 += c[k][i] * temp[k][j];
-				}
-
-				pel[i][j] = VideoDecoder.clamp(pel[i][j] + (int)Math.round(temp1));
+				row[j] = VideoDecoder.clamp(row[j] + dct_recon[i*8 + j]);
 			}
 		}
 	}
@@ -0,0 +1,91 @@
+/***************************************
+ *            ViPER-MPEG               *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *             MPEG-1 Decoder          *
+ * Distributed under the LGPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package edu.umd.cfar.lamp.mpeg1.video;
+
+/**
+ * Converts the packed YCbCr pels the decoder keeps into RGB or gray
+ * levels, with integer math. Each component's share of each color is
+ * looked up in a table of 16.16 fixed-point values, so converting a
+ * pel is a few table lookups, adds and shifts, with no floating
+ * point and no branches but the clamping.
+ */
+final class ColorConverter
+{
+	private static final int SHIFT = 16;
+
+	private static final int Y_TABLE[]     = new int[256];
+	private static final int CR_RED[]      = new int[256];
+	private static final int CB_GREEN[]    = new int[256];
+	private static final int CR_GREEN[]    = new int[256];
+	private static final int CB_BLUE[]     = new int[256];
+	private static final byte GRAY_TABLE[] = new byte[256];
+
+	static
+	{
+		double scale = 1 << SHIFT;
+		for (int i = 0; i < 256; i++)
+		{
+			Y_TABLE[i]  = (int) Math.round( 1.164   * (i - 16)  * scale);
+			CR_RED[i]   = (int) Math.round( 1.402   * (i - 128) * scale);
+			CB_GREEN[i] = (int) Math.round(-0.34414 * (i - 128) * scale);
+			CR_GREEN[i] = (int) Math.round(-0.71414 * (i - 128) * scale);
+			CB_BLUE[i]  = (int) Math.round( 1.772   * (i - 128) * scale);
+			GRAY_TABLE[i] = (byte) VideoDecoder.clamp(Y_TABLE[i] >> SHIFT);
+		}
+	}
+
+	private ColorConverter()
+	{
+	}
+
+	/**
+	 * Converts packed YCbCr pels into packed RGB.
+	 * @param ycbcr the pels, with Y, Cb and Cr in the low three bytes
+	 * @param rgb where to put the RGB pels; may be the same array
+	 * @param length the number of pels to convert
+	 */
+	static void toRGB(int ycbcr[], int rgb[], int length)
+	{
+		for (int i = 0; i < length; i++)
+		{
+			int pel = ycbcr[i];
+			int y  = Y_TABLE[(pel >>> 16) & 0xFF];
+			int cb = (pel >>> 8) & 0xFF;
+			int cr = pel & 0xFF;
+
+			int red   = (y + CR_RED[cr]) >> SHIFT;
+			int green = (y + CB_GREEN[cb] + CR_GREEN[cr]) >> SHIFT;
+			int blue  = (y + CB_BLUE[cb]) >> SHIFT;
+
+			red   = red   < 0 ? 0 : red   > 255 ? 255 : red;
+			green = green < 0 ? 0 : green > 255 ? 255 : green;
+			blue  = blue  < 0 ? 0 : blue  > 255 ? 255 : blue;
+			rgb[i] = 0xFF000000 | (red << 16) | (green << 8) | blue;
+		}
+	}
+
+	/**
+	 * Converts the luminance of packed YCbCr pels to gray levels,
+	 * ignoring the color.
+	 * @param ycbcr the pels, with Y, Cb and Cr in the low three bytes
+	 * @param gray where to put the gray levels
+	 * @param length the number of pels to convert
+	 */
+	static void toGray(int ycbcr[], byte gray[], int length)
+	{
+		for (int i = 0; i < length; i++)
+		{
+			gray[i] = GRAY_TABLE[(ycbcr[i] >>> 16) & 0xFF];
+		}
+	}
+}
@@ -0,0 +1,121 @@
+/***************************************
+ *            ViPER-MPEG               *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *             MPEG-1 Decoder          *
+ * Distributed under the LGPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package edu.umd.cfar.lamp.mpeg1.video;
+
+import java.awt.image.*;
+import java.io.*;
+
+import junit.framework.*;
+import edu.umd.cfar.lamp.mpeg1.*;
+import edu.umd.cfar.lamp.mpeg1.test.*;
+
+/**
+ * Checks the fixed-point {@link ColorConverter} against the usual
+ * floating point conversion, and that the decoder's images can be
+ * reused.
+ */
+public class ColorConverterTest extends TestCase
+{
+	private static final String SAMPLE = "samples/media/LAMP-Moving.mpeg";
+
+	private TemporaryIndexCache cache;
+
+	public ColorConverterTest(String name)
+	{
+		super(name);
+	}
+
+	protected void setUp() throws IOException
+	{
+		cache = new TemporaryIndexCache();
+	}
+
+	protected void tearDown()
+	{
+		cache.restore();
+	}
+
+	private static int[] referenceRGB(int y, int cb, int cr)
+	{
+		double yy = 1.164 * (y - 16);
+		return new int[] {
+			VideoDecoder.clamp((int) Math.floor(yy + 1.402 * (cr - 128))),
+			VideoDecoder.clamp((int) Math.floor(yy - 0.34414 * (cb - 128) - 0.71414 * (cr - 128))),
+			VideoDecoder.clamp((int) Math.floor(yy + 1.772 * (cb - 128)))};
+	}
+
+	public void testToRGB()
+	{
+		int ycbcr[] = new int[256 * 256];
+		int rgb[] = new int[ycbcr.length];
+		for (int y = 0; y < 256; y += 3)
+		{
+			for (int i = 0; i < ycbcr.length; i++)
+			{
+				ycbcr[i] = 0xFF000000 | (y << 16) | i;
+			}
+			ColorConverter.toRGB(ycbcr, rgb, rgb.length);
+			for (int i = 0; i < rgb.length; i++)
+			{
+				int expected[] = referenceRGB(y, i >> 8, i & 0xFF);
+				assertEquals(0xFF, rgb[i] >>> 24);
+				assertEquals(expected[0], (rgb[i] >> 16) & 0xFF, 1);
+				assertEquals(expected[1], (rgb[i] >> 8) & 0xFF, 1);
+				assertEquals(expected[2], rgb[i] & 0xFF, 1);
+			}
+		}
+	}
+
+	public void testToGray()
+	{
+		int ycbcr[] = new int[256];
+		for (int y = 0; y < 256; y++)
+		{
+			// the color doesn't matter
+			ycbcr[y] = (y << 16) | (y << 8) | (255 - y);
+		}
+		byte gray[] = new byte[256];
+		ColorConverter.toGray(ycbcr, gray, gray.length);
+		assertEquals(0, gray[16]);
+		assertEquals(255, gray[240] & 0xFF);
+		for (int y = 0; y < 256; y++)
+		{
+			int expected[] = referenceRGB(y, 128, 128);
+			assertEquals(expected[0], gray[y] & 0xFF, 1);
+		}
+	}
+
+	public void testReuseImage() throws IOException, MpegException
+	{
+		Mpeg1VideoStream stream = new Mpeg1File(new File(SAMPLE)).getVideoStream();
+		stream.seek(0);
+		BufferedImage first = stream.getImage(null);
+		assertEquals(BufferedImage.TYPE_INT_RGB, first.getType());
+		int pels[] = first.getRGB(0, 0, first.getWidth(), first.getHeight(), null, 0, first.getWidth());
+
+		stream.seek(7);
+		BufferedImage image = stream.getImage(first);
+		assertSame(first, image);
+		stream.seek(0);
+		assertSame(first, stream.getImage(first));
+		assertTrue(java.util.Arrays.equals(pels, first.getRGB(0, 0, first.getWidth(), first.getHeight(), null, 0, first.getWidth())));
+
+		// the wrong kind of image is not written into
+		BufferedImage small = new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+		assertNotSame(small, stream.getImage(small));
+		BufferedImage gray = stream.getGrayImage(first);
+		assertNotSame(first, gray);
+		assertEquals(BufferedImage.TYPE_BYTE_GRAY, gray.getType());
+		assertSame(gray, stream.getGrayImage(gray));
+	}
+}
@@ -22,7 +22,41 @@ class DCTCoefficientEscapeLevel implements Parsable
 	private int level = 0;
 
 	
+	/**
+	 * Reads the level. This is a fixed length code: eight bits in two's
+	 * complement for levels from -127 to 127, or sixteen bits, starting
+	 * with 0000 0000 or 1000 0000, for the larger levels.
+	 */
 	public void parse(Bitstream bitstream) throws IOException
+	{
+		if (VlcTable.isUsingReference())
+		{
+			parseReference(bitstream);
+			return;
+		}
+		int bits = bitstream.nextbits(8);
+		if (bits != 0 && bits != 128)
+		{
+			bitstream.skipbits(8);
+			level = (byte) bits;
+			return;
+		}
+		bits = bitstream.nextbits(16);
+		int low = bits & 0xFF;
+		if (bits < 128 || bits == 32768 || bits > 32768 + 128)
+			throw new ParsingException("VLC decode for DCTCoefficientEscapeLevel failed.");
+		bitstream.skipbits(16);
+		level = (bits < 256) ? low : low - 256;
+	}
+
+	/**
+	 * Decodes the level by looking up all of its possible values. This
+	 * is the original decoder, kept as a reference.
+	 * @param bitstream the bitstream to read from
+	 * @throws IOException if the bits are not a valid level, or there is
+	 * an error reading the bitstream
+	 */
+	void parseReference(Bitstream bitstream) throws IOException
 	{
 		switch (bitstream.nextbits(8))
 		{
@@ -19,6 +19,8 @@ import edu.umd.cfar.lamp.mpeg1.*;
 
 class DCTCoefficientNext implements Parsable
 {
+	private static final VlcTable table = new VlcTable("DCTCoefficientNext", VlcTables.packRunLevel(VlcTables.DCT_COEFF_NEXT), 8);
+
 	private DCTCoefficientValues value = null;
 
 
@@ -28,6 +30,27 @@ class DCTCoefficientNext implements Parsable
 	}
 
 	public void parse(Bitstream bitstream) throws IOException
+	{
+		if (VlcTable.isUsingReference())
+		{
+			parseReference(bitstream);
+			return;
+		}
+		int runLevel = table.decode(bitstream);
+		if (value == null)
+			value = new DCTCoefficientValues();
+		value.setRun(VlcTables.getRun(runLevel));
+		value.setLevel(VlcTables.getLevel(runLevel));
+	}
+
+	/**
+	 * Decodes the code by testing the bits a few at a time. This is the
+	 * original decoder, kept as a reference for the lookup table.
+	 * @param bitstream the bitstream to read from
+	 * @throws IOException if the bits are not a valid code, or there is
+	 * an error reading the bitstream
+	 */
+	void parseReference(Bitstream bitstream) throws IOException
 	{
 		int run   = 0;
 		int level = 0;
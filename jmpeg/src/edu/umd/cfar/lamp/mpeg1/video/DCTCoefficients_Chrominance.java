@@ -19,6 +19,8 @@ import edu.umd.cfar.lamp.mpeg1.*;
 
 class DCTCoefficients_Chrominance implements Parsable
 {
+	private static final VlcTable table = new VlcTable("DCTCoefficients_Chrominance", VlcTables.DCT_DC_SIZE_CHROMINANCE, 8);
+
 	private int value = 0;
 
 
@@ -28,6 +30,21 @@ class DCTCoefficients_Chrominance implements Parsable
 	}
 	
 	public void parse(Bitstream bitstream) throws IOException
+	{
+		if (VlcTable.isUsingReference())
+			parseReference(bitstream);
+		else
+			value = table.decode(bitstream);
+	}
+
+	/**
+	 * Decodes the code by testing the bits a few at a time. This is the
+	 * original decoder, kept as a reference for the lookup table.
+	 * @param bitstream the bitstream to read from
+	 * @throws IOException if the bits are not a valid code, or there is
+	 * an error reading the bitstream
+	 */
+	void parseReference(Bitstream bitstream) throws IOException
 	{
         switch (bitstream.nextbits(2))
 		{
@@ -23,6 +23,8 @@ class DecoderState extends ParserState
 	private VideoDecoder   videoDecoder          = null;
 	private SequenceHeader currentSequenceHeader = null;
 
+	// the state below, up to quantizer_scale, belongs to the slice being
+	// decoded; slices decoded in parallel each get their own DecoderState
 	private int dct_dc_y_past  = 1024;
 	private int dct_dc_cb_past = 1024;
 	private int dct_dc_cr_past = 1024;
@@ -35,15 +37,25 @@ class DecoderState extends ParserState
 	private int currentYCbCr[];
 	private int pastYCbCr[];
 	private int futureYCbCr[];
+	private int frameWidth; // the row stride of the YCbCr buffers
 	private int frameInCurrent = -1;
 	private int frameInPast    = -1;
 	private int frameInFuture  = -1;
 
+	private AnchorFrameCache anchorCache;
+	private ParallelSliceDecoder parallelSlices = null;
+
+	// while decoding a picture from its DC coefficients, one pel per block
+	private int dcYCbCr[] = null;
+	private int dcWidth;
+
 	
 	public DecoderState(VideoDecoder videoDecoder) throws IOException, MpegException
 	{
 		this.videoDecoder = videoDecoder;
+		anchorCache = new AnchorFrameCache(videoDecoder.getAnchorCacheSize());
 		currentSequenceHeader = videoDecoder.getSequenceHeader(0);
+		frameWidth = getFrameWidth();
 
 		currentYCbCr = new int[getFrameWidth() * getFrameHeight()];
 		pastYCbCr    = new int[getFrameWidth() * getFrameHeight()];
@@ -54,6 +66,34 @@ class DecoderState extends ParserState
 		Arrays.fill(futureYCbCr,  0xFF108080); // black
 	}
 
+	/**
+	 * Creates the state for decoding slices of the pictures decoded
+	 * by another decoder state. It has its own slice, macroblock and
+	 * block state, and shares the pictures and picture header
+	 * after each call to {@link #shareFrame(DecoderState)}.
+	 * @param parent the decoder state that decodes the pictures
+	 */
+	DecoderState(DecoderState parent)
+	{
+		this.videoDecoder = parent.videoDecoder;
+		shareFrame(parent);
+	}
+
+	/**
+	 * Points this slice decoder state at the picture the parent is 
+	 * decoding and the parent's reference pictures.
+	 * @param parent the decoder state that decodes the pictures
+	 */
+	void shareFrame(DecoderState parent)
+	{
+		currentSequenceHeader = parent.currentSequenceHeader;
+		frameWidth            = parent.frameWidth;
+		currentYCbCr          = parent.currentYCbCr;
+		pastYCbCr             = parent.pastYCbCr;
+		futureYCbCr           = parent.futureYCbCr;
+		picture               = parent.picture;
+	}
+
 	public void decodePicture(Bitstream bitstream) throws IOException, MpegException
 	{
 		picture.decode(bitstream, this);
@@ -64,6 +104,33 @@ class DecoderState extends ParserState
 		slice.decode(bitstream, this);
 	}
 	
+	/**
+	 * Gets the number of threads to decode the slices of each
+	 * picture with.
+	 * @return the number of threads; 1 if slices are decoded in order
+	 */
+	public int getSliceThreads()
+	{
+		if (isDcOnly())
+			return 1;
+		return videoDecoder.getSliceThreads();
+	}
+
+	/**
+	 * Decodes all the slices of the current picture, on as many threads
+	 * as {@link #getSliceThreads()}.
+	 * @param bitstream the bitstream, at the first slice
+	 * @throws IOException
+	 * @throws MpegException
+	 */
+	public void decodeSlicesInParallel(Bitstream bitstream) throws IOException, MpegException
+	{
+		int threads = getSliceThreads();
+		if (parallelSlices == null || parallelSlices.getThreads() != threads)
+			parallelSlices = new ParallelSliceDecoder(this, threads);
+		parallelSlices.decode(bitstream);
+	}
+
 	public void decodeMacroblock(Bitstream bitstream) throws IOException, MpegException
 	{
 		macroblock.decode(bitstream, this);
@@ -100,12 +167,42 @@ class DecoderState extends ParserState
 	private void decode(int frame) throws IOException, MpegException
 	{
 		currentSequenceHeader   = videoDecoder.getSequenceHeader(frame);
+		frameWidth              = currentSequenceHeader.getFrameWidth();
 		long        position    = videoDecoder.getPosition(frame);
-		VideoSource videoSource = videoDecoder.getVideoSource();
-		videoSource.seek(position);
-		Bitstream   bitstream   = new Bitstream(videoSource);
+		Bitstream   bitstream   = videoDecoder.getVideoSource().getBitstream(position);
 		decodePicture(bitstream);
 		frameInCurrent = frame;
+
+		switch (videoDecoder.getPictureCodingType(frame))
+		{
+			case PictureCodingTypes.TYPE_I:
+			case PictureCodingTypes.TYPE_P:
+				anchorCache.put(frame, currentYCbCr);
+				break;
+		}
+	}
+
+	/**
+	 * Copies an I or P picture from the anchor cache to the current 
+	 * buffer, instead of decoding it.
+	 * @param frame the frame to get
+	 * @return <code>false</code> if the frame isn't in the cache
+	 * @throws IOException
+	 * @throws MpegException
+	 */
+	private boolean decodeFromCache(int frame) throws IOException, MpegException
+	{
+		if (!anchorCache.get(frame, currentYCbCr))
+			return false;
+		currentSequenceHeader = videoDecoder.getSequenceHeader(frame);
+		frameWidth            = currentSequenceHeader.getFrameWidth();
+		frameInCurrent        = frame;
+		return true;
+	}
+
+	AnchorFrameCache getAnchorCache()
+	{
+		return anchorCache;
 	}
 
 	private void decodeIOrP(int frame) throws IOException, MpegException
@@ -123,7 +220,7 @@ class DecoderState extends ParserState
 			swapCurrentWithPast();
 		else if (frameInFuture == frame)
 			swapCurrentWithFuture();
-		else
+		else if (!decodeFromCache(frame))
 			decode(frame);
 	}
 
@@ -137,7 +234,7 @@ class DecoderState extends ParserState
 			swapCurrentWithPast();
 		else if (frameInFuture == frame)
 			swapCurrentWithFuture();
-		else // will have to decode at least the current frame
+		else if (!decodeFromCache(frame)) // will have to decode at least the current frame
 		{
 			if (frameInCurrent == lastIOrP)
 				swapCurrentWithPast();
@@ -285,6 +382,91 @@ class DecoderState extends ParserState
 		}
 	}
 
+	/**
+	 * Decodes an I picture from the DC coefficients of its blocks
+	 * alone, which gives the picture at an eighth of its width and
+	 * height without doing any inverse DCTs. The current picture and
+	 * the reference pictures are left as they were.
+	 * @param frame the I frame to decode
+	 * @param dc where to put the pels, in the same packed YCbCr form as
+	 * the full pictures; it has to hold twice the macroblock width by
+	 * twice the macroblock height pels
+	 * @throws IOException
+	 * @throws MpegException if the frame is not an I frame
+	 */
+	public void decodeDc(int frame, int dc[]) throws IOException, MpegException
+	{
+		if (videoDecoder.getPictureCodingType(frame) != PictureCodingTypes.TYPE_I)
+			throw new MpegException("Only I frames can be decoded from their DC coefficients; frame " + frame + " is not one.");
+
+		SequenceHeader oldSequenceHeader = currentSequenceHeader;
+		int            oldFrameWidth     = frameWidth;
+		try
+		{
+			currentSequenceHeader = videoDecoder.getSequenceHeader(frame);
+			frameWidth            = currentSequenceHeader.getFrameWidth();
+			dcWidth               = 2 * getMbWidth();
+			dcYCbCr               = dc;
+			Arrays.fill(dcYCbCr, 0xFF108080); // black
+			decodePicture(videoDecoder.getVideoSource().getBitstream(videoDecoder.getPosition(frame)));
+		}
+		finally
+		{
+			dcYCbCr               = null;
+			currentSequenceHeader = oldSequenceHeader;
+			frameWidth            = oldFrameWidth;
+		}
+	}
+
+	/**
+	 * Tells the blocks to stop after their DC coefficients.
+	 * @return <code>true</code> while decoding a picture with 
+	 * {@link #decodeDc(int, int[])}
+	 */
+	public boolean isDcOnly()
+	{
+		return dcYCbCr != null;
+	}
+
+	/**
+	 * Sets the pel of a block of a picture decoded from its DC
+	 * coefficients. The luminance blocks each have their own pel,
+	 * and the chrominance blocks cover all four.
+	 * @param blockNum the block of the macroblock
+	 * @param mbRow the row of the macroblock
+	 * @param mbCol the column of the macroblock
+	 * @param value the DC value of the block, which must already be clamped
+	 */
+	public void setCurrentDc(int blockNum, int mbRow, int mbCol, int value)
+	{
+		int pos = 2*mbRow*dcWidth + 2*mbCol;
+		switch (blockNum)
+		{
+			case 0: // luminance (Y) blocks, in raster order
+			case 1:
+			case 2:
+			case 3:
+				pos += (blockNum >> 1)*dcWidth + (blockNum & 1);
+				dcYCbCr[pos] = (dcYCbCr[pos] & 0xFF00FFFF) | (value << 16);
+				break;
+			case 4: // Cb block
+				setCurrentDcChroma(pos, 0xFFFF00FF, value << 8);
+				break;
+			case 5: // Cr block
+				setCurrentDcChroma(pos, 0xFFFFFF00, value);
+				break;
+		}
+	}
+
+	private void setCurrentDcChroma(int pos, int keep, int value)
+	{
+		int below = pos + dcWidth;
+		dcYCbCr[pos]       = (dcYCbCr[pos]       & keep) | value;
+		dcYCbCr[pos + 1]   = (dcYCbCr[pos + 1]   & keep) | value;
+		dcYCbCr[below]     = (dcYCbCr[below]     & keep) | value;
+		dcYCbCr[below + 1] = (dcYCbCr[below + 1] & keep) | value;
+	}
+
 	private void decodeD(int frame) throws IOException, MpegException
 	{
 	}
@@ -412,17 +594,80 @@ class DecoderState extends ParserState
 
 	public void setCurrentY(int row, int col, int newY) throws IOException, MpegException
 	{
-		setCurrentY(row*getFrameWidth() + col, newY);
+		setCurrentY(row*frameWidth + col, newY);
 	}
 
 	public void setCurrentCb(int row, int col, int newCb) throws IOException, MpegException
 	{
-		setCurrentCb(row*getFrameWidth() + col, newCb);
+		setCurrentCb(row*frameWidth + col, newCb);
 	}
 
 	public void setCurrentCr(int row, int col, int newCr) throws IOException, MpegException
 	{
-		setCurrentCr(row*getFrameWidth() + col, newCr);
+		setCurrentCr(row*frameWidth + col, newCr);
+	}
+
+	/**
+	 * Writes the luminance of an 8x8 block of the current picture.
+	 * @param pel the luminance values, which must already be clamped
+	 * @param row the row of the block's top left pel
+	 * @param col the column of the block's top left pel
+	 */
+	public void setCurrentYBlock(int pel[][], int row, int col)
+	{
+		int pos = row*frameWidth + col;
+		for (int i = 0; i < 8; i++, pos += frameWidth)
+		{
+			int line[] = pel[i];
+			for (int j = 0; j < 8; j++)
+			{
+				currentYCbCr[pos + j] = (currentYCbCr[pos + j] & 0xFF00FFFF) | (line[j] << 16);
+			}
+		}
+	}
+
+	/**
+	 * Writes an 8x8 block of Cb values to the current picture, each 
+	 * upsampled to 2x2 pels.
+	 * @param pel the Cb values, which must already be clamped
+	 * @param row the row of the macroblock's top left pel
+	 * @param col the column of the macroblock's top left pel
+	 */
+	public void setCurrentCbBlock(int pel[][], int row, int col)
+	{
+		setCurrentChromaBlock(pel, row, col, 0xFFFF00FF, 8);
+	}
+
+	/**
+	 * Writes an 8x8 block of Cr values to the current picture, each 
+	 * upsampled to 2x2 pels.
+	 * @param pel the Cr values, which must already be clamped
+	 * @param row the row of the macroblock's top left pel
+	 * @param col the column of the macroblock's top left pel
+	 */
+	public void setCurrentCrBlock(int pel[][], int row, int col)
+	{
+		setCurrentChromaBlock(pel, row, col, 0xFFFFFF00, 0);
+	}
+
+	private void setCurrentChromaBlock(int pel[][], int row, int col, int keep, int shift)
+	{
+		int pos = row*frameWidth + col;
+		for (int i = 0; i < 8; i++, pos += 2*frameWidth)
+		{
+			int line[] = pel[i];
+			int below = pos + frameWidth;
+			for (int j = 0; j < 8; j++)
+			{
+				int value = line[j] << shift;
+				int a = pos + 2*j;
+				int b = below + 2*j;
+				currentYCbCr[a]     = (currentYCbCr[a]     & keep) | value;
+				currentYCbCr[a + 1] = (currentYCbCr[a + 1] & keep) | value;
+				currentYCbCr[b]     = (currentYCbCr[b]     & keep) | value;
+				currentYCbCr[b + 1] = (currentYCbCr[b + 1] & keep) | value;
+			}
+		}
 	}
 
 	public int getPastY(int index)
@@ -442,17 +687,17 @@ class DecoderState extends ParserState
 
 	public int getPastY(int row, int col) throws IOException, MpegException
 	{
-		return getPastY(row*getFrameWidth() + col);
+		return getPastY(row*frameWidth + col);
 	}
 
 	public int getPastCb(int row, int col) throws IOException, MpegException
 	{
-		return getPastCb(row*getFrameWidth() + col);
+		return getPastCb(row*frameWidth + col);
 	}
 	
 	public int getPastCr(int row, int col) throws IOException, MpegException
 	{
-		return getPastCr(row*getFrameWidth() + col);
+		return getPastCr(row*frameWidth + col);
 	}
 
 	public int getFutureY(int index)
@@ -472,17 +717,17 @@ class DecoderState extends ParserState
 
 	public int getFutureY(int row, int col) throws IOException, MpegException
 	{
-		return getFutureY(row*getFrameWidth() + col);
+		return getFutureY(row*frameWidth + col);
 	}
 
 	public int getFutureCb(int row, int col) throws IOException, MpegException
 	{
-		return getFutureCb(row*getFrameWidth() + col);
+		return getFutureCb(row*frameWidth + col);
 	}
 	
 	public int getFutureCr(int row, int col) throws IOException, MpegException
 	{
-		return getFutureCr(row*getFrameWidth() + col);
+		return getFutureCr(row*frameWidth + col);
 	}
 
 	public void resetReconForPrev()
@@ -536,7 +781,6 @@ class DecoderState extends ParserState
 		int mb_column  = macroblock_address % getMbWidth();
 		int pel_row    = mb_row    * 16;
 		int pel_col    = mb_column * 16;
-		int frameWidth = getFrameWidth();
 		for (int i = 0; i < 16; i++)
 		{
 			int pos = (pel_row+i)*frameWidth + pel_col;
@@ -552,7 +796,6 @@ class DecoderState extends ParserState
 		int original_pel_col = mb_column * 16;
 		int pel_row          = 0;
 		int pel_col          = 0;
-		int frameWidth       = getFrameWidth();
 
 		for (int j = 0; j < 6; j++)
 		{
@@ -0,0 +1,261 @@
+/***************************************
+ *            ViPER-MPEG               *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *             MPEG-1 Decoder          *
+ * Distributed under the LGPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package edu.umd.cfar.lamp.mpeg1.video;
+
+/**
+ * Inverse discrete cosine transforms of 8x8 blocks. Blocks are stored
+ * row by row in an array of 64 ints, with the horizontal frequency
+ * increasing along each row.
+ * <p>
+ * {@link #transform(int[])} is the one the decoder uses. It is a
+ * separable fixed-point version of Chen and Wang's fast IDCT, with 11
+ * bits of precision in the constants, which meets the IEEE 1180 accuracy
+ * requirements for MPEG decoders. {@link #referenceTransform(int[])}
+ * is the direct double precision matrix product it replaced, kept to
+ * check it against.
+ * </p>
+ */
+final class Idct
+{
+	private static final int W1 = 2841; // 2048*sqrt(2)*cos(1*pi/16)
+	private static final int W2 = 2676; // 2048*sqrt(2)*cos(2*pi/16)
+	private static final int W3 = 2408; // 2048*sqrt(2)*cos(3*pi/16)
+	private static final int W5 = 1609; // 2048*sqrt(2)*cos(5*pi/16)
+	private static final int W6 = 1108; // 2048*sqrt(2)*cos(6*pi/16)
+	private static final int W7 = 565;  // 2048*sqrt(2)*cos(7*pi/16)
+
+	// cosine matrix for the reference transform
+	private static final double c[][] = new double[8][8];
+	static
+	{
+		for (int k = 0; k < 8; k++)
+		{
+			double s = (k == 0) ? Math.sqrt(0.125) : 0.5;
+			for (int j = 0; j < 8; j++)
+			{
+				c[k][j] = s * Math.cos(Math.PI * k * (2 * j + 1) / 16.0);
+			}
+		}
+	}
+
+	private Idct()
+	{
+	}
+
+	/**
+	 * Transforms a block of dequantized coefficients, in place, into
+	 * pel differences. The results are clipped to the range -256..255.
+	 * @param block the coefficients, each in the range -2048..2047
+	 */
+	static void transform(int block[])
+	{
+		for (int i = 0; i < 64; i += 8)
+		{
+			transformRow(block, i);
+		}
+		for (int i = 0; i < 8; i++)
+		{
+			transformColumn(block, i);
+		}
+	}
+
+	/**
+	 * Transforms a block with only a DC coefficient. This gives the same
+	 * result as {@link #transform(int[])}, where every pel is the same.
+	 * @param dc the DC coefficient
+	 * @return the value of every pel
+	 */
+	static int transformDC(int dc)
+	{
+		return clip((dc + 4) >> 3);
+	}
+
+	private static void transformRow(int blk[], int i)
+	{
+		int x0, x1, x2, x3, x4, x5, x6, x7, x8;
+
+		// shortcut: only the DC term is set
+		if (((x1 = blk[i+4] << 11) | (x2 = blk[i+6]) | (x3 = blk[i+2])
+			| (x4 = blk[i+1]) | (x5 = blk[i+7]) | (x6 = blk[i+5]) | (x7 = blk[i+3])) == 0)
+		{
+			int dc = blk[i] << 3;
+			blk[i] = blk[i+1] = blk[i+2] = blk[i+3] = blk[i+4] = blk[i+5] = blk[i+6] = blk[i+7] = dc;
+			return;
+		}
+
+		x0 = (blk[i] << 11) + 128; // for proper rounding in the fourth stage
+
+		// first stage
+		x8 = W7 * (x4 + x5);
+		x4 = x8 + (W1 - W7) * x4;
+		x5 = x8 - (W1 + W7) * x5;
+		x8 = W3 * (x6 + x7);
+		x6 = x8 - (W3 - W5) * x6;
+		x7 = x8 - (W3 + W5) * x7;
+
+		// second stage
+		x8 = x0 + x1;
+		x0 -= x1;
+		x1 = W6 * (x3 + x2);
+		x2 = x1 - (W2 + W6) * x2;
+		x3 = x1 + (W2 - W6) * x3;
+		x1 = x4 + x6;
+		x4 -= x6;
+		x6 = x5 + x7;
+		x5 -= x7;
+
+		// third stage
+		x7 = x8 + x3;
+		x8 -= x3;
+		x3 = x0 + x2;
+		x0 -= x2;
+		x2 = (181 * (x4 + x5) + 128) >> 8;
+		x4 = (181 * (x4 - x5) + 128) >> 8;
+
+		// fourth stage
+		blk[i]   = (x7 + x1) >> 8;
+		blk[i+1] = (x3 + x2) >> 8;
+		blk[i+2] = (x0 + x4) >> 8;
+		blk[i+3] = (x8 + x6) >> 8;
+		blk[i+4] = (x8 - x6) >> 8;
+		blk[i+5] = (x0 - x4) >> 8;
+		blk[i+6] = (x3 - x2) >> 8;
+		blk[i+7] = (x7 - x1) >> 8;
+	}
+
+	private static void transformColumn(int blk[], int i)
+	{
+		int x0, x1, x2, x3, x4, x5, x6, x7, x8;
+
+		// shortcut: only the DC term is set
+		if (((x1 = blk[i+32] << 8) | (x2 = blk[i+48]) | (x3 = blk[i+16])
+			| (x4 = blk[i+8]) | (x5 = blk[i+56]) | (x6 = blk[i+40]) | (x7 = blk[i+24])) == 0)
+		{
+			int dc = clip((blk[i] + 32) >> 6);
+			blk[i] = blk[i+8] = blk[i+16] = blk[i+24] = blk[i+32] = blk[i+40] = blk[i+48] = blk[i+56] = dc;
+			return;
+		}
+
+		x0 = (blk[i] << 8) + 8192;
+
+		// first stage
+		x8 = W7 * (x4 + x5) + 4;
+		x4 = (x8 + (W1 - W7) * x4) >> 3;
+		x5 = (x8 - (W1 + W7) * x5) >> 3;
+		x8 = W3 * (x6 + x7) + 4;
+		x6 = (x8 - (W3 - W5) * x6) >> 3;
+		x7 = (x8 - (W3 + W5) * x7) >> 3;
+
+		// second stage
+		x8 = x0 + x1;
+		x0 -= x1;
+		x1 = W6 * (x3 + x2) + 4;
+		x2 = (x1 - (W2 + W6) * x2) >> 3;
+		x3 = (x1 + (W2 - W6) * x3) >> 3;
+		x1 = x4 + x6;
+		x4 -= x6;
+		x6 = x5 + x7;
+		x5 -= x7;
+
+		// third stage
+		x7 = x8 + x3;
+		x8 -= x3;
+		x3 = x0 + x2;
+		x0 -= x2;
+		x2 = (181 * (x4 + x5) + 128) >> 8;
+		x4 = (181 * (x4 - x5) + 128) >> 8;
+
+		// fourth stage
+		blk[i]    = clip((x7 + x1) >> 14);
+		blk[i+8]  = clip((x3 + x2) >> 14);
+		blk[i+16] = clip((x0 + x4) >> 14);
+		blk[i+24] = clip((x8 + x6) >> 14);
+		blk[i+32] = clip((x8 - x6) >> 14);
+		blk[i+40] = clip((x0 - x4) >> 14);
+		blk[i+48] = clip((x3 - x2) >> 14);
+		blk[i+56] = clip((x7 - x1) >> 14);
+	}
+
+	private static int clip(int value)
+	{
+		return (value < -256) ? -256 : (value > 255) ? 255 : value;
+	}
+
+	/**
+	 * Transforms a block with a double precision matrix product, rounding
+	 * and clipping the results as {@link #transform(int[])} does. This is
+	 * much slower, and is only kept as a reference.
+	 * @param block the coefficients, replaced with the pel differences
+	 */
+	static void referenceTransform(int block[])
+	{
+		double temp[][] = new double[8][8];
+		for (int i = 0; i < 8; i++)
+		{
+			for (int j = 0; j < 8; j++)
+			{
+				for (int k = 0; k < 8; k++)
+				{
+					temp[i][j] += block[i*8 + k] * c[k][j];
+				}
+			}
+		}
+		for (int i = 0; i < 8; i++)
+		{
+			for (int j = 0; j < 8; j++)
+			{
+				double sum = 0.0;
+				for (int k = 0; k < 8; k++)
+				{
+					sum += c[k][i] * temp[k][j];
+				}
+				block[i*8 + j] = clip((int) Math.floor(sum + 0.5));
+			}
+		}
+	}
+
+	/**
+	 * Computes the forward transform of a block of pels with a double
+	 * precision matrix product, rounding the results and clipping them
+	 * to -2048..2047. This is used to make test data for the inverse
+	 * transforms.
+	 * @param block the pels, replaced with the coefficients
+	 */
+	static void referenceForwardTransform(int block[])
+	{
+		double temp[][] = new double[8][8];
+		for (int i = 0; i < 8; i++)
+		{
+			for (int j = 0; j < 8; j++)
+			{
+				for (int k = 0; k < 8; k++)
+				{
+					temp[i][j] += c[i][k] * block[k*8 + j];
+				}
+			}
+		}
+		for (int i = 0; i < 8; i++)
+		{
+			for (int j = 0; j < 8; j++)
+			{
+				double sum = 0.0;
+				for (int k = 0; k < 8; k++)
+				{
+					sum += temp[i][k] * c[j][k];
+				}
+				int v = (int) Math.floor(sum + 0.5);
+				block[i*8 + j] = (v < -2048) ? -2048 : (v > 2047) ? 2047 : v;
+			}
+		}
+	}
+}
@@ -0,0 +1,127 @@
+/***************************************
+ *            ViPER-MPEG               *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *             MPEG-1 Decoder          *
+ * Distributed under the LGPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package edu.umd.cfar.lamp.mpeg1.video;
+
+import junit.framework.*;
+
+/**
+ * Checks {@link Idct#transform(int[])} against the accuracy requirements
+ * of IEEE 1180-1990, using the random blocks the standard describes.
+ */
+public class IdctTest extends TestCase
+{
+	private static final int BLOCKS = 10000;
+
+	private long randx;
+
+	public IdctTest(String name)
+	{
+		super(name);
+	}
+
+	/**
+	 * The random number generator given in the standard.
+	 */
+	private int random(int low, int high)
+	{
+		randx = (randx * 1103515245L) + 12345L;
+		long i = randx & 0x7ffffffeL;
+		double x = ((double) i) / (double) 0x7fffffff;
+		x *= (low + high + 1);
+		return (int) x - low;
+	}
+
+	private void checkAccuracy(int low, int high, int sign)
+	{
+		randx = 1;
+		int block[] = new int[64];
+		int expected[] = new int[64];
+		long errors[] = new long[64];
+		long squaredErrors[] = new long[64];
+		int peak = 0;
+		for (int b = 0; b < BLOCKS; b++)
+		{
+			for (int i = 0; i < 64; i++)
+			{
+				block[i] = random(low, high) * sign;
+			}
+			Idct.referenceForwardTransform(block);
+			System.arraycopy(block, 0, expected, 0, 64);
+			Idct.referenceTransform(expected);
+			Idct.transform(block);
+			for (int i = 0; i < 64; i++)
+			{
+				int err = block[i] - expected[i];
+				peak = Math.max(peak, Math.abs(err));
+				errors[i] += err;
+				squaredErrors[i] += err * err;
+			}
+		}
+		String range = "[" + (-low * sign) + ", " + (high * sign) + "]";
+		assertTrue("peak error " + peak + " for " + range, peak <= 1);
+		double totalError = 0;
+		double totalSquaredError = 0;
+		for (int i = 0; i < 64; i++)
+		{
+			double meanError = (double) errors[i] / BLOCKS;
+			double meanSquaredError = (double) squaredErrors[i] / BLOCKS;
+			assertTrue("mean error " + meanError + " at " + i + " for " + range,
+				Math.abs(meanError) <= 0.015);
+			assertTrue("mean squared error " + meanSquaredError + " at " + i + " for " + range,
+				meanSquaredError <= 0.06);
+			totalError += errors[i];
+			totalSquaredError += squaredErrors[i];
+		}
+		totalError /= 64.0 * BLOCKS;
+		totalSquaredError /= 64.0 * BLOCKS;
+		assertTrue("overall mean error " + totalError + " for " + range,
+			Math.abs(totalError) <= 0.0015);
+		assertTrue("overall mean squared error " + totalSquaredError + " for " + range,
+			totalSquaredError <= 0.02);
+	}
+
+	public void testIeee1180Accuracy()
+	{
+		checkAccuracy(256, 255, 1);
+		checkAccuracy(5, 5, 1);
+		checkAccuracy(300, 300, 1);
+		checkAccuracy(256, 255, -1);
+		checkAccuracy(5, 5, -1);
+		checkAccuracy(300, 300, -1);
+	}
+
+	public void testZeroBlock()
+	{
+		int block[] = new int[64];
+		Idct.transform(block);
+		for (int i = 0; i < 64; i++)
+		{
+			assertEquals(0, block[i]);
+		}
+	}
+
+	public void testDCOnly()
+	{
+		for (int dc = -2048; dc < 2048; dc++)
+		{
+			int block[] = new int[64];
+			block[0] = dc;
+			Idct.transform(block);
+			int expected = Idct.transformDC(dc);
+			for (int i = 0; i < 64; i++)
+			{
+				assertEquals("dc " + dc, expected, block[i]);
+			}
+		}
+	}
+}
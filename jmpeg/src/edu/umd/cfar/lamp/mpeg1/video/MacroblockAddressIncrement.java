@@ -19,10 +19,27 @@ import edu.umd.cfar.lamp.mpeg1.*;
 
 class MacroblockAddressIncrement implements Parsable
 {
+	private static final VlcTable table = new VlcTable("MacroblockAddressIncrement", VlcTables.MACROBLOCK_ADDRESS_INCREMENT, 11);
+
 	private int value = 0;
 	
 
 	public void parse(Bitstream bitstream) throws IOException
+	{
+		if (VlcTable.isUsingReference())
+			parseReference(bitstream);
+		else
+			value = table.decode(bitstream);
+	}
+
+	/**
+	 * Decodes the code by testing the bits a few at a time. This is the
+	 * original decoder, kept as a reference for the lookup table.
+	 * @param bitstream the bitstream to read from
+	 * @throws IOException if the bits are not a valid code, or there is
+	 * an error reading the bitstream
+	 */
+	void parseReference(Bitstream bitstream) throws IOException
 	{
 		switch (bitstream.nextbits(1))
 		{
@@ -16,6 +16,13 @@ package edu.umd.cfar.lamp.mpeg1.video;
 
 class MacroblockType
 {
+	// flags for setValues(int), used by the macroblock_type tables in VlcTables
+	static final int QUANT           = 1 << 4;
+	static final int MOTION_FORWARD  = 1 << 3;
+	static final int MOTION_BACKWARD = 1 << 2;
+	static final int PATTERN         = 1 << 1;
+	static final int INTRA           = 1;
+
 	private boolean
 		macroblock_quant,
 		macroblock_motion_forward,
@@ -37,6 +44,15 @@ class MacroblockType
 		this.macroblock_intra           = macroblock_intra;
 	}
 
+	public void setValues(int flags)
+	{
+		this.macroblock_quant           = (flags & QUANT) != 0;
+		this.macroblock_motion_forward  = (flags & MOTION_FORWARD) != 0;
+		this.macroblock_motion_backward = (flags & MOTION_BACKWARD) != 0;
+		this.macroblock_pattern         = (flags & PATTERN) != 0;
+		this.macroblock_intra           = (flags & INTRA) != 0;
+	}
+
 	public boolean getMacroblockQuant()
 	{
 		return macroblock_quant;
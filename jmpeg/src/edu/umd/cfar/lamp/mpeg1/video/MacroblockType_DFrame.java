@@ -20,10 +20,27 @@ import edu.umd.cfar.lamp.mpeg1.*;
 
 class MacroblockType_DFrame implements Parsable
 {
+	private static final VlcTable table = new VlcTable("MacroblockType_DFrame", VlcTables.MACROBLOCK_TYPE_D, 6);
+
 	private MacroblockType value = new MacroblockType();
 
 
 	public void parse(Bitstream bitstream) throws IOException
+	{
+		if (VlcTable.isUsingReference())
+			parseReference(bitstream);
+		else
+			value.setValues(table.decode(bitstream));
+	}
+
+	/**
+	 * Decodes the code by testing the bits a few at a time. This is the
+	 * original decoder, kept as a reference for the lookup table.
+	 * @param bitstream the bitstream to read from
+	 * @throws IOException if the bits are not a valid code, or there is
+	 * an error reading the bitstream
+	 */
+	void parseReference(Bitstream bitstream) throws IOException
 	{
 		boolean
 			macroblock_quant,
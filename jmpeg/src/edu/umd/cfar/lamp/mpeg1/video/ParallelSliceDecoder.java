@@ -0,0 +1,191 @@
+/***************************************
+ *            ViPER-MPEG               *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *             MPEG-1 Decoder          *
+ * Distributed under the LGPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package edu.umd.cfar.lamp.mpeg1.video;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import edu.columbia.ee.flavor.*;
+import edu.umd.cfar.lamp.mpeg1.*;
+
+/**
+ * Decodes the slices of a picture at the same time. A slice starts
+ * over the DC predictors, motion vector predictors and macroblock
+ * address, so once the picture header is read and the reference
+ * pictures are in place, every slice can be decoded on its own. The
+ * slices are copied out of the bitstream first, up to the next start
+ * code, and then each thread takes the next slice that is left, using
+ * its own {@link DecoderState} for the slice state. Each slice writes
+ * only its own macroblocks of the current picture.
+ */
+final class ParallelSliceDecoder
+{
+	/** Put after each slice, so it ends in a start code like it does in the stream. */
+	private static final byte END_CODE[] = {0, 0, 1, (byte) (VideoStartCodes.SEQUENCE_END_CODE & 0xFF)};
+
+	/** Threads shared by all decoders, which end after a minute without work. */
+	private static ExecutorService pool = null;
+
+	private final DecoderState parent;
+	/** The slice states for the other threads; the parent decodes slices too. */
+	private final DecoderState helpers[];
+
+
+	/**
+	 * Creates a slice decoder for the pictures decoded by the given
+	 * decoder state.
+	 * @param parent the decoder state that decodes the pictures
+	 * @param threads the number of threads to use, including the
+	 * calling thread
+	 */
+	ParallelSliceDecoder(DecoderState parent, int threads)
+	{
+		this.parent  = parent;
+		this.helpers = new DecoderState[threads - 1];
+		for (int i = 0; i < helpers.length; i++)
+		{
+			helpers[i] = new DecoderState(parent);
+		}
+	}
+
+	int getThreads()
+	{
+		return helpers.length + 1;
+	}
+
+	private static synchronized ExecutorService getPool()
+	{
+		if (pool == null)
+		{
+			pool = Executors.newCachedThreadPool(new ThreadFactory()
+			{
+				public Thread newThread(Runnable r)
+				{
+					Thread t = new Thread(r, "SliceDecoder");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return pool;
+	}
+
+	/**
+	 * Decodes all the slices of the picture.
+	 * @param bitstream the bitstream, at the first slice start code;
+	 * it is left at the start code after the last slice
+	 * @throws IOException if there is an error reading the slices
+	 */
+	void decode(Bitstream bitstream) throws IOException
+	{
+		List slices = readSlices(bitstream);
+		AtomicInteger next = new AtomicInteger(0);
+
+		int helping = Math.min(helpers.length, slices.size() - 1);
+		Future futures[] = new Future[helping];
+		for (int i = 0; i < helping; i++)
+		{
+			helpers[i].shareFrame(parent);
+			futures[i] = getPool().submit(new SliceWorker(helpers[i], slices, next));
+		}
+		new SliceWorker(parent, slices, next).run();
+
+		// the picture isn't done until every slice is, so wait even if interrupted
+		boolean interrupted = false;
+		for (int i = 0; i < helping; i++)
+		{
+			while (true)
+			{
+				try
+				{
+					futures[i].get();
+					break;
+				}
+				catch (InterruptedException e)
+				{
+					interrupted = true;
+				}
+				catch (ExecutionException e)
+				{
+					if (e.getCause() instanceof Error)
+						throw (Error) e.getCause();
+					throw new RuntimeException(e.getCause());
+				}
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * Copies each slice, from its start code up to the next start code.
+	 * @return the slices, as <code>byte[]</code>s
+	 */
+	private static List readSlices(Bitstream bitstream) throws IOException
+	{
+		List slices = new ArrayList();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		while (VideoStartCodes.isSliceStartCode(bitstream.nextbits(32)))
+		{
+			out.reset();
+			for (int i = 0; i < 4; i++)
+			{
+				out.write(bitstream.getbits(8));
+			}
+			while (bitstream.nextbits(24) != 1)
+			{
+				out.write(bitstream.getbits(8));
+			}
+			out.write(END_CODE, 0, END_CODE.length);
+			slices.add(out.toByteArray());
+		}
+		return slices;
+	}
+
+	/**
+	 * Decodes slices until there are none left.
+	 */
+	private static class SliceWorker implements Runnable
+	{
+		private final DecoderState  decoderState;
+		private final List          slices;
+		private final AtomicInteger next;
+
+		SliceWorker(DecoderState decoderState, List slices, AtomicInteger next)
+		{
+			this.decoderState = decoderState;
+			this.slices       = slices;
+			this.next         = next;
+		}
+
+		public void run()
+		{
+			int i;
+			while ((i = next.getAndIncrement()) < slices.size())
+			{
+				Bitstream bitstream = new ByteBufferBitstream(ByteBuffer.wrap((byte[]) slices.get(i)));
+				try
+				{
+					decoderState.decodeSlice(bitstream);
+				}
+				catch (Exception e)
+				{
+					// as when decoding in order, give up on the rest of the slice
+				}
+			}
+		}
+	}
+}
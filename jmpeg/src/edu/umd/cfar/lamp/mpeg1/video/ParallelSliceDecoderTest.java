@@ -0,0 +1,97 @@
+/***************************************
+ *            ViPER-MPEG               *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *             MPEG-1 Decoder          *
+ * Distributed under the LGPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package edu.umd.cfar.lamp.mpeg1.video;
+
+import java.awt.image.*;
+import java.io.*;
+import java.util.*;
+
+import junit.framework.*;
+import edu.umd.cfar.lamp.mpeg1.*;
+import edu.umd.cfar.lamp.mpeg1.test.*;
+
+/**
+ * Checks that decoding the slices of each picture at the same time
+ * gives the same pictures as decoding them in order.
+ */
+public class ParallelSliceDecoderTest extends TestCase
+{
+	private static final String SAMPLE = "samples/media/LAMP-Moving.mpeg";
+
+	private TemporaryIndexCache cache;
+
+	public ParallelSliceDecoderTest(String name)
+	{
+		super(name);
+	}
+
+	protected void setUp() throws IOException
+	{
+		cache = new TemporaryIndexCache();
+	}
+
+	protected void tearDown()
+	{
+		cache.restore();
+	}
+
+	private Mpeg1VideoStream openSample(int sliceThreads) throws IOException, MpegException
+	{
+		Mpeg1VideoStream stream = new Mpeg1File(new File(SAMPLE)).getVideoStream();
+		stream.getVideoDecoder().setSliceThreads(sliceThreads);
+		// make every frame go through the slice decoder
+		stream.getVideoDecoder().setAnchorCacheSize(0);
+		return stream;
+	}
+
+	private int[] decode(Mpeg1VideoStream stream, int frame) throws IOException, MpegException, InterruptedException
+	{
+		stream.seek(frame);
+		int width = stream.getFrameWidth();
+		int height = stream.getFrameHeight();
+		int pels[] = new int[width * height];
+		PixelGrabber grabber = new PixelGrabber(stream.getImage(), 0, 0, width, height, pels, 0, width);
+		assertTrue(grabber.grabPixels());
+		return pels;
+	}
+
+	public void testSameAsInOrder() throws IOException, MpegException, InterruptedException
+	{
+		Mpeg1VideoStream inOrder = openSample(1);
+		Mpeg1VideoStream parallel = openSample(3);
+		int numFrames = inOrder.getNumFrames();
+		for (int i = 0; i < numFrames; i++)
+		{
+			assertTrue("Frame " + i + " differs", Arrays.equals(decode(inOrder, i), decode(parallel, i)));
+		}
+
+		// backward, so reference pictures are decoded out of order
+		for (int i = numFrames - 1; i >= 0; i -= 5)
+		{
+			assertTrue("Frame " + i + " differs", Arrays.equals(decode(inOrder, i), decode(parallel, i)));
+		}
+	}
+
+	public void testBadThreadCount() throws IOException, MpegException
+	{
+		try
+		{
+			openSample(0);
+			fail("Zero slice threads should be refused");
+		}
+		catch (IllegalArgumentException e)
+		{
+			// expected
+		}
+	}
+}
@@ -244,6 +244,12 @@ class Picture implements Decodable
 			NextStartCode.parse(bitstream);
 		}
 
+		if (decoderState.getSliceThreads() > 1)
+		{
+			decoderState.decodeSlicesInParallel(bitstream);
+			return;
+		}
+
 		do
 		{
 			try
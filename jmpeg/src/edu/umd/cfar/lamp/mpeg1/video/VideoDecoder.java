@@ -20,11 +20,18 @@ import edu.umd.cfar.lamp.mpeg1.*;
 
 public class VideoDecoder
 {
+	/** The default memory budget for copies of decoded I and P pictures, in bytes */
+	public static final long DEFAULT_ANCHOR_CACHE_SIZE = 32 * 1024 * 1024;
+
 	private DecoderState decoderState = null;
 	private VideoIndex   videoIndex   = new VideoIndex(this);
 	private VideoSource  videoSource  = null;
 
 	private int          currentFrame = -1;
+	private long         anchorCacheSize = DEFAULT_ANCHOR_CACHE_SIZE;
+	private int          sliceThreads    = defaultSliceThreads;
+
+	private static int   defaultSliceThreads = 1;
 
 
 	public VideoDecoder(VideoSource videoSource) throws IOException, MpegException
@@ -62,6 +69,77 @@ public class VideoDecoder
 		}
 	}
 	
+	/**
+	 * Gets the memory budget for keeping copies of decoded I and P 
+	 * pictures, which lets the decoder seek back to a recently decoded
+	 * group of pictures without decoding it again from the start.
+	 * @return the most memory to use for the copies, in bytes
+	 */
+	public long getAnchorCacheSize()
+	{
+		return anchorCacheSize;
+	}
+
+	/**
+	 * Sets the memory budget for keeping copies of decoded I and P 
+	 * pictures. A budget smaller than one picture turns the cache off.
+	 * @param bytes the most memory to use for the copies
+	 */
+	public void setAnchorCacheSize(long bytes)
+	{
+		anchorCacheSize = bytes;
+		if (decoderState != null)
+			decoderState.getAnchorCache().setMaxBytes(bytes);
+	}
+
+	/**
+	 * Gets the number of threads new decoders use to decode the slices
+	 * of each picture.
+	 * @return the default number of slice threads
+	 */
+	public static int getDefaultSliceThreads()
+	{
+		return defaultSliceThreads;
+	}
+
+	/**
+	 * Sets the number of threads new decoders use to decode the slices
+	 * of each picture. The default, 1, decodes them in order on the
+	 * calling thread.
+	 * @param threads the default number of slice threads
+	 */
+	public static void setDefaultSliceThreads(int threads)
+	{
+		defaultSliceThreads = threads;
+	}
+
+	/**
+	 * Gets the number of threads this decoder uses to decode the
+	 * slices of each picture.
+	 * @return the number of slice threads
+	 */
+	public int getSliceThreads()
+	{
+		return sliceThreads;
+	}
+
+	/**
+	 * Sets the number of threads to decode the slices of each picture
+	 * with. Slices only depend on the picture header and the reference
+	 * pictures, so with more than one thread the slices of a picture are
+	 * read first and then decoded at the same time, each into its own
+	 * rows of the picture. This helps with large pictures that are cut
+	 * into many slices; small pictures are usually faster decoded
+	 * in order.
+	 * @param threads the number of threads; 1 decodes slices in order
+	 */
+	public void setSliceThreads(int threads)
+	{
+		if (threads < 1)
+			throw new IllegalArgumentException("Need at least one thread: " + threads);
+		sliceThreads = threads;
+	}
+
 	public SequenceHeader getSequenceHeader(int frame) throws IOException, MpegException
 	{
 		index();
@@ -109,6 +187,18 @@ public class VideoDecoder
 		return videoIndex.getNumFrames();
 	}
 
+	/**
+	 * Gets the number of frames indexed so far, without waiting for a
+	 * background indexer to finish.
+	 * @return the number of frames that can be looked up now; the
+	 * number of frames in the stream once it is indexed
+	 * @see #isIndexing()
+	 */
+	public int getNumFramesIndexed()
+	{
+		return videoIndex.getNumFrames();
+	}
+
 	public int getCurrentFrame()
 	{
 		return currentFrame;
@@ -119,7 +209,7 @@ public class VideoDecoder
 		if (frame < 0)
 			throw new FrameNotFoundException();
 
-		index();
+		videoIndex.index(frame);
 		initDecoderState();
 
 		if (frame != getCurrentFrame())
@@ -136,7 +226,7 @@ public class VideoDecoder
 
 	public long getPosition(int frame) throws IOException, MpegException
 	{
-		index();
+		videoIndex.index(frame);
 		return videoIndex.getPositionOfFrame(frame);
 	}
 
@@ -147,7 +237,7 @@ public class VideoDecoder
 
 	public int getPictureCodingType(int frame) throws IOException, MpegException
 	{
-		index();
+		videoIndex.index(frame);
 		return videoIndex.getPictureCodingTypeOfFrame(frame);
 	}
 
@@ -158,66 +248,173 @@ public class VideoDecoder
 	
 	public int getLastIOrPFrame(int frame) throws IOException, MpegException
 	{
-		index();
+		videoIndex.index(frame);
 		return videoIndex.getLastIOrPFrame(frame);
 	}
 
+	public int getNumGroupsOfPictures() throws IOException, MpegException
+	{
+		index();
+		return videoIndex.getNumGroupsOfPictures();
+	}
+
+	public int getGroupOfPicturesNumberForFrame(int frame) throws IOException, MpegException
+	{
+		videoIndex.index(frame);
+		return videoIndex.getGroupOfPicturesNumberForFrame(frame);
+	}
+
+	public int getGroupOfPicturesStartFrame(int groupOfPicturesNumber) throws IOException, MpegException
+	{
+		index();
+		return videoIndex.getStartFrame(groupOfPicturesNumber);
+	}
+
+	/**
+	 * Gets the I frame a group of pictures starts from. In display order
+	 * it may come after some B frames that depend on the group before.
+	 * @param groupOfPicturesNumber the group of pictures
+	 * @return the group's first I frame
+	 * @throws FrameNotFoundException if the group has no I frame
+	 * @throws IOException
+	 * @throws MpegException
+	 */
+	public int getGroupOfPicturesKeyframe(int groupOfPicturesNumber) throws IOException, MpegException
+	{
+		int start = getGroupOfPicturesStartFrame(groupOfPicturesNumber);
+		int end = groupOfPicturesNumber + 1 < getNumGroupsOfPictures() ? getGroupOfPicturesStartFrame(groupOfPicturesNumber + 1) : getNumFrames();
+		for (int frame = start; frame < end; frame++)
+		{
+			if (videoIndex.getPictureCodingTypeOfFrame(frame) == PictureCodingTypes.TYPE_I)
+				return frame;
+		}
+		throw new FrameNotFoundException();
+	}
+
 	public void index() throws IOException, MpegException
 	{
 		videoIndex.index();
 	}
 
+	/**
+	 * Starts indexing the stream on a background thread. Frames can be
+	 * decoded as soon as their group of pictures is indexed; anything
+	 * that needs the whole index waits for it.
+	 * @param whenIndexed run on the indexing thread once the whole
+	 * stream is indexed; may be <code>null</code>
+	 * @return <code>false</code> if the stream was already indexed, or
+	 * is being indexed
+	 * @throws IOException
+	 * @throws MpegException
+	 * @see VideoIndex#startIndexing(Runnable)
+	 */
+	public boolean startIndexing(Runnable whenIndexed) throws IOException, MpegException
+	{
+		return videoIndex.startIndexing(whenIndexed);
+	}
+
+	public boolean isIndexing()
+	{
+		return videoIndex.isIndexing();
+	}
+
+	/**
+	 * Gets the current frame as a new image.
+	 * @return the current frame, as a <code>TYPE_INT_RGB</code> 
+	 * <code>BufferedImage</code>
+	 * @throws IOException
+	 * @throws MpegException
+	 */
 	public Image getImage() throws IOException, MpegException
 	{
-		int pixelData[] = convertYCbCrToRGB(decoderState.getCurrentYCbCr());
-		return Toolkit.getDefaultToolkit().createImage(new MemoryImageSource(getFrameWidth(),getFrameHeight(),pixelData,0,getFrameWidth()));
+		return getImage(null);
 	}
 
-	private int[] convertYCbCrToRGB(int pixelData[])
+	/**
+	 * Gets the current frame, converted to RGB, reusing the given image
+	 * if it can. Giving back the image from the last call lets a player
+	 * show frame after frame without making any garbage.
+	 * @param image a <code>TYPE_INT_RGB</code> image the size of the 
+	 * frame to write the frame into; if it is <code>null</code> or 
+	 * doesn't fit, a new image is made
+	 * @return the image holding the current frame
+	 * @throws IOException
+	 * @throws MpegException
+	 */
+	public BufferedImage getImage(BufferedImage image) throws IOException, MpegException
 	{
-		int result[] = new int[pixelData.length];
-		for (int i = 0; i < result.length; i++)
-		{
-			result[i] = convertYCbCrToRGB(pixelData[i]);
-		}
-		return result;
+		int width  = getFrameWidth();
+		int height = getFrameHeight();
+		if (!canReuse(image, BufferedImage.TYPE_INT_RGB, width, height))
+			image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		int rgb[] = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		ColorConverter.toRGB(decoderState.getCurrentYCbCr(), rgb, width * height);
+		return image;
 	}
 
 	/**
-	 * Converts YCbCr pixel data into RGB pixel data.
-	 * @param packedYCbCrValue YCbCr pixel value.  First byte is discarded, second byte is Y, third byte is Cb, fourth byte is Cr.
-	 * @return rgb value
+	 * Gets the luminance of the current frame as a gray image, reusing 
+	 * the given image if it can. This skips the color conversion, for
+	 * when color isn't needed, like for thumbnails.
+	 * @param image a <code>TYPE_BYTE_GRAY</code> image the size of the 
+	 * frame to write the frame into; if it is <code>null</code> or 
+	 * doesn't fit, a new image is made
+	 * @return the image holding the current frame
+	 * @throws IOException
+	 * @throws MpegException
 	 */
-	private int convertYCbCrToRGB(int packedYCbCrValue)
+	public BufferedImage getGrayImage(BufferedImage image) throws IOException, MpegException
 	{
-		int Y  = (packedYCbCrValue & 0x00FF0000) >>> 16;
-		int Cb = (packedYCbCrValue & 0x0000FF00) >>>  8;
-		int Cr = (packedYCbCrValue & 0x000000FF);
-		return convertYCbCrToRGB(Y, Cb, Cr);
+		int width  = getFrameWidth();
+		int height = getFrameHeight();
+		if (!canReuse(image, BufferedImage.TYPE_BYTE_GRAY, width, height))
+			image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+		byte gray[] = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+		ColorConverter.toGray(decoderState.getCurrentYCbCr(), gray, width * height);
+		return image;
 	}
 
 	/**
-	 * Converts YCbCr pixel data into RGB pixel data.
-	 * @param Y  value
-	 * @param Cb value
-	 * @param Cr value
-	 * @return the RGB value
+	 * Gets an I frame at an eighth of its width and height, decoded from
+	 * just the DC coefficient of each block. This is many times faster
+	 * than decoding the frame in full, and doesn't change the current
+	 * frame, so it is good for making thumbnails of a whole video.
+	 * @param frame an I frame, like one from {@link #getGroupOfPicturesKeyframe(int)}
+	 * @param image a <code>TYPE_INT_RGB</code> image of the right size to
+	 * write the frame into; if it is <code>null</code> or doesn't fit, a
+	 * new image is made
+	 * @return the image holding the frame, which is twice the macroblock
+	 * width by twice the macroblock height of the stream
+	 * @throws IOException
+	 * @throws MpegException if the frame is not an I frame
 	 */
-	private int convertYCbCrToRGB(int Y, int Cb, int Cr)
+	public BufferedImage getDcImage(int frame, BufferedImage image) throws IOException, MpegException
 	{
-		float Ycalc  = (1.164f * (Y - 16));
-		int   Cbcalc = (Cb - 128);
-		int   Crcalc = (Cr - 128);
-		
-		int red   = (int)(Ycalc + 1.402f   * Crcalc);
-		int green = (int)(Ycalc - 0.34414f * Cbcalc - 0.71414f * Crcalc);
-		int blue  = (int)(Ycalc + 1.772f   * Cbcalc);
-		
+		videoIndex.index(frame);
+		initDecoderState();
+		SequenceHeader sequenceHeader = getSequenceHeader(frame);
+		int width  = 2 * sequenceHeader.getMbWidth();
+		int height = 2 * sequenceHeader.getMbHeight();
+		if (!canReuse(image, BufferedImage.TYPE_INT_RGB, width, height))
+			image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		int rgb[] = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		decoderState.decodeDc(frame, rgb);
+		ColorConverter.toRGB(rgb, rgb, width * height);
+		return image;
+	}
 
-		red   = clamp(red);
-		green = clamp(green);
-		blue  = clamp(blue);
-		return packPixel(red, green, blue);
+	/**
+	 * Tests if the pixels of the frame can be written straight into 
+	 * the data buffer of the image: the image has to be of the right
+	 * type and size, and can't share its buffer with a larger image.
+	 */
+	private static boolean canReuse(BufferedImage image, int type, int width, int height)
+	{
+		return image != null
+			&& image.getType() == type
+			&& image.getWidth() == width
+			&& image.getHeight() == height
+			&& image.getRaster().getDataBuffer().getSize() == width * height;
 	}
 
 	/** 
@@ -229,17 +426,4 @@ public class VideoDecoder
 	{
 		return (componentValue < 0) ? 0 : (componentValue > 255) ? 255 : componentValue;
 	}
-	
-	/** 
-	 * Packs three color components into one integer.  Color 
-	 * components should be <code>clamp()</code>ed. 
-	 * @param component1 the first color channel value
-	 * @param component2 the second color channel value
-	 * @param component3 the third color channel value
-	 * @return the packed color
-	 */
-	private int packPixel(int component1, int component2, int component3)
-	{
-		return (int)(0xFF000000 | (component1 << 16) | (component2 << 8) | (component3));
-	}
 }
@@ -15,7 +15,6 @@ package edu.umd.cfar.lamp.mpeg1.video;
 import java.io.*;
 import java.util.*;
 
-import edu.columbia.ee.flavor.*;
 import edu.umd.cfar.lamp.mpeg1.*;
 
 /** Indexes the Groups of Pictures within a Video Sequence. */
@@ -29,6 +28,11 @@ public class VideoIndex
 	private VideoDecoder   videoDecoder        = null;
 	private IndexerState   indexerState        = new IndexerState();
 
+	/** The thread indexing in the background, or <code>null</code> if there isn't one. */
+	private Thread         backgroundIndexer   = null;
+	/** What went wrong while indexing in the background, until someone asks for the whole index. */
+	private Exception      backgroundError     = null;
+
 
 	public VideoIndex(VideoDecoder videoDecoder)
 	{
@@ -60,8 +64,12 @@ public class VideoIndex
 		}
 	}
 
-	public void readIndex(DataInput in) throws IOException, MpegException
+	public synchronized void readIndex(DataInput in) throws IOException, MpegException
 	{
+		// what was read replaces whatever is being indexed
+		cancelIndexing();
+		sequenceHeaderIndex.clear();
+
 		int  magicNumber = in.readInt();
 		byte version     = (byte)(magicNumber & 0xFF); // version is last byte of magic number
 
@@ -93,9 +101,10 @@ public class VideoIndex
 		}
 	}
 	
-	public void complete()
+	public synchronized void complete()
 	{
-		Collections.sort(index);
+		if (!isCancelledIndexer())
+			Collections.sort(index);
 	}
 
 	public VideoDecoder getVideoDecoder()
@@ -128,13 +137,113 @@ public class VideoIndex
 		return getSequenceHeader(frame).getNonIntraQuantizerMatrix();
 	}
 
-	public void index() throws IOException, MpegException
+	/**
+	 * Indexes the whole stream, if it isn't already, or waits for
+	 * the background indexing to finish.
+	 * @throws IOException
+	 * @throws MpegException
+	 */
+	public synchronized void index() throws IOException, MpegException
 	{
+		while (backgroundIndexer != null)
+		{
+			waitForIndexer();
+		}
+		if (backgroundError != null)
+		{
+			Exception e = backgroundError;
+			backgroundError = null;
+			if (e instanceof MpegException)
+				throw (MpegException) e;
+			throw (IOException) e;
+		}
 		if (!indexed())
 		{
 			index = new Vector();
-			VideoSequence.index(new Bitstream(getVideoSource().copySource()), indexerState, this);
+			VideoSequence.index(getVideoSource().getBitstream(0), indexerState, this);
+		}
+	}
+
+	/**
+	 * Makes sure the index covers the given frame. While the stream is
+	 * indexed in the background, this only waits until the group of 
+	 * pictures holding the frame is indexed.
+	 * @param frame the 0-based frame
+	 * @throws IOException
+	 * @throws MpegException
+	 */
+	public synchronized void index(int frame) throws IOException, MpegException
+	{
+		while (backgroundIndexer != null && getNumFrames() <= frame)
+		{
+			waitForIndexer();
+		}
+		if (backgroundIndexer == null)
+			index();
+	}
+
+	private void waitForIndexer() throws InterruptedIOException
+	{
+		try
+		{
+			wait();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the video index");
+		}
+	}
+
+	/**
+	 * Starts indexing the stream on a background thread, reading from a
+	 * copy of the video source. Until it is done, frames can be looked
+	 * up as soon as their group of pictures is indexed, while anything
+	 * that needs the whole index, like the number of frames, waits.
+	 * @param whenIndexed run on the indexing thread once the whole
+	 * stream is indexed; may be <code>null</code>
+	 * @return <code>false</code> if the stream was already indexed, or
+	 * is being indexed
+	 * @throws IOException if the video source can't be copied
+	 * @throws MpegException if the video source can't be copied
+	 */
+	public synchronized boolean startIndexing(Runnable whenIndexed) throws IOException, MpegException
+	{
+		if (indexed())
+			return false;
+		index = new Vector();
+		backgroundIndexer = new IndexerThread(getVideoSource().copySource(), whenIndexed);
+		backgroundIndexer.start();
+		return true;
+	}
+
+	/**
+	 * Tests if the stream is being indexed in the background.
+	 * @return <code>true</code> while a background indexer is running
+	 */
+	public synchronized boolean isIndexing()
+	{
+		return backgroundIndexer != null;
+	}
+
+	/**
+	 * Drops the background indexer. It stops the next time it tries to
+	 * add to the index.
+	 */
+	private void cancelIndexing()
+	{
+		if (backgroundIndexer != null)
+		{
+			backgroundIndexer = null;
+			notifyAll();
 		}
+		backgroundError = null;
+	}
+
+	private boolean isCancelledIndexer()
+	{
+		Thread current = Thread.currentThread();
+		return (current instanceof IndexerThread) && (current != backgroundIndexer);
 	}
 
 	public boolean indexed()
@@ -146,27 +255,29 @@ public class VideoIndex
 	{
 		if (firstSequenceHeader == null)
 		{
-			VideoSource videoSource = getVideoSource().copySource();
-			firstSequenceHeader = VideoSequence.getFirstSequenceHeader(new Bitstream(videoSource));
-			videoSource.close();
+			firstSequenceHeader = VideoSequence.getFirstSequenceHeader(getVideoSource().getBitstream(0));
 		}
 	}
 
 	public SequenceHeader getSequenceHeader(int frame) throws IOException, MpegException
 	{
-		index();
+		index(frame);
 		int gop = getGroupOfPicturesNumberForFrame(frame);
 		VideoIndexElement vie = (VideoIndexElement)index.get(gop);
 		return (SequenceHeader)sequenceHeaderIndex.get(vie.getSequenceHeader());
 	}
 
-	public void addSequenceHeader(SequenceHeader sequenceHeader) throws IOException, MpegException
+	public synchronized void addSequenceHeader(SequenceHeader sequenceHeader) throws IOException, MpegException
 	{
+		if (isCancelledIndexer())
+			throw new IndexException("Indexing was cancelled.");
 		sequenceHeaderIndex.add(sequenceHeader);
 	}
 	
-	public void addGroupOfPictures(long startPosition, int numPictures, int sequenceHeader) throws IOException, MpegException
+	public synchronized void addGroupOfPictures(long startPosition, int numPictures, int sequenceHeader) throws IOException, MpegException
 	{
+		if (isCancelledIndexer())
+			throw new IndexException("Indexing was cancelled.");
 		int  startPicture;
 		try
 		{
@@ -178,6 +289,8 @@ public class VideoIndex
 			startPicture  = 0;
 		}
 		index.add(new VideoIndexElement(startPosition, startPicture, numPictures, sequenceHeader, this));
+		// wake anyone waiting for these frames
+		notifyAll();
 	}
 
 	public int getFrameWidth() throws IOException, MpegException
@@ -266,6 +379,16 @@ public class VideoIndex
 		throw new FrameNotFoundException("frame " + frame);
 	}
 
+	/**
+	 * Gets the number of groups of pictures in the stream.
+	 * @return the number of groups of pictures, or 0 if the stream
+	 * hasn't been indexed
+	 */
+	public int getNumGroupsOfPictures()
+	{
+		return index == null ? 0 : index.size();
+	}
+
 	public long getStartPosition(int groupOfPicturesNumber)
 	{
 		return ((VideoIndexElement)index.elementAt(groupOfPicturesNumber)).getStartPosition();
@@ -331,4 +454,55 @@ public class VideoIndex
 		}
 		return result;
 	}
+
+	/**
+	 * Indexes the stream in the background, with its own copy of the
+	 * video source and its own parser state.
+	 */
+	private class IndexerThread extends Thread
+	{
+		private final VideoSource source;
+		private final Runnable    whenIndexed;
+
+		IndexerThread(VideoSource source, Runnable whenIndexed)
+		{
+			super("VideoIndexer");
+			setDaemon(true);
+			setPriority(Thread.MIN_PRIORITY);
+			this.source      = source;
+			this.whenIndexed = whenIndexed;
+		}
+
+		public void run()
+		{
+			Exception error = null;
+			try
+			{
+				VideoSequence.index(source.getBitstream(0), new IndexerState(), VideoIndex.this);
+			}
+			catch (Exception e)
+			{
+				error = e;
+			}
+			try
+			{
+				source.close();
+			}
+			catch (IOException e)
+			{
+				// only read from, so nothing is lost
+			}
+
+			synchronized (VideoIndex.this)
+			{
+				if (backgroundIndexer != this)
+					return;
+				backgroundIndexer = null;
+				backgroundError = error;
+				VideoIndex.this.notifyAll();
+			}
+			if (error == null && whenIndexed != null)
+				whenIndexed.run();
+		}
+	}
 }
@@ -114,10 +114,8 @@ public class VideoIndexElement implements Comparable
 		if (!gopIndexed())
 		{
 			gopIndex = new GroupOfPicturesIndex();
-			VideoSource videoSource = videoIndex.getVideoSource().copySource();
-			videoSource.seek(startPosition);
-			GroupOfPictures.index(new Bitstream(videoSource), videoIndex.getIndexerState(), gopIndex);
-			videoSource.close();
+			Bitstream bitstream = videoIndex.getVideoSource().getBitstream(startPosition);
+			GroupOfPictures.index(bitstream, videoIndex.getIndexerState(), gopIndex);
 		}
 	}
 
@@ -13,8 +13,11 @@
 package edu.umd.cfar.lamp.mpeg1.video;
 
 import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
 import java.util.logging.*;
 
+import edu.columbia.ee.flavor.*;
 import edu.umd.cfar.lamp.mpeg1.*;
 
 public class VideoSource extends InputStream
@@ -27,6 +30,9 @@ public class VideoSource extends InputStream
 	private RandomAccessFile  rafile = null;
 	private Mpeg1SystemStream stream = null;
 
+	/** The memory mapped file, for video files; shared with copies */
+	private ByteBuffer mapped = null;
+
 	private byte[] buffer;
 	private int    currentBufferPosition = 0;
 	private int    unreadBytesInBuffer   = 0;
@@ -69,7 +75,11 @@ public class VideoSource extends InputStream
 	public VideoSource copySource() throws IOException, MpegException
 	{
 		if (isFile())
-			return new VideoSource(file, buffer.length);
+		{
+			VideoSource copy = new VideoSource(file, buffer.length);
+			copy.mapped = mapped;
+			return copy;
+		}
 		if (isSystemStream())
 			return new VideoSource(stream.copyStream(), stream.getStreamID(), buffer.length);
 
@@ -103,6 +113,59 @@ public class VideoSource extends InputStream
 		unreadBytesInBuffer = 0;
 	}
 
+	/**
+	 * Gets a read only view of the memory mapped video file. The view has
+	 * its own position, so reading it doesn't change where this source
+	 * reads from. A video stream in a system stream is split into packets,
+	 * so it has no view of its own; see
+	 * {@link Mpeg1SystemStream#getBuffer()} and
+	 * {@link Mpeg1SystemStream#getPacketData(int, long)}.
+	 * @return the whole video stream, or <code>null</code> if it is in a
+	 * system stream or the file is too large to map
+	 * @throws IOException if there is an error mapping the file
+	 */
+	public ByteBuffer getBuffer() throws IOException
+	{
+		if (!isFile())
+			return null;
+		if (mapped == null)
+		{
+			FileChannel channel = rafile.getChannel();
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+				return null;
+			mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+		return mapped.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Creates a bitstream that reads the video stream from the given byte
+	 * offset. It reads straight from the mapped file, if it can, so
+	 * nothing is copied and the position of this source is not changed.
+	 * Otherwise, it seeks this source to the offset and reads from it.
+	 * @param offset the byte offset into the video stream
+	 * @return a bitstream whose {@link Bitstream#getpos()} is relative to
+	 * the offset
+	 * @throws IOException if there is an error reading the file
+	 * @throws MpegException if the stream can't be found
+	 */
+	public Bitstream getBitstream(long offset) throws IOException, MpegException
+	{
+		if (isSystemStream())
+			return stream.getBitstream(stream.getStreamID(), offset);
+
+		ByteBuffer view = getBuffer();
+		if (view != null)
+		{
+			view.position((int) Math.min(offset, view.limit()));
+			return new ByteBufferBitstream(view);
+		}
+
+		seek(offset);
+		return new Bitstream(this);
+	}
+
 	// === InputStream ==========================================================================
 	public int available() throws IOException
 	{
@@ -120,36 +183,54 @@ public class VideoSource extends InputStream
 	
 	public int read() throws IOException
 	{
-		if (unreadBytesInBuffer == 0)
-		{
-			int bytesRead = 0;
-
-			try
-			{
-				if (isFile())
-					bytesRead = rafile.read(buffer);
-				else if (isSystemStream())
-					bytesRead = stream.read(buffer);
-				else
-					throw new IOException("Cannot fill buffer: no source.");
-
-				if (bytesRead == -1)
-					return -1;
-			}
-			catch (EOFException eofe)
-			{
-				return -1;
-			}
-
-			unreadBytesInBuffer   = bytesRead;
-			currentBufferPosition = 0;
-		}
+		if (unreadBytesInBuffer == 0 && !fillBuffer())
+			return -1;
 
 		int result = 0x000000FF & buffer[currentBufferPosition];
 		currentBufferPosition++;
 		unreadBytesInBuffer--;
 		return result;
 	}
+
+	public int read(byte[] b, int off, int len) throws IOException
+	{
+		if (len == 0)
+			return 0;
+		if (unreadBytesInBuffer == 0 && !fillBuffer())
+			return -1;
+
+		int n = Math.min(len, unreadBytesInBuffer);
+		System.arraycopy(buffer, currentBufferPosition, b, off, n);
+		currentBufferPosition += n;
+		unreadBytesInBuffer   -= n;
+		return n;
+	}
+
+	private boolean fillBuffer() throws IOException
+	{
+		int bytesRead = 0;
+
+		try
+		{
+			if (isFile())
+				bytesRead = rafile.read(buffer);
+			else if (isSystemStream())
+				bytesRead = stream.read(buffer);
+			else
+				throw new IOException("Cannot fill buffer: no source.");
+
+			if (bytesRead == -1)
+				return false;
+		}
+		catch (EOFException eofe)
+		{
+			return false;
+		}
+
+		unreadBytesInBuffer   = bytesRead;
+		currentBufferPosition = 0;
+		return true;
+	}
 	// === InputStream ==========================================================================
 
 }
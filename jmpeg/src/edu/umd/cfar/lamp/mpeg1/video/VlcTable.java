@@ -0,0 +1,165 @@
+/***************************************
+ *            ViPER-MPEG               *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *             MPEG-1 Decoder          *
+ * Distributed under the LGPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package edu.umd.cfar.lamp.mpeg1.video;
+
+import java.io.*;
+
+import edu.columbia.ee.flavor.*;
+import edu.umd.cfar.lamp.mpeg1.*;
+
+/**
+ * Decodes one of the variable length codes of MPEG-1 with a lookup
+ * table. It peeks at as many bits as the longest code has, and looks
+ * them up in one table, or for long codes in a second table indexed by
+ * the bits after the first <code>primaryBits</code>. Each entry holds
+ * the value and the length of the code, so decoding a symbol takes one
+ * <code>nextbits</code>, one or two array reads and one
+ * <code>skipbits</code>.
+ * <p>
+ * The codes themselves are in {@link VlcTables}. The classes that use
+ * them, like {@link DCTCoefficientNext}, still have their original
+ * decoders, which test the bits a few at a time; they are used instead
+ * when {@link #setUsingReference(boolean)} is set, and
+ * <code>VlcTableTest</code> checks that the two agree.
+ * </p>
+ */
+final class VlcTable
+{
+	private static final int LENGTH_BITS = 5;
+	private static final int LENGTH_MASK = (1 << LENGTH_BITS) - 1;
+
+	private static boolean usingReference = false;
+
+	private final String name;
+	private final int maxLength;
+	private final int primaryBits;
+	private final int secondaryBits;
+
+	// each entry is (value << LENGTH_BITS) | length, or 0 for an invalid
+	// code; an entry with a zero length and a non-zero value is the offset
+	// of a second level table
+	private final int table[];
+
+
+	/**
+	 * Builds the lookup table for a code.
+	 * @param name the name of the code, for error messages
+	 * @param codes the code words, each as
+	 * <code>{code, length, value}</code>, with the code in the low
+	 * <code>length</code> bits
+	 * @param primaryBits the number of bits to look up in the first
+	 * table; longer codes go in second level tables
+	 */
+	VlcTable(String name, int codes[][], int primaryBits)
+	{
+		this.name = name;
+		int max = 0;
+		for (int i = 0; i < codes.length; i++)
+		{
+			max = Math.max(max, codes[i][1]);
+		}
+		this.maxLength     = max;
+		this.primaryBits   = Math.min(primaryBits, max);
+		this.secondaryBits = max - this.primaryBits;
+
+		int size = 1 << this.primaryBits;
+		int offsets[] = new int[size];
+		for (int i = 0; i < codes.length; i++)
+		{
+			int length = codes[i][1];
+			if (length > this.primaryBits)
+			{
+				int prefix = codes[i][0] >>> (length - this.primaryBits);
+				if (offsets[prefix] == 0)
+				{
+					offsets[prefix] = size;
+					size += 1 << secondaryBits;
+				}
+			}
+		}
+
+		table = new int[size];
+		for (int i = 0; i < codes.length; i++)
+		{
+			int code   = codes[i][0];
+			int length = codes[i][1];
+			int entry  = (codes[i][2] << LENGTH_BITS) | length;
+			if (length <= this.primaryBits)
+			{
+				fill(0, code, length, this.primaryBits, entry);
+			}
+			else
+			{
+				int rest   = length - this.primaryBits;
+				int offset = offsets[code >>> rest];
+				table[code >>> rest] = offset << LENGTH_BITS;
+				fill(offset, code & ((1 << rest) - 1), rest, secondaryBits, entry);
+			}
+		}
+	}
+
+	private void fill(int offset, int code, int length, int width, int entry)
+	{
+		int start = offset + (code << (width - length));
+		int end   = start + (1 << (width - length));
+		for (int i = start; i < end; i++)
+		{
+			if (table[i] != 0)
+				throw new IllegalArgumentException("Ambiguous code " + Integer.toBinaryString(code) + " in " + name);
+			table[i] = entry;
+		}
+	}
+
+	/**
+	 * Reads one code word from the bitstream.
+	 * @param bitstream the bitstream, which must have at least as many
+	 * bits left as the longest code has
+	 * @return the value of the code word
+	 * @throws IOException if the bits are not a valid code word, or there
+	 * is an error reading the bitstream
+	 */
+	int decode(Bitstream bitstream) throws IOException
+	{
+		int bits  = bitstream.nextbits(maxLength);
+		int entry = table[bits >>> secondaryBits];
+		if ((entry & LENGTH_MASK) == 0 && entry != 0)
+		{
+			entry = table[(entry >>> LENGTH_BITS) + (bits & ((1 << secondaryBits) - 1))];
+		}
+		if (entry == 0)
+			throw new ParsingException("VLC decode for " + name + " failed.");
+		bitstream.skipbits(entry & LENGTH_MASK);
+		return entry >> LENGTH_BITS;
+	}
+
+	/**
+	 * Tests to see if the original decoders are used instead of the
+	 * lookup tables.
+	 * @return <code>true</code> if the decoders test the bits a few at a
+	 * time, as they used to
+	 */
+	static boolean isUsingReference()
+	{
+		return usingReference;
+	}
+
+	/**
+	 * Sets whether the original decoders should be used instead of the
+	 * lookup tables. This is only for testing the tables.
+	 * @param usingReference <code>true</code> to use the original decoders
+	 */
+	static void setUsingReference(boolean usingReference)
+	{
+		VlcTable.usingReference = usingReference;
+	}
+}
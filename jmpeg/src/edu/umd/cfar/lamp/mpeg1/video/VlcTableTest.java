@@ -0,0 +1,333 @@
+/***************************************
+ *            ViPER-MPEG               *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *             MPEG-1 Decoder          *
+ * Distributed under the LGPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package edu.umd.cfar.lamp.mpeg1.video;
+
+import java.awt.*;
+import java.awt.image.*;
+import java.io.*;
+
+import junit.framework.*;
+import edu.columbia.ee.flavor.*;
+import edu.umd.cfar.lamp.mpeg1.*;
+import edu.umd.cfar.lamp.mpeg1.test.*;
+
+/**
+ * Checks that the lookup tables in {@link VlcTables} decode the same
+ * values as the original decoders they replaced, by trying every bit
+ * pattern as long as the longest code, and that whole pictures decode
+ * the same either way.
+ */
+public class VlcTableTest extends TestCase
+{
+	private static final String SAMPLE = "samples/media/LAMP-Moving.mpeg";
+
+	/**
+	 * One of the variable length codes, decoded either way.
+	 */
+	private static abstract class Code
+	{
+		final String name;
+		final int bits;
+
+		Code(String name, int bits)
+		{
+			this.name = name;
+			this.bits = bits;
+		}
+
+		/**
+		 * Decodes a code word and returns its value as a string.
+		 */
+		abstract String decode(Bitstream bitstream, boolean reference) throws IOException;
+	}
+
+	private TemporaryIndexCache cache;
+
+	public VlcTableTest(String name)
+	{
+		super(name);
+	}
+
+	protected void setUp() throws IOException
+	{
+		cache = new TemporaryIndexCache();
+	}
+
+	protected void tearDown()
+	{
+		VlcTable.setUsingReference(false);
+		cache.restore();
+	}
+
+	/**
+	 * Decodes every pattern of <code>code.bits</code> bits, followed by
+	 * zeros, with the table and with the reference decoder, and checks
+	 * that they get the same value from the same number of bits, or that
+	 * both fail.
+	 */
+	private void checkCode(Code code) throws IOException
+	{
+		int count = 0;
+		for (int pattern = 0; pattern < (1 << code.bits); pattern++)
+		{
+			byte data[] = new byte[8];
+			int word = pattern << (32 - code.bits);
+			for (int i = 0; i < 4; i++)
+			{
+				data[i] = (byte) (word >>> (24 - 8 * i));
+			}
+			String expected = null;
+			int expectedPos = -1;
+			Bitstream bitstream = new Bitstream(new ByteArrayInputStream(data));
+			try
+			{
+				expected = code.decode(bitstream, true);
+				expectedPos = bitstream.getpos();
+			}
+			catch (ParsingException px)
+			{
+			}
+			String actual = null;
+			int actualPos = -1;
+			bitstream = new Bitstream(new ByteArrayInputStream(data));
+			try
+			{
+				actual = code.decode(bitstream, false);
+				actualPos = bitstream.getpos();
+			}
+			catch (ParsingException px)
+			{
+			}
+			String where = code.name + " " + Integer.toBinaryString(pattern | (1 << code.bits)).substring(1);
+			assertEquals(where, expected, actual);
+			assertEquals(where, expectedPos, actualPos);
+			if (expected != null)
+				count++;
+		}
+		assertTrue(code.name + " has no valid codes", count > 0);
+	}
+
+	public void testMacroblockAddressIncrement() throws IOException
+	{
+		checkCode(new Code("macroblock_address_increment", 11)
+		{
+			String decode(Bitstream bitstream, boolean reference) throws IOException
+			{
+				MacroblockAddressIncrement p = new MacroblockAddressIncrement();
+				if (reference)
+					p.parseReference(bitstream);
+				else
+					p.parse(bitstream);
+				return String.valueOf(p.getValue());
+			}
+		});
+	}
+
+	public void testMacroblockType() throws IOException
+	{
+		checkCode(new Code("macroblock_type (I)", 6)
+		{
+			String decode(Bitstream bitstream, boolean reference) throws IOException
+			{
+				MacroblockType_IFrame p = new MacroblockType_IFrame();
+				if (reference)
+					p.parseReference(bitstream);
+				else
+					p.parse(bitstream);
+				return describe(p.getValue());
+			}
+		});
+		checkCode(new Code("macroblock_type (P)", 6)
+		{
+			String decode(Bitstream bitstream, boolean reference) throws IOException
+			{
+				MacroblockType_PFrame p = new MacroblockType_PFrame();
+				if (reference)
+					p.parseReference(bitstream);
+				else
+					p.parse(bitstream);
+				return describe(p.getValue());
+			}
+		});
+		checkCode(new Code("macroblock_type (B)", 6)
+		{
+			String decode(Bitstream bitstream, boolean reference) throws IOException
+			{
+				MacroblockType_BFrame p = new MacroblockType_BFrame();
+				if (reference)
+					p.parseReference(bitstream);
+				else
+					p.parse(bitstream);
+				return describe(p.getValue());
+			}
+		});
+		checkCode(new Code("macroblock_type (D)", 6)
+		{
+			String decode(Bitstream bitstream, boolean reference) throws IOException
+			{
+				MacroblockType_DFrame p = new MacroblockType_DFrame();
+				if (reference)
+					p.parseReference(bitstream);
+				else
+					p.parse(bitstream);
+				return describe(p.getValue());
+			}
+		});
+	}
+
+	private static String describe(MacroblockType type)
+	{
+		return (type.getMacroblockQuant() ? "Q" : "-")
+			+ (type.getMacroblockMotionForward() ? "F" : "-")
+			+ (type.getMacroblockMotionBackward() ? "B" : "-")
+			+ (type.getMacroblockPattern() ? "P" : "-")
+			+ (type.getMacroblockIntra() ? "I" : "-");
+	}
+
+	public void testMotionVector() throws IOException
+	{
+		checkCode(new Code("motion_code", 11)
+		{
+			String decode(Bitstream bitstream, boolean reference) throws IOException
+			{
+				MotionVector p = new MotionVector();
+				if (reference)
+					p.parseReference(bitstream);
+				else
+					p.parse(bitstream);
+				return String.valueOf(p.getValue());
+			}
+		});
+	}
+
+	public void testMacroblockPattern() throws IOException
+	{
+		checkCode(new Code("coded_block_pattern", 9)
+		{
+			String decode(Bitstream bitstream, boolean reference) throws IOException
+			{
+				MacroblockPattern p = new MacroblockPattern();
+				if (reference)
+					p.parseReference(bitstream);
+				else
+					p.parse(bitstream);
+				return String.valueOf(p.getValue());
+			}
+		});
+	}
+
+	public void testDCTDCSize() throws IOException
+	{
+		checkCode(new Code("dct_dc_size_luminance", 7)
+		{
+			String decode(Bitstream bitstream, boolean reference) throws IOException
+			{
+				DCTCoefficients_Luminance p = new DCTCoefficients_Luminance();
+				if (reference)
+					p.parseReference(bitstream);
+				else
+					p.parse(bitstream);
+				return String.valueOf(p.getValue());
+			}
+		});
+		checkCode(new Code("dct_dc_size_chrominance", 8)
+		{
+			String decode(Bitstream bitstream, boolean reference) throws IOException
+			{
+				DCTCoefficients_Chrominance p = new DCTCoefficients_Chrominance();
+				if (reference)
+					p.parseReference(bitstream);
+				else
+					p.parse(bitstream);
+				return String.valueOf(p.getValue());
+			}
+		});
+	}
+
+	public void testDCTCoefficients() throws IOException
+	{
+		checkCode(new Code("dct_coeff_first", 17)
+		{
+			String decode(Bitstream bitstream, boolean reference) throws IOException
+			{
+				DCTCoefficientFirst p = new DCTCoefficientFirst();
+				if (reference)
+					p.parseReference(bitstream);
+				else
+					p.parse(bitstream);
+				return p.getValue().getRun() + "/" + p.getValue().getLevel();
+			}
+		});
+		checkCode(new Code("dct_coeff_next", 17)
+		{
+			String decode(Bitstream bitstream, boolean reference) throws IOException
+			{
+				DCTCoefficientNext p = new DCTCoefficientNext();
+				if (reference)
+					p.parseReference(bitstream);
+				else
+					p.parse(bitstream);
+				return p.getValue().getRun() + "/" + p.getValue().getLevel();
+			}
+		});
+		checkCode(new Code("escape level", 16)
+		{
+			String decode(Bitstream bitstream, boolean reference) throws IOException
+			{
+				DCTCoefficientEscapeLevel p = new DCTCoefficientEscapeLevel();
+				if (reference)
+					p.parseReference(bitstream);
+				else
+					p.parse(bitstream);
+				return String.valueOf(p.getValue());
+			}
+		});
+	}
+
+	/**
+	 * Decodes every frame of the sample video, and returns the pels.
+	 */
+	private int[][] decodeSample() throws IOException, MpegException, InterruptedException
+	{
+		Mpeg1VideoStream stream = new Mpeg1File(new File(SAMPLE)).getVideoStream();
+		int width = stream.getFrameWidth();
+		int height = stream.getFrameHeight();
+		int frames[][] = new int[stream.getNumFrames()][];
+		for (int i = 0; i < frames.length; i++)
+		{
+			stream.seek(i);
+			Image image = stream.getImage();
+			frames[i] = new int[width * height];
+			PixelGrabber grabber = new PixelGrabber(image, 0, 0, width, height, frames[i], 0, width);
+			assertTrue("Cannot grab frame " + i, grabber.grabPixels());
+		}
+		return frames;
+	}
+
+	public void testSampleVideo() throws IOException, MpegException, InterruptedException
+	{
+		VlcTable.setUsingReference(true);
+		int expected[][] = decodeSample();
+		VlcTable.setUsingReference(false);
+		int actual[][] = decodeSample();
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++)
+		{
+			for (int j = 0; j < expected[i].length; j++)
+			{
+				if (expected[i][j] != actual[i][j])
+					fail("Frame " + i + " differs at pel " + j);
+			}
+		}
+	}
+}
@@ -0,0 +1,339 @@
+/***************************************
+ *            ViPER-MPEG               *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *             MPEG-1 Decoder          *
+ * Distributed under the LGPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package edu.umd.cfar.lamp.mpeg1.video;
+
+/**
+ * The variable length codes of ISO/IEC 11172-2 annex B, for
+ * {@link VlcTable}. Each code word is a row of
+ * <code>{code, length, value}</code>, with the code in the low
+ * <code>length</code> bits. The DCT coefficient tables have a run and
+ * a level instead of a value; {@link #packRunLevel(int[][])} converts
+ * them. The escape codes, the end of block code, and the macroblock
+ * stuffing and escape codes are left out, since the callers check for
+ * them before decoding.
+ * <p>
+ * The tables were generated from the switch statements of the original
+ * decoders, and <code>VlcTableTest</code> checks them against those
+ * decoders for every possible bit pattern.
+ * </p>
+ */
+final class VlcTables
+{
+	/** macroblock_address_increment, table B.1 */
+	static final int MACROBLOCK_ADDRESS_INCREMENT[][] =
+	{
+		{0x01, 1, 1}, {0x02, 3, 3}, {0x03, 3, 2}, {0x02, 4, 5},
+		{0x03, 4, 4}, {0x02, 5, 7}, {0x03, 5, 6}, {0x06, 7, 9},
+		{0x07, 7, 8}, {0x06, 8, 15}, {0x07, 8, 14}, {0x08, 8, 13},
+		{0x09, 8, 12}, {0x0A, 8, 11}, {0x0B, 8, 10}, {0x12, 10, 21},
+		{0x13, 10, 20}, {0x14, 10, 19}, {0x15, 10, 18}, {0x16, 10, 17},
+		{0x17, 10, 16}, {0x18, 11, 33}, {0x19, 11, 32}, {0x1A, 11, 31},
+		{0x1B, 11, 30}, {0x1C, 11, 29}, {0x1D, 11, 28}, {0x1E, 11, 27},
+		{0x1F, 11, 26}, {0x20, 11, 25}, {0x21, 11, 24}, {0x22, 11, 23},
+		{0x23, 11, 22}
+	};
+
+	/** macroblock_type in I pictures, table B.2a */
+	static final int MACROBLOCK_TYPE_I[][] =
+	{
+		{0x01, 1, MacroblockType.INTRA},
+		{0x01, 2, MacroblockType.QUANT | MacroblockType.INTRA}
+	};
+
+	/** macroblock_type in P pictures, table B.2b */
+	static final int MACROBLOCK_TYPE_P[][] =
+	{
+		{0x01, 1, MacroblockType.MOTION_FORWARD | MacroblockType.PATTERN},
+		{0x01, 2, MacroblockType.PATTERN},
+		{0x01, 3, MacroblockType.MOTION_FORWARD},
+		{0x01, 5, MacroblockType.QUANT | MacroblockType.PATTERN},
+		{0x02, 5, MacroblockType.QUANT | MacroblockType.MOTION_FORWARD | MacroblockType.PATTERN},
+		{0x03, 5, MacroblockType.INTRA},
+		{0x01, 6, MacroblockType.QUANT | MacroblockType.INTRA}
+	};
+
+	/** macroblock_type in B pictures, table B.2c */
+	static final int MACROBLOCK_TYPE_B[][] =
+	{
+		{0x02, 2, MacroblockType.MOTION_FORWARD | MacroblockType.MOTION_BACKWARD},
+		{0x03, 2, MacroblockType.MOTION_FORWARD | MacroblockType.MOTION_BACKWARD | MacroblockType.PATTERN},
+		{0x02, 3, MacroblockType.MOTION_BACKWARD},
+		{0x03, 3, MacroblockType.MOTION_BACKWARD | MacroblockType.PATTERN},
+		{0x02, 4, MacroblockType.MOTION_FORWARD},
+		{0x03, 4, MacroblockType.MOTION_FORWARD | MacroblockType.PATTERN},
+		{0x02, 5, MacroblockType.QUANT | MacroblockType.MOTION_FORWARD | MacroblockType.MOTION_BACKWARD | MacroblockType.PATTERN},
+		{0x03, 5, MacroblockType.INTRA},
+		{0x01, 6, MacroblockType.QUANT | MacroblockType.INTRA},
+		{0x02, 6, MacroblockType.QUANT | MacroblockType.MOTION_BACKWARD | MacroblockType.PATTERN},
+		{0x03, 6, MacroblockType.QUANT | MacroblockType.MOTION_FORWARD | MacroblockType.PATTERN}
+	};
+
+	/** macroblock_type in D pictures, table B.2d */
+	static final int MACROBLOCK_TYPE_D[][] =
+	{
+		{0x01, 1, MacroblockType.INTRA}
+	};
+
+	/** coded_block_pattern, table B.3 */
+	static final int CODED_BLOCK_PATTERN[][] =
+	{
+		{0x07, 3, 60}, {0x0A, 4, 32}, {0x0B, 4, 16}, {0x0C, 4, 8},
+		{0x0D, 4, 4}, {0x08, 5, 62}, {0x09, 5, 2}, {0x0A, 5, 61},
+		{0x0B, 5, 1}, {0x0C, 5, 56}, {0x0D, 5, 52}, {0x0E, 5, 44},
+		{0x0F, 5, 28}, {0x10, 5, 40}, {0x11, 5, 20}, {0x12, 5, 48},
+		{0x13, 5, 12}, {0x0C, 6, 63}, {0x0D, 6, 3}, {0x0E, 6, 36},
+		{0x0F, 6, 24}, {0x10, 7, 34}, {0x11, 7, 18}, {0x12, 7, 10},
+		{0x13, 7, 6}, {0x14, 7, 33}, {0x15, 7, 17}, {0x16, 7, 9},
+		{0x17, 7, 5}, {0x04, 8, 58}, {0x05, 8, 54}, {0x06, 8, 46},
+		{0x07, 8, 30}, {0x08, 8, 57}, {0x09, 8, 53}, {0x0A, 8, 45},
+		{0x0B, 8, 29}, {0x0C, 8, 38}, {0x0D, 8, 26}, {0x0E, 8, 37},
+		{0x0F, 8, 25}, {0x10, 8, 43}, {0x11, 8, 23}, {0x12, 8, 51},
+		{0x13, 8, 15}, {0x14, 8, 42}, {0x15, 8, 22}, {0x16, 8, 50},
+		{0x17, 8, 14}, {0x18, 8, 41}, {0x19, 8, 21}, {0x1A, 8, 49},
+		{0x1B, 8, 13}, {0x1C, 8, 35}, {0x1D, 8, 19}, {0x1E, 8, 11},
+		{0x1F, 8, 7}, {0x02, 9, 39}, {0x03, 9, 27}, {0x04, 9, 59},
+		{0x05, 9, 55}, {0x06, 9, 47}, {0x07, 9, 31}
+	};
+
+	/** motion_horizontal/vertical_forward/backward_code, table B.4 */
+	static final int MOTION_CODE[][] =
+	{
+		{0x01, 1, 0}, {0x02, 3, 1}, {0x03, 3, -1}, {0x02, 4, 2},
+		{0x03, 4, -2}, {0x02, 5, 3}, {0x03, 5, -3}, {0x06, 7, 4},
+		{0x07, 7, -4}, {0x06, 8, 7}, {0x07, 8, -7}, {0x08, 8, 6},
+		{0x09, 8, -6}, {0x0A, 8, 5}, {0x0B, 8, -5}, {0x12, 10, 10},
+		{0x13, 10, -10}, {0x14, 10, 9}, {0x15, 10, -9}, {0x16, 10, 8},
+		{0x17, 10, -8}, {0x18, 11, 16}, {0x19, 11, -16}, {0x1A, 11, 15},
+		{0x1B, 11, -15}, {0x1C, 11, 14}, {0x1D, 11, -14}, {0x1E, 11, 13},
+		{0x1F, 11, -13}, {0x20, 11, 12}, {0x21, 11, -12}, {0x22, 11, 11},
+		{0x23, 11, -11}
+	};
+
+	/** dct_dc_size_luminance, table B.5a */
+	static final int DCT_DC_SIZE_LUMINANCE[][] =
+	{
+		{0x00, 2, 1}, {0x01, 2, 2}, {0x04, 3, 0}, {0x05, 3, 3},
+		{0x06, 3, 4}, {0x0E, 4, 5}, {0x1E, 5, 6}, {0x3E, 6, 7},
+		{0x7E, 7, 8}
+	};
+
+	/** dct_dc_size_chrominance, table B.5b */
+	static final int DCT_DC_SIZE_CHROMINANCE[][] =
+	{
+		{0x00, 2, 0}, {0x01, 2, 1}, {0x02, 2, 2}, {0x06, 3, 3},
+		{0x0E, 4, 4}, {0x1E, 5, 5}, {0x3E, 6, 6}, {0x7E, 7, 7},
+		{0xFE, 8, 8}
+	};
+
+	/** dct_coeff_first as {code, length, run, level}, table B.5c, where run 0 level 1 is 1s */
+	static final int DCT_COEFF_FIRST[][] =
+	{
+		{0x02, 2, 0, 1}, {0x03, 2, 0, -1}, {0x06, 4, 1, 1},
+		{0x07, 4, 1, -1}, {0x08, 5, 0, 2}, {0x09, 5, 0, -2},
+		{0x0A, 5, 2, 1}, {0x0B, 5, 2, -1}, {0x0A, 6, 0, 3},
+		{0x0B, 6, 0, -3}, {0x0C, 6, 4, 1}, {0x0D, 6, 4, -1},
+		{0x0E, 6, 3, 1}, {0x0F, 6, 3, -1}, {0x08, 7, 7, 1},
+		{0x09, 7, 7, -1}, {0x0A, 7, 6, 1}, {0x0B, 7, 6, -1},
+		{0x0C, 7, 1, 2}, {0x0D, 7, 1, -2}, {0x0E, 7, 5, 1},
+		{0x0F, 7, 5, -1}, {0x08, 8, 2, 2}, {0x09, 8, 2, -2},
+		{0x0A, 8, 9, 1}, {0x0B, 8, 9, -1}, {0x0C, 8, 0, 4},
+		{0x0D, 8, 0, -4}, {0x0E, 8, 8, 1}, {0x0F, 8, 8, -1},
+		{0x40, 9, 13, 1}, {0x41, 9, 13, -1}, {0x42, 9, 0, 6},
+		{0x43, 9, 0, -6}, {0x44, 9, 12, 1}, {0x45, 9, 12, -1},
+		{0x46, 9, 11, 1}, {0x47, 9, 11, -1}, {0x48, 9, 3, 2},
+		{0x49, 9, 3, -2}, {0x4A, 9, 1, 3}, {0x4B, 9, 1, -3},
+		{0x4C, 9, 0, 5}, {0x4D, 9, 0, -5}, {0x4E, 9, 10, 1},
+		{0x4F, 9, 10, -1}, {0x10, 11, 16, 1}, {0x11, 11, 16, -1},
+		{0x12, 11, 5, 2}, {0x13, 11, 5, -2}, {0x14, 11, 0, 7},
+		{0x15, 11, 0, -7}, {0x16, 11, 2, 3}, {0x17, 11, 2, -3},
+		{0x18, 11, 1, 4}, {0x19, 11, 1, -4}, {0x1A, 11, 15, 1},
+		{0x1B, 11, 15, -1}, {0x1C, 11, 14, 1}, {0x1D, 11, 14, -1},
+		{0x1E, 11, 4, 2}, {0x1F, 11, 4, -2}, {0x20, 13, 0, 11},
+		{0x21, 13, 0, -11}, {0x22, 13, 8, 2}, {0x23, 13, 8, -2},
+		{0x24, 13, 4, 3}, {0x25, 13, 4, -3}, {0x26, 13, 0, 10},
+		{0x27, 13, 0, -10}, {0x28, 13, 2, 4}, {0x29, 13, 2, -4},
+		{0x2A, 13, 7, 2}, {0x2B, 13, 7, -2}, {0x2C, 13, 21, 1},
+		{0x2D, 13, 21, -1}, {0x2E, 13, 20, 1}, {0x2F, 13, 20, -1},
+		{0x30, 13, 0, 9}, {0x31, 13, 0, -9}, {0x32, 13, 19, 1},
+		{0x33, 13, 19, -1}, {0x34, 13, 18, 1}, {0x35, 13, 18, -1},
+		{0x36, 13, 1, 5}, {0x37, 13, 1, -5}, {0x38, 13, 3, 3},
+		{0x39, 13, 3, -3}, {0x3A, 13, 0, 8}, {0x3B, 13, 0, -8},
+		{0x3C, 13, 6, 2}, {0x3D, 13, 6, -2}, {0x3E, 13, 17, 1},
+		{0x3F, 13, 17, -1}, {0x20, 14, 10, 2}, {0x21, 14, 10, -2},
+		{0x22, 14, 9, 2}, {0x23, 14, 9, -2}, {0x24, 14, 5, 3},
+		{0x25, 14, 5, -3}, {0x26, 14, 3, 4}, {0x27, 14, 3, -4},
+		{0x28, 14, 2, 5}, {0x29, 14, 2, -5}, {0x2A, 14, 1, 7},
+		{0x2B, 14, 1, -7}, {0x2C, 14, 1, 6}, {0x2D, 14, 1, -6},
+		{0x2E, 14, 0, 15}, {0x2F, 14, 0, -15}, {0x30, 14, 0, 14},
+		{0x31, 14, 0, -14}, {0x32, 14, 0, 13}, {0x33, 14, 0, -13},
+		{0x34, 14, 0, 12}, {0x35, 14, 0, -12}, {0x36, 14, 26, 1},
+		{0x37, 14, 26, -1}, {0x38, 14, 25, 1}, {0x39, 14, 25, -1},
+		{0x3A, 14, 24, 1}, {0x3B, 14, 24, -1}, {0x3C, 14, 23, 1},
+		{0x3D, 14, 23, -1}, {0x3E, 14, 22, 1}, {0x3F, 14, 22, -1},
+		{0x20, 15, 0, 31}, {0x21, 15, 0, -31}, {0x22, 15, 0, 30},
+		{0x23, 15, 0, -30}, {0x24, 15, 0, 29}, {0x25, 15, 0, -29},
+		{0x26, 15, 0, 28}, {0x27, 15, 0, -28}, {0x28, 15, 0, 27},
+		{0x29, 15, 0, -27}, {0x2A, 15, 0, 26}, {0x2B, 15, 0, -26},
+		{0x2C, 15, 0, 25}, {0x2D, 15, 0, -25}, {0x2E, 15, 0, 24},
+		{0x2F, 15, 0, -24}, {0x30, 15, 0, 23}, {0x31, 15, 0, -23},
+		{0x32, 15, 0, 22}, {0x33, 15, 0, -22}, {0x34, 15, 0, 21},
+		{0x35, 15, 0, -21}, {0x36, 15, 0, 20}, {0x37, 15, 0, -20},
+		{0x38, 15, 0, 19}, {0x39, 15, 0, -19}, {0x3A, 15, 0, 18},
+		{0x3B, 15, 0, -18}, {0x3C, 15, 0, 17}, {0x3D, 15, 0, -17},
+		{0x3E, 15, 0, 16}, {0x3F, 15, 0, -16}, {0x20, 16, 0, 40},
+		{0x21, 16, 0, -40}, {0x22, 16, 0, 39}, {0x23, 16, 0, -39},
+		{0x24, 16, 0, 38}, {0x25, 16, 0, -38}, {0x26, 16, 0, 37},
+		{0x27, 16, 0, -37}, {0x28, 16, 0, 36}, {0x29, 16, 0, -36},
+		{0x2A, 16, 0, 35}, {0x2B, 16, 0, -35}, {0x2C, 16, 0, 34},
+		{0x2D, 16, 0, -34}, {0x2E, 16, 0, 33}, {0x2F, 16, 0, -33},
+		{0x30, 16, 0, 32}, {0x31, 16, 0, -32}, {0x32, 16, 1, 14},
+		{0x33, 16, 1, -14}, {0x34, 16, 1, 13}, {0x35, 16, 1, -13},
+		{0x36, 16, 1, 12}, {0x37, 16, 1, -12}, {0x38, 16, 1, 11},
+		{0x39, 16, 1, -11}, {0x3A, 16, 1, 10}, {0x3B, 16, 1, -10},
+		{0x3C, 16, 1, 9}, {0x3D, 16, 1, -9}, {0x3E, 16, 1, 8},
+		{0x3F, 16, 1, -8}, {0x20, 17, 1, 18}, {0x21, 17, 1, -18},
+		{0x22, 17, 1, 17}, {0x23, 17, 1, -17}, {0x24, 17, 1, 16},
+		{0x25, 17, 1, -16}, {0x26, 17, 1, 15}, {0x27, 17, 1, -15},
+		{0x28, 17, 6, 3}, {0x29, 17, 6, -3}, {0x2A, 17, 16, 2},
+		{0x2B, 17, 16, -2}, {0x2C, 17, 15, 2}, {0x2D, 17, 15, -2},
+		{0x2E, 17, 14, 2}, {0x2F, 17, 14, -2}, {0x30, 17, 13, 2},
+		{0x31, 17, 13, -2}, {0x32, 17, 12, 2}, {0x33, 17, 12, -2},
+		{0x34, 17, 11, 2}, {0x35, 17, 11, -2}, {0x36, 17, 31, 1},
+		{0x37, 17, 31, -1}, {0x38, 17, 30, 1}, {0x39, 17, 30, -1},
+		{0x3A, 17, 29, 1}, {0x3B, 17, 29, -1}, {0x3C, 17, 28, 1},
+		{0x3D, 17, 28, -1}, {0x3E, 17, 27, 1}, {0x3F, 17, 27, -1}
+	};
+
+	/** dct_coeff_next as {code, length, run, level}, table B.5c, where run 0 level 1 is 11s */
+	static final int DCT_COEFF_NEXT[][] =
+	{
+		{0x06, 3, 0, 1}, {0x07, 3, 0, -1}, {0x06, 4, 1, 1},
+		{0x07, 4, 1, -1}, {0x08, 5, 0, 2}, {0x09, 5, 0, -2},
+		{0x0A, 5, 2, 1}, {0x0B, 5, 2, -1}, {0x0A, 6, 0, 3},
+		{0x0B, 6, 0, -3}, {0x0C, 6, 4, 1}, {0x0D, 6, 4, -1},
+		{0x0E, 6, 3, 1}, {0x0F, 6, 3, -1}, {0x08, 7, 7, 1},
+		{0x09, 7, 7, -1}, {0x0A, 7, 6, 1}, {0x0B, 7, 6, -1},
+		{0x0C, 7, 1, 2}, {0x0D, 7, 1, -2}, {0x0E, 7, 5, 1},
+		{0x0F, 7, 5, -1}, {0x08, 8, 2, 2}, {0x09, 8, 2, -2},
+		{0x0A, 8, 9, 1}, {0x0B, 8, 9, -1}, {0x0C, 8, 0, 4},
+		{0x0D, 8, 0, -4}, {0x0E, 8, 8, 1}, {0x0F, 8, 8, -1},
+		{0x40, 9, 13, 1}, {0x41, 9, 13, -1}, {0x42, 9, 0, 6},
+		{0x43, 9, 0, -6}, {0x44, 9, 12, 1}, {0x45, 9, 12, -1},
+		{0x46, 9, 11, 1}, {0x47, 9, 11, -1}, {0x48, 9, 3, 2},
+		{0x49, 9, 3, -2}, {0x4A, 9, 1, 3}, {0x4B, 9, 1, -3},
+		{0x4C, 9, 0, 5}, {0x4D, 9, 0, -5}, {0x4E, 9, 10, 1},
+		{0x4F, 9, 10, -1}, {0x10, 11, 16, 1}, {0x11, 11, 16, -1},
+		{0x12, 11, 5, 2}, {0x13, 11, 5, -2}, {0x14, 11, 0, 7},
+		{0x15, 11, 0, -7}, {0x16, 11, 2, 3}, {0x17, 11, 2, -3},
+		{0x18, 11, 1, 4}, {0x19, 11, 1, -4}, {0x1A, 11, 15, 1},
+		{0x1B, 11, 15, -1}, {0x1C, 11, 14, 1}, {0x1D, 11, 14, -1},
+		{0x1E, 11, 4, 2}, {0x1F, 11, 4, -2}, {0x20, 13, 0, 11},
+		{0x21, 13, 0, -11}, {0x22, 13, 8, 2}, {0x23, 13, 8, -2},
+		{0x24, 13, 4, 3}, {0x25, 13, 4, -3}, {0x26, 13, 0, 10},
+		{0x27, 13, 0, -10}, {0x28, 13, 2, 4}, {0x29, 13, 2, -4},
+		{0x2A, 13, 7, 2}, {0x2B, 13, 7, -2}, {0x2C, 13, 21, 1},
+		{0x2D, 13, 21, -1}, {0x2E, 13, 20, 1}, {0x2F, 13, 20, -1},
+		{0x30, 13, 0, 9}, {0x31, 13, 0, -9}, {0x32, 13, 19, 1},
+		{0x33, 13, 19, -1}, {0x34, 13, 18, 1}, {0x35, 13, 18, -1},
+		{0x36, 13, 1, 5}, {0x37, 13, 1, -5}, {0x38, 13, 3, 3},
+		{0x39, 13, 3, -3}, {0x3A, 13, 0, 8}, {0x3B, 13, 0, -8},
+		{0x3C, 13, 6, 2}, {0x3D, 13, 6, -2}, {0x3E, 13, 17, 1},
+		{0x3F, 13, 17, -1}, {0x20, 14, 10, 2}, {0x21, 14, 10, -2},
+		{0x22, 14, 9, 2}, {0x23, 14, 9, -2}, {0x24, 14, 5, 3},
+		{0x25, 14, 5, -3}, {0x26, 14, 3, 4}, {0x27, 14, 3, -4},
+		{0x28, 14, 2, 5}, {0x29, 14, 2, -5}, {0x2A, 14, 1, 7},
+		{0x2B, 14, 1, -7}, {0x2C, 14, 1, 6}, {0x2D, 14, 1, -6},
+		{0x2E, 14, 0, 15}, {0x2F, 14, 0, -15}, {0x30, 14, 0, 14},
+		{0x31, 14, 0, -14}, {0x32, 14, 0, 13}, {0x33, 14, 0, -13},
+		{0x34, 14, 0, 12}, {0x35, 14, 0, -12}, {0x36, 14, 26, 1},
+		{0x37, 14, 26, -1}, {0x38, 14, 25, 1}, {0x39, 14, 25, -1},
+		{0x3A, 14, 24, 1}, {0x3B, 14, 24, -1}, {0x3C, 14, 23, 1},
+		{0x3D, 14, 23, -1}, {0x3E, 14, 22, 1}, {0x3F, 14, 22, -1},
+		{0x20, 15, 0, 31}, {0x21, 15, 0, -31}, {0x22, 15, 0, 30},
+		{0x23, 15, 0, -30}, {0x24, 15, 0, 29}, {0x25, 15, 0, -29},
+		{0x26, 15, 0, 28}, {0x27, 15, 0, -28}, {0x28, 15, 0, 27},
+		{0x29, 15, 0, -27}, {0x2A, 15, 0, 26}, {0x2B, 15, 0, -26},
+		{0x2C, 15, 0, 25}, {0x2D, 15, 0, -25}, {0x2E, 15, 0, 24},
+		{0x2F, 15, 0, -24}, {0x30, 15, 0, 23}, {0x31, 15, 0, -23},
+		{0x32, 15, 0, 22}, {0x33, 15, 0, -22}, {0x34, 15, 0, 21},
+		{0x35, 15, 0, -21}, {0x36, 15, 0, 20}, {0x37, 15, 0, -20},
+		{0x38, 15, 0, 19}, {0x39, 15, 0, -19}, {0x3A, 15, 0, 18},
+		{0x3B, 15, 0, -18}, {0x3C, 15, 0, 17}, {0x3D, 15, 0, -17},
+		{0x3E, 15, 0, 16}, {0x3F, 15, 0, -16}, {0x20, 16, 0, 40},
+		{0x21, 16, 0, -40}, {0x22, 16, 0, 39}, {0x23, 16, 0, -39},
+		{0x24, 16, 0, 38}, {0x25, 16, 0, -38}, {0x26, 16, 0, 37},
+		{0x27, 16, 0, -37}, {0x28, 16, 0, 36}, {0x29, 16, 0, -36},
+		{0x2A, 16, 0, 35}, {0x2B, 16, 0, -35}, {0x2C, 16, 0, 34},
+		{0x2D, 16, 0, -34}, {0x2E, 16, 0, 33}, {0x2F, 16, 0, -33},
+		{0x30, 16, 0, 32}, {0x31, 16, 0, -32}, {0x32, 16, 1, 14},
+		{0x33, 16, 1, -14}, {0x34, 16, 1, 13}, {0x35, 16, 1, -13},
+		{0x36, 16, 1, 12}, {0x37, 16, 1, -12}, {0x38, 16, 1, 11},
+		{0x39, 16, 1, -11}, {0x3A, 16, 1, 10}, {0x3B, 16, 1, -10},
+		{0x3C, 16, 1, 9}, {0x3D, 16, 1, -9}, {0x3E, 16, 1, 8},
+		{0x3F, 16, 1, -8}, {0x20, 17, 1, 18}, {0x21, 17, 1, -18},
+		{0x22, 17, 1, 17}, {0x23, 17, 1, -17}, {0x24, 17, 1, 16},
+		{0x25, 17, 1, -16}, {0x26, 17, 1, 15}, {0x27, 17, 1, -15},
+		{0x28, 17, 6, 3}, {0x29, 17, 6, -3}, {0x2A, 17, 16, 2},
+		{0x2B, 17, 16, -2}, {0x2C, 17, 15, 2}, {0x2D, 17, 15, -2},
+		{0x2E, 17, 14, 2}, {0x2F, 17, 14, -2}, {0x30, 17, 13, 2},
+		{0x31, 17, 13, -2}, {0x32, 17, 12, 2}, {0x33, 17, 12, -2},
+		{0x34, 17, 11, 2}, {0x35, 17, 11, -2}, {0x36, 17, 31, 1},
+		{0x37, 17, 31, -1}, {0x38, 17, 30, 1}, {0x39, 17, 30, -1},
+		{0x3A, 17, 29, 1}, {0x3B, 17, 29, -1}, {0x3C, 17, 28, 1},
+		{0x3D, 17, 28, -1}, {0x3E, 17, 27, 1}, {0x3F, 17, 27, -1}
+	};
+
+	private VlcTables()
+	{
+	}
+
+	/**
+	 * Converts a DCT coefficient table from
+	 * <code>{code, length, run, level}</code> rows to
+	 * <code>{code, length, value}</code> rows, where the value holds
+	 * both the run and the level.
+	 * @param codes the DCT coefficient codes
+	 * @return the codes with packed values
+	 * @see #getRun(int)
+	 * @see #getLevel(int)
+	 */
+	static int[][] packRunLevel(int codes[][])
+	{
+		int packed[][] = new int[codes.length][];
+		for (int i = 0; i < codes.length; i++)
+		{
+			packed[i] = new int[] {codes[i][0], codes[i][1], (codes[i][3] << 8) | codes[i][2]};
+		}
+		return packed;
+	}
+
+	/**
+	 * Gets the run from a value packed by {@link #packRunLevel(int[][])}.
+	 * @param runLevel the packed run and level
+	 * @return the run
+	 */
+	static int getRun(int runLevel)
+	{
+		return runLevel & 0xFF;
+	}
+
+	/**
+	 * Gets the level from a value packed by {@link #packRunLevel(int[][])}.
+	 * @param runLevel the packed run and level
+	 * @return the level
+	 */
+	static int getLevel(int runLevel)
+	{
+		return runLevel >> 8;
+	}
+}
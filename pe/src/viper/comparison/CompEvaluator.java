@@ -177,7 +177,9 @@ public class CompEvaluator {
 	/**
 	 * Print the table of matches. This is the 
 	 * {@link CompMatrix#printOverallMatchTable() overall 
-	 * match table}, if any matches exist.
+	 * match table}, if any matches exist. Pairs that were skipped while
+	 * {@link CompMatrix#isIndexingCandidates() indexing candidates} are
+	 * shown as not matching.
 	 * @return the formatted match distances
 	 */
 	public String printMatchTables() {
@@ -15,6 +15,7 @@ package viper.comparison;
 import java.io.*;
 import java.text.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import viper.comparison.distances.*;
 import viper.descriptors.*;
@@ -285,54 +286,358 @@ public class CompMatrix implements Cloneable {
 	 * @return <code>true</code> if some element of the CompMatrix qualifies
 	 *         as a match at the specified level.
 	 */
-	public boolean initializeMatrix(EvaluationParameters.ScopeRules scope,
-			int level, Revealer ticker) {
+	public boolean initializeMatrix(final EvaluationParameters.ScopeRules scope,
+			final int level, Revealer ticker) {
 		if (initialized) {
 			throw new IllegalStateException("Already Initialized Matrix");
 		}
-		edgeMatrix = new SparseMatrix(T.size(), C.size());
+		edgeMatrix = createEdgeMatrix(T.size(), C.size());
 		initialized = true;
 
 		int maxLevelGained = this.level;
-		for (int i = 0; i < T.size(); i++) {
-			for (int j = 0; j < C.size(); j++) {
-				if (null != ticker) {
-					ticker.tick();
+		final IntervalTree candidateIndex = indexingCandidates
+				? buildFrameSpanIndex(C, scope)
+				: null;
+		final boolean parallel = evaluationThreads > 1;
+		final RowMatches[] rows = new RowMatches[parallel ? T.size() : 0];
+		if (parallel) {
+			forEachPartition(T.size(), new PartitionTask() {
+				public void run(int start, int end) {
+					BitSet possibles = new BitSet(C.size());
+					for (int i = start; i < end; i++) {
+						rows[i] = compareRow(i, scope, level, candidateIndex,
+								possibles);
+					}
 				}
-				if (scope.inScope((Descriptor) T.get(i))
-						&& scope.inScope((Descriptor) C.get(j))) {
-					Comparison temp = new Comparison(((Descriptor) T.get(i)),
-							((Descriptor) C.get(j)), map);
-					boolean store = true;
-					if (level >= Comparison.STARTED) {
-						store = store && goodComp(temp);
-						if (store && Comparison.STARTED < level) {
-							store = store && temp.match(scope);
-							if (store && Comparison.MATCHED < level) {
-								store = store && temp.detect(cfd, scope);
-								if (store && Comparison.DETECTED < level) {
-									store = store && temp.localize(cfd, scope);
-									//if (Comparison.LOCALIZED < level)
-								}
+			});
+		}
+		BitSet possibles = new BitSet(C.size());
+		for (int i = 0; i < T.size(); i++) {
+			RowMatches row = parallel ? rows[i] : compareRow(i, scope, level,
+					candidateIndex, possibles);
+			if (null != ticker) {
+				ticker.tick(C.size());
+			}
+			for (int k = 0; k < row.count; k++) {
+				Comparison temp = row.comparisons[k];
+				edgeMatrix.set(i, row.candidates[k], temp);
+				maxLevelGained = Math.max(maxLevelGained, temp.getLevel());
+			}
+		}
+		return maxLevelGained == level;
+	}
+
+	/**
+	 * The comparisons that survived initialization for a single target.
+	 */
+	private static final class RowMatches {
+		int count = 0;
+		int[] candidates = new int[4];
+		Comparison[] comparisons = new Comparison[4];
+
+		void add(int candidate, Comparison c) {
+			if (count == candidates.length) {
+				int[] newCandidates = new int[count * 2];
+				Comparison[] newComparisons = new Comparison[count * 2];
+				System.arraycopy(candidates, 0, newCandidates, 0, count);
+				System.arraycopy(comparisons, 0, newComparisons, 0, count);
+				candidates = newCandidates;
+				comparisons = newComparisons;
+			}
+			candidates[count] = candidate;
+			comparisons[count] = c;
+			count++;
+		}
+	}
+
+	/**
+	 * Compares the ith target against all the candidates, bringing the
+	 * comparisons up to the given level. This only reads the shared
+	 * state of the matrix, so it may be called from several threads at
+	 * once.
+	 * @param i the index of the target
+	 * @param scope the scoping rules
+	 * @param level the level to take the comparisons to
+	 * @param candidateIndex the index of candidates by frame span, or
+	 * <code>null</code> to compare against all candidates
+	 * @param possibles scratch space, of at least the number of candidates
+	 * @return the comparisons that should be stored in the matrix, in
+	 * increasing order of candidate index
+	 */
+	private RowMatches compareRow(int i, EvaluationParameters.ScopeRules scope,
+			int level, IntervalTree candidateIndex, BitSet possibles) {
+		RowMatches row = new RowMatches();
+		Descriptor target = (Descriptor) T.get(i);
+		if (!scope.inScope(target)) {
+			return row;
+		}
+		possibles.clear();
+		if (candidateIndex != null) {
+			FrameSpan span = target.getFrameSpan();
+			candidateIndex.getIntersecting(span.beginning(),
+					span.ending() + 1L, possibles);
+		} else {
+			possibles.set(0, C.size());
+		}
+		for (int j = possibles.nextSetBit(0); j >= 0; j = possibles
+				.nextSetBit(j + 1)) {
+			if (scope.inScope((Descriptor) C.get(j))) {
+				Comparison temp = new Comparison(target,
+						((Descriptor) C.get(j)), map);
+				boolean store = true;
+				if (level >= Comparison.STARTED) {
+					store = store && goodComp(temp);
+					if (store && Comparison.STARTED < level) {
+						store = store && temp.match(scope);
+						if (store && Comparison.MATCHED < level) {
+							store = store && temp.detect(cfd, scope);
+							if (store && Comparison.DETECTED < level) {
+								store = store && temp.localize(cfd, scope);
+								//if (Comparison.LOCALIZED < level)
 							}
 						}
 					}
-					if (store) {
-						edgeMatrix.set(i, j, temp);
-						maxLevelGained = Math.max(maxLevelGained, temp
-								.getLevel());
+				}
+				if (store) {
+					row.add(j, temp);
+				}
+			}
+		}
+		return row;
+	}
+
+	/**
+	 * A piece of work over a range of indices.
+	 */
+	private static interface PartitionTask {
+		/**
+		 * Does the work for the indices in <code>[start, end)</code>.
+		 * @param start the first index
+		 * @param end the index after the last
+		 */
+		public void run(int start, int end);
+	}
+
+	/**
+	 * Splits <code>[0, n)</code> into contiguous ranges and runs the task
+	 * on each, using up to {@link #getEvaluationThreads()} threads. Returns
+	 * when all the ranges are finished.
+	 * @param n the number of indices
+	 * @param task the work to perform
+	 */
+	private static void forEachPartition(int n, final PartitionTask task) {
+		int threads = Math.min(evaluationThreads, n);
+		if (threads <= 1) {
+			task.run(0, n);
+			return;
+		}
+		// Use more partitions than threads, as rows vary a lot in cost
+		int chunk = Math.max(1, n / (threads * 4));
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> pending = new ArrayList<Future<?>>();
+			for (int start = 0; start < n; start += chunk) {
+				final int s = start;
+				final int e = Math.min(n, start + chunk);
+				pending.add(pool.submit(new Runnable() {
+					public void run() {
+						task.run(s, e);
 					}
+				}));
+			}
+			for (Future<?> f : pending) {
+				f.get();
+			}
+		} catch (InterruptedException ix) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted during evaluation");
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new RuntimeException(cause);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Tries to take each comparison to the given level. The comparisons
+	 * are independent of each other, so with more than one
+	 * {@link #getEvaluationThreads() evaluation thread} they are
+	 * evaluated concurrently.
+	 * @param comps the comparisons to promote
+	 * @param type the level to take them to
+	 * @param scope the scoping rules
+	 * @return whether each comparison made it to the level
+	 */
+	private boolean[] promoteAll(final Comparison[] comps, final int type,
+			final EvaluationParameters.ScopeRules scope) {
+		final boolean[] passed = new boolean[comps.length];
+		forEachPartition(comps.length, new PartitionTask() {
+			public void run(int start, int end) {
+				for (int k = start; k < end; k++) {
+					Comparison curr = comps[k];
+					passed[k] = (goodComp(curr))
+							&& (((Comparison.MATCHED == type) && curr
+									.match(scope))
+									|| ((Comparison.DETECTED == type) && curr
+											.detect(cfd, scope))
+									|| ((Comparison.LOCALIZED == type) && curr
+											.localize(cfd, scope)) || ((Comparison.STATISTICED == type) && curr
+									.statistical(scope)));
 				}
 			}
+		});
+		return passed;
+	}
+
+	/**
+	 * Gets the comparisons in the matrix, in the order of the matrix
+	 * iterator: by column (target), then by row (candidate).
+	 * @param targets receives the target index of each comparison
+	 * @param candidates receives the candidate index of each comparison
+	 * @return the comparisons
+	 */
+	private Comparison[] listEdges(List<Integer> targets,
+			List<Integer> candidates) {
+		List<Comparison> edges = new ArrayList<Comparison>();
+		MatrixIterator mi = edgeMatrix.getMatrixIterator();
+		while (mi.hasNextColumn()) {
+			int x = mi.nextColumn();
+			while (mi.hasNextInColumn()) {
+				edges.add((Comparison) mi.nextInColumn());
+				targets.add(new Integer(x));
+				candidates.add(new Integer(mi.currRow()));
+			}
+		}
+		return edges.toArray(new Comparison[edges.size()]);
+	}
+
+	/**
+	 * The number of threads to use when bringing comparisons up a level.
+	 */
+	private static int evaluationThreads = 1;
+
+	/**
+	 * Gets the number of threads used to evaluate comparisons.
+	 * @return the number of evaluation threads; one means everything is
+	 * done on the calling thread
+	 */
+	public static int getEvaluationThreads() {
+		return evaluationThreads;
+	}
+
+	/**
+	 * Sets the number of threads to use to evaluate comparisons. Each
+	 * target's comparisons are computed independently, and the results
+	 * are merged back into the matrix in order, so the output does not
+	 * depend on the number of threads.
+	 * @param n the number of threads to use
+	 * @throws IllegalArgumentException if <code>n</code> is less than one
+	 */
+	public static void setEvaluationThreads(int n) {
+		if (n < 1) {
+			throw new IllegalArgumentException(
+					"Must have at least one evaluation thread: " + n);
+		}
+		evaluationThreads = n;
+	}
+
+	/**
+	 * Builds an index of the in-scope descriptors in the list by the
+	 * extent of their frame spans. Out of scope descriptors are given
+	 * empty intervals, so they are never returned.
+	 * @param list the descriptors to index
+	 * @param scope the rules that determine which descriptors are in scope
+	 * @return an index whose kth interval is the extent of the kth descriptor
+	 */
+	static IntervalTree buildFrameSpanIndex(DescriptorList list,
+			EvaluationParameters.ScopeRules scope) {
+		long[] starts = new long[list.size()];
+		long[] ends = new long[list.size()];
+		for (int j = 0; j < list.size(); j++) {
+			Descriptor d = (Descriptor) list.get(j);
+			if (scope.inScope(d)) {
+				FrameSpan span = d.getFrameSpan();
+				starts[j] = span.beginning();
+				ends[j] = span.ending() + 1L;
+			}
+		}
+		return new IntervalTree(starts, ends);
+	}
+
+	/**
+	 * Whether to skip building comparisons for target/candidate pairs whose
+	 * frame spans do not intersect. Such a comparison would never
+	 * {@link Comparison#match(EvaluationParameters.ScopeRules) match}, so
+	 * this only changes the running time and the contents of the
+	 * {@link #printOverallMatchTable() match table}, which shows the
+	 * skipped pairs as <code>infnt</code> instead of as comparisons left at
+	 * {@link Comparison#STARTED}. Everything ViperPE prints is the same.
+	 */
+	private static boolean indexingCandidates = true;
+
+	/**
+	 * Tests to see if new matrices only compare descriptors whose frame
+	 * spans intersect.
+	 * @return <code>true</code> if temporally disjoint pairs are skipped
+	 */
+	public static boolean isIndexingCandidates() {
+		return indexingCandidates;
+	}
+
+	/**
+	 * Sets whether new matrices should skip pairs of descriptors whose
+	 * frame spans do not intersect, instead of exhaustively comparing every
+	 * target against every candidate.
+	 * @param b <code>false</code> to compare all target/candidate pairs
+	 */
+	public static void setIndexingCandidates(boolean b) {
+		indexingCandidates = b;
+	}
+
+	/**
+	 * Whether to keep the comparisons in a {@link CompressedSparseMatrix}
+	 * instead of a linked {@link SparseMatrix}. They hold the same
+	 * comparisons; the compressed one is smaller and faster to walk.
+	 */
+	private static boolean compressingEdges = true;
+
+	/**
+	 * Tests to see if new matrices keep their comparisons in arrays.
+	 * @return <code>true</code> if new matrices use a
+	 * {@link CompressedSparseMatrix}
+	 */
+	public static boolean isCompressingEdges() {
+		return compressingEdges;
+	}
+
+	/**
+	 * Sets whether new matrices keep their comparisons in a
+	 * {@link CompressedSparseMatrix} or in a linked {@link SparseMatrix}.
+	 * @param b <code>false</code> to use the linked matrix
+	 */
+	public static void setCompressingEdges(boolean b) {
+		compressingEdges = b;
+	}
+
+	private static DataMatrix2d createEdgeMatrix(int targets, int candidates) {
+		if (compressingEdges) {
+			return new CompressedSparseMatrix(targets, candidates);
+		} else {
+			return new SparseMatrix(targets, candidates);
 		}
-		return maxLevelGained == level;
 	}
 
 	private CompMatrix() {
 		completeSum = new Surreal(0, 0);
 		T = new DescVector(null);
 		C = new DescVector(null);
-		edgeMatrix = new SparseMatrix(0, 0);
+		edgeMatrix = createEdgeMatrix(0, 0);
 	}
 
 	/**
@@ -368,8 +673,13 @@ public class CompMatrix implements Cloneable {
 
 		initialized = old.initialized;
 		if (initialized) {
-			edgeMatrix = new SparseMatrix(old.edgeMatrix, targetMask,
-					candidateMask);
+			if (compressingEdges) {
+				edgeMatrix = new CompressedSparseMatrix(old.edgeMatrix,
+						targetMask, candidateMask);
+			} else {
+				edgeMatrix = new SparseMatrix(old.edgeMatrix, targetMask,
+						candidateMask);
+			}
 			this.getCompleteSum();
 		}
 	}
@@ -392,9 +702,10 @@ public class CompMatrix implements Cloneable {
 
 		if (initialized) {
 			M.initialized = true;
-			M.edgeMatrix = new SparseMatrix(M.T.size(), M.C.size());
+			M.edgeMatrix = createEdgeMatrix(M.T.size(), M.C.size());
 			MatrixIterator mi = getMatrixIterator();
-			while (mi.hasNextColumn())
+			while (mi.hasNextColumn()) {
+				mi.nextColumn();
 				while (mi.hasNextInColumn()) {
 					Comparison comp = (Comparison) ((Comparison) mi
 							.nextInColumn()).clone();
@@ -402,6 +713,7 @@ public class CompMatrix implements Cloneable {
 							(Descriptor) M.C.get(mi.currRow()));
 					M.edgeMatrix.set(mi.currColumn(), mi.currRow(), comp);
 				}
+			}
 		} else {
 			M.initialized = false;
 		}
@@ -437,23 +749,16 @@ public class CompMatrix implements Cloneable {
 		completeSum.set(0, 0.0);
 
 		//Cycle through all possible matches and perform matching.
-		MatrixIterator mi = edgeMatrix.getMatrixIterator();
-		while (mi.hasNextColumn()) {
-			int x = mi.nextColumn();
-			while (mi.hasNextInColumn()) {
-				Comparison curr = (Comparison) mi.nextInColumn();
-				if ((goodComp(curr))
-						&& (((Comparison.MATCHED == type) && curr.match(scope))
-								|| ((Comparison.DETECTED == type) && curr
-										.detect(cfd, scope))
-								|| ((Comparison.LOCALIZED == type) && curr
-										.localize(cfd, scope)) || ((Comparison.STATISTICED == type) && curr
-								.statistical(scope)))) {
-					completeSum.add(0, curr.getDistance());
-					foundTarget.set(x);
-					continuable = true;
-					foundCandidate.set(mi.currRow());
-				}
+		List<Integer> targets = new ArrayList<Integer>();
+		List<Integer> candidates = new ArrayList<Integer>();
+		Comparison[] edges = listEdges(targets, candidates);
+		boolean[] passed = promoteAll(edges, type, scope);
+		for (int k = 0; k < edges.length; k++) {
+			if (passed[k]) {
+				completeSum.add(0, edges[k].getDistance());
+				foundTarget.set(targets.get(k).intValue());
+				continuable = true;
+				foundCandidate.set(candidates.get(k).intValue());
 			}
 		}
 
@@ -483,23 +788,16 @@ public class CompMatrix implements Cloneable {
 		completeSum.set(0, 0.0);
 
 		//Cycle through all possible matches and perform matching.
-		MatrixIterator mi = edgeMatrix.getMatrixIterator();
-		while (mi.hasNextColumn()) {
-			int x = mi.nextColumn();
-			while (mi.hasNextInColumn()) {
-				Comparison curr = (Comparison) mi.nextInColumn();
-				if ((goodComp(curr))
-						&& (((Comparison.MATCHED == type) && curr.match(scope))
-								|| ((Comparison.DETECTED == type) && curr
-										.detect(cfd, scope))
-								|| ((Comparison.LOCALIZED == type) && curr
-										.localize(cfd, scope)) || ((Comparison.STATISTICED == type) && curr
-								.statistical(scope)))) {
-					completeSum.add(0, curr.getDistance());
-					foundTarget.set(x);
-					continuable = true;
-					foundCandidate.set(mi.currRow());
-				}
+		List<Integer> targets = new ArrayList<Integer>();
+		List<Integer> candidates = new ArrayList<Integer>();
+		Comparison[] edges = listEdges(targets, candidates);
+		boolean[] passed = promoteAll(edges, type, scope);
+		for (int k = 0; k < edges.length; k++) {
+			if (passed[k]) {
+				completeSum.add(0, edges[k].getDistance());
+				foundTarget.set(targets.get(k).intValue());
+				continuable = true;
+				foundCandidate.set(candidates.get(k).intValue());
 			}
 		}
 
@@ -663,6 +961,11 @@ public class CompMatrix implements Cloneable {
 	 * infnt
 	 * </pre>. Otherwise, the level of the match is listed followed by the
 	 * distance. <BR>
+	 * While {@link #isIndexingCandidates() indexing candidates}, pairs whose
+	 * frame spans do not intersect are never compared, so they are shown as
+	 * <code>infnt</code>. An exhaustive matrix keeps them as comparisons
+	 * that never got past {@link Comparison#STARTED}, and shows their level
+	 * and distance instead. <BR>
 	 * For example :
 	 * 
 	 * <PRE>| 0 | 99 | 1 | --------------------------------- 11 |2 0.0 |2 1.0 |
@@ -722,20 +1025,9 @@ public class CompMatrix implements Cloneable {
 		// the algorithm operates on disjoint subgraphs.
 		// This loops through and performs the specified
 		// cropping procedure on these subgraphs.
-		BitSet[] subsettingMask = new BitSet[edgeMatrix.width()];
-		CompMatrix submatrix;
-
-		for (int i = 0; i < edgeMatrix.width(); i++) {
-			subsettingMask[i] = new BitSet(edgeMatrix.height());
-			for (int j = 0; j < edgeMatrix.height(); j++) {
-				if (goodComp((Comparison) edgeMatrix.get(i, j))) {
-					subsettingMask[i].set(j);
-				}
-			}
-		}
 		completeSum.set(0, 0.0);
-
-		while (null != (submatrix = getNextSubmatrix(this, subsettingMask))) {
+		for (BitSet[] masks : getComponents()) {
+			CompMatrix submatrix = new CompMatrix(this, masks[0], masks[1]);
 			completeSum.add(CompFilter.filterSelect[matchType].filter(
 					submatrix, getScopeRules()));
 		}
@@ -746,13 +1038,20 @@ public class CompMatrix implements Cloneable {
 	 * aren't still active).
 	 */
 	public void removeOld() {
-		for (int i = 0; i < edgeMatrix.width(); i++) {
-			for (int j = 0; j < edgeMatrix.height(); j++) {
-				if (!goodComp((Comparison) edgeMatrix.get(i, j))) {
-					edgeMatrix.remove(i, j);
+		List old = new LinkedList();
+		MatrixIterator mi = edgeMatrix.getMatrixIterator();
+		while (mi.hasNextColumn()) {
+			mi.nextColumn();
+			while (mi.hasNextInColumn()) {
+				if (!goodComp((Comparison) mi.nextInColumn())) {
+					old.add(new int[] {mi.currColumn(), mi.currRow()});
 				}
 			}
 		}
+		for (Iterator iter = old.iterator(); iter.hasNext();) {
+			int[] cell = (int[]) iter.next();
+			edgeMatrix.remove(cell[0], cell[1]);
+		}
 	}
 
 	/**
@@ -786,89 +1085,71 @@ public class CompMatrix implements Cloneable {
 	}
 
 	/**
-	 * This returns a submatrix of the distances matrix, where the next
-	 * submatrix is the first one searching from right to left from the bottom
-	 * to the top. A submatrix is a connected subgraph where there is a
-	 * connection determined by goodComp(), and no such connections to the
-	 * outside.
+	 * Splits the comparison graph into its connected components, where
+	 * two descriptors are connected if goodComp() holds for their
+	 * comparison. The components are found in one pass over the edges,
+	 * with a union-find forest, and are listed in order of their last
+	 * targets, from the bottom right of the matrix up.
 	 * 
-	 * @param M
-	 *            the value to iterate over
-	 * @param edgeMask
-	 *            the elements removed so far
-	 * @return the submatrix
-	 */
-	static CompMatrix getNextSubmatrix(CompMatrix M, BitSet[] edgeMask) {
-		int t = M.edgeMatrix.width();
-		int c = 0;
-
-		while ((t > 0) && (c == 0)) {
-			c = edgeMask[--t].length();
-		}
-		if (c == 0)
-			return (null);
-		c--;
-
-		// c and t mark the bottom right corner of the next sub-matrix.
-		// The next section finds all adjacent nodes.
-		BitSet candidateMask = new BitSet(M.edgeMatrix.height());
-		BitSet targetMask = new BitSet(M.edgeMatrix.width());
-		BitSet[] tempMask = new BitSet[edgeMask.length];
-
-		candidateMask.set(c);
-		targetMask.set(t);
-
-		while (expandBitMaskToAdjacent(M, targetMask, candidateMask));
-
-		for (int i = 0; i < M.edgeMatrix.width(); i++) {
-			tempMask[i] = new BitSet(M.edgeMatrix.height());
-			if (targetMask.get(i)) {
-				for (int j = 0; j < M.edgeMatrix.height(); j++)
-					if (candidateMask.get(j)) {
-						tempMask[i].set(j);
-					}
-			}
+	 * @return for each component, the mask of its targets followed by
+	 *         the mask of its candidates
+	 */
+	List<BitSet[]> getComponents() {
+		int targets = edgeMatrix.sizeWide();
+		int[] parent = new int[targets + edgeMatrix.sizeHigh()];
+		for (int i = 0; i < parent.length; i++) {
+			parent[i] = i;
 		}
-		for (int i = 0; i < edgeMask.length; i++)
-			edgeMask[i].andNot(tempMask[i]);
-
-		return (new CompMatrix(M, targetMask, candidateMask));
-	}
-
-	static boolean expandBitMaskToAdjacent(CompMatrix M, BitSet targetMask,
-			BitSet candidateMask) {
-		boolean expanded;
-		expanded = false;
-
-		//First, expand from targets to candidates
-		MatrixIterator mi = M.getMatrixIterator();
+		BitSet connected = new BitSet(parent.length);
+		MatrixIterator mi = getMatrixIterator();
 		while (mi.hasNextColumn()) {
-			int x = mi.nextColumn();
-			if (targetMask.get(x)) {
-				while (mi.hasNextInColumn()) {
-					Comparison curr = (Comparison) mi.nextInColumn();
-					if (M.goodComp(curr) && !candidateMask.get(mi.currRow())) {
-						expanded = true;
-						candidateMask.set(mi.currRow());
+			int t = mi.nextColumn();
+			while (mi.hasNextInColumn()) {
+				if (goodComp((Comparison) mi.nextInColumn())) {
+					int c = targets + mi.currRow();
+					connected.set(t);
+					connected.set(c);
+					int a = findRoot(parent, t);
+					int b = findRoot(parent, c);
+					if (a != b) {
+						parent[a] = b;
 					}
 				}
 			}
 		}
 
-		mi = M.getMatrixIterator();
-		while (mi.hasNextRow()) {
-			int y = mi.nextRow();
-			if (candidateMask.get(y)) {
-				while (mi.hasNextInRow()) {
-					Comparison curr = (Comparison) mi.nextInRow();
-					if (M.goodComp(curr) && !targetMask.get(mi.currColumn())) {
-						expanded = true;
-						targetMask.set(mi.currColumn());
-					}
+		List<BitSet[]> components = new ArrayList<BitSet[]>();
+		int[] componentOf = new int[parent.length];
+		Arrays.fill(componentOf, -1);
+		for (int t = targets - 1; t >= 0; t--) {
+			if (connected.get(t)) {
+				int root = findRoot(parent, t);
+				if (componentOf[root] < 0) {
+					componentOf[root] = components.size();
+					components.add(new BitSet[]{new BitSet(targets),
+							new BitSet(parent.length - targets)});
 				}
+				components.get(componentOf[root])[0].set(t);
 			}
 		}
-		return expanded;
+		for (int c = connected.nextSetBit(targets); c >= 0; c = connected
+				.nextSetBit(c + 1)) {
+			components.get(componentOf[findRoot(parent, c)])[1].set(c
+					- targets);
+		}
+		return components;
+	}
+
+	/**
+	 * Finds the root of a node in a union-find forest, halving the path
+	 * along the way.
+	 */
+	private static int findRoot(int[] parent, int i) {
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
 	}
 
 	/**
@@ -0,0 +1,130 @@
+/***************************************
+ *            ViPER                    *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *                                     *
+ *  Distributed under the GPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package viper.comparison;
+
+import java.io.*;
+import java.util.*;
+
+import viper.comparison.distances.*;
+import viper.descriptors.*;
+import viper.descriptors.attributes.*;
+import edu.umd.cfar.lamp.viper.util.*;
+
+/**
+ * Compares the number of comparisons created and the time taken by
+ * {@link CompMatrix#initializeMatrix(EvaluationParameters.ScopeRules, int, Revealer)}
+ * with and without the frame span index, on randomly generated
+ * descriptors. Also checks that both produce the same set of matches.
+ * <p>
+ * Usage: <code>java viper.comparison.CompMatrixBenchmark
+ * [<i>descriptors per side</i> [<i>frames</i> [<i>max length</i>]]]</code>
+ * </p>
+ */
+public class CompMatrixBenchmark {
+	/**
+	 * Runs the benchmark.
+	 * @param args the number of targets (and candidates), the length of the
+	 * simulated video in frames, and the maximum length of a descriptor
+	 * @throws BadDataException if there is an error creating the descriptors
+	 */
+	public static void main(String[] args) throws BadDataException {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int frames = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+		int maxLength = args.length > 2 ? Integer.parseInt(args[2]) : 300;
+
+		DescPrototype proto = new DescPrototype("OBJECT", "Person");
+		Random r = new Random(42);
+		DescriptorList targets = generate(proto, count, frames, maxLength, r);
+		DescriptorList candidates = generate(proto, count, frames, maxLength,
+				r);
+
+		EvaluationParameters epf = new EvaluationParameters(null);
+		Map measures = new HashMap();
+		measures.put(" framespan", new AttrMeasure(" framespan"));
+		Map evas = new HashMap();
+		evas.put(proto, measures);
+		EvaluationParameters.ScopeRules scope = epf.getScopeRulesFor(evas);
+		PrintWriter log = new PrintWriter(System.err, true);
+
+		System.out.println(count + " targets, " + count + " candidates, "
+				+ frames + " frames");
+		CompMatrix.setIndexingCandidates(false);
+		CompMatrix exhaustive = run("exhaustive", targets, candidates, scope,
+				log, (long) count * count);
+
+		IntervalTree index = CompMatrix.buildFrameSpanIndex(candidates, scope);
+		long pairs = 0;
+		BitSet possibles = new BitSet(count);
+		for (int i = 0; i < targets.size(); i++) {
+			FrameSpan span = ((Descriptor) targets.get(i)).getFrameSpan();
+			possibles.clear();
+			index.getIntersecting(span.beginning(), span.ending() + 1L,
+					possibles);
+			pairs += possibles.cardinality();
+		}
+		CompMatrix.setIndexingCandidates(true);
+		CompMatrix indexed = run("indexed", targets, candidates, scope, log,
+				pairs);
+
+		if (getMatches(exhaustive).equals(getMatches(indexed))) {
+			System.out.println("Both methods found the same matches.");
+		} else {
+			System.out.println("ERROR: the methods found different matches!");
+		}
+	}
+
+	private static CompMatrix run(String name, DescriptorList targets,
+			DescriptorList candidates, EvaluationParameters.ScopeRules scope,
+			PrintWriter log, long pairs) {
+		CompMatrix M = new CompMatrix(targets, candidates, null, scope, log);
+		long start = System.currentTimeMillis();
+		M.initializeMatrix(scope, Comparison.DETECTED, null);
+		long time = System.currentTimeMillis() - start;
+		System.out.println(name + ": " + pairs + " comparisons in " + time
+				+ " ms");
+		return M;
+	}
+
+	/**
+	 * Gets a description of each surviving comparison, as a set of
+	 * strings containing the indices and the distance.
+	 */
+	private static Set getMatches(CompMatrix M) {
+		Set matches = new HashSet();
+		MatrixIterator mi = M.getMatrixIterator();
+		while (mi.hasNextColumn()) {
+			int x = mi.nextColumn();
+			while (mi.hasNextInColumn()) {
+				Comparison curr = (Comparison) mi.nextInColumn();
+				if (M.goodComp(curr)) {
+					matches.add(x + " " + mi.currRow() + " "
+							+ curr.getDistance());
+				}
+			}
+		}
+		return matches;
+	}
+
+	private static DescriptorList generate(DescPrototype proto, int count,
+			int frames, int maxLength, Random r) {
+		DescriptorList list = new DescVector(null);
+		for (int i = 0; i < count; i++) {
+			Descriptor d = proto.create();
+			int start = r.nextInt(frames);
+			int end = Math.min(frames - 1, start + r.nextInt(maxLength));
+			d.setFrameSpan(new FrameSpan(start, end));
+			list.add(d);
+		}
+		return list;
+	}
+}
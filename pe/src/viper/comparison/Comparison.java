@@ -52,6 +52,16 @@ public class Comparison implements Cloneable {
 	 */
 	private int filterLevel = CompFilter.NONE;
 
+	/**
+	 * What localizing a dynamic attribute found, as kept in the
+	 * {@link DistanceCache}: the distances on each frame, and the frames
+	 * that passed the threshold.
+	 */
+	private static class LocalizedAttribute {
+		DistanceHolder distances = new DistanceHolder();
+		FrameSpan inspan;
+	}
+
 	/**
 	 * Indicates that the two descriptors are of incompatable type.
 	 */
@@ -378,8 +388,8 @@ public class Comparison implements Cloneable {
 		}
 
 		try {
-			Measurable.Difference D = T.getFrameSpan().getDifference(
-					C.getFrameSpan(), null, null, null);
+			Measurable.Difference D = epf.getDistanceCache()
+					.getFrameSpanDifference(T, C, null, null);
 			AttrMeasure M = epf.getMeasure(T, " framespan");
 			if (M == null || M.getMetric() == null) {
 				throw new RuntimeException(
@@ -418,8 +428,8 @@ public class Comparison implements Cloneable {
 		AttrMeasure meas = epf.getMeasure(T, " framespan");
 
 		try {
-			Measurable.Difference D = T.getFrameSpan().getDifference(
-					C.getFrameSpan(), null, null, cfd);
+			Measurable.Difference D = epf.getDistanceCache()
+					.getFrameSpanDifference(T, C, null, cfd);
 			distance = meas.getMetric().getDistance(D).doubleValue();
 		} catch (IgnoredValueException ivx) {
 			throw new RuntimeException("Unexpected exception: "
@@ -457,6 +467,7 @@ public class Comparison implements Cloneable {
 					"Localization can only follow detection, not " + level);
 		}
 		Map measures = epf.getAllMeasuresFor(T);
+		DistanceCache cache = epf.getDistanceCache();
 
 		distances = new DistanceHolder[measures.size() - 1];
 		// But take back one Kadam to honor the Hebrew God whose Ark this is
@@ -475,17 +486,30 @@ public class Comparison implements Cloneable {
 				try {
 					distances[scopedIndex] = new DistanceHolder();
 					if (targAttr.isDynamic() || candAttr.isDynamic()) {
-						FrameSpan inspan = meas.calculateDistancesAndThresh(
-								targAttr, T.getFrameSpan(), candAttr, C
-										.getFrameSpan(), cfd,
-								distances[scopedIndex]);
-						matchSpan.intersectWith(inspan);
+						LocalizedAttribute la = (LocalizedAttribute) cache
+								.get(T, C, attribName, meas, null, cfd);
+						if (la == null) {
+							la = new LocalizedAttribute();
+							la.inspan = meas.calculateDistancesAndThresh(
+									targAttr, T.getFrameSpan(), candAttr, C
+											.getFrameSpan(), cfd,
+									la.distances);
+							cache.put(T, C, attribName, meas, null, cfd, la);
+						}
+						distances[scopedIndex] = (DistanceHolder) la.distances
+								.clone();
+						matchSpan.intersectWith(la.inspan);
 					} else {
 						try {
-							AttributeValue t = targAttr.getStaticValue();
-							Measurable.Difference D = Distances.helpGetDiff(t,
-									candAttr.getStaticValue(), null, null, cfd,
-									null);
+							Measurable.Difference D = (Measurable.Difference) cache
+									.get(T, C, attribName, null, null, cfd);
+							if (D == null) {
+								AttributeValue t = targAttr.getStaticValue();
+								D = Distances.helpGetDiff(t, candAttr
+										.getStaticValue(), null, null, cfd,
+										null);
+								cache.put(T, C, attribName, null, null, cfd, D);
+							}
 							distances[scopedIndex].set(0, 1, meas
 									.distanceAgainst(D));
 						} catch (IgnoredValueException ivx) {
@@ -521,8 +545,8 @@ public class Comparison implements Cloneable {
 		meas = epf.getMeasure(T, " framespan");
 		try {
 			FrameSpan blackout = unionSpan.minus(matchSpan);
-			Measurable.Difference D = T.getFrameSpan().getDifference(
-					C.getFrameSpan(), blackout, null, cfd);
+			Measurable.Difference D = epf.getDistanceCache()
+					.getFrameSpanDifference(T, C, blackout, cfd);
 			distance = meas.getMetric().getDistance(D).doubleValue();
 		} catch (IgnoredValueException ivx) {
 			throw new RuntimeException(ivx.getMessage());
@@ -52,6 +52,8 @@ public class EvaluationParameters {
 	private RuleHolder targetInputFilter = null;
 	private RuleHolder candidateInputFilter = null;
 	private DescriptorConfigs dcfgs;
+	private DistanceCache distanceCache = new DistanceCache(
+			DistanceCache.DEFAULT_CAPACITY);
 
 	/**
 	 * Gets the rules for target descriptors that are worthy of even parsing.
@@ -155,6 +157,24 @@ public class EvaluationParameters {
 		return map;
 	}
 
+	/**
+	 * Gets the cache of differences and distances shared by all the
+	 * evaluations and levels run with these parameters.
+	 * @return the distance cache
+	 */
+	public DistanceCache getDistanceCache() {
+		return distanceCache;
+	}
+
+	/**
+	 * Replaces the distance cache, for example with one of a different
+	 * capacity.
+	 * @param cache the new cache
+	 */
+	public void setDistanceCache(DistanceCache cache) {
+		this.distanceCache = cache;
+	}
+
 	/**
 	 * Prints the parameters in raw format.
 	 * @param raw the raw output stream
@@ -247,6 +267,15 @@ public class EvaluationParameters {
 		public Equivalencies getMap() {
 			return map;
 		}
+
+		/**
+		 * Gets the cache of differences and distances for the
+		 * evaluation parameters these rules belong to.
+		 * @return the distance cache
+		 */
+		public DistanceCache getDistanceCache() {
+			return distanceCache;
+		}
 		
 		/**
 		 * Constructs a new set of scope rules.
@@ -300,7 +329,33 @@ public class EvaluationParameters {
 					&& (candidateOutputFilter == null || candidateOutputFilter
 							.meetsCriteria(desc));
 		}
-		
+
+		/**
+		 * Gets the names of the attributes the target output filter
+		 * checks for the given descriptor.
+		 * @param desc a target descriptor
+		 * @return the filtered attribute names, which may include
+		 * " framespan"
+		 * @see #isOutputableTarget(Descriptor)
+		 */
+		public Set getTargetFilterAttributes(Descriptor desc) {
+			return targetOutputFilter == null ? Collections.EMPTY_SET
+					: targetOutputFilter.getRuleAttributes(desc);
+		}
+
+		/**
+		 * Gets the names of the attributes the candidate output filter
+		 * checks for the given descriptor.
+		 * @param desc a candidate descriptor
+		 * @return the filtered attribute names, which may include
+		 * " framespan"
+		 * @see #isOutputableCandidate(Descriptor)
+		 */
+		public Set getCandidateFilterAttributes(Descriptor desc) {
+			return candidateOutputFilter == null ? Collections.EMPTY_SET
+					: candidateOutputFilter.getRuleAttributes(desc);
+		}
+
 		/**
 		 * Determine if the descriptor's type is compatable with 
 		 * the current set of evaluations.
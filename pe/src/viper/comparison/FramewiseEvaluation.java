@@ -18,6 +18,7 @@ import java.util.*;
 import viper.comparison.distances.*;
 import viper.descriptors.*;
 import viper.descriptors.attributes.*;
+import viper.filters.*;
 
 import com.jrefinery.data.*;
 
@@ -75,6 +76,122 @@ public class FramewiseEvaluation implements Evaluation {
 	private DescRules[] metrics = new DescRules[0];
 	private int numberOfMetrics = 0;
 
+	/**
+	 * Whether new evaluations only evaluate the frames where something
+	 * changes.
+	 */
+	private static boolean sweepingByDefault = true;
+
+	/**
+	 * Tests to see if new evaluations only recompute their information at
+	 * frames where a descriptor begins, ends or changes value.
+	 * @return <code>true</code> if new evaluations sweep
+	 * @see #setSweepingFrames(boolean)
+	 */
+	public static boolean isSweepingByDefault() {
+		return sweepingByDefault;
+	}
+
+	/**
+	 * Sets whether evaluations created after this only recompute their
+	 * information at the frames where something changes.
+	 * @param sweep <code>false</code> to evaluate every frame from scratch
+	 * by default
+	 * @see #setSweepingFrames(boolean)
+	 */
+	public static void setSweepingByDefault(boolean sweep) {
+		sweepingByDefault = sweep;
+	}
+
+	/**
+	 * Whether this evaluation only evaluates the frames where something
+	 * changes.
+	 */
+	private boolean sweeping = sweepingByDefault;
+
+	/**
+	 * Tests to see if this evaluation only recomputes its information at
+	 * frames where a descriptor begins, ends or changes value.
+	 * @return <code>true</code> if unchanged frames reuse the information
+	 * from the frame before them
+	 */
+	public boolean isSweepingFrames() {
+		return sweeping;
+	}
+
+	/**
+	 * Sets whether this evaluation should only recompute its information
+	 * at frames where an evaluated descriptor begins, ends, or changes the
+	 * value of an evaluated attribute or of an attribute checked by an
+	 * output filter. Other frames copy the information from the frame
+	 * before them, so the results are the same either way.
+	 * @param sweep <code>false</code> to evaluate every frame from scratch
+	 */
+	public void setSweepingFrames(boolean sweep) {
+		sweeping = sweep;
+	}
+
+	/**
+	 * The evaluation section directive that sets whether the evaluation
+	 * counts pixels with rasters.
+	 */
+	public static final String RASTERIZE = "RASTERIZE";
+
+	/**
+	 * Whether new evaluations count pixels by drawing the shapes.
+	 */
+	private static boolean rasterizingByDefault = false;
+
+	/**
+	 * Tests to see if new evaluations count pixels with rasters.
+	 * @return <code>true</code> if new evaluations rasterize
+	 * @see #setRasterizing(boolean)
+	 */
+	public static boolean isRasterizingByDefault() {
+		return rasterizingByDefault;
+	}
+
+	/**
+	 * Sets whether evaluations created after this count pixels with
+	 * rasters.
+	 * @param raster <code>true</code> to rasterize by default
+	 * @see #setRasterizing(boolean)
+	 */
+	public static void setRasterizingByDefault(boolean raster) {
+		rasterizingByDefault = raster;
+	}
+
+	/**
+	 * Whether this evaluation counts pixels by drawing the shapes.
+	 */
+	private boolean rasterizing = rasterizingByDefault;
+
+	/**
+	 * Tests to see if this evaluation counts the matched, missed and false
+	 * pixels of each frame with rasters.
+	 * @return <code>true</code> if pixels are counted with rasters
+	 * @see #setRasterizing(boolean)
+	 */
+	public boolean isRasterizing() {
+		return rasterizing;
+	}
+
+	/**
+	 * Sets whether this evaluation counts the matched, missed and false
+	 * pixels of each frame by drawing the targets, candidates and ignored
+	 * regions into bitmaps at the resolution of the media, instead of
+	 * computing the union of the polygons and their intersection. The
+	 * counts are the same for bounding boxes, and within a pixel along
+	 * the edges for other shapes. If an attribute is only evaluated with
+	 * pixel counts, the polygons of a frame don't have to be combined at
+	 * all. Ellipses and circles may only be counted this way.
+	 * @param raster <code>true</code> to count pixels with rasters
+	 * @see RasterDifference
+	 */
+	public void setRasterizing(boolean raster) {
+		rasterizing = raster;
+	}
+
 	/**
 	 * Constructs a new framewise evaluation from the given parameters
 	 * 
@@ -259,6 +376,19 @@ public class FramewiseEvaluation implements Evaluation {
 			LinkedList<Descriptor> targs = new LinkedList<Descriptor>();
 			LinkedList<Descriptor> cands = new LinkedList<Descriptor>();
 			LinkedList<Descriptor> dontCares = new LinkedList<Descriptor>();
+			LinkedList<Descriptor> ignoredCands = new LinkedList<Descriptor>();
+
+			// Rasterized attributes count pixels from each descriptor, so
+			// the descriptors only need to be combined for the others.
+			boolean[] rastered = new boolean[metrics[i].getLength()];
+			boolean[] geometric = new boolean[rastered.length];
+			boolean composing = false;
+			for (int j = 0; j < rastered.length; j++) {
+				FrameMeasure meas = metrics[i].getMeasure(j);
+				rastered[j] = rasterizing && countsPixels(meas);
+				geometric[j] = !rastered[j] || !onlyCountsPixels(meas);
+				composing = composing || geometric[j];
+			}
 
 			for (Iterator iter = mat.T.cropNodesToSpan(currSpan); iter
 					.hasNext();) {
@@ -267,11 +397,15 @@ public class FramewiseEvaluation implements Evaluation {
 					if (scope.isOutputableTarget(curr)) {
 						targetObjectCount++;
 						targs.add(curr);
-						targetDesc = helpCombine(curr, targetDesc, scope);
+						if (composing) {
+							targetDesc = helpCombine(curr, targetDesc, scope);
+						}
 					} else {
 						dontCares.add(curr);
-						dontCareDesc = helpCombine(curr, dontCareDesc, mat
-								.getScopeRules());
+						if (composing) {
+							dontCareDesc = helpCombine(curr, dontCareDesc, mat
+									.getScopeRules());
+						}
 					}
 				}
 			}
@@ -321,22 +455,45 @@ public class FramewiseEvaluation implements Evaluation {
 						if (care) {
 							candidateObjectCount++;
 							cands.add(curr);
-							candidateDesc = helpCombine(curr, candidateDesc,
-									mat.getScopeRules());
+							if (composing) {
+								candidateDesc = helpCombine(curr,
+										candidateDesc, mat.getScopeRules());
+							}
 						}
 					} else {
-						dontCareDesc = helpCombine(curr, dontCareDesc, mat
-								.getScopeRules());
+						ignoredCands.add(curr);
+						if (composing) {
+							dontCareDesc = helpCombine(curr, dontCareDesc, mat
+									.getScopeRules());
+						}
 					}
 				}
 			}
 
-			if (targetDesc == null && candidateDesc == null) {
+			if (targs.isEmpty() && cands.isEmpty()) {
 				continue;
 			}
 			info.setFrameCount(1);
 			for (int j = 0; j < metrics[i].getLength(); j++) {
 				String attrName = metrics[i].getAttr(j);
+				if (rastered[j]) {
+					List<AttributeValue> ignored = helpGetAttrValues(
+							dontCares, attrName, currSpan);
+					ignored.addAll(helpGetAttrValues(ignoredCands, attrName,
+							currSpan));
+					try {
+						info.setPixelCountsFor(currDescType, attrName,
+								new RasterDifference(helpGetAttrValues(targs,
+										attrName, currSpan), helpGetAttrValues(
+										cands, attrName, currSpan), ignored,
+										mat.getFileInformation()));
+					} catch (IgnoredValueException ivx) {
+						System.err.println("Ignored all data in a frame.");
+					}
+					if (!geometric[j]) {
+						continue;
+					}
+				}
 				Measurable.Difference D = null;
 				Measurable.Difference tD = null;
 
@@ -350,7 +507,7 @@ public class FramewiseEvaluation implements Evaluation {
 				try {
 					D = Distances.helpGetDiff(t, c, null, dc, mat
 							.getFileInformation(), null);
-					info.setOverallsFor(currDescType, attrName, D);
+					info.setOverallsFor(currDescType, attrName, D, rastered[j]);
 					// sets matched, false, and missed
 				} catch (IgnoredValueException ivx) {
 					// Do nothing for now...
@@ -407,6 +564,139 @@ public class FramewiseEvaluation implements Evaluation {
 		}
 	}
 
+	private List<AttributeValue> helpGetAttrValues(List<Descriptor> descs,
+			String attrName, FrameSpan span) {
+		List<AttributeValue> values = new ArrayList<AttributeValue>(descs
+				.size());
+		for (Iterator<Descriptor> iter = descs.iterator(); iter.hasNext();) {
+			AttributeValue v = helpGetAttrValue(iter.next(), attrName, span,
+					span.beginning(), scope.getMap());
+			if (v != null) {
+				values.add(v);
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Tests to see if any of the measure's distances count pixels.
+	 */
+	private static boolean countsPixels(FrameMeasure meas) {
+		for (Iterator<Distance> iter = meas.getDistanceFunctors().iterator(); iter
+				.hasNext();) {
+			if (RasterDifference.isPixelCount(iter.next())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Tests to see if all of the measure's distances count pixels, and it
+	 * has no localizers.
+	 */
+	private static boolean onlyCountsPixels(FrameMeasure meas) {
+		if (!meas.getLocalizations().isEmpty()) {
+			return false;
+		}
+		for (Iterator<Distance> iter = meas.getDistanceFunctors().iterator(); iter
+				.hasNext();) {
+			if (!RasterDifference.isPixelCount(iter.next())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Marks the frames where the evaluated descriptors in the list
+	 * begin, end, or change the value of an evaluated attribute or of an
+	 * attribute checked by the output filter. Between two marked frames,
+	 * each frame has the same descriptors with the same values, and the
+	 * filter passes the same ones, so they all get the same evaluation
+	 * information.
+	 * 
+	 * @param list
+	 *            the targets or candidates
+	 * @param targets
+	 *            <code>true</code> if the list holds the targets, so the
+	 *            target output filter applies to it
+	 * @param changes
+	 *            the set of frames to mark
+	 * @param frameCount
+	 *            one more than the last frame to evaluate
+	 */
+	private void markChanges(DescriptorList list, boolean targets,
+			BitSet changes, int frameCount) {
+		for (Iterator iter = list.iterator(); iter.hasNext();) {
+			Descriptor curr = (Descriptor) iter.next();
+			Set<Attribute> watched = new HashSet<Attribute>();
+			boolean evaluated = false;
+			for (int i = 0; i < metrics.length; i++) {
+				if (curr.sameCategoryAs(metrics[i].getDesc(), scope.getMap())) {
+					evaluated = true;
+					for (int j = 0; j < metrics[i].getLength(); j++) {
+						watched.add(curr.getAttribute(metrics[i].getAttr(j),
+								scope.getMap()));
+					}
+				}
+			}
+			if (!evaluated) {
+				continue;
+			}
+
+			// The output filters are checked against each frame of the
+			// descriptor, so a change in a filtered value may let the
+			// descriptor in or keep it out.
+			boolean everyFrame = false;
+			Set filtered = targets ? scope.getTargetFilterAttributes(curr)
+					: scope.getCandidateFilterAttributes(curr);
+			for (Iterator names = filtered.iterator(); names.hasNext();) {
+				String name = (String) names.next();
+				if (" framespan".equals(name)) {
+					everyFrame = true;
+				} else {
+					Filterable f = curr.getFilterable(name);
+					if (f instanceof Attribute) {
+						watched.add((Attribute) f);
+					}
+				}
+			}
+
+			FrameSpan span = curr.getFrameSpan();
+			for (Iterator pieces = span.split().iterator(); pieces.hasNext();) {
+				FrameSpan piece = (FrameSpan) pieces.next();
+				markFrame(changes, piece.beginning(), frameCount);
+				markFrame(changes, piece.ending() + 1, frameCount);
+				if (everyFrame) {
+					// a rule on the span itself passes or fails frame by
+					// frame
+					for (int f = piece.beginning() + 1; f <= piece.ending(); f++) {
+						markFrame(changes, f, frameCount);
+					}
+				}
+			}
+			for (Iterator<Attribute> attrs = watched.iterator(); attrs
+					.hasNext();) {
+				Attribute attr = attrs.next();
+				if (everyFrame || attr == null || !attr.isDynamic()) {
+					continue;
+				}
+				// Each run of the same value starts at the beginning of a
+				// span or where the value changes.
+				for (Iterator runs = attr.getValues(span); runs.hasNext();) {
+					ValueSpan run = (ValueSpan) runs.next();
+					markFrame(changes, (int) run.getStart(), frameCount);
+				}
+			}
+		}
+	}
+	private static void markFrame(BitSet changes, int frame, int frameCount) {
+		if (0 <= frame && frame < frameCount) {
+			changes.set(frame);
+		}
+	}
+
 	/**
 	 * Count, on a frameXframe basis, the number of pixels hit/missed for all
 	 * shape descriptors.
@@ -419,13 +709,24 @@ public class FramewiseEvaluation implements Evaluation {
 		int maxFrameNum = Math.max(mat.T.getHighestFrame(), mat.C
 				.getHighestFrame());
 		FramewiseInformation[] counts = new FramewiseInformation[++maxFrameNum];
+		BitSet changes = null;
+		if (sweeping) {
+			changes = new BitSet(maxFrameNum);
+			changes.set(0);
+			markChanges(mat.T, true, changes, maxFrameNum);
+			markChanges(mat.C, false, changes, maxFrameNum);
+		}
 
 		// Add it up!
 		int i = 0;
 		FrameSpan cspan = new FrameSpan(0, 0);
 		try {
 			for (i = 0; i < maxFrameNum; i++, cspan.shift(1)) {
-				counts[i] = getFramewiseForFrame(cspan);
+				if (changes == null || changes.get(i)) {
+					counts[i] = getFramewiseForFrame(cspan);
+				} else {
+					counts[i] = counts[i - 1].copy();
+				}
 				if (ticker != null) {
 					ticker.tick();
 				}
@@ -516,7 +817,20 @@ public class FramewiseEvaluation implements Evaluation {
 					.getCurrentLine());
 			// The category of descriptor (ie FILE, OBJECT, etc.)
 			String type = st.nextToken();
-			if (!Descriptor.isCategory(type)) {
+			if (RASTERIZE.equals(type)) {
+				// RASTERIZE [true|false] picks how this evaluation counts
+				// pixels
+				String value = st.hasMoreTokens() ? st.nextToken() : "true";
+				if ("true".equalsIgnoreCase(value)
+						|| "false".equalsIgnoreCase(value)) {
+					setRasterizing(Boolean.valueOf(value).booleanValue());
+				} else {
+					reader.printError(RASTERIZE
+							+ " must be followed by true or false", st
+							.getStart(), st.getEnd());
+				}
+				reader.gotoNextRealLine();
+			} else if (!Descriptor.isCategory(type)) {
 				reader.printError(type + " is not a Descriptor category.", st
 						.getStart(), st.getEnd());
 				reader.gotoNextRealLine();
@@ -797,6 +1111,11 @@ public class FramewiseEvaluation implements Evaluation {
 	 * @throws IOException
 	 * @throws NoSuchElementException
 	 */
+	private static boolean startsWithRasterize(String line) {
+		StringTokenizer st = new StringTokenizer(line);
+		return st.hasMoreTokens() && RASTERIZE.equals(st.nextToken());
+	}
+
 	private Map<String, AttrMeasure> helpParseAttribMap(VReader reader, DescPrototype proto)
 			throws IOException {
 		HashMap<String, AttrMeasure> attribMap = new HashMap<String, AttrMeasure>();
@@ -811,6 +1130,7 @@ public class FramewiseEvaluation implements Evaluation {
 		reader.gotoNextRealLine();
 
 		while (!Descriptor.startsWithCategory(reader.getCurrentLine())
+				&& !startsWithRasterize(reader.getCurrentLine())
 				&& !reader.currentLineIsEndDirective()) {
 			st = new StringTokenizer(reader.getCurrentLine());
 			String attribName = st.nextToken();
@@ -1058,6 +1378,35 @@ public class FramewiseEvaluation implements Evaluation {
 			}
 		}
 
+		/**
+		 * Makes a copy of this information that doesn't share any
+		 * modifiable values with it, so that adding the copy to a sum
+		 * leaves this one unchanged.
+		 * 
+		 * @return a copy of the information
+		 */
+		FramewiseInformation copy() {
+			FramewiseInformation c = new FramewiseInformation();
+			c.truthObjects = truthObjects;
+			c.resultObjects = resultObjects;
+			c.frameCount = frameCount;
+			c.detectedFrames = detectedFrames;
+			c.missedFrames = missedFrames;
+			c.falseFrames = falseFrames;
+			for (int i = 0; i < values.length; i++) {
+				if (values[i] instanceof PartialSum) {
+					PartialSum sum = new PartialSum();
+					sum.add((PartialSum) values[i]);
+					c.values[i] = sum;
+				} else if (values[i] instanceof List) {
+					c.values[i] = new LinkedList((List) values[i]);
+				} else {
+					c.values[i] = values[i];
+				}
+			}
+			return c;
+		}
+
 		/**
 		 * {@inheritDoc}
 		 */
@@ -1107,11 +1456,35 @@ public class FramewiseEvaluation implements Evaluation {
 		 */
 		public void setOverallsFor(Descriptor desc, String attr,
 				Measurable.Difference D) {
+			setOverallsFor(desc, attr, D, false);
+		}
+
+		/**
+		 * Calculates the OVERALL_SUM or OVERALL_MEAN metrics for a specific
+		 * frame, possibly leaving out the pixel counts.
+		 * 
+		 * @param desc
+		 *            The (target) descriptor to compare.
+		 * @param attr
+		 *            String name of the attribute
+		 * @param D
+		 *            the Measurable.Difference between all the non-ignored
+		 *            candidates and non-ignored targets in a frame for the
+		 *            given attribute
+		 * @param rasterized
+		 *            <code>true</code> if the pixel counts were already set
+		 *            with {@link #setPixelCountsFor}
+		 */
+		public void setOverallsFor(Descriptor desc, String attr,
+				Measurable.Difference D, boolean rasterized) {
 			FrameMeasure meas = (FrameMeasure) scope.getMeasure(desc, attr);
 			int offset = meas.getOffset();
 			for (Iterator<Distance> iter = meas.getDistanceFunctors().iterator(); iter
 					.hasNext(); offset++) {
 				Distance dist = iter.next();
+				if (rasterized && RasterDifference.isPixelCount(dist)) {
+					continue;
+				}
 				if (dist.getType() == Distance.OVERALL_MEAN
 						|| dist.getType() == Distance.OVERALL_SUM) {
 					values[offset] = dist.getDistance(D);
@@ -1119,6 +1492,32 @@ public class FramewiseEvaluation implements Evaluation {
 			}
 		}
 
+		/**
+		 * Sets the matched, missed and false pixel counts for a specific
+		 * frame from the rasters of its targets, candidates and ignored
+		 * regions.
+		 * 
+		 * @param desc
+		 *            The (target) descriptor to compare.
+		 * @param attr
+		 *            String name of the attribute
+		 * @param D
+		 *            the pixel counts of all the non-ignored targets and
+		 *            candidates in a frame for the given attribute
+		 */
+		public void setPixelCountsFor(Descriptor desc, String attr,
+				RasterDifference D) {
+			FrameMeasure meas = (FrameMeasure) scope.getMeasure(desc, attr);
+			int offset = meas.getOffset();
+			for (Iterator<Distance> iter = meas.getDistanceFunctors().iterator(); iter
+					.hasNext(); offset++) {
+				Distance dist = iter.next();
+				if (RasterDifference.isPixelCount(dist)) {
+					values[offset] = dist.getDistance(D);
+				}
+			}
+		}
+
 		/**
 		 * Computes the distances for a single target versus the aggregation of
 		 * all the candidates in a given frame. This includes all distances
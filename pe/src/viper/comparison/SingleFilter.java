@@ -19,6 +19,9 @@ import edu.umd.cfar.lamp.viper.util.*;
 /**
  * SINGLE-OPTIMUM filter. It uses Hungarian assignment to get the set of
  * target/candidate pairs that minimizes the sum of the distances.
+ * The good comparisons are copied into a dense array of costs for
+ * {@link DataMatrices#assign(long[], int, int)}, so the assignment never
+ * has to walk the sparse matrix or convert a distance more than once.
  */
 class SingleFilter extends CompFilter {
 	
@@ -35,14 +38,61 @@ class SingleFilter extends CompFilter {
 	
 	/**
 	 * {@inheritDoc}
+	 * The matrix is usually one connected component of the comparison
+	 * graph, so only the targets and candidates with a good comparison
+	 * get a row or column in the cost array.
 	 */
 	public Surreal filter(CompMatrix matrix,
 			EvaluationParameters.ScopeRules scope) {
-		List goodOnes = DataMatrices.assign(matrix.getEdges(), costFunctor);
-		for (Iterator iter = goodOnes.iterator(); iter.hasNext();) {
-			Comparison curr = (Comparison) iter.next();
-			curr.setFilterLevel(CompFilter.SINGLE_OPTIMUM);
+		DataMatrix2d edges = matrix.getEdges();
+		int[] rowOf = new int[edges.sizeWide()];
+		int[] columnOf = new int[edges.sizeHigh()];
+		int[] targetAt = new int[rowOf.length];
+		int[] candidateAt = new int[columnOf.length];
+		Arrays.fill(rowOf, -1);
+		Arrays.fill(columnOf, -1);
+		int rows = 0;
+		int columns = 0;
+		MatrixIterator mi = edges.getMatrixIterator();
+		while (mi.hasNextColumn()) {
+			int t = mi.nextColumn();
+			while (mi.hasNextInColumn()) {
+				if (matrix.goodComp((Comparison) mi.nextInColumn())) {
+					int c = mi.currRow();
+					if (rowOf[t] < 0) {
+						targetAt[rows] = t;
+						rowOf[t] = rows++;
+					}
+					if (columnOf[c] < 0) {
+						candidateAt[columns] = c;
+						columnOf[c] = columns++;
+					}
+				}
+			}
+		}
+
+		long[] costs = new long[rows * columns];
+		Arrays.fill(costs, DataMatrices.NO_EDGE);
+		mi = edges.getMatrixIterator();
+		while (mi.hasNextColumn()) {
+			int t = mi.nextColumn();
+			while (mi.hasNextInColumn()) {
+				Comparison curr = (Comparison) mi.nextInColumn();
+				if (matrix.goodComp(curr)) {
+					costs[rowOf[t] * columns + columnOf[mi.currRow()]] = costFunctor
+							.cost(curr);
+				}
+			}
+		}
+
+		int[] mates = DataMatrices.assign(costs, rows, columns);
+		for (int r = 0; r < rows; r++) {
+			if (mates[r] >= 0) {
+				Comparison curr = (Comparison) edges.get(targetAt[r],
+						candidateAt[mates[r]]);
+				curr.setFilterLevel(CompFilter.SINGLE_OPTIMUM);
+			}
 		}
 		return matrix.getCompleteSum();
 	}
-}
\ No newline at end of file
+}
@@ -24,25 +24,130 @@ public class TrackingEvaluation implements Evaluation {
 			EvaluationParameters.descriptorComparator);
 
 	/**
-	 * Gets all key attrName / TrackingMeasure pairs.
+	 * Gets the names of all key attributes, in order.
 	 * 
 	 * @param desc
 	 *            The descriptor whose keys you want.
-	 * @return java.util.Set of java.util.Map.Entrys
+	 * @return java.util.List of the attribute names
 	 */
-	private Set getKeys(Descriptor desc) {
+	private List getKeyNames(Descriptor desc) {
 		Map M = scope.getAllMeasuresFor(desc);
-		Set allKeys = new HashSet();
+		List allKeys = new ArrayList();
 		for (Iterator iter = M.entrySet().iterator(); iter.hasNext();) {
 			Map.Entry curr = (Map.Entry) iter.next();
 			TrackingMeasure meas = (TrackingMeasure) curr.getValue();
 			if (meas.isKey()) {
-				allKeys.add(curr);
+				allKeys.add(curr.getKey());
 			}
 		}
+		Collections.sort(allKeys);
 		return allKeys;
 	}
 
+	/**
+	 * Gets the values of the given key attributes of a descriptor, as a
+	 * list that equals another descriptor's list only if each pair of
+	 * attributes is equal by the equality distance. This only works for
+	 * static attributes whose values' <code>equals</code> method is the
+	 * equality distance and agrees with their <code>hashCode</code>;
+	 * dvalues, which equal any number with the same integer part, are
+	 * replaced with <code>Integer</code>s.
+	 * 
+	 * @param desc
+	 *            the descriptor
+	 * @param keyNames
+	 *            the names of the key attributes
+	 * @return the values, or <code>null</code> if some attribute isn't of
+	 *         a type that can be hashed
+	 */
+	private List getKeyValues(Descriptor desc, List keyNames) {
+		List values = new ArrayList(keyNames.size());
+		for (Iterator iter = keyNames.iterator(); iter.hasNext();) {
+			Attribute attr = desc.getAttribute((String) iter.next(), epf
+					.getMap());
+			if (attr == null) {
+				values.add(null);
+			} else if (attr.isDynamic()) {
+				return null;
+			} else if (attr instanceof Attribute_dvalue) {
+				Number n = (Number) attr.getStaticValue();
+				values.add(n == null ? null : new Integer(n.intValue()));
+			} else if (attr instanceof Attribute_svalue
+					|| attr instanceof Attribute_lvalue
+					|| attr instanceof Attribute_bvalue
+					|| attr instanceof Attribute_point) {
+				values.add(attr.getStaticValue());
+			} else {
+				return null;
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Checks if the key attributes of a target and candidate are equal,
+	 * using the equality distance on the target's first frame.
+	 */
+	private boolean keysMatch(Descriptor targ, Descriptor cand, List keyNames) {
+		for (Iterator iter = keyNames.iterator(); iter.hasNext();) {
+			String attribName = (String) iter.next();
+			Attribute targAttr = targ.getAttribute(attribName, epf.getMap());
+			Attribute candAttr = cand.getAttribute(attribName, epf.getMap());
+			try {
+				Measurable.Difference D = Distances.helpGetDiff(targAttr,
+						targ.getFrameSpan(), candAttr, cand.getFrameSpan(),
+						null, null, null, null, //blackout & ignore
+						targ.getFrameSpan().beginning(), null, null); // cfd & old difference
+				if (Distances.getEqualityDistance().getDistance(D)
+						.doubleValue() != 0.0) {
+					return false;
+				}
+			} catch (IgnoredValueException ivx) {
+				// ignore
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The candidates that are still unmatched, hashed by the values of one
+	 * list of key attributes.
+	 */
+	private static class KeyIndex {
+		/**
+		 * Lists of candidates, by their key values
+		 */
+		Map byValues = new HashMap();
+
+		/**
+		 * Candidates whose key values can't be hashed, which have to be
+		 * compared with each target
+		 */
+		List unhashed = new LinkedList();
+	}
+
+	private KeyIndex buildKeyIndex(List keyNames, Set candidates) {
+		KeyIndex index = new KeyIndex();
+		for (Iterator iter = mat.C.iterator(); iter.hasNext();) {
+			Descriptor cand = (Descriptor) iter.next();
+			if (!candidates.contains(cand)) {
+				continue;
+			}
+			List values = getKeyValues(cand, keyNames);
+			if (values == null) {
+				index.unhashed.add(cand);
+			} else {
+				List sameValues = (List) index.byValues.get(values);
+				if (sameValues == null) {
+					sameValues = new LinkedList();
+					index.byValues.put(values, sameValues);
+				}
+				sameValues.add(cand);
+			}
+		}
+		return index;
+	}
+
 	private void helpPrintMetricsTo(Descriptor D, Map M, PrintWriter output) {
 		output.print("\n" + D.getCategory() + " " + D.getName());
 		TrackingMeasure fspanM = (TrackingMeasure) M.get(" framespan");
@@ -215,46 +320,52 @@ public class TrackingEvaluation implements Evaluation {
 		Set falsed = new HashSet();
 		falsed.addAll(mat.C);
 
+		// Key matching is pure equality, so where it can, this hashes the
+		// candidates by their key values once, for each list of keys, and
+		// looks up each target, instead of comparing every pair.
+		Map keyIndices = new HashMap();
 		for (Iterator targets = mat.T.iterator(); targets.hasNext();) {
 			Descriptor targ = (Descriptor) targets.next();
 			boolean found = false;
-			Set keys = getKeys(targ);
+			List keys = getKeyNames(targ);
 			if (keys.size() == 0) {
 				missed.add(targ);
 				continue;
 			}
-			for (Iterator candidates = falsed.iterator(); candidates.hasNext();) {
-				Descriptor cand = (Descriptor) candidates.next();
-				boolean thisPair = true;
-				for (Iterator measures = keys.iterator(); measures.hasNext();) {
-					String attribName = (String) ((Map.Entry) measures.next())
-							.getKey();
-					Attribute targAttr = targ.getAttribute(attribName, epf
-							.getMap());
-					Attribute candAttr = cand.getAttribute(attribName, epf
-							.getMap());
-					try {
-						Measurable.Difference D = Distances.helpGetDiff(
-								targAttr, targ.getFrameSpan(), candAttr, cand
-										.getFrameSpan(), null, null, null,
-								null, //blackout & ignore
-								targ.getFrameSpan().beginning(), null, null); // cfd
-																			  // &
-																			  // old
-																			  // difference
-						if (Distances.getEqualityDistance().getDistance(D)
-								.doubleValue() != 0.0) {
-							thisPair = false;
-							break;
-						}
-					} catch (IgnoredValueException ivx) {
-						// ignore
+			List targValues = getKeyValues(targ, keys);
+			Iterator candidates;
+			if (targValues == null) {
+				candidates = falsed.iterator();
+			} else {
+				KeyIndex index = (KeyIndex) keyIndices.get(keys);
+				if (index == null) {
+					index = buildKeyIndex(keys, falsed);
+					keyIndices.put(keys, index);
+				}
+				List sameValues = (List) index.byValues.remove(targValues);
+				for (Iterator iter = sameValues == null
+						? Collections.EMPTY_LIST.iterator()
+						: sameValues.iterator(); iter.hasNext();) {
+					// may have been taken through another list of keys
+					Descriptor cand = (Descriptor) iter.next();
+					if (falsed.remove(cand)) {
+						found = true;
+						matched.add(new Comparison(targ, cand, epf.getMap()));
 					}
-				} // for each key
-				if (thisPair) {
+				}
+				candidates = index.unhashed.iterator();
+			}
+			while (candidates.hasNext()) {
+				Descriptor cand = (Descriptor) candidates.next();
+				if (!falsed.contains(cand)) {
+					candidates.remove();
+				} else if (keysMatch(targ, cand, keys)) {
 					found = true;
 					matched.add(new Comparison(targ, cand, epf.getMap()));
 					candidates.remove();
+					if (targValues != null) {
+						falsed.remove(cand);
+					}
 				}
 			} // For each candidate
 			if (!found) {
@@ -17,6 +17,8 @@ import java.awt.geom.*;
 import java.io.*;
 import java.text.*;
 import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
 
 import org.apache.batik.svggen.*;
 import org.apache.xerces.dom.*;
@@ -58,6 +60,9 @@ import edu.umd.cfar.lamp.viper.util.reader.*;
  *             data</li>
  *   <li> -L# <i>level of matching</i> : change the level specified in the
  *            properties file, eg L1, L2, etc.</li>
+ *   <li> -batch <i>batch file</i> : evaluate many pairs of files, listed
+ *             in the given file, instead of just one (see
+ *             {@link #readBatchFile(String)} for the format)</li>
  *   <li> -P<b>property</b> <i>value</i> : override a specific property-value
  *             pair from the properties file</li>
  * </ul>
@@ -79,6 +84,9 @@ import edu.umd.cfar.lamp.viper.util.reader.*;
  *       <li>output_file: where to print the verbose output. Defaults to System out.</li>
  *       <li>raw_file: Where to print the raw output. Defaults to no raw output.</li>
  *       <li>base: the base file name, same as -b option</li>
+ *       <li>batch_file: the list of target and candidate files to
+ *        evaluate, same as the -batch option. Each pair gets its own
+ *        output file; the output_file and raw_file get the totals.</li>
  *     </ul>
  *   </LI>
  *   <LI>Formatting
@@ -148,6 +156,40 @@ import edu.umd.cfar.lamp.viper.util.reader.*;
  *       <li>lvalue_tol: tolerance for lvalue attributes</li>
  *     </ul>
  *   </LI>
+ *   <LI>Performance
+ *     <ul>
+ *       <li>index_candidates: true or false - only compare targets with
+ *         candidates whose frame spans intersect them. Defaults to true;
+ *         set to false to compare every pair exhaustively. The output
+ *         files are the same either way; only the match tables from
+ *         {@link CompEvaluator#printMatchTables()} differ.</li>
+ *       <li>evaluation_threads: the number of threads to use when
+ *         comparing targets to candidates in object and tracking
+ *         evaluations. Defaults to 1. The output is the same for any
+ *         number of threads.</li>
+ *       <li>fast_geometry: true or false - compute bbox, obox and polygon
+ *         overlaps with doubles instead of exact fractions, falling back
+ *         to exact arithmetic when the result might be off by more than
+ *         one part in a million. Defaults to false.</li>
+ *       <li>sweep_frames: true or false - in framewise evaluations, only
+ *         recompute the results at frames where a descriptor begins,
+ *         ends, or changes an evaluated or filtered value, copying them to the frames in between.
+ *         Defaults to true; the output is the same either way.</li>
+ *       <li>raster_pixels: true or false - in framewise evaluations,
+ *         count matched, missed and false pixels by drawing the shapes
+ *         into bitmaps instead of combining their polygons. The counts
+ *         may differ by a pixel along the edges of shapes other than
+ *         bounding boxes. An evaluation can override this with a
+ *         <code>RASTERIZE true</code> or <code>RASTERIZE false</code>
+ *         line. Defaults to false.</li>
+ *       <li>batch_threads: the number of pairs of files to evaluate at
+ *         once in batch mode. Defaults to the number of processors.</li>
+ *       <li>distance_cache_size: the most target/candidate differences
+ *         to remember while evaluating a pair of files. Each pair gets
+ *         its own cache, which is emptied when the pair is done.
+ *         Defaults to 65536; 0 turns off the cache.</li>
+ *     </ul>
+ *   </LI>
  * </UL>
  * 
  * @author David Doermann
@@ -205,6 +247,8 @@ public class ViperPE {
 					+ "               3=Attribute Constrained)\n"
 					+ "    -raw  <RAW OUTPUT file> name of the file into which you wish\n"
 					+ "            to store the raw format of the output\n"
+					+ "    -batch <BATCH file> list of GT and RESULTS file pairs to\n"
+					+ "            evaluate, one pair per line\n"
 					+ "    -P<property> <value>  Override a specific property\n"
 					+ "\n";
 				break;
@@ -382,6 +426,7 @@ public class ViperPE {
 						"-l", "log_file" }, {
 						"-raw", "raw_file" }, {
 						"-graph", "graph_file_template" }, {
+						"-batch", "batch_file" }, {
 						"-L", "level" }
 				};
 				for (int i = 0; i < switchMap.length; i++) {
@@ -438,6 +483,9 @@ public class ViperPE {
 	private String logFileName = null;
 	private String rawFileName = null;
 	private String graphFileNameTemplate = null;
+	private String batchFileName = null;
+	private int batchThreads = Runtime.getRuntime().availableProcessors();
+	private int distanceCacheSize = DistanceCache.DEFAULT_CAPACITY;
 
 	int level = -1; // Default level
 	int match = 0; // Default match ALL
@@ -525,14 +573,42 @@ public class ViperPE {
 
 		gtcFileName = props.getProperty("config_file");
 		gtFileName = props.getProperty("gt_file");
-		if (gtFileName == null) {
+		batchFileName = props.getProperty("batch_file");
+		if (gtFileName == null && batchFileName == null) {
 			throw new BadDataException("Must specify a target (ground truth data) file.");
 		}
 		resultscFileName = props.getProperty("resultsconfig_file");
 		resultsFileName = props.getProperty("results_file");
-		if (resultsFileName == null) {
+		if (resultsFileName == null && batchFileName == null) {
 			throw new BadDataException("Must specify a candidate (result data) file.");
 		}
+		if (props.getProperty("batch_threads") != null) {
+			try {
+				batchThreads =
+					Integer.parseInt(props.getProperty("batch_threads"));
+			} catch (NumberFormatException nfx) {
+				batchThreads = 0;
+			}
+			if (batchThreads < 1) {
+				throw new BadDataException(
+					"Invalid number of batch threads: "
+						+ props.getProperty("batch_threads"));
+			}
+		}
+
+		if (props.getProperty("distance_cache_size") != null) {
+			try {
+				distanceCacheSize =
+					Integer.parseInt(props.getProperty("distance_cache_size"));
+			} catch (NumberFormatException nfx) {
+				distanceCacheSize = -1;
+			}
+			if (distanceCacheSize < 0) {
+				throw new BadDataException(
+					"Invalid distance cache size: "
+						+ props.getProperty("distance_cache_size"));
+			}
+		}
 
 		epfFileName = props.getProperty("epf_file");
 		if (epfFileName == null) {
@@ -571,6 +647,31 @@ public class ViperPE {
 		graphFileNameTemplate = props.getProperty("graph_file_template");
 		verboseFlag =
 			Boolean.valueOf(props.getProperty("verbose")).booleanValue();
+		CompMatrix.setIndexingCandidates(
+			Boolean
+				.valueOf(props.getProperty("index_candidates", "true"))
+				.booleanValue());
+		try {
+			CompMatrix.setEvaluationThreads(
+				Integer.parseInt(props.getProperty("evaluation_threads", "1")));
+		} catch (IllegalArgumentException iax) {
+			System.err.println(
+				"Invalid number of evaluation threads: "
+					+ props.getProperty("evaluation_threads"));
+			System.err.println("Must be a positive integer.");
+		}
+		Attribute_polygon.setFastGeometry(
+			Boolean
+				.valueOf(props.getProperty("fast_geometry", "false"))
+				.booleanValue());
+		FramewiseEvaluation.setSweepingByDefault(
+			Boolean
+				.valueOf(props.getProperty("sweep_frames", "true"))
+				.booleanValue());
+		FramewiseEvaluation.setRasterizingByDefault(
+			Boolean
+				.valueOf(props.getProperty("raster_pixels", "false"))
+				.booleanValue());
 		try {
 			Attribute.setOutputWidth(
 				Integer.parseInt(props.getProperty("attrib_width")));
@@ -689,6 +790,10 @@ public class ViperPE {
 	 * Runs the application.
 	 */
 	public void run() {
+		if (batchFileName != null) {
+			runBatch();
+			return;
+		}
 		PrintWriter logFile = null;
 		PrintWriter rawFile = null;
 		PrintWriter outFile = null;
@@ -709,40 +814,15 @@ public class ViperPE {
 		outFile = openFileForWriting(outputFileName);
 
 		// Print out Input Parameters
-		if (outFile != null) {
-			outFile.print (StringHelp.banner("INPUT PARAMETERS", 53));
-			outFile.println();
-			outFile.println("Ground Truth: " + gtFileName);
-			outFile.println("     Results: " + resultsFileName);
-			outFile.println(" Eval Params: " + epfFileName);
-			outFile.println("         Log: " + logFileName);
-			outFile.println("      Output: " + outputFileName);
-			outFile.println();
-			outFile.println("       Level: " + level);
-			outFile.println("       Match: " + CompFilter.matchFilterTitle(match));
-			outFile.println("      metric: " + Distances.getDefaultStatistic());
-			outFile.println(
-				"   tolerance: " + Distances.getDefaultSTolerance());
-		}
-		if (rawFile != null) {
-			rawFile.println("// ");
-			rawFile.println("// ");
-			rawFile.println("// ");
-			rawFile.println("#BEGIN_PARAMETERS");
-			rawFile.println("gt_file = " + gtFileName);
-			rawFile.println("result_file = " + resultsFileName);
-			rawFile.println("epf_file = " + epfFileName);
-			rawFile.println("log_file = " + logFileName);
-			rawFile.println("output_file = " + outputFileName);
-			rawFile.println("level = " + level);
-			rawFile.println("#END_PARAMETERS");
-		}
+		printInputParameters(
+			outFile,
+			rawFile,
+			gtFileName,
+			resultsFileName,
+			outputFileName);
 
 		try {
 			//Read in the data
-			Vector files = new Vector();
-			//A list of filenames to pass the Reader.
-
 			/* ------------------------------------------------------------------------ * 
 			  Parse the GROUND TRUTH CONFIG (gtc or gt)
 			    - first check for the config file, otherwise look at the top of GT file
@@ -806,27 +886,17 @@ public class ViperPE {
 				"Parsing Evaluation Parameter information.",
 				timeNow,
 				timeFmt);
-			EvaluationParameters epf = new EvaluationParameters(gtCfgs);
-			if ((epfFileName != null) && ((new File(epfFileName)).canRead())) {
-				files.removeAllElements();
-				files.addElement(epfFileName);
-				VReader epfReader = new VReader(files);
-				try {
-					epf.parse(epfReader, level, match);
-				} finally {
-					try {
-						epfReader.close();
-					} catch (IOException iox) {
-						printLog(
-							logFile,
-							"I/O error with EPF file: " + epfFileName,
-							timeNow,
-							timeFmt);
-						printUsage();
-					}
-				}
+			EvaluationParameters epf = null;
+			try {
+				epf = parseEvaluationParameters(gtCfgs);
+			} catch (IOException iox) {
+				printLog(
+					logFile,
+					"I/O error with EPF file: " + epfFileName,
+					timeNow,
+					timeFmt);
+				printUsage();
 			}
-			files.removeAllElements();
 
 			/* ------------------------------------------------------------------------ * 
 			  Parse the GROUND TRUTH (gt)
@@ -862,62 +932,456 @@ public class ViperPE {
 			/* ------------------------------------------------------------------------ *
 			   Generating comparison Matrix
 			 * ------------------------------------------------------------------------ */
-			for (Iterator evas = epf.getEvas(); evas.hasNext();) {
-				Evaluation eva = (Evaluation) evas.next();
+			List totals =
+				evaluate(
+					data,
+					inputData,
+					epf,
+					outFile,
+					rawFile,
+					logFile,
+					timeNow,
+					timeFmt);
+			if (graphFileNameTemplate != null) {
+				int offset = graphFileNameTemplate.indexOf("{}");
+				System.err.println(" gfnt = " + graphFileNameTemplate);
+				String prefix =
+					(offset < 0)
+						? ""
+						: graphFileNameTemplate.substring(0, offset);
+				String suffix =
+					(offset < 0)
+						? graphFileNameTemplate
+						: graphFileNameTemplate.substring(offset + 2);
+				for (Iterator iter = totals.iterator(); iter.hasNext();) {
+					Evaluation.Information total =
+						(Evaluation.Information) iter.next();
+					if (total != null) {
+						printGraphs(total.getDatasets("frame-all"), prefix, suffix);
+					}
+				}
+			}
+			printLog(logFile, "Cleaning up...", timeNow, timeFmt);
+		} finally { //close the files
+			if (rawFile != null) {
+				rawFile.close();
+			}
+			if (outFile != null) {
+				outFile.close();
+			}
+			if (logFile != null) {
+				logFile.close();
+			}
+			System.err.flush();
+			System.out.flush();
+		}
+	} // run()
+
+	/**
+	 * Prints out the files and settings used for an evaluation, at the
+	 * top of the output files.
+	 * @param outFile the verbose output; may be <code>null</code>
+	 * @param rawFile the raw output; may be <code>null</code>
+	 * @param gt the target data file name
+	 * @param results the candidate data file name
+	 * @param output the name of the verbose output file
+	 */
+	private void printInputParameters(
+		PrintWriter outFile,
+		PrintWriter rawFile,
+		String gt,
+		String results,
+		String output) {
+		if (outFile != null) {
+			outFile.print (StringHelp.banner("INPUT PARAMETERS", 53));
+			outFile.println();
+			outFile.println("Ground Truth: " + gt);
+			outFile.println("     Results: " + results);
+			outFile.println(" Eval Params: " + epfFileName);
+			outFile.println("         Log: " + logFileName);
+			outFile.println("      Output: " + output);
+			outFile.println();
+			outFile.println("       Level: " + level);
+			outFile.println("       Match: " + CompFilter.matchFilterTitle(match));
+			outFile.println("      metric: " + Distances.getDefaultStatistic());
+			outFile.println(
+				"   tolerance: " + Distances.getDefaultSTolerance());
+		}
+		if (rawFile != null) {
+			rawFile.println("// ");
+			rawFile.println("// ");
+			rawFile.println("// ");
+			rawFile.println("#BEGIN_PARAMETERS");
+			rawFile.println("gt_file = " + gt);
+			rawFile.println("result_file = " + results);
+			rawFile.println("epf_file = " + epfFileName);
+			rawFile.println("log_file = " + logFileName);
+			rawFile.println("output_file = " + output);
+			rawFile.println("level = " + level);
+			rawFile.println("#END_PARAMETERS");
+		}
+	}
+
+	/**
+	 * Parses the evaluation parameters file. If the file cannot be 
+	 * read, the evaluation parameters are empty.
+	 * @param gtCfgs the target descriptor configurations
+	 * @return the evaluations, equivalencies and filters
+	 * @throws IOException if there is an error while reading the file
+	 */
+	private EvaluationParameters parseEvaluationParameters(
+		DescriptorConfigs gtCfgs)
+		throws IOException {
+		EvaluationParameters epf = new EvaluationParameters(gtCfgs);
+		epf.setDistanceCache(new DistanceCache(distanceCacheSize));
+		if ((epfFileName != null) && ((new File(epfFileName)).canRead())) {
+			Vector files = new Vector();
+			files.addElement(epfFileName);
+			VReader epfReader = new VReader(files);
+			try {
+				epf.parse(epfReader, level, match);
+			} finally {
+				epfReader.close();
+			}
+		}
+		return epf;
+	}
+
+	/**
+	 * Runs each of the evaluations in the parameters on the data.
+	 * @param data the targets
+	 * @param inputData the candidates
+	 * @param epf the evaluations to run
+	 * @param outFile the verbose output; may be <code>null</code>
+	 * @param rawFile the raw output; may be <code>null</code>
+	 * @param logFile the log, which also gets the progress ticker;
+	 * may be <code>null</code>
+	 * @param timeNow used to time stamp the log
+	 * @param timeFmt used to time stamp the log
+	 * @return the total for each evaluation, in the order they appear
+	 * in the parameters. A total is <code>null</code> if there were no
+	 * results for its evaluation.
+	 */
+	private List evaluate(
+		DescriptorData data,
+		DescriptorData inputData,
+		EvaluationParameters epf,
+		PrintWriter outFile,
+		PrintWriter rawFile,
+		PrintWriter logFile,
+		Date timeNow,
+		DateFormat timeFmt) {
+		List totals = new LinkedList();
+		for (Iterator evas = epf.getEvas(); evas.hasNext();) {
+			Evaluation eva = (Evaluation) evas.next();
+			printLog(
+				logFile,
+				"Generating comparison matrix for " + eva.getName(),
+				timeNow,
+				timeFmt);
+			double lev3tol = Distances.getDefaultSTolerance();
+			CompEvaluator comps =
+				new CompEvaluator(
+					data,
+					inputData,
+					lev3tol,
+					match,
+					epf.getScopeRulesFor(eva),
+					logFile);
+
+			if (outFile != null) {
+				epf.printVerboseParameters(outFile);
+			}
+			if (rawFile != null) {
+				epf.printTerseParameters(rawFile);
+
+				rawFile.println("#BEGIN_GTF_INFORMATION\n");
+				rawFile.println(data.getInformation());
+				rawFile.println("#END_GTF_INFORMATION\n");
+
+				rawFile.println("#BEGIN_RDF_INFORMATION\n");
+				rawFile.println(inputData.getInformation());
+				rawFile.println("#END_RDF_INFORMATION\n");
+			}
+
+			printLog(logFile, "Performing evaluation.", timeNow, timeFmt);
+			eva.setOutput(outFile);
+			eva.setRaw(rawFile);
+			totals.add(comps.printEvaluationResults(eva));
+		} // for each evaluation
+		printLog(
+			logFile,
+			"Distance cache: " + epf.getDistanceCache(),
+			timeNow,
+			timeFmt);
+		return totals;
+	}
+
+	/**
+	 * Reads a batch file. Each line of the file lists a target data file, 
+	 * a candidate data file, and, optionally, the base name to use for 
+	 * the output files for that pair, separated by white space. If the
+	 * base name is missing, it is the candidate file name without its 
+	 * extension. Blank lines and lines that start with <code>#</code> or
+	 * <code>//</code> are skipped.
+	 * @param fileName the batch file to read
+	 * @return a list of <code>String[3]</code> arrays, holding the 
+	 * target file, the candidate file and the output base name, in the 
+	 * order they appear in the file
+	 * @throws IOException if there is an error while reading the file,
+	 * or a line doesn't have two or three file names
+	 */
+	public static List readBatchFile(String fileName) throws IOException {
+		List pairs = new ArrayList();
+		BufferedReader in = new BufferedReader(new FileReader(fileName));
+		try {
+			int lineNumber = 0;
+			for (String line = in.readLine();
+				line != null;
+				line = in.readLine()) {
+				lineNumber++;
+				line = line.trim();
+				if (line.length() == 0
+					|| line.startsWith("#")
+					|| line.startsWith("//")) {
+					continue;
+				}
+				StringTokenizer st = new StringTokenizer(line);
+				int count = st.countTokens();
+				if (count < 2 || count > 3) {
+					throw new IOException(
+						fileName
+							+ ":"
+							+ lineNumber
+							+ ": Expected a target file, a candidate file "
+							+ "and an optional output name");
+				}
+				String[] pair = new String[3];
+				pair[0] = st.nextToken();
+				pair[1] = st.nextToken();
+				if (count == 3) {
+					pair[2] = st.nextToken();
+				} else {
+					int dot = pair[1].lastIndexOf('.');
+					pair[2] =
+						(dot > pair[1].lastIndexOf(File.separatorChar))
+							? pair[1].substring(0, dot)
+							: pair[1];
+				}
+				pairs.add(pair);
+			}
+		} finally {
+			in.close();
+		}
+		return pairs;
+	}
+
+	/**
+	 * Evaluates every pair of files in the batch file. The descriptor
+	 * configurations are parsed once, from the config files if they are
+	 * set or from the first pair otherwise, so all the data files must
+	 * use the same configuration. The pairs are evaluated on 
+	 * <code>batch_threads</code> threads; each thread gets its own copy
+	 * of the evaluation parameters, since the evaluations keep track of
+	 * the data they are working on. Each pair gets its own verbose output
+	 * file, and its own raw file if a raw file is set. The output and 
+	 * raw files get the totals over all the pairs, which are added in the
+	 * order the pairs appear in the batch file, so they do not depend on
+	 * the number of threads. Pairs that fail to parse or evaluate are 
+	 * left out of the totals and reported in the log.
+	 */
+	public void runBatch() {
+		PrintWriter logFile = openFileForWriting(logFileName);
+		PrintWriter rawFile = openFileForWriting(rawFileName);
+		PrintWriter outFile = openFileForWriting(outputFileName);
+
+		Date timeNow = new Date();
+		DateFormat timeFmt = new SimpleDateFormat("hh:mm:ss");
+		ExecutorService pool = null;
+		try {
+			List pairs = null;
+			try {
+				pairs = readBatchFile(batchFileName);
+			} catch (IOException iox) {
+				printLog(
+					logFile,
+					"Error in batch file: " + iox.getMessage(),
+					timeNow,
+					timeFmt);
+				printUsage(ViperPE.BAD_COMMAND_LINE, iox);
+			}
+			if (pairs.isEmpty()) {
 				printLog(
 					logFile,
-					"Generating comparison matrix for " + eva.getName(),
+					"No files to evaluate in " + batchFileName,
 					timeNow,
 					timeFmt);
-				double lev3tol = Distances.getDefaultSTolerance();
-				CompEvaluator comps =
-					new CompEvaluator(
-						data,
-						inputData,
-						lev3tol,
-						match,
-						epf.getScopeRulesFor(eva),
-						logFile);
-
-				if (outFile != null) {
-					epf.printVerboseParameters(outFile);
+				return;
+			}
+			String[] first = (String[]) pairs.get(0);
+
+			DescriptorConfigs gtCfgs = null;
+			DescriptorConfigs rdCfgs = null;
+			try {
+				printLog(
+					logFile,
+					"Parsing Target Config information.",
+					timeNow,
+					timeFmt);
+				gtCfgs = parseDescriptorConfig(gtcFileName, first[0]);
+				printLog(
+					logFile,
+					"Parsing Candidate Config information.",
+					timeNow,
+					timeFmt);
+				rdCfgs = parseDescriptorConfig(resultscFileName, first[1]);
+			} catch (IOException iox) {
+				printLog(
+					logFile,
+					"Error in Config file: " + iox.getMessage(),
+					timeNow,
+					timeFmt);
+				printUsage(ViperPE.BAD_GTF_DATA, iox);
+			} catch (BadDataException bdx) {
+				printLog(
+					logFile,
+					"Error in Config: " + bdx.getMessage(),
+					timeNow,
+					timeFmt);
+				printUsage(ViperPE.BAD_GTF_DATA, bdx);
+			}
+
+			int threads = Math.min(batchThreads, pairs.size());
+			final LinkedList idle = new LinkedList();
+			try {
+				printLog(
+					logFile,
+					"Parsing Evaluation Parameter information.",
+					timeNow,
+					timeFmt);
+				for (int i = 0; i < threads; i++) {
+					idle.add(parseEvaluationParameters(gtCfgs));
 				}
-				if (rawFile != null) {
-					epf.printTerseParameters(rawFile);
+			} catch (IOException iox) {
+				printLog(
+					logFile,
+					"I/O error with EPF file: " + epfFileName,
+					timeNow,
+					timeFmt);
+				printUsage();
+			}
+			EvaluationParameters summary = (EvaluationParameters) idle.getFirst();
 
-					rawFile.println("#BEGIN_GTF_INFORMATION\n");
-					rawFile.println(data.getInformation());
-					rawFile.println("#END_GTF_INFORMATION\n");
+			printLog(
+				logFile,
+				"Evaluating "
+					+ pairs.size()
+					+ " pairs of files on "
+					+ threads
+					+ " threads.",
+				timeNow,
+				timeFmt);
+			final Revealer ticker =
+				new Revealer(
+					pairs.size(),
+					40,
+					".",
+					logFile != null
+						? logFile
+						: new PrintWriter(System.err, true));
+			pool = Executors.newFixedThreadPool(threads);
+			List pending = new ArrayList(pairs.size());
+			for (Iterator iter = pairs.iterator(); iter.hasNext();) {
+				final String[] pair = (String[]) iter.next();
+				final DescriptorConfigs targetCfgs = gtCfgs;
+				final DescriptorConfigs candidateCfgs = rdCfgs;
+				pending.add(pool.submit(new Callable() {
+					public Object call() throws Exception {
+						EvaluationParameters epf;
+						synchronized (idle) {
+							epf = (EvaluationParameters) idle.removeFirst();
+						}
+						try {
+							return evaluatePair(
+								pair,
+								targetCfgs,
+								candidateCfgs,
+								epf);
+						} finally {
+							synchronized (idle) {
+								idle.add(epf);
+							}
+							synchronized (ticker) {
+								ticker.tick();
+							}
+						}
+					}
+				}));
+			}
 
-					rawFile.println("#BEGIN_RDF_INFORMATION\n");
-					rawFile.println(inputData.getInformation());
-					rawFile.println("#END_RDF_INFORMATION\n");
+			List totals = null;
+			int failures = 0;
+			for (int i = 0; i < pending.size(); i++) {
+				String[] pair = (String[]) pairs.get(i);
+				try {
+					List results = (List) ((Future) pending.get(i)).get();
+					if (totals == null) {
+						totals = new ArrayList(results);
+					} else {
+						for (int j = 0; j < totals.size(); j++) {
+							Evaluation.Information total =
+								(Evaluation.Information) totals.get(j);
+							Evaluation.Information curr =
+								(Evaluation.Information) results.get(j);
+							if (total == null) {
+								totals.set(j, curr);
+							} else if (curr != null) {
+								total.add(curr);
+							}
+						}
+					}
+				} catch (ExecutionException ex) {
+					failures++;
+					synchronized (ticker) {
+						ticker.sendError(
+							"Error while evaluating "
+								+ pair[0]
+								+ " against "
+								+ pair[1]
+								+ ": "
+								+ ex.getCause());
+					}
 				}
+			}
+			synchronized (ticker) {
+				ticker.finish();
+			}
 
-				printLog(logFile, "Performing evaluation.", timeNow, timeFmt);
-				eva.setOutput(outFile);
-				eva.setRaw(rawFile);
-				if (graphFileNameTemplate != null) {
-					Map datasets =
-						comps.printEvaluationResults(eva).getDatasets(
-							"frame-all");
-					int offset = graphFileNameTemplate.indexOf("{}");
-					System.err.println(" gfnt = " + graphFileNameTemplate);
-					String prefix =
-						(offset < 0)
-							? ""
-							: graphFileNameTemplate.substring(0, offset);
-					String suffix =
-						(offset < 0)
-							? graphFileNameTemplate
-							: graphFileNameTemplate.substring(offset + 2);
-					printGraphs(datasets, prefix, suffix);
-				} else {
-					comps.printEvaluationResults(eva);
+			printLog(logFile, "Printing totals.", timeNow, timeFmt);
+			printBatchParameters(outFile, rawFile, pairs.size(), failures);
+			Iterator results =
+				(totals == null) ? null : totals.iterator();
+			for (Iterator evas = summary.getEvas(); evas.hasNext();) {
+				Evaluation eva = (Evaluation) evas.next();
+				Evaluation.Information total =
+					(results == null)
+						? null
+						: (Evaluation.Information) results.next();
+				if (total != null) {
+					eva.setOutput(outFile);
+					eva.setRaw(rawFile);
+					eva.printHeader();
+					eva.printFooter(total);
 				}
-			} // for each evaluation
+			}
 			printLog(logFile, "Cleaning up...", timeNow, timeFmt);
-		} finally { //close the files
+		} catch (InterruptedException ix) {
+			printLog(logFile, "Interrupted.", timeNow, timeFmt);
+			Thread.currentThread().interrupt();
+		} finally {
+			if (pool != null) {
+				pool.shutdownNow();
+			}
 			if (rawFile != null) {
 				rawFile.close();
 			}
@@ -930,7 +1394,93 @@ public class ViperPE {
 			System.err.flush();
 			System.out.flush();
 		}
-	} // run()
+	}
+
+	/**
+	 * Evaluates one pair of files from a batch, writing its output to
+	 * files named after the pair's output base name.
+	 * @param pair the target file, the candidate file, and the base name
+	 * of the output files
+	 * @param gtCfgs the shared target configuration
+	 * @param rdCfgs the shared candidate configuration
+	 * @param epf evaluation parameters that no other thread is using
+	 * @return the total for each evaluation
+	 * @throws IOException if there is an error while reading the data
+	 * @throws BadDataException if the data is malformed
+	 */
+	private List evaluatePair(
+		String[] pair,
+		DescriptorConfigs gtCfgs,
+		DescriptorConfigs rdCfgs,
+		EvaluationParameters epf)
+		throws IOException, BadDataException {
+		String output = pair[2] + ".out";
+		PrintWriter outFile = openFileForWriting(output);
+		PrintWriter rawFile =
+			(rawFileName == null) ? null : openFileForWriting(pair[2] + ".raw");
+		// the cache is keyed by descriptor, so nothing in it carries over
+		// to the next pair
+		epf.setDistanceCache(new DistanceCache(distanceCacheSize));
+		try {
+			printInputParameters(outFile, rawFile, pair[0], pair[1], output);
+			DescriptorData data =
+				parseDescriptorData(gtCfgs, pair[0], epf, null);
+			DescriptorData inputData =
+				parseDescriptorData(rdCfgs, pair[1], epf, null);
+			return evaluate(
+				data,
+				inputData,
+				epf,
+				outFile,
+				rawFile,
+				null,
+				null,
+				null);
+		} finally {
+			epf.getDistanceCache().clear();
+			if (rawFile != null) {
+				rawFile.close();
+			}
+			if (outFile != null) {
+				outFile.close();
+			}
+		}
+	}
+
+	private void printBatchParameters(
+		PrintWriter outFile,
+		PrintWriter rawFile,
+		int pairCount,
+		int failures) {
+		if (outFile != null) {
+			outFile.print (StringHelp.banner("BATCH PARAMETERS", 53));
+			outFile.println();
+			outFile.println("  Batch File: " + batchFileName);
+			outFile.println("  File Pairs: " + pairCount);
+			outFile.println("      Failed: " + failures);
+			outFile.println(" Eval Params: " + epfFileName);
+			outFile.println("         Log: " + logFileName);
+			outFile.println();
+			outFile.println("       Level: " + level);
+			outFile.println("       Match: " + CompFilter.matchFilterTitle(match));
+			outFile.println("      metric: " + Distances.getDefaultStatistic());
+			outFile.println(
+				"   tolerance: " + Distances.getDefaultSTolerance());
+		}
+		if (rawFile != null) {
+			rawFile.println("// ");
+			rawFile.println("// ");
+			rawFile.println("// ");
+			rawFile.println("#BEGIN_PARAMETERS");
+			rawFile.println("batch_file = " + batchFileName);
+			rawFile.println("pairs = " + pairCount);
+			rawFile.println("failures = " + failures);
+			rawFile.println("epf_file = " + epfFileName);
+			rawFile.println("log_file = " + logFileName);
+			rawFile.println("level = " + level);
+			rawFile.println("#END_PARAMETERS");
+		}
+	}
 
 	private static void printLog(
 		PrintWriter logFile,
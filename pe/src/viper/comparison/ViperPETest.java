@@ -0,0 +1,371 @@
+/***************************************
+ *            ViPER                    *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *                                     *
+ *  Distributed under the GPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package viper.comparison;
+
+import java.io.*;
+import java.util.*;
+
+import junit.framework.*;
+
+/**
+ * Runs whole evaluations over small files, checking that settings that
+ * only change how the evaluation is computed don't change its output.
+ */
+public class ViperPETest extends TestCase {
+	private static final String CONFIG = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<viper xmlns=\"http://lamp.cfar.umd.edu/viper#\" xmlns:data=\"http://lamp.cfar.umd.edu/viperdata#\">\n"
+			+ "<config>\n"
+			+ "<descriptor name=\"Person\" type=\"OBJECT\">\n"
+			+ "<attribute dynamic=\"true\" name=\"Location\" type=\"http://lamp.cfar.umd.edu/viperdata#bbox\"/>\n"
+			+ "<attribute dynamic=\"true\" name=\"Score\" type=\"http://lamp.cfar.umd.edu/viperdata#dvalue\"/>\n"
+			+ "</descriptor>\n" + "</config>\n" + "<data>\n"
+			+ "<sourcefile filename=\"test.mpg\">\n";
+
+	private static final String END = "</sourcefile>\n</data>\n</viper>\n";
+
+	private File directory;
+
+	/**
+	 * Constructs a new test.
+	 * @param name the test name
+	 */
+	public ViperPETest(String name) {
+		super(name);
+	}
+
+	protected void setUp() throws IOException {
+		directory = File.createTempFile("viperpe", "");
+		directory.delete();
+		directory.mkdir();
+	}
+
+	protected void tearDown() {
+		FramewiseEvaluation.setSweepingByDefault(true);
+		CompMatrix.setEvaluationThreads(1);
+		CompMatrix.setIndexingCandidates(true);
+		File[] files = directory.listFiles();
+		for (int i = 0; i < files.length; i++) {
+			files[i].delete();
+		}
+		directory.delete();
+	}
+
+	/**
+	 * Initializes the test suite.
+	 * @return the test suite
+	 */
+	public static Test suite() {
+		TestSuite suite = new TestSuite();
+
+		suite.addTest(new ViperPETest("testSweepWithFilteredValue"));
+		suite.addTest(new ViperPETest("testSweepWithFilteredSpan"));
+		suite.addTest(new ViperPETest("testBatchDistanceCache"));
+		suite.addTest(new ViperPETest("testEvaluationThreads"));
+		suite.addTest(new ViperPETest("testIndexCandidates"));
+
+		return suite;
+	}
+
+	/**
+	 * Gets a person whose box and score change at the given frames.
+	 */
+	private static String person(int id, String span, int x, String[] boxes,
+			String[] scores) {
+		StringBuffer sb = new StringBuffer();
+		sb.append("<object framespan=\"").append(span).append("\" id=\"")
+				.append(id).append("\" name=\"Person\">\n");
+		sb.append("<attribute name=\"Location\">\n");
+		for (int i = 0; i < boxes.length; i++) {
+			sb.append("<data:bbox framespan=\"").append(boxes[i]).append(
+					"\" height=\"10\" width=\"10\" x=\"").append(x + i).append(
+					"\" y=\"0\"/>\n");
+		}
+		sb.append("</attribute>\n<attribute name=\"Score\">\n");
+		for (int i = 0; i < scores.length; i++) {
+			sb.append("<data:dvalue framespan=\"").append(scores[i]).append(
+					"\" value=\"").append(i * 9 + 1).append("\"/>\n");
+		}
+		sb.append("</attribute>\n</object>\n");
+		return sb.toString();
+	}
+
+	private File write(String name, String contents) throws IOException {
+		File f = new File(directory, name);
+		Writer out = new FileWriter(f);
+		try {
+			out.write(contents);
+		} finally {
+			out.close();
+		}
+		return f;
+	}
+
+	private void writeData() throws IOException {
+		// The score of the target goes from 1 to 10 at frame 5, and the
+		// score of the first candidate at frame 12; neither box changes
+		// there. The don't care targets and candidates are composed
+		// together, so the candidates get their own ids.
+		write("truth.xml", CONFIG
+				+ person(0, "1:20", 0, new String[]{"1:20"}, new String[]{
+						"1:4", "5:20"})
+				+ person(1, "8:30", 40, new String[]{"8:15", "16:30"},
+						new String[]{"8:30"}) + END);
+		write("results.xml", CONFIG
+				+ person(10, "1:25", 5, new String[]{"1:25"}, new String[]{
+						"1:11", "12:25"})
+				+ person(11, "10:30", 42, new String[]{"10:30"},
+						new String[]{"10:30"}) + END);
+	}
+
+	/**
+	 * Runs the evaluation with the given properties.
+	 * @param epf the name of the evaluation parameters file
+	 * @param extra the properties to add to the defaults
+	 * @return the output, without the lines that name the output and log
+	 * files
+	 */
+	private String evaluate(String epf, Properties extra) throws Exception {
+		File out = File.createTempFile("out", ".txt", directory);
+		File log = File.createTempFile("log", ".txt", directory);
+		run(epf, extra, out, log);
+		return read(out, log);
+	}
+
+	private void run(String epf, Properties extra, File out, File log)
+			throws Exception {
+		Properties props = new Properties();
+		props.put("gt_file", new File(directory, "truth.xml").getPath());
+		props.put("results_file", new File(directory, "results.xml")
+				.getPath());
+		props.put("epf_file", new File(directory, epf).getPath());
+		props.put("output_file", out.getPath());
+		props.put("log_file", log.getPath());
+		props.put("target_match", "MULTIPLE");
+		props.put("range_metric", "dice");
+		props.put("range_tol", "0.99");
+		props.put("level3_metric", "median");
+		props.put("level3_tol", "0.99");
+		props.put("level", "3");
+		props.put("verbose", "true");
+		props.put("attrib_width", "40");
+		props.putAll(extra);
+
+		PrintStream err = System.err;
+		System.setErr(new PrintStream(new ByteArrayOutputStream()));
+		try {
+			ViperPE evaluator = new ViperPE();
+			evaluator.setProperties(props);
+			evaluator.run();
+		} finally {
+			System.setErr(err);
+		}
+	}
+
+	/**
+	 * Reads an output file, without the lines that name it and the log.
+	 */
+	private static String read(File out, File log) throws IOException {
+		StringBuffer sb = new StringBuffer();
+		BufferedReader in = new BufferedReader(new FileReader(out));
+		try {
+			for (String line = in.readLine(); line != null; line = in
+					.readLine()) {
+				if (line.indexOf(out.getPath()) < 0
+						&& line.indexOf(log.getPath()) < 0) {
+					sb.append(line).append('\n');
+				}
+			}
+		} finally {
+			in.close();
+		}
+		return sb.toString();
+	}
+
+	private void assertSameWithAndWithoutSweep(String epf) throws Exception {
+		Properties sweep = new Properties();
+		sweep.put("sweep_frames", "true");
+		Properties noSweep = new Properties();
+		noSweep.put("sweep_frames", "false");
+		String expected = evaluate(epf, noSweep);
+		assertTrue("No pixel results in " + expected, expected
+				.indexOf("For frame 30") >= 0);
+		assertEquals(expected, evaluate(epf, sweep));
+	}
+
+	/**
+	 * Tests that a frame where a filtered attribute changes is
+	 * evaluated again, even though none of the evaluated values change.
+	 */
+	public void testSweepWithFilteredValue() throws Exception {
+		writeData();
+		write("values.epf", "#BEGIN_GROUND_OUTPUT_FILTER\n"
+				+ "OBJECT Person\n" + "\tScore: < \"5\"\n"
+				+ "#END_GROUND_OUTPUT_FILTER\n\n"
+				+ "#BEGIN_RESULT_OUTPUT_FILTER\n" + "OBJECT Person\n"
+				+ "\tScore: < \"5\"\n" + "#END_RESULT_OUTPUT_FILTER\n\n"
+				+ "#BEGIN_FRAMEWISE_EVALUATION\n" + "OBJECT Person\n"
+				+ "\tLocation : matchedpixels missedpixels falsepixels\n"
+				+ "#END_FRAMEWISE_EVALUATION\n");
+		assertSameWithAndWithoutSweep("values.epf");
+	}
+
+	/**
+	 * Tests that a filter on the frame span, which is checked one frame
+	 * at a time, is applied at every frame.
+	 */
+	public void testSweepWithFilteredSpan() throws Exception {
+		writeData();
+		write("span.epf", "#BEGIN_RESULT_OUTPUT_FILTER\n"
+				+ "OBJECT Person : intersects \"3:6\"\n"
+				+ "#END_RESULT_OUTPUT_FILTER\n\n"
+				+ "#BEGIN_FRAMEWISE_EVALUATION\n" + "OBJECT Person\n"
+				+ "\tLocation : dice matchedpixels missedpixels falsepixels\n"
+				+ "#END_FRAMEWISE_EVALUATION\n");
+		assertSameWithAndWithoutSweep("span.epf");
+	}
+
+	/**
+	 * Tests that each pair of files in a batch gets the same results as
+	 * when it is evaluated alone, whether the distance cache is big
+	 * enough, too small to hold a pair's distances, or off. One thread
+	 * evaluates both pairs, with the same evaluation parameters.
+	 */
+	public void testBatchDistanceCache() throws Exception {
+		writeData();
+		write("truth2.xml", CONFIG
+				+ person(0, "3:25", 2, new String[]{"3:12", "13:25"},
+						new String[]{"3:25"}) + END);
+		write("results2.xml", CONFIG
+				+ person(10, "1:20", 0, new String[]{"1:20"},
+						new String[]{"1:20"})
+				+ person(11, "15:30", 4, new String[]{"15:30"},
+						new String[]{"15:30"}) + END);
+		write("objects.epf", "#BEGIN_OBJECT_EVALUATION\n"
+				+ "OBJECT Person [dice 1]\n" + "\tLocation : [dice .99]\n"
+				+ "#END_OBJECT_EVALUATION\n");
+		File first = new File(directory, "first");
+		File second = new File(directory, "second");
+		write("batch.txt", new File(directory, "truth.xml") + " "
+				+ new File(directory, "results.xml") + " " + first + "\n"
+				+ new File(directory, "truth2.xml") + " "
+				+ new File(directory, "results2.xml") + " " + second + "\n");
+
+		Properties alone = new Properties();
+		String firstAlone = evaluate("objects.epf", alone);
+		alone.put("gt_file", new File(directory, "truth2.xml").getPath());
+		alone.put("results_file", new File(directory, "results2.xml")
+				.getPath());
+		String secondAlone = evaluate("objects.epf", alone);
+		assertFalse(firstAlone.equals(secondAlone));
+
+		String[] sizes = new String[]{"65536", "2", "0"};
+		for (int i = 0; i < sizes.length; i++) {
+			Properties batch = new Properties();
+			batch.put("batch_file", new File(directory, "batch.txt")
+					.getPath());
+			batch.put("batch_threads", "1");
+			batch.put("distance_cache_size", sizes[i]);
+			File log = File.createTempFile("log", ".txt", directory);
+			run("objects.epf", batch, File.createTempFile("out", ".txt",
+					directory), log);
+			assertEquals("First pair, cache size " + sizes[i],
+					firstAlone, read(new File(first + ".out"), log));
+			assertEquals("Second pair, cache size " + sizes[i],
+					secondAlone, read(new File(second + ".out"), log));
+		}
+	}
+
+	/**
+	 * Tests that comparing targets to candidates on several threads gives
+	 * the same output as on one.
+	 */
+	public void testEvaluationThreads() throws Exception {
+		Random r = new Random(23);
+		StringBuffer truth = new StringBuffer(CONFIG);
+		StringBuffer results = new StringBuffer(CONFIG);
+		for (int i = 0; i < 30; i++) {
+			int start = 1 + r.nextInt(80);
+			int end = start + 5 + r.nextInt(40);
+			int middle = start + (end - start) / 2;
+			int x = r.nextInt(60);
+			truth.append(person(i, start + ":" + end, x, new String[]{
+					start + ":" + middle, (middle + 1) + ":" + end},
+					new String[]{start + ":" + end}));
+			start += r.nextInt(5);
+			end += r.nextInt(5);
+			results.append(person(100 + i, start + ":" + end, x
+					+ r.nextInt(6), new String[]{start + ":" + end},
+					new String[]{start + ":" + end}));
+		}
+		write("truth.xml", truth.append(END).toString());
+		write("results.xml", results.append(END).toString());
+		write("threads.epf", "#BEGIN_OBJECT_EVALUATION\n"
+				+ "OBJECT Person [dice 1]\n" + "\tLocation : [dice .5]\n"
+				+ "#END_OBJECT_EVALUATION\n\n"
+				+ "#BEGIN_TRACKING_EVALUATION\n"
+				+ "OBJECT Person [dice 1]\n"
+				+ "\tLocation : dice matchedpixels arearecall [dice .5]\n"
+				+ "#END_TRACKING_EVALUATION\n");
+
+		Properties one = new Properties();
+		one.put("evaluation_threads", "1");
+		String expected = evaluate("threads.epf", one);
+		assertTrue("No detections in " + expected, expected
+				.indexOf("DISTANCE(S)") >= 0);
+		Properties many = new Properties();
+		many.put("evaluation_threads", "4");
+		for (int i = 0; i < 3; i++) {
+			assertEquals(expected, evaluate("threads.epf", many));
+		}
+	}
+
+	/**
+	 * Tests that skipping the targets and candidates whose frame spans
+	 * don't intersect doesn't change the output, even for candidates
+	 * that intersect no target at all.
+	 */
+	public void testIndexCandidates() throws Exception {
+		write("truth.xml", CONFIG
+				+ person(0, "1:20", 0, new String[]{"1:20"},
+						new String[]{"1:20"})
+				+ person(1, "30:40", 0, new String[]{"30:34", "35:40"},
+						new String[]{"30:40"})
+				+ person(2, "70:80", 20, new String[]{"70:80"},
+						new String[]{"70:80"}) + END);
+		write("results.xml", CONFIG
+				+ person(10, "1:20", 1, new String[]{"1:20"},
+						new String[]{"1:20"})
+				+ person(11, "50:60", 0, new String[]{"50:60"},
+						new String[]{"50:60"})
+				+ person(12, "35:45", 3, new String[]{"35:45"},
+						new String[]{"35:45"})
+				+ person(13, "75:90", 20, new String[]{"75:90"},
+						new String[]{"75:90"}) + END);
+		write("index.epf", "#BEGIN_OBJECT_EVALUATION\n"
+				+ "OBJECT Person [dice 1]\n" + "\tLocation : [dice .99]\n"
+				+ "#END_OBJECT_EVALUATION\n\n"
+				+ "#BEGIN_TRACKING_EVALUATION\n"
+				+ "OBJECT Person [dice 1]\n"
+				+ "\tLocation : dice matchedpixels arearecall [dice .5]\n"
+				+ "#END_TRACKING_EVALUATION\n");
+
+		Properties exhaustive = new Properties();
+		exhaustive.put("index_candidates", "false");
+		String expected = evaluate("index.epf", exhaustive);
+		assertTrue("No false detections in " + expected, expected
+				.indexOf("OBJECT Person 11 50:60") >= 0);
+		Properties indexed = new Properties();
+		indexed.put("index_candidates", "true");
+		assertEquals(expected, evaluate("index.epf", indexed));
+	}
+}
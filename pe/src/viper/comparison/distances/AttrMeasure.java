@@ -280,7 +280,6 @@ public class AttrMeasure {
 			FrameSpan targetSpan, Attribute candidate, FrameSpan candSpan,
 			CanonicalFileDescriptor cfd, DistanceHolder dh)
 			throws MethodNotSupportedException {
-		distances = dh;
 		if (metric instanceof AttrDistance) {
 			FrameSpan matchSpan = targetSpan.intersect(candSpan);
 			if (matchSpan.size() <= 0)
@@ -418,23 +417,16 @@ public class AttrMeasure {
 		}
 	}
 
-	private DistanceHolder distances;
-	
-	/**
-	 * Gets the current distances.
-	 * @return the distances from the last call to
-	 * {@link #calculateDistancesAndThresh(Attribute, FrameSpan, Attribute, FrameSpan, CanonicalFileDescriptor, DistanceHolder)}.
-	 */
-	public DistanceHolder getDistances() {
-		return distances;
-	}
-	
 	/**
-	 * Gets the current statistics
-	 * @return the statistics from the last call to
-	 * {@link #calculateDistancesAndThresh(Attribute, FrameSpan, Attribute, FrameSpan, CanonicalFileDescriptor, DistanceHolder)}.
+	 * Gets the statistics of a set of distances. A measure is shared by
+	 * every comparison, which may run on different threads, so it does
+	 * not keep the distances itself.
+	 * @param distances the distances filled in by 
+	 * {@link #calculateDistancesAndThresh(Attribute, FrameSpan, Attribute, FrameSpan, CanonicalFileDescriptor, DistanceHolder)}
+	 * @return the statistics, indexed by {@link Distances#MAXIMUM} and
+	 * the like
 	 */
-	public double[] getStatistics() {
+	public static double[] getStatistics(DistanceHolder distances) {
 		double[] stats = new double[4];
 		stats[Distances.MAXIMUM] = distances.getMaximum();
 		stats[Distances.MINIMUM] = distances.getMinimum();
@@ -463,9 +455,10 @@ public class AttrMeasure {
 			Attribute candidate, FrameSpan fSpan, CanonicalFileDescriptor cfd)
 			throws MethodNotSupportedException {
 		if (metric instanceof AttrDistance) {
+			DistanceHolder dh = new DistanceHolder();
 			calculateDistancesAndThresh(target, gSpan, candidate, fSpan, cfd,
-					new DistanceHolder());
-			return (distances.getAverage());
+					dh);
+			return (dh.getAverage());
 		} else {
 			throw new MethodNotSupportedException(
 					"Cannot calculate dynamic attribute distance without an AttrDistance");
@@ -0,0 +1,243 @@
+/***************************************
+ *            ViPER                    *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *                                     *
+ *  Distributed under the GPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package viper.comparison.distances;
+
+import java.util.*;
+
+import viper.descriptors.*;
+import viper.descriptors.attributes.*;
+
+/**
+ * Remembers the differences and distances computed between a target and
+ * a candidate descriptor, so that each level of an evaluation, and each
+ * evaluation and report that looks at the same pair, can reuse them
+ * instead of computing them again. Entries are keyed by the target and
+ * candidate, the attribute name, the metric or measure used (or
+ * <code>null</code> for a {@link Measurable.Difference}, which does not
+ * depend on the metric), the blackout span, if any, and the media file
+ * information.
+ * <p>
+ * The descriptors are compared by identity, and nothing watches them
+ * for changes, so an entry goes stale as soon as either descriptor
+ * changes after it was stored: a new or edited frame span, a moved
+ * descriptor, or a new static attribute value. The cached frame span
+ * difference, or the cached attribute difference or localization, is
+ * then still returned for the pair. Anything that edits descriptors
+ * after comparing them must {@link #clear()} the cache, or use a new
+ * one. ViperPE does not edit the data once it is parsed and filtered,
+ * and gives each pair of files in a batch its own cache.
+ * </p>
+ * <p>
+ * The cache holds at most a fixed number of entries, dropping the least
+ * recently used when it is full. It counts its hits and misses. It is
+ * safe to use from more than one thread.
+ * </p>
+ */
+public class DistanceCache {
+	/**
+	 * The number of entries a cache holds by default.
+	 */
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+
+	private final int capacity;
+	private final Map entries;
+	private long hits = 0;
+	private long misses = 0;
+
+	/**
+	 * Creates a new, empty cache.
+	 * @param capacity the most entries to hold; <code>0</code> makes a
+	 * cache that holds nothing
+	 */
+	public DistanceCache(int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("Negative capacity: "
+					+ capacity);
+		}
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry eldest) {
+				return size() > DistanceCache.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * Looks up a difference or distance.
+	 * @param target the target descriptor
+	 * @param candidate the candidate descriptor
+	 * @param attribute the attribute name, e.g. <code>" framespan"</code>
+	 * @param metric the metric or measure, or <code>null</code> for a
+	 * difference
+	 * @param span the blackout span, or <code>null</code>
+	 * @param cfd the media file information, or <code>null</code>
+	 * @return the stored value, or <code>null</code> if there isn't one
+	 */
+	public synchronized Object get(Descriptor target, Descriptor candidate,
+			String attribute, Object metric, FrameSpan span,
+			CanonicalFileDescriptor cfd) {
+		Object value = entries.get(new Key(target, candidate, attribute,
+				metric, span, cfd));
+		if (value == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return value;
+	}
+
+	/**
+	 * Stores a difference or distance.
+	 * @param target the target descriptor
+	 * @param candidate the candidate descriptor
+	 * @param attribute the attribute name, e.g. <code>" framespan"</code>
+	 * @param metric the metric or measure, or <code>null</code> for a
+	 * difference
+	 * @param span the blackout span, or <code>null</code>
+	 * @param cfd the media file information, or <code>null</code>
+	 * @param value the value to store, which must not be
+	 * <code>null</code>
+	 */
+	public synchronized void put(Descriptor target, Descriptor candidate,
+			String attribute, Object metric, FrameSpan span,
+			CanonicalFileDescriptor cfd, Object value) {
+		if (value == null) {
+			throw new NullPointerException("Cannot cache a null value");
+		}
+		if (capacity > 0) {
+			entries.put(new Key(target, candidate, attribute, metric, span,
+					cfd), value);
+		}
+	}
+
+	/**
+	 * Gets the difference between the frame spans of a target and a
+	 * candidate, computing and storing it if it isn't already here.
+	 * @param target the target descriptor
+	 * @param candidate the candidate descriptor
+	 * @param blackout the frames that count against the candidate, or
+	 * <code>null</code>
+	 * @param cfd the media file information, or <code>null</code>
+	 * @return the difference between the frame spans
+	 * @throws IgnoredValueException if the frames were all ignored
+	 */
+	public Measurable.Difference getFrameSpanDifference(Descriptor target,
+			Descriptor candidate, FrameSpan blackout,
+			CanonicalFileDescriptor cfd) throws IgnoredValueException {
+		Measurable.Difference D = (Measurable.Difference) get(target,
+				candidate, " framespan", null, blackout, cfd);
+		if (D == null) {
+			D = target.getFrameSpan().getDifference(candidate.getFrameSpan(),
+					blackout, null, cfd);
+			put(target, candidate, " framespan", null, blackout, cfd, D);
+		}
+		return D;
+	}
+
+	/**
+	 * Empties the cache. The hit and miss counts are kept.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Gets the number of entries in the cache.
+	 * @return the entry count
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Gets the most entries the cache will hold.
+	 * @return the capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Gets the number of lookups that found a value.
+	 * @return the hit count
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Gets the number of lookups that didn't find a value.
+	 * @return the miss count
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Describes the cache's use.
+	 * @return the hits, misses and size of the cache
+	 */
+	public synchronized String toString() {
+		return hits + " hits, " + misses + " misses, " + entries.size()
+				+ " of " + capacity + " entries";
+	}
+
+	private static final class Key {
+		private final Descriptor target;
+		private final Descriptor candidate;
+		private final String attribute;
+		private final Object metric;
+		private final FrameSpan span;
+		private final CanonicalFileDescriptor cfd;
+		private final int hash;
+
+		Key(Descriptor target, Descriptor candidate, String attribute,
+				Object metric, FrameSpan span, CanonicalFileDescriptor cfd) {
+			this.target = target;
+			this.candidate = candidate;
+			this.attribute = attribute;
+			this.metric = metric;
+			this.span = span;
+			this.cfd = cfd;
+			int h = System.identityHashCode(target);
+			h = 31 * h + System.identityHashCode(candidate);
+			h = 31 * h + attribute.hashCode();
+			h = 31 * h + (metric == null ? 0 : metric.hashCode());
+			// FrameSpan.hashCode depends on its mask array's identity
+			h = 31 * h + (span == null ? 0 : span.beginning() * 31
+					+ span.ending());
+			this.hash = 31 * h + System.identityHashCode(cfd);
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			} else if (o instanceof Key) {
+				Key other = (Key) o;
+				// FrameSpan only overloads equals, for another FrameSpan
+				return hash == other.hash && target == other.target
+						&& candidate == other.candidate && cfd == other.cfd
+						&& attribute.equals(other.attribute)
+						&& (metric == null ? other.metric == null : metric
+								.equals(other.metric))
+						&& (span == null ? other.span == null
+								: other.span != null && span.equals(other.span));
+			}
+			return false;
+		}
+	}
+}
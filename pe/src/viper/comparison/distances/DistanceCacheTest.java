@@ -0,0 +1,180 @@
+/***************************************
+ *            ViPER                    *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *                                     *
+ *  Distributed under the GPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package viper.comparison.distances;
+
+import junit.framework.*;
+import viper.descriptors.*;
+import viper.descriptors.attributes.*;
+import edu.umd.cfar.lamp.viper.util.*;
+
+/**
+ * Checks the lookups, counts and evictions of a {@link DistanceCache}.
+ */
+public class DistanceCacheTest extends TestCase {
+	private DescPrototype proto;
+	private Descriptor target;
+	private Descriptor candidate;
+	private Descriptor other;
+
+	/**
+	 * Constructs a new test.
+	 * @param name the test name
+	 */
+	public DistanceCacheTest(String name) {
+		super(name);
+	}
+
+	protected void setUp() throws BadDataException {
+		proto = new DescPrototype("OBJECT", "Thing");
+		target = create(new FrameSpan(1, 20));
+		candidate = create(new FrameSpan(5, 30));
+		other = create(new FrameSpan(5, 30));
+	}
+
+	/**
+	 * Initializes the test suite.
+	 * @return the test suite
+	 */
+	public static Test suite() {
+		TestSuite suite = new TestSuite();
+
+		suite.addTest(new DistanceCacheTest("testHitsAndMisses"));
+		suite.addTest(new DistanceCacheTest("testFrameSpanDifference"));
+		suite.addTest(new DistanceCacheTest("testEviction"));
+		suite.addTest(new DistanceCacheTest("testNoCapacity"));
+
+		return suite;
+	}
+
+	private Descriptor create(FrameSpan span) {
+		Descriptor d = proto.create();
+		d.setFrameSpan(span);
+		return d;
+	}
+
+	private static void assertCounts(DistanceCache cache, long hits,
+			long misses) {
+		assertEquals("Hits in " + cache, hits, cache.getHits());
+		assertEquals("Misses in " + cache, misses, cache.getMisses());
+	}
+
+	/**
+	 * Tests that a value is found under its own key only, and that the
+	 * lookups are counted.
+	 */
+	public void testHitsAndMisses() {
+		DistanceCache cache = new DistanceCache(10);
+		Object value = new Double(0.5);
+		assertNull(cache.get(target, candidate, "Location", "dice", null,
+				null));
+		assertCounts(cache, 0, 1);
+
+		cache.put(target, candidate, "Location", "dice", null, null, value);
+		assertSame(value, cache.get(target, candidate, "Location", "dice",
+				null, null));
+		assertCounts(cache, 1, 1);
+
+		// an equal descriptor is still a different descriptor
+		assertNull(cache.get(target, other, "Location", "dice", null, null));
+		assertNull(cache.get(candidate, target, "Location", "dice", null,
+				null));
+		assertNull(cache.get(target, candidate, "Name", "dice", null, null));
+		assertNull(cache.get(target, candidate, "Location", null, null, null));
+		assertNull(cache.get(target, candidate, "Location", "dice",
+				new FrameSpan(1, 4), null));
+		assertCounts(cache, 1, 6);
+
+		// blackout spans are compared by value
+		cache.put(target, candidate, "Location", "dice", new FrameSpan(1, 4),
+				null, value);
+		assertSame(value, cache.get(target, candidate, "Location", "dice",
+				new FrameSpan(1, 4), null));
+		assertNull(cache.get(target, candidate, "Location", "dice",
+				new FrameSpan(1, 5), null));
+		assertCounts(cache, 2, 7);
+		assertEquals(2, cache.size());
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertNull(cache.get(target, candidate, "Location", "dice", null,
+				null));
+		assertCounts(cache, 2, 8);
+	}
+
+	/**
+	 * Tests that a frame span difference is computed once for each pair
+	 * and blackout span.
+	 */
+	public void testFrameSpanDifference() throws IgnoredValueException {
+		DistanceCache cache = new DistanceCache(10);
+		Measurable.Difference D = cache.getFrameSpanDifference(target,
+				candidate, null, null);
+		assertCounts(cache, 0, 1);
+		assertSame(D, cache.getFrameSpanDifference(target, candidate, null,
+				null));
+		assertCounts(cache, 1, 1);
+
+		Measurable.Difference other = cache.getFrameSpanDifference(candidate,
+				target, null, null);
+		assertNotSame(D, other);
+		assertNotSame(D, cache.getFrameSpanDifference(target, candidate,
+				new FrameSpan(1, 2), null));
+		assertCounts(cache, 1, 3);
+		assertEquals(3, cache.size());
+	}
+
+	/**
+	 * Tests that a full cache drops the entry that was used least
+	 * recently.
+	 */
+	public void testEviction() {
+		DistanceCache cache = new DistanceCache(3);
+		assertEquals(3, cache.getCapacity());
+		String[] attributes = new String[]{"a", "b", "c", "d"};
+		for (int i = 0; i < 3; i++) {
+			cache.put(target, candidate, attributes[i], null, null, null,
+					attributes[i]);
+		}
+		assertEquals(3, cache.size());
+
+		// using "a" makes "b" the eldest
+		assertEquals("a", cache.get(target, candidate, "a", null, null, null));
+		cache.put(target, candidate, "d", null, null, null, "d");
+		assertEquals(3, cache.size());
+		assertNull(cache.get(target, candidate, "b", null, null, null));
+		assertEquals("a", cache.get(target, candidate, "a", null, null, null));
+		assertEquals("c", cache.get(target, candidate, "c", null, null, null));
+		assertEquals("d", cache.get(target, candidate, "d", null, null, null));
+	}
+
+	/**
+	 * Tests that a cache with no room holds nothing.
+	 */
+	public void testNoCapacity() throws IgnoredValueException {
+		DistanceCache cache = new DistanceCache(0);
+		cache.put(target, candidate, "a", null, null, null, "a");
+		assertEquals(0, cache.size());
+		assertNull(cache.get(target, candidate, "a", null, null, null));
+		Measurable.Difference D = cache.getFrameSpanDifference(target,
+				candidate, null, null);
+		assertNotSame(D, cache.getFrameSpanDifference(target, candidate,
+				null, null));
+		assertCounts(cache, 0, 3);
+
+		try {
+			new DistanceCache(-1);
+			fail("Made a cache with negative capacity");
+		} catch (IllegalArgumentException iax) {
+		}
+	}
+}
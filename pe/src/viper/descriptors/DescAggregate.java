@@ -127,6 +127,7 @@ public class DescAggregate extends Descriptor {
 	 */
 	public void moveFrame(int offset) {
 		span.shift(offset);
+		frameSpanChanged();
 	}
 
 	/**
@@ -134,6 +135,7 @@ public class DescAggregate extends Descriptor {
 	 */
 	public void setFrameSpan(FrameSpan span) {
 		this.span = span;
+		frameSpanChanged();
 	}
 
 	/**
@@ -140,6 +140,7 @@ public class DescSingle extends Descriptor {
 	 */
 	public void moveFrame(int offset) {
 		span.shift(offset);
+		frameSpanChanged();
 	}
 
 	/**
@@ -157,6 +158,7 @@ public class DescSingle extends Descriptor {
 			}
 		}
 		this.span = span;
+		frameSpanChanged();
 	}
 
 	/**
@@ -211,6 +213,7 @@ public class DescSingle extends Descriptor {
 			}
 		}
 		this.span = newSpan;
+		frameSpanChanged();
 	}
 	
 	/**
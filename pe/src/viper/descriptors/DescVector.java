@@ -39,6 +39,72 @@ public class DescVector extends Vector
 	private CanonicalFileDescriptor cfd = null;
 	private DescriptorData holder;
 
+	/**
+	 * Index of the descriptors' frame spans, by position in the vector.
+	 * Rebuilt when the vector is modified, or when the frame span of one
+	 * of its descriptors changes.
+	 */
+	private transient FrameIndex frameIndex = null;
+
+	/**
+	 * An index of the frame spans of the descriptors in a vector. It
+	 * watches each descriptor and its span, and goes stale when any of
+	 * them changes. It doesn't refer to the vector, so descriptors that
+	 * outlive the vector don't keep it around.
+	 */
+	private static final class FrameIndex implements FrameSpan.Observer {
+		private final IntervalTree tree;
+		private final Descriptor[] descs;
+		private final FrameSpan[] spans;
+		private final int modCount;
+		private volatile boolean stale = false;
+
+		FrameIndex(Object[] elements, int count, int modCount) {
+			this.modCount = modCount;
+			descs = new Descriptor[count];
+			spans = new FrameSpan[count];
+			long[] starts = new long[count];
+			long[] ends = new long[count];
+			for (int i = 0; i < count; i++) {
+				descs[i] = (Descriptor) elements[i];
+				spans[i] = descs[i].getFrameSpan();
+				descs[i].addFrameSpanObserver(this);
+				spans[i].addObserver(this);
+				starts[i] = spans[i].beginning();
+				ends[i] = spans[i].ending() + 1L;
+			}
+			tree = new IntervalTree(starts, ends);
+		}
+
+		/**
+		 * Marks the index as out of date.
+		 * @param span {@inheritDoc}
+		 */
+		public void frameSpanChanged(FrameSpan span) {
+			stale = true;
+		}
+
+		boolean isCurrent(int modCount) {
+			return !stale && this.modCount == modCount;
+		}
+
+		/**
+		 * Stops watching the descriptors and their spans.
+		 */
+		void release() {
+			stale = true;
+			for (int i = 0; i < descs.length; i++) {
+				descs[i].removeFrameSpanObserver(this);
+				spans[i].removeObserver(this);
+			}
+		}
+
+		BitSet getIntersecting(FrameSpan span) {
+			return tree.getIntersecting(span.beginning(),
+					span.ending() + 1L, new BitSet(descs.length));
+		}
+	}
+
 	/**
 	 * Gets the name of the file this metadata describes.
 	 * 
@@ -407,17 +473,15 @@ public class DescVector extends Vector
 		return idList;
 	}
 
-	private class FrameSpecifiedIterator implements Iterator {
-		private int i = -1;
+	private static class FrameSpecifiedIterator implements Iterator {
+		private Iterator iter;
 		private FrameSpan frames;
 		private boolean lookahead = true;
 		private Descriptor current = null;
 
-		FrameSpecifiedIterator(int frameNumber) {
-			frames = new FrameSpan(frameNumber, frameNumber);
-		}
-		FrameSpecifiedIterator(FrameSpan span) {
+		FrameSpecifiedIterator(FrameSpan span, List possibles) {
 			frames = (FrameSpan) span.clone();
+			iter = possibles.iterator();
 		}
 
 		/** @inheritDoc */
@@ -425,8 +489,8 @@ public class DescVector extends Vector
 			if (!lookahead)
 				return true;
 
-			while (++i < size()) {
-				current = (Descriptor) elementAt(i);
+			while (iter.hasNext()) {
+				current = (Descriptor) iter.next();
 				if (current.getFrameSpan().intersects(frames)) {
 					lookahead = false;
 					current = current.crop(frames);
@@ -442,8 +506,8 @@ public class DescVector extends Vector
 				lookahead = true;
 				return current;
 			} else {
-				while (++i < size()) {
-					current = (Descriptor) elementAt(i);
+				while (iter.hasNext()) {
+					current = (Descriptor) iter.next();
 					if (current.getFrameSpan().intersects(frames)) {
 						current = current.crop(frames);
 						return current;
@@ -459,18 +523,72 @@ public class DescVector extends Vector
 		}
 	}
 
+	/**
+	 * Gets the descriptors whose frame spans may intersect the given span, 
+	 * in the order they appear in the vector. This uses an index of the 
+	 * frame spans, which is rebuilt whenever descriptors are added, removed 
+	 * or replaced, or the frame span of one of them changes.
+	 * @param span the span to look for
+	 * @return a list of the descriptors whose frame spans begin before the
+	 * span ends and end after it starts
+	 */
+	private synchronized List getPossiblyIntersecting(FrameSpan span) {
+		if (frameIndex == null || !frameIndex.isCurrent(modCount)) {
+			resetFrameIndex();
+			frameIndex = new FrameIndex(elementData, elementCount, modCount);
+		}
+		BitSet possibles = frameIndex.getIntersecting(span);
+		List L = new ArrayList(possibles.cardinality());
+		for (int i = possibles.nextSetBit(0); i >= 0; i = possibles
+				.nextSetBit(i + 1)) {
+			L.add(elementData[i]);
+		}
+		return L;
+	}
+
+	/**
+	 * Discards the index used by {@link #getNodesByFrame(FrameSpan)} and 
+	 * {@link #cropNodesToSpan(FrameSpan)}, and stops watching the frame
+	 * spans of the descriptors. The index notices changes to the vector,
+	 * to its descriptors and to their frame spans by itself, so this is
+	 * only needed to let go of the descriptors early.
+	 */
+	public synchronized void resetFrameIndex() {
+		if (frameIndex != null) {
+			frameIndex.release();
+			frameIndex = null;
+		}
+	}
+
+	/**
+	 * @inheritDoc
+	 */
+	public synchronized Object set(int index, Object element) {
+		resetFrameIndex();
+		return super.set(index, element);
+	}
+
+	/**
+	 * @inheritDoc
+	 */
+	public synchronized void setElementAt(Object obj, int index) {
+		resetFrameIndex();
+		super.setElementAt(obj, index);
+	}
+
 	/**
 	 * @inheritDoc
 	 */
 	public Iterator cropNodesToSpan(FrameSpan span) {
-		return new FrameSpecifiedIterator(span);
+		return new FrameSpecifiedIterator(span, getPossiblyIntersecting(span));
 	}
 	
 	/**
 	 * @inheritDoc
 	 */
 	public Iterator getNodesByFrame(FrameSpan span) {
-		return new ExceptIterator(new OnlyWithThisFrame(span), this.iterator());
+		return new ExceptIterator(new OnlyWithThisFrame(span),
+				getPossiblyIntersecting(span).iterator());
 	}
 	
 	private static final class OnlyWithThisFrame
@@ -0,0 +1,199 @@
+/***************************************
+ *            ViPER                    *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *                                     *
+ *  Distributed under the GPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package viper.descriptors;
+
+import java.util.*;
+
+import junit.framework.*;
+import viper.descriptors.attributes.*;
+import edu.umd.cfar.lamp.viper.util.*;
+
+/**
+ * Checks that the frame index of a {@link DescVector} finds the same
+ * descriptors as looking at each one, as the list and its descriptors
+ * change.
+ */
+public class DescVectorTest extends TestCase {
+	private static final int FRAMES = 200;
+
+	private DescPrototype proto;
+	private DescVector v;
+
+	/**
+	 * Constructs a new test.
+	 * @param name the test name
+	 */
+	public DescVectorTest(String name) {
+		super(name);
+	}
+
+	protected void setUp() throws BadDataException {
+		proto = new DescPrototype("OBJECT", "Thing");
+		v = new DescVector(null);
+		Random r = new Random(11);
+		for (int i = 0; i < 50; i++) {
+			int start = r.nextInt(FRAMES - 30);
+			FrameSpan span = new FrameSpan(start, start + r.nextInt(30));
+			if (span.size() > 4 && r.nextBoolean()) {
+				span.clear(start + 2);
+			}
+			v.add(create(span));
+		}
+	}
+
+	/**
+	 * Initializes the test suite.
+	 * @return the test suite
+	 */
+	public static Test suite() {
+		TestSuite suite = new TestSuite();
+
+		suite.addTest(new DescVectorTest("testMatchesScan"));
+		suite.addTest(new DescVectorTest("testNewFrameSpan"));
+		suite.addTest(new DescVectorTest("testFrameSpanChangedInPlace"));
+		suite.addTest(new DescVectorTest("testAddAndRemove"));
+		suite.addTest(new DescVectorTest("testSharedDescriptor"));
+
+		return suite;
+	}
+
+	private Descriptor create(FrameSpan span) {
+		Descriptor d = proto.create();
+		d.setFrameSpan(span);
+		return d;
+	}
+
+	private static List toList(Iterator iter) {
+		List L = new ArrayList();
+		while (iter.hasNext()) {
+			L.add(iter.next());
+		}
+		return L;
+	}
+
+	private static void assertMatchesScan(DescVector v) {
+		for (int f = 0; f < FRAMES; f++) {
+			FrameSpan span = new FrameSpan(f, f + 3);
+			List expected = new ArrayList();
+			List cropped = new ArrayList();
+			for (Iterator iter = v.iterator(); iter.hasNext();) {
+				Descriptor d = (Descriptor) iter.next();
+				if (d.getFrameSpan().intersects(span)) {
+					expected.add(d);
+					cropped.add(d.crop(span).getFrameSpan());
+				}
+			}
+			assertEquals("At " + span, expected, toList(v
+					.getNodesByFrame(span)));
+			List found = new ArrayList();
+			for (Iterator iter = v.cropNodesToSpan(span); iter.hasNext();) {
+				found.add(((Descriptor) iter.next()).getFrameSpan());
+			}
+			assertEquals("Cropped to " + span, cropped.toString(), found
+					.toString());
+		}
+	}
+
+	private static boolean found(DescVector v, Descriptor d, int frame) {
+		return toList(v.getNodesByFrame(new FrameSpan(frame, frame)))
+				.contains(d);
+	}
+
+	/**
+	 * Tests that the index finds what a scan finds.
+	 */
+	public void testMatchesScan() {
+		assertMatchesScan(v);
+	}
+
+	/**
+	 * Tests that giving a descriptor a new span, or moving it, updates
+	 * the index.
+	 */
+	public void testNewFrameSpan() {
+		Descriptor d = (Descriptor) v.get(7);
+		assertMatchesScan(v);
+		d.setFrameSpan(new FrameSpan(FRAMES + 10, FRAMES + 20));
+		assertTrue(found(v, d, FRAMES + 15));
+		d.moveFrame(-FRAMES);
+		assertTrue(found(v, d, 15));
+		assertFalse(found(v, d, FRAMES + 15));
+		assertMatchesScan(v);
+	}
+
+	/**
+	 * Tests that changes made directly to a descriptor's span update
+	 * the index.
+	 */
+	public void testFrameSpanChangedInPlace() {
+		Descriptor d = (Descriptor) v.get(3);
+		FrameSpan span = d.getFrameSpan();
+		assertMatchesScan(v);
+		span.set(FRAMES + 5);
+		assertTrue(found(v, d, FRAMES + 5));
+		span.shift(10);
+		assertTrue(found(v, d, FRAMES + 15));
+		span.intersectWith(new FrameSpan(0, FRAMES));
+		assertFalse(found(v, d, FRAMES + 15));
+		assertMatchesScan(v);
+
+		// a span that has been replaced no longer counts
+		d.setFrameSpan(new FrameSpan(1, 2));
+		span.set(FRAMES + 30);
+		assertFalse(found(v, d, FRAMES + 30));
+		assertMatchesScan(v);
+	}
+
+	/**
+	 * Tests that adding, removing and replacing descriptors updates the
+	 * index.
+	 */
+	public void testAddAndRemove() {
+		assertMatchesScan(v);
+		Descriptor added = create(new FrameSpan(FRAMES + 1, FRAMES + 2));
+		v.add(added);
+		assertTrue(found(v, added, FRAMES + 1));
+		v.remove(added);
+		assertFalse(found(v, added, FRAMES + 1));
+		v.insertElementAt(added, 0);
+		assertTrue(found(v, added, FRAMES + 1));
+		Descriptor replaced = create(new FrameSpan(FRAMES + 1, FRAMES + 2));
+		v.set(0, replaced);
+		assertFalse(found(v, added, FRAMES + 1));
+		assertTrue(found(v, replaced, FRAMES + 1));
+		v.setElementAt(added, 0);
+		assertTrue(found(v, added, FRAMES + 1));
+		assertMatchesScan(v);
+
+		// a removed descriptor no longer counts
+		v.remove(added);
+		assertMatchesScan(v);
+		added.setFrameSpan(new FrameSpan(1, FRAMES));
+		assertMatchesScan(v);
+	}
+
+	/**
+	 * Tests that a descriptor in two lists is found in both after it
+	 * changes.
+	 */
+	public void testSharedDescriptor() {
+		DescVector other = new DescVector(null);
+		Descriptor d = (Descriptor) v.get(0);
+		other.add(d);
+		assertMatchesScan(v);
+		assertMatchesScan(other);
+		d.getFrameSpan().shift(FRAMES);
+		assertTrue(found(v, d, d.getFrameSpan().beginning()));
+		assertTrue(found(other, d, d.getFrameSpan().beginning()));
+	}
+}
@@ -55,6 +55,70 @@ public abstract class Descriptor implements Cloneable {
 
 	protected FrameSpan span;
 
+	/**
+	 * Told whenever the descriptor's frame span is replaced or moved.
+	 */
+	private transient FrameSpan.Observer[] frameSpanObservers = null;
+
+	/**
+	 * Asks to be told whenever this descriptor gets a new frame span, or
+	 * its frame span is moved. Changes made directly to the
+	 * <code>FrameSpan</code> object are reported by the span itself.
+	 * @param o the observer to add
+	 * @see FrameSpan#addObserver(FrameSpan.Observer)
+	 */
+	public synchronized void addFrameSpanObserver(FrameSpan.Observer o) {
+		if (frameSpanObservers == null) {
+			frameSpanObservers = new FrameSpan.Observer[]{o};
+		} else {
+			FrameSpan.Observer[] more = new FrameSpan.Observer[frameSpanObservers.length + 1];
+			System.arraycopy(frameSpanObservers, 0, more, 0,
+					frameSpanObservers.length);
+			more[frameSpanObservers.length] = o;
+			frameSpanObservers = more;
+		}
+	}
+
+	/**
+	 * Stops telling the given observer about new frame spans.
+	 * @param o the observer to remove
+	 */
+	public synchronized void removeFrameSpanObserver(FrameSpan.Observer o) {
+		if (frameSpanObservers == null) {
+			return;
+		}
+		for (int i = 0; i < frameSpanObservers.length; i++) {
+			if (frameSpanObservers[i] == o) {
+				if (frameSpanObservers.length == 1) {
+					frameSpanObservers = null;
+				} else {
+					FrameSpan.Observer[] fewer = new FrameSpan.Observer[frameSpanObservers.length - 1];
+					System.arraycopy(frameSpanObservers, 0, fewer, 0, i);
+					System.arraycopy(frameSpanObservers, i + 1, fewer, i,
+							fewer.length - i);
+					frameSpanObservers = fewer;
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Subclasses call this whenever they replace or move their frame
+	 * span.
+	 */
+	protected void frameSpanChanged() {
+		FrameSpan.Observer[] toTell;
+		synchronized (this) {
+			toTell = frameSpanObservers;
+		}
+		if (toTell != null) {
+			for (int i = 0; i < toTell.length; i++) {
+				toTell[i].frameSpanChanged(getFrameSpan());
+			}
+		}
+	}
+
 	protected boolean composable = true;
 
 	/***************************************************************************
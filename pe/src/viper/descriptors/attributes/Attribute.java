@@ -637,7 +637,9 @@ public class Attribute extends AbstractAttribute
 	 * @return <code>Iterator&lt;ValueSpan&gt;</code>
 	 */
 	public Iterator getValues(FrameSpan span) {
-		if (isDynamic()) {
+		if (isDynamic() && value == null) {
+			return new StaticValueIterator(null, span);
+		} else if (isDynamic()) {
 			return new DynamicValueIterator(value, span);
 		} else {
 			return new StaticValueIterator(getStaticValue(), span);
@@ -40,6 +40,7 @@ public class Attribute_circle extends Attribute implements Cloneable {
 		Distances.putDistanceFunctorFor("circle", d);
 		Distances.putDistanceFunctorFor("circle", Distances
 				.getEqualityDistance());
+		RasterDifference.putPixelCountsFor("circle");
 
 		try {
 			DefaultMeasures.setDefaultMetricFor("circle", "dice");
@@ -132,7 +133,7 @@ public class Attribute_circle extends Attribute implements Cloneable {
 	}
 
 	protected static class CircleValue implements AttributeValue {
-		private Circle value;
+		Circle value;
 		/** @inheritDoc */
 		public String toString() {
 			return value.toString();
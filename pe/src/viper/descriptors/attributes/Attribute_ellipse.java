@@ -28,6 +28,7 @@ public class Attribute_ellipse extends Attribute implements Cloneable {
 	static {
 		Distances.putDistanceFunctorFor("ellipse", Distances
 				.getEqualityDistance());
+		RasterDifference.putPixelCountsFor("ellipse");
 
 		try {
 			DefaultMeasures.setDefaultMetricFor("ellipse", "e");
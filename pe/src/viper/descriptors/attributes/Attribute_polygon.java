@@ -63,16 +63,18 @@ public class Attribute_polygon extends Attribute {
 		Distances.putDistanceFunctorFor(Attribute_polygon.TYPE, d);
 
 		d = new Distances.HelperAttrDistance(new MatchedPixelCount(),
-				"matchedpixels", Distance.OVERALL_SUM, "Pixels matched", false);
+				RasterDifference.MATCHED_PIXELS, Distance.OVERALL_SUM,
+				"Pixels matched", false);
 		Distances.putDistanceFunctorFor(Attribute_polygon.TYPE, d);
 
 		d = new Distances.HelperAttrDistance(new MissedPixelCount(),
-				"missedpixels", Distance.OVERALL_SUM, "Pixels missed", true);
+				RasterDifference.MISSED_PIXELS, Distance.OVERALL_SUM,
+				"Pixels missed", true);
 		Distances.putDistanceFunctorFor(Attribute_polygon.TYPE, d);
 
 		d = new Distances.HelperAttrDistance(new FalsePixelCount(),
-				"falsepixels", Distance.OVERALL_SUM, "Pixels falsely detected",
-				true);
+				RasterDifference.FALSE_PIXELS, Distance.OVERALL_SUM,
+				"Pixels falsely detected", true);
 		Distances.putDistanceFunctorFor(Attribute_polygon.TYPE, d);
 
 		d = new Distances.HelperAttrDistance(new FragmentationDistance(),
@@ -91,6 +93,29 @@ public class Attribute_polygon extends Attribute {
 		DefaultMeasures.setDefaultToleranceFor(Attribute_polygon.TYPE, 0.0);
 	}
 
+	private static boolean fastGeometry = false;
+
+	/**
+	 * Sets whether the polygon, bbox and obox metrics should use the
+	 * {@link FastGeometry} kernel, which works with primitive numbers
+	 * instead of Rationals. It falls back to exact arithmetic when its error
+	 * bound is at risk. Comparisons with blackout or ignored regions always
+	 * use exact arithmetic.
+	 * @param fast <code>true</code> to use the fast kernel
+	 */
+	public static void setFastGeometry(boolean fast) {
+		fastGeometry = fast;
+	}
+
+	/**
+	 * Tests to see if the metrics use the fast geometry kernel.
+	 * @return <code>true</code> if the fast kernel is enabled
+	 * @see #setFastGeometry(boolean)
+	 */
+	public static boolean isFastGeometry() {
+		return fastGeometry;
+	}
+
 	private static PolygonDiff convertMD(Measurable.Difference D) {
 		if (D instanceof PolygonDiff) {
 			return (PolygonDiff) D;
@@ -104,11 +129,15 @@ public class Attribute_polygon extends Attribute {
 		public Number helpGetDistance(Measurable.Difference D) {
 			PolygonDiff pd = convertMD(D);
 
-			if (pd.getAlphaArea().equals(0) || pd.getBetaArea().equals(0)) {
-				return (pd.getAlphaArea().equals(pd.getBetaArea()))
+			if (pd.isAlphaEmpty() || pd.isBetaEmpty()) {
+				return (pd.isAlphaEmpty() && pd.isBetaEmpty())
 						? Attribute_polygon.ZERO
 						: ONE;
 			}
+			if (pd.isFast()) {
+				return new Double(1 - 2 * pd.getSharedValue()
+						/ (pd.getAlphaAreaValue() + pd.getBetaAreaValue()));
+			}
 			Rational dice = new Rational(2);
 			Rational.multiply(dice, pd.getShared(), dice);
 			Rational temp = new Rational();
@@ -126,10 +155,12 @@ public class Attribute_polygon extends Attribute {
 		public Number helpGetDistance(Measurable.Difference D) {
 			PolygonDiff pd = convertMD(D);
 
-			if (pd.getAlphaArea().equals(0) || pd.getBetaArea().equals(0)) {
+			if (pd.isAlphaEmpty() || pd.isBetaEmpty()) {
 				return ONE;
 			}
-
+			if (pd.isFast()) {
+				return (pd.getSharedValue() == 0) ? ONE : ZERO;
+			}
 			return (pd.getShared().equals(0)) ? ONE : ZERO;
 		}
 	}
@@ -140,8 +171,12 @@ public class Attribute_polygon extends Attribute {
 		public Number helpGetDistance(Measurable.Difference D) {
 			PolygonDiff pd = convertMD(D);
 
-			if (pd.getAlphaArea().equals(0) || pd.getBetaArea().equals(0)) {
-				return (pd.getAlphaArea().equals(pd.getBetaArea())) ? ZERO : ONE;
+			if (pd.isAlphaEmpty() || pd.isBetaEmpty()) {
+				return (pd.isAlphaEmpty() && pd.isBetaEmpty()) ? ZERO : ONE;
+			}
+			if (pd.isFast()) {
+				return new Double(1 - pd.getSharedValue()
+						/ pd.getAlphaAreaValue());
 			}
 			Rational r = new Rational();
 			Rational.divide(pd.getShared(), pd.getAlphaArea(), r);
@@ -156,15 +191,18 @@ public class Attribute_polygon extends Attribute {
 		public Number helpGetDistance(Measurable.Difference D) {
 			PolygonDiff pd = convertMD(D);
 
-			if (pd.getAlphaArea().equals(0) || pd.getBetaArea().equals(0)) {
-				if (pd.getAlphaArea().equals(0) && pd.getBetaArea().equals(0)) {
+			if (pd.isAlphaEmpty() || pd.isBetaEmpty()) {
+				if (pd.isAlphaEmpty() && pd.isBetaEmpty()) {
 					return UNDEFINED;
-				} else if (pd.getAlphaArea().equals(0)) {
+				} else if (pd.isAlphaEmpty()) {
 					return ONE;
 				} else {
 					return ZERO;
 				}
 			}
+			if (pd.isFast()) {
+				return new Double(pd.getSharedValue() / pd.getAlphaAreaValue());
+			}
 			Rational r = new Rational();
 			Rational.divide(pd.getShared(), pd.getAlphaArea(), r);
 			return new Double(r.doubleValue());
@@ -177,15 +215,18 @@ public class Attribute_polygon extends Attribute {
 		public Number helpGetDistance(Measurable.Difference D) {
 			PolygonDiff pd = convertMD(D);
 
-			if (pd.getAlphaArea().equals(0) || pd.getBetaArea().equals(0)) {
-				if (pd.getAlphaArea().equals(0) && pd.getBetaArea().equals(0)) {
+			if (pd.isAlphaEmpty() || pd.isBetaEmpty()) {
+				if (pd.isAlphaEmpty() && pd.isBetaEmpty()) {
 					return UNDEFINED;
-				} else if (pd.getBetaArea().equals(0)) {
+				} else if (pd.isBetaEmpty()) {
 					return ONE;
 				} else {
 					return ZERO;
 				}
 			}
+			if (pd.isFast()) {
+				return new Double(pd.getSharedValue() / pd.getBetaAreaValue());
+			}
 			Rational r = new Rational();
 			Rational.divide(pd.getShared(), pd.getBetaArea(), r);
 			return new Double(r.doubleValue());
@@ -199,13 +240,13 @@ public class Attribute_polygon extends Attribute {
 		public Number helpGetDistance(Measurable.Difference D) {
 			PolygonDiff pd = convertMD(D);
 
-			if (pd.getAlphaArea().equals(0) || pd.getBetaArea().equals(0)) {
-				return (pd.getAlphaArea().equals(pd.getBetaArea())) ? ZERO : ONE;
+			if (pd.isAlphaEmpty() || pd.isBetaEmpty()) {
+				return (pd.isAlphaEmpty() && pd.isBetaEmpty()) ? ZERO : ONE;
 			}
 			
 			return new Double(Math.max(
-					((pd.getAlphaArea().doubleValue() - pd.getShared().doubleValue()) / pd.getAlphaArea().doubleValue()),
-					((pd.getBetaArea().doubleValue() - pd.getShared().doubleValue()) / pd.getBetaArea().doubleValue())));
+					((pd.getAlphaAreaValue() - pd.getSharedValue()) / pd.getAlphaAreaValue()),
+					((pd.getBetaAreaValue() - pd.getSharedValue()) / pd.getBetaAreaValue())));
 		}
 	}
 
@@ -214,8 +255,11 @@ public class Attribute_polygon extends Attribute {
 				Distances.QuickValueDistance {
 		/** @inheritDoc */
 		public Number helpGetDistance(Measurable.Difference D) {
+			if (D instanceof RasterDifference) {
+				return new Double(((RasterDifference) D).getMatched());
+			}
 			PolygonDiff pd = convertMD(D);
-			return new Double(pd.getShared().doubleValue());
+			return new Double(pd.getSharedValue());
 		}
 	}
 	private static class MissedPixelCount
@@ -224,6 +268,9 @@ public class Attribute_polygon extends Attribute {
 
 		/** @inheritDoc */
 		public Number helpGetDistance(Measurable.Difference D) {
+			if (D instanceof RasterDifference) {
+				return new Double(((RasterDifference) D).getMissed());
+			}
 			PolygonDiff pd = convertMD(D);
 			return new Double(pd.getMissed().doubleValue());
 		}
@@ -233,6 +280,9 @@ public class Attribute_polygon extends Attribute {
 				Distances.QuickValueDistance {
 		/** @inheritDoc */
 		public Number helpGetDistance(Measurable.Difference D) {
+			if (D instanceof RasterDifference) {
+				return new Double(((RasterDifference) D).getFalse());
+			}
 			PolygonDiff pd = convertMD(D);
 			return new Double(pd.getFalse().doubleValue());
 		}
@@ -245,7 +295,7 @@ public class Attribute_polygon extends Attribute {
 		public Number helpGetDistance(Measurable.Difference D) {
 			PolygonDiff pd = convertMD(D);
 
-			if (pd.getAlphaArea().equals(0) || pd.getBetaArea().equals(0)) {
+			if (pd.isAlphaEmpty() || pd.isBetaEmpty()) {
 				return new Double(Double.NaN);
 			}
 
@@ -626,6 +676,7 @@ public class Attribute_polygon extends Attribute {
 			alphaArea = null;
 			ignoreblack = new Rational(0);
 			match = null;
+			sharedValue = alphaValue = betaValue = Double.NaN;
 
 			this.alpha = alpha;
 			this.beta = beta;
@@ -684,6 +735,88 @@ public class Attribute_polygon extends Attribute {
 					blackoutF = null;
 				}
 			}
+			fast = fastGeometry && blackoutF == null && ignoreF == null;
+		}
+
+		/**
+		 * Tests to see if the double-valued area accessors use the
+		 * fast geometry kernel, so the metrics should avoid the 
+		 * Rational-valued ones.
+		 * @return <code>true</code> if fast geometry is enabled and the
+		 * difference has no blackout or ignored region
+		 */
+		public boolean isFast() {
+			return fast;
+		}
+
+		/**
+		 * Tests to see if the target has no area.
+		 * @return <code>true</code> if the target's area is zero
+		 */
+		public boolean isAlphaEmpty() {
+			return fast ? getAlphaAreaValue() == 0 : getAlphaArea().equals(0);
+		}
+
+		/**
+		 * Tests to see if the candidate has no area.
+		 * @return <code>true</code> if the candidate's area is zero
+		 */
+		public boolean isBetaEmpty() {
+			return fast ? getBetaAreaValue() == 0 : getBetaArea().equals(0);
+		}
+
+		/**
+		 * Gets the shared area as a double, using the fast geometry kernel
+		 * if possible.
+		 * @return the shared area
+		 * @see #getShared()
+		 */
+		public double getSharedValue() {
+			if (Double.isNaN(sharedValue)) {
+				if (fast) {
+					sharedValue = FastGeometry.getIntersectionArea(alphaF, betaF);
+				}
+				if (Double.isNaN(sharedValue)) {
+					sharedValue = getShared().doubleValue();
+				}
+			}
+			return sharedValue;
+		}
+
+		/**
+		 * Gets the target's area as a double, using the fast geometry kernel
+		 * if possible.
+		 * @return the area of the target
+		 * @see #getAlphaArea()
+		 */
+		public double getAlphaAreaValue() {
+			if (Double.isNaN(alphaValue)) {
+				if (fast) {
+					alphaValue = FastGeometry.area(alphaF);
+				}
+				if (Double.isNaN(alphaValue)) {
+					alphaValue = getAlphaArea().doubleValue();
+				}
+			}
+			return alphaValue;
+		}
+
+		/**
+		 * Gets the candidate's area as a double, using the fast geometry
+		 * kernel if possible.
+		 * @return the area of the candidate
+		 * @see #getBetaArea()
+		 */
+		public double getBetaAreaValue() {
+			if (Double.isNaN(betaValue)) {
+				if (fast) {
+					betaValue = FastGeometry.area(betaF);
+				}
+				if (Double.isNaN(betaValue)) {
+					betaValue = getBetaArea().doubleValue();
+				}
+			}
+			return betaValue;
 		}
 
 		/**
@@ -816,6 +949,11 @@ public class Attribute_polygon extends Attribute {
 
 		private Rational alphaArea;
 		private Rational betaArea;
+
+		private boolean fast;
+		private double sharedValue;
+		private double alphaValue;
+		private double betaValue;
 	}
 
 	abstract static class AbstractPolygonValue
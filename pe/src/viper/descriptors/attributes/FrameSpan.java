@@ -194,6 +194,74 @@ public class FrameSpan implements Cloneable, Filterable, Composable, Measurable
 
 	int[] mask = null;
 
+	/**
+	 * Something that needs to know when the frames of a span change.
+	 */
+	public static interface Observer {
+		/**
+		 * Called after the frames of the span have changed.
+		 * @param span the span that changed
+		 */
+		public void frameSpanChanged(FrameSpan span);
+	}
+
+	/**
+	 * Told whenever the span changes in place. Copies of the span don't
+	 * share them.
+	 */
+	private transient Observer[] observers = null;
+
+	/**
+	 * Asks to be told whenever the frames of this span change.
+	 * @param o the observer to add
+	 */
+	public synchronized void addObserver(Observer o) {
+		if (observers == null) {
+			observers = new Observer[]{o};
+		} else {
+			Observer[] more = new Observer[observers.length + 1];
+			System.arraycopy(observers, 0, more, 0, observers.length);
+			more[observers.length] = o;
+			observers = more;
+		}
+	}
+
+	/**
+	 * Stops telling the given observer about changes to this span.
+	 * @param o the observer to remove
+	 */
+	public synchronized void removeObserver(Observer o) {
+		if (observers == null) {
+			return;
+		}
+		for (int i = 0; i < observers.length; i++) {
+			if (observers[i] == o) {
+				if (observers.length == 1) {
+					observers = null;
+				} else {
+					Observer[] fewer = new Observer[observers.length - 1];
+					System.arraycopy(observers, 0, fewer, 0, i);
+					System.arraycopy(observers, i + 1, fewer, i,
+							fewer.length - i);
+					observers = fewer;
+				}
+				return;
+			}
+		}
+	}
+
+	private void changed() {
+		Observer[] toTell;
+		synchronized (this) {
+			toTell = observers;
+		}
+		if (toTell != null) {
+			for (int i = 0; i < toTell.length; i++) {
+				toTell[i].frameSpanChanged(this);
+			}
+		}
+	}
+
 	/**
 	 * Default constructor; returns an empty framespan.
 	 */
@@ -551,6 +619,7 @@ public class FrameSpan implements Cloneable, Filterable, Composable, Measurable
 		end = f.end;
 		mask = f.mask;
 		contiguous = f.contiguous;
+		changed();
 	}
 
 	/**
@@ -697,6 +766,7 @@ public class FrameSpan implements Cloneable, Filterable, Composable, Measurable
 		}
 		beg = newBeg;
 		end = newEnd;
+		changed();
 	}
 
 	/**
@@ -941,6 +1011,7 @@ public class FrameSpan implements Cloneable, Filterable, Composable, Measurable
 		end = f.end;
 		mask = f.mask;
 		contiguous = f.contiguous;
+		changed();
 	}
 
 	/**
@@ -1002,6 +1073,7 @@ public class FrameSpan implements Cloneable, Filterable, Composable, Measurable
 			if (start == beg || stop == end) {
 				helpCrop();
 			}
+			changed();
 		}
 	}
 
@@ -1020,6 +1092,7 @@ public class FrameSpan implements Cloneable, Filterable, Composable, Measurable
 			if (frameNumber == beg || frameNumber == end) {
 				helpCrop();
 			}
+			changed();
 		}
 	}
 
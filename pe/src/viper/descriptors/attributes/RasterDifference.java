@@ -0,0 +1,327 @@
+/***************************************
+ *            ViPER                    *
+ *  The Video Processing               *
+ *         Evaluation Resource         *
+ *                                     *
+ *  Distributed under the GPL license  *
+ *        Terms available at gnu.org.  *
+ *                                     *
+ *  Copyright University of Maryland,  *
+ *                      College Park.  *
+ ***************************************/
+
+package viper.descriptors.attributes;
+
+import java.awt.*;
+import java.util.*;
+import java.util.List;
+
+import viper.comparison.distances.*;
+import viper.descriptors.*;
+import edu.umd.cfar.lamp.viper.geometry.*;
+
+/**
+ * The difference between some target shapes and some candidate shapes,
+ * found by drawing them into {@link PixelRaster}s instead of computing
+ * the union and intersections of their polygons. It only knows how many
+ * pixels are matched, missed and falsely detected, so it only supports
+ * the pixel count metrics: <code>matchedpixels</code>,
+ * <code>missedpixels</code> and <code>falsepixels</code>. Polygons,
+ * bounding boxes, oriented boxes, ellipses and circles may be
+ * rasterized.
+ * <p>
+ * The shapes are drawn at the resolution of the media, clipped to the
+ * frame when the file information gives its dimensions. Counts are
+ * exact for bounding boxes, and within a pixel along the boundary for
+ * other shapes. Like the polygon difference, a matched pixel is one in
+ * both a target and a candidate, and missed and false pixels don't count
+ * if they are ignored.
+ * </p>
+ */
+public class RasterDifference implements Measurable.Difference {
+	/** The name of the metric that counts matched pixels. */
+	public static final String MATCHED_PIXELS = "matchedpixels";
+
+	/** The name of the metric that counts missed target pixels. */
+	public static final String MISSED_PIXELS = "missedpixels";
+
+	/** The name of the metric that counts falsely detected pixels. */
+	public static final String FALSE_PIXELS = "falsepixels";
+
+	private static final Set PIXEL_COUNTS = new HashSet(Arrays
+			.asList(new String[]{MATCHED_PIXELS, MISSED_PIXELS,
+					FALSE_PIXELS}));
+
+	private List alpha, beta, ignore;
+	private CanonicalFileDescriptor cfd;
+	private long matched;
+	private long missed;
+	private long falsePixels;
+	private boolean ignoredValue;
+
+	/**
+	 * Rasterizes the given shapes and counts the pixels.
+	 * @param targets the target shapes or attribute values
+	 * @param candidates the candidate shapes or attribute values
+	 * @param ignored the shapes or values of the regions that don't count
+	 * against the candidates or the targets
+	 * @param cfd the media information, for the frame size; may be
+	 * <code>null</code>
+	 * @throws IgnoredValueException if there are candidates and ignored
+	 * regions, and all the candidate pixels are ignored
+	 * @throws IllegalArgumentException if a value can't be rasterized
+	 */
+	public RasterDifference(Collection targets, Collection candidates,
+			Collection ignored, CanonicalFileDescriptor cfd)
+			throws IgnoredValueException {
+		set(targets, candidates, ignored, cfd);
+		if (ignoredValue) {
+			throw new IgnoredValueException();
+		}
+	}
+
+	private RasterDifference() {
+	}
+
+	/**
+	 * Gets the raster difference for the given difference, rasterizing
+	 * its target, candidate and ignored values if it isn't one already.
+	 * Unlike the constructor, this doesn't complain if all the candidate
+	 * pixels are ignored.
+	 * @param D a difference between rasterizable values
+	 * @return the pixel counts of the difference
+	 */
+	public static RasterDifference valueOf(Measurable.Difference D) {
+		if (D instanceof RasterDifference) {
+			return (RasterDifference) D;
+		}
+		RasterDifference rd = new RasterDifference();
+		rd.set(singleton(D.getAlpha()), singleton(D.getBeta()), singleton(D
+				.getIgnore()), D.getFileInformation());
+		return rd;
+	}
+
+	private static List singleton(Object o) {
+		return o == null ? Collections.EMPTY_LIST : Collections
+				.singletonList(o);
+	}
+
+	private void set(Collection targets, Collection candidates,
+			Collection ignored, CanonicalFileDescriptor cfd) {
+		this.alpha = getShapes(targets);
+		this.beta = getShapes(candidates);
+		this.ignore = getShapes(ignored);
+		this.cfd = cfd;
+
+		// Only the pixels near a target or candidate are counted, so there
+		// is no need to draw the rest of the frame.
+		Rectangle canvas = addBounds(addBounds(new Rectangle(), alpha), beta);
+		if (cfd != null) {
+			int[] dims = cfd.getDimensions();
+			if (dims != null && dims.length == 2 && dims[0] > 0
+					&& dims[1] > 0) {
+				canvas = canvas.intersection(new Rectangle(0, 0, dims[0],
+						dims[1]));
+			}
+		}
+		boolean checkIgnored = !beta.isEmpty() && !ignore.isEmpty();
+		if (canvas.isEmpty()) {
+			// the candidates have no area, so all of it is ignored
+			ignoredValue = checkIgnored;
+			return;
+		}
+
+		PixelRaster a = draw(canvas, alpha);
+		PixelRaster b = draw(canvas, beta);
+		PixelRaster i = draw(canvas, ignore);
+		matched = a.countAnd(b);
+		missed = a.countAndNot(b, i);
+		falsePixels = b.countAndNot(a, i);
+		if (checkIgnored) {
+			ignoredValue = b.count() == b.countAnd(i);
+		}
+	}
+
+	private static Rectangle addBounds(Rectangle soFar, List shapes) {
+		for (Iterator iter = shapes.iterator(); iter.hasNext();) {
+			Rectangle r = PixelRaster.getBounds(iter.next());
+			if (r.isEmpty()) {
+				continue;
+			} else if (soFar.isEmpty()) {
+				soFar = r;
+			} else {
+				soFar = soFar.union(r);
+			}
+		}
+		return soFar;
+	}
+
+	private static PixelRaster draw(Rectangle canvas, List shapes) {
+		PixelRaster r = new PixelRaster(canvas);
+		for (Iterator iter = shapes.iterator(); iter.hasNext();) {
+			r.fill(iter.next());
+		}
+		return r;
+	}
+
+	private static List getShapes(Collection values) {
+		List shapes = new ArrayList(values.size());
+		for (Iterator iter = values.iterator(); iter.hasNext();) {
+			Object o = iter.next();
+			if (o != null) {
+				Object shape = getShape(o);
+				if (shape == null) {
+					throw new IllegalArgumentException("Cannot rasterize "
+							+ o);
+				}
+				shapes.add(shape);
+			}
+		}
+		return shapes;
+	}
+
+	/**
+	 * Gets the shape to draw for the given value.
+	 * @param o an attribute value, or a shape
+	 * @return the shape, or <code>null</code> if the value is not a
+	 * shape that can be rasterized
+	 */
+	private static Object getShape(Object o) {
+		if (o instanceof PolyList || o instanceof Ellipse
+				|| o instanceof Circle) {
+			return o;
+		} else if (o instanceof Attribute_polygon.AbstractPolygonValue) {
+			return ((Attribute_polygon.AbstractPolygonValue) o).value;
+		} else if (o instanceof Attribute_ellipse.EllipseValue) {
+			return ((Attribute_ellipse.EllipseValue) o).value;
+		} else if (o instanceof Attribute_circle.CircleValue) {
+			return ((Attribute_circle.CircleValue) o).value;
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Tests to see if the given value can be rasterized.
+	 * @param value an attribute value
+	 * @return <code>true</code> if the value is a polygon, bounding box,
+	 * oriented box, ellipse or circle
+	 */
+	public static boolean isRasterizable(Object value) {
+		return getShape(value) != null;
+	}
+
+	/**
+	 * Tests to see if the given distance is one of the pixel counts, the
+	 * only distances a raster difference supports.
+	 * @param d the distance functor
+	 * @return <code>true</code> if it counts matched, missed or false
+	 * pixels
+	 */
+	public static boolean isPixelCount(Distance d) {
+		return PIXEL_COUNTS.contains(d.toString());
+	}
+
+	/**
+	 * Registers the three pixel count metrics for the given attribute
+	 * type, so that any type whose values can be rasterized can be used
+	 * with the pixel counting evaluations.
+	 * @param type the attribute type
+	 */
+	static void putPixelCountsFor(String type) {
+		Distances.putDistanceFunctorFor(type, new Distances.HelperAttrDistance(
+				new MatchedPixelCount(), MATCHED_PIXELS, Distance.OVERALL_SUM,
+				"Pixels matched", false));
+		Distances.putDistanceFunctorFor(type, new Distances.HelperAttrDistance(
+				new MissedPixelCount(), MISSED_PIXELS, Distance.OVERALL_SUM,
+				"Pixels missed", true));
+		Distances.putDistanceFunctorFor(type, new Distances.HelperAttrDistance(
+				new FalsePixelCount(), FALSE_PIXELS, Distance.OVERALL_SUM,
+				"Pixels falsely detected", true));
+	}
+
+	/**
+	 * Gets the number of pixels in both a target and a candidate.
+	 * @return the matched pixel count
+	 */
+	public long getMatched() {
+		return matched;
+	}
+
+	/**
+	 * Gets the number of target pixels that aren't in any candidate and
+	 * aren't ignored.
+	 * @return the missed pixel count
+	 */
+	public long getMissed() {
+		return missed;
+	}
+
+	/**
+	 * Gets the number of candidate pixels that aren't in any target and
+	 * aren't ignored.
+	 * @return the false pixel count
+	 */
+	public long getFalse() {
+		return falsePixels;
+	}
+
+	/**
+	 * Gets the target shapes.
+	 * @return a list of {@link PolyList}s, {@link Ellipse}s and
+	 * {@link Circle}s
+	 */
+	public Object getAlpha() {
+		return alpha;
+	}
+
+	/**
+	 * Gets the candidate shapes.
+	 * @return a list of {@link PolyList}s, {@link Ellipse}s and
+	 * {@link Circle}s
+	 */
+	public Object getBeta() {
+		return beta;
+	}
+
+	/**
+	 * Raster differences don't support blackout regions.
+	 * @return <code>null</code>
+	 */
+	public Object getBlackout() {
+		return null;
+	}
+
+	/**
+	 * Gets the ignored shapes.
+	 * @return a list of {@link PolyList}s, {@link Ellipse}s and
+	 * {@link Circle}s
+	 */
+	public Object getIgnore() {
+		return ignore;
+	}
+
+	/** @inheritDoc */
+	public CanonicalFileDescriptor getFileInformation() {
+		return cfd;
+	}
+
+	static class MatchedPixelCount implements Distances.QuickValueDistance {
+		/** @inheritDoc */
+		public Number helpGetDistance(Measurable.Difference D) {
+			return new Double(valueOf(D).getMatched());
+		}
+	}
+	static class MissedPixelCount implements Distances.QuickValueDistance {
+		/** @inheritDoc */
+		public Number helpGetDistance(Measurable.Difference D) {
+			return new Double(valueOf(D).getMissed());
+		}
+	}
+	static class FalsePixelCount implements Distances.QuickValueDistance {
+		/** @inheritDoc */
+		public Number helpGetDistance(Measurable.Difference D) {
+			return new Double(valueOf(D).getFalse());
+		}
+	}
+}
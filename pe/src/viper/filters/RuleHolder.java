@@ -104,6 +104,19 @@ public class RuleHolder
       attribute_rule_map.put(attribute_name, rule);    
   }
 
+  /**
+   * Gets the names of the attributes that have rules for descriptors
+   * of the same type as the given one.
+   * @param d the descriptor whose rules to look up
+   * @return the attribute names, which may include " framespan";
+   *       empty if there are no rules for the descriptor
+   */
+  public Set getRuleAttributes (Descriptor d) {
+    Hashtable attributes_rule_map = (Hashtable)m_d_a_map.get(d.getCategory() + d.getName());
+    if (attributes_rule_map == null) return Collections.EMPTY_SET;
+    return Collections.unmodifiableSet(attributes_rule_map.keySet());
+  }
+
   /**
    * Checks if the descriptor meets the criteria set by the limitation rules
    * @param to_be_tested the descriptor that has to be tested